@@ -0,0 +1,200 @@
+package application.benchmark;
+
+import application.exceptions.ServiceException;
+import application.repository.database.ConnectionPool;
+import application.service.PasswordHasher;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static application.utils.Constants.*;
+
+/**
+ * Seeds the benchmark database with generated data of a given size.
+ * The database is given by the BENCH_DB_URL, BENCH_DB_USER and BENCH_DB_PASSWORD environment variables
+ * and must already have the schema of the application; its data is replaced.
+ * The data is only generated again when the requested size differs from the size of the last seed.
+ *
+ * For a size of n rows there are n messages, n / 10 users (at least 100), five friendships per user,
+ * n / 10 events with two subscribers each, and a pending friend request from every third user.
+ * Every tenth message belongs to the conversation between the users 1 and 2, the other ones are spread
+ * over neighbouring users. Every conversation is in the inboxes of its two users, read up to its last message.
+ * Every user has the password PASSWORD.
+ */
+public class BenchmarkDatabase {
+    public static final String URL = env("BENCH_DB_URL", "jdbc:postgresql://localhost:5432/network_bench");
+    public static final String USERNAME = env("BENCH_DB_USER", "postgres");
+    public static final String PASSWORD = env("BENCH_DB_PASSWORD", "postgres");
+
+    /**
+     * Password of every generated user
+     */
+    public static final String USER_PASSWORD = "benchmark";
+
+    private static final String[] FIRST_NAMES = {"Ana", "Andrei", "Maria", "Mihai", "Elena", "Ioana", "Radu", "Cristina"};
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * Gets the number of users generated for a size
+     * @param rows int
+     * @return int
+     */
+    public static int users(int rows) {
+        return Math.max(100, rows / 10);
+    }
+
+    /**
+     * Makes sure the database holds the data generated for a size, then opens a pool on it
+     * @param rows int, the number of messages
+     * @return ConnectionPool, to be closed by the caller
+     * @throws SQLException if the database cannot be reached or has no schema
+     * @throws ServiceException if the password of the users cannot be hashed
+     */
+    public static ConnectionPool seed(int rows) throws SQLException, ServiceException {
+        ConnectionPool pool = new ConnectionPool(URL, USERNAME, PASSWORD);
+        try (Connection connection = pool.getConnection()) {
+            if (seededRows(connection) != rows)
+                generate(connection, rows);
+        } catch (SQLException | ServiceException e) {
+            pool.close();
+            throw e;
+        }
+        return pool;
+    }
+
+    private static int seededRows(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT to_regclass('public.message') IS NOT NULL")) {
+                resultSet.next();
+                if (!resultSet.getBoolean(1))
+                    throw new SQLException("The benchmark database has no schema, apply the migrations first!\n");
+            }
+            statement.execute("CREATE TABLE IF NOT EXISTS bench_seed (rows integer NOT NULL)");
+            try (ResultSet resultSet = statement.executeQuery("SELECT rows FROM bench_seed")) {
+                return resultSet.next() ? resultSet.getInt(1) : -1;
+            }
+        }
+    }
+
+    private static void generate(Connection connection, int rows) throws SQLException, ServiceException {
+        PasswordHasher hasher = new PasswordHasher(HASH_ITERATIONS, HASH_MEMORY_KIB, HASH_PARALLELISM, 1, 1);
+        String hash;
+        try {
+            hash = hasher.hash(USER_PASSWORD);
+        } finally {
+            hasher.shutdown();
+        }
+        int users = users(rows);
+
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE read_cursor, inbox, subscribed, event, send_to, message, friend_request, friendship, " +
+                    "\"user\", bench_seed RESTART IDENTITY");
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO \"user\"(id, first_name, last_name, username, hash)\n" +
+                    "SELECT i, (?::varchar[])[1 + i % ?], 'Pop' || (i % 1000), 'user' || i, ?\n" +
+                    "FROM generate_series(1, ?) AS i")) {
+                ps.setArray(1, connection.createArrayOf("varchar", FIRST_NAMES));
+                ps.setInt(2, FIRST_NAMES.length);
+                ps.setString(3, hash);
+                ps.setInt(4, users);
+                ps.executeUpdate();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO friendship(id_left, id_right, date)\n" +
+                    "SELECT i, i + k, timestamp '2022-01-01' + i * interval '1 hour'\n" +
+                    "FROM generate_series(1, ?) AS i, generate_series(1, 5) AS k\n" +
+                    "WHERE i + k <= ?")) {
+                ps.setInt(1, users);
+                ps.setInt(2, users);
+                ps.executeUpdate();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO friend_request(id_from, id_to, status)\n" +
+                    "SELECT i, i + 6, 'PENDING' FROM generate_series(1, ?) AS i WHERE i % 3 = 0 AND i + 6 <= ?")) {
+                ps.setInt(1, users);
+                ps.setInt(2, users);
+                ps.executeUpdate();
+            }
+
+            // sender and receiver of the message i: users 1 and 2 for every tenth message, neighbours otherwise
+            String from = "CASE WHEN i % 10 = 0 THEN 1 + (i / 10) % 2 ELSE 1 + i % ? END";
+            String to = "CASE WHEN i % 10 = 0 THEN 2 - (i / 10) % 2 ELSE 1 + (i + 1) % ? END";
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO message(id, \"from\", date, text)\n" +
+                    "SELECT i, " + from + ", timestamp '2022-01-01' + i * interval '1 minute',\n" +
+                    "       'Message number ' || i\n" +
+                    "FROM generate_series(1, ?) AS i")) {
+                ps.setInt(1, users);
+                ps.setInt(2, rows);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO send_to(message_id, user_id)\n" +
+                    "SELECT i, " + to + " FROM generate_series(1, ?) AS i")) {
+                ps.setInt(1, users);
+                ps.setInt(2, rows);
+                ps.executeUpdate();
+            }
+
+            // inboxes and read cursors of the generated conversations, built from the messages like V8 and V9 do
+            statement.execute(
+                    "INSERT INTO inbox(user_id, friend_id, last_message_id, last_date, unread)\n" +
+                    "SELECT DISTINCT ON (pair.user_id, pair.friend_id) pair.user_id, pair.friend_id, pair.id, pair.date, 0\n" +
+                    "FROM (SELECT m.\"from\" AS user_id, st.user_id AS friend_id, m.id, m.date\n" +
+                    "      FROM message m INNER JOIN send_to st ON st.message_id = m.id\n" +
+                    "      UNION ALL\n" +
+                    "      SELECT st.user_id, m.\"from\", m.id, m.date\n" +
+                    "      FROM message m INNER JOIN send_to st ON st.message_id = m.id) pair\n" +
+                    "ORDER BY pair.user_id, pair.friend_id, pair.date DESC, pair.id DESC");
+            statement.execute(
+                    "INSERT INTO read_cursor(user_id, friend_id, date, message_id)\n" +
+                    "SELECT user_id, friend_id, last_date, last_message_id FROM inbox");
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO event(id, author_id, title, description, creation_date, event_date)\n" +
+                    "SELECT i, 1 + i % ?, 'Event ' || i, 'Description of event ' || i,\n" +
+                    "       timestamp '2022-01-01' + i * interval '1 minute', current_date + (i % 60 - 10)\n" +
+                    "FROM generate_series(1, ?) AS i")) {
+                ps.setInt(1, users);
+                ps.setInt(2, Math.max(1, rows / 10));
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO subscribed(user_id, event_id)\n" +
+                    "SELECT 1 + (e.id * k) % ?, e.id FROM event e, (VALUES (7), (13)) AS factors(k)\n" +
+                    "ON CONFLICT DO NOTHING")) {
+                ps.setInt(1, users);
+                ps.executeUpdate();
+            }
+
+            statement.execute("SELECT setval(pg_get_serial_sequence('\"user\"', 'id'), (SELECT max(id) FROM \"user\"))");
+            statement.execute("SELECT setval(pg_get_serial_sequence('message', 'id'), (SELECT max(id) FROM message))");
+            statement.execute("SELECT setval(pg_get_serial_sequence('event', 'id'), (SELECT max(id) FROM event))");
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO bench_seed(rows) VALUES (?)")) {
+                ps.setInt(1, rows);
+                ps.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+}
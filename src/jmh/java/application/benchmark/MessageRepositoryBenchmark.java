@@ -0,0 +1,92 @@
+package application.benchmark;
+
+import application.domain.Message;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.exceptions.ServiceException;
+import application.repository.database.ConnectionPool;
+import application.repository.database.MessageDataBaseRepository;
+import application.repository.database.UserDataBaseRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes of the conversations, on the conversation between the users 1 and 2,
+ * which holds a tenth of the messages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageRepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private ConnectionPool pool;
+    private MessageDataBaseRepository repository;
+    private User user1;
+    private User user2;
+    private User sender;
+    private User receiver;
+    private int lastPage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, ServiceException, RepositoryException {
+        pool = BenchmarkDatabase.seed(rows);
+        repository = new MessageDataBaseRepository(pool);
+        UserDataBaseRepository userRepository = new UserDataBaseRepository(pool);
+        user1 = userRepository.find(1);
+        user2 = userRepository.find(2);
+        sender = userRepository.find(3);
+        receiver = userRepository.find(4);
+        lastPage = repository.getNumberOfPages(user1, user2);
+    }
+
+    /**
+     * Removes the messages added by the iteration, so every iteration starts from the seeded data
+     */
+    @TearDown(Level.Iteration)
+    public void removeAddedMessages() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement deleteRecipients = connection.prepareStatement("DELETE FROM send_to WHERE message_id > ?");
+             PreparedStatement deleteMessages = connection.prepareStatement("DELETE FROM message WHERE id > ?")) {
+            deleteRecipients.setInt(1, rows);
+            deleteRecipients.executeUpdate();
+            deleteMessages.setInt(1, rows);
+            deleteMessages.executeUpdate();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public List<Message> getConversation() throws RepositoryException {
+        return repository.getConversation(user1, user2);
+    }
+
+    @Benchmark
+    public List<Message> getFirstPage() throws RepositoryException {
+        return repository.getPage(user1, user2, 1);
+    }
+
+    @Benchmark
+    public List<Message> getLastPage() throws RepositoryException {
+        return repository.getPage(user1, user2, lastPage);
+    }
+
+    @Benchmark
+    public Message add() throws RepositoryException {
+        return repository.add(new Message(sender, List.of(receiver), "Benchmark message", LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,60 @@
+package application.benchmark;
+
+import application.domain.User;
+import application.domain.validator.FriendshipValidator;
+import application.domain.validator.UserValidator;
+import application.exceptions.RepositoryException;
+import application.exceptions.ServiceException;
+import application.repository.database.ConnectionPool;
+import application.repository.database.FriendshipDataBaseRepository;
+import application.repository.database.UserDataBaseRepository;
+import application.service.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Friend lists and logins of the network
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private ConnectionPool pool;
+    private Network network;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, ServiceException, RepositoryException {
+        pool = BenchmarkDatabase.seed(rows);
+        UserDataBaseRepository userRepository = new UserDataBaseRepository(pool);
+        network = new Network(userRepository, new UserValidator(),
+                new FriendshipDataBaseRepository(pool), new FriendshipValidator());
+        user = userRepository.find(BenchmarkDatabase.users(rows) / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        network.getPasswordHasher().shutdown();
+        network.getChangeEventBus().close();
+        pool.close();
+    }
+
+    @Benchmark
+    public List<User> friendList() throws RepositoryException {
+        return network.friendList(user);
+    }
+
+    @Benchmark
+    public int login() throws RepositoryException, ServiceException {
+        return network.loginUser(user.getUserName(), BenchmarkDatabase.USER_PASSWORD);
+    }
+}
@@ -0,0 +1,50 @@
+package application.benchmark;
+
+import application.exceptions.ServiceException;
+import application.service.PasswordHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static application.utils.Constants.*;
+
+/**
+ * Hashing and verification of passwords with the parameters of the application, without the database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+    private PasswordHasher hasher;
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ServiceException {
+        hasher = new PasswordHasher(HASH_ITERATIONS, HASH_MEMORY_KIB, HASH_PARALLELISM, HASH_THREADS, HASH_QUEUE_CAPACITY);
+        hash = hasher.hash(BenchmarkDatabase.USER_PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Benchmark
+    public String hash() throws ServiceException {
+        return hasher.hash(BenchmarkDatabase.USER_PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() throws ServiceException {
+        return hasher.verify(hash, BenchmarkDatabase.USER_PASSWORD);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean verifyConcurrently() throws ServiceException {
+        return hasher.verify(hash, BenchmarkDatabase.USER_PASSWORD);
+    }
+}
@@ -0,0 +1,72 @@
+package application.benchmark;
+
+import application.domain.AddFriendDTO;
+import application.domain.Event;
+import application.domain.User;
+import application.domain.validator.*;
+import application.exceptions.RepositoryException;
+import application.exceptions.ServiceException;
+import application.repository.database.*;
+import application.service.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event feeds and name searches, through the service used by the views
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuperServiceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private ConnectionPool pool;
+    private SuperService superService;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, ServiceException, RepositoryException {
+        pool = BenchmarkDatabase.seed(rows);
+        UserDataBaseRepository userRepository = new UserDataBaseRepository(pool);
+        Network network = new Network(userRepository, new UserValidator(),
+                new FriendshipDataBaseRepository(pool), new FriendshipValidator());
+        superService = new SuperService(network,
+                new MessageService(new MessageDataBaseRepository(pool), new MessageValidator()),
+                new FriendRequestService(new FriendRequestDataBaseRepository(pool), new FriendRequestValidator()),
+                new EventService(new EventDataBaseRepository(pool), new EventValidator()));
+        user = userRepository.find(BenchmarkDatabase.users(rows) / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        superService.shutdown();
+        pool.close();
+    }
+
+    @Benchmark
+    public List<Event> getEventsForUser() throws RepositoryException {
+        return superService.getEventsForUser(user);
+    }
+
+    @Benchmark
+    public List<Event> getFirstPageOfEventsForUser() throws RepositoryException {
+        return superService.getEventsForUser(user, 1);
+    }
+
+    @Benchmark
+    public List<AddFriendDTO> searchByShortName() throws RepositoryException {
+        return superService.getAddFriendDtoOfUserByName(user.getId(), "an");
+    }
+
+    @Benchmark
+    public List<AddFriendDTO> searchByFullName() throws RepositoryException {
+        return superService.getAddFriendDtoOfUserByName(user.getId(), "maria pop1");
+    }
+}
@@ -4,53 +4,116 @@ import application.contoller.NetworkController;
 import application.contoller.SignUpController;
 import application.domain.*;
 import application.domain.validator.*;
-import application.repository.Repository;
+import application.exceptions.RepositoryException;
+import application.repository.*;
 import application.repository.database.*;
+import application.repository.log.MessageLog;
+import application.repository.log.MessageLogRepository;
+import application.repository.memory.*;
 import application.service.*;
+import application.utils.events.ChangeEventBus;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.DatePicker;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Optional;
 
+import static application.utils.Constants.*;
 import static application.utils.DatabaseConstants.*;
 
 
 public class NetworkApplication extends Application {
     private SuperService superService;
+    private ConnectionPool pool;
+    private MessageLog messageLog;
+
+    private void initialize() throws RepositoryException {
+        UserRepository userRepository;
+        FriendshipRepository friendshipRepository;
+        FriendRequestRepository requestRepository;
+        MessageRepository messageRepository;
+        EventRepository eventRepository;
+        if (IN_MEMORY_STORAGE) {
+            // Single node mode, nothing is stored
+            MemoryDatabase database = new MemoryDatabase(MEMORY_STRIPES);
+            userRepository = new UserMemoryRepository(database);
+            friendshipRepository = new FriendshipMemoryRepository(database);
+            requestRepository = new FriendRequestMemoryRepository(database);
+            messageRepository = new MessageMemoryRepository(database);
+            eventRepository = new EventMemoryRepository(database);
+        } else {
+            // Connections shared by every repository
+            this.pool = ConnectionPool.shared(URL, USERNAME, PASSWORD);
+            if (SCHEMA_MIGRATION)
+                new SchemaMigrator(pool).migrate();
+            if (QUERY_PLAN_CHECK)
+                new QueryPlanCheck(pool).verify();
+            userRepository = new UserDataBaseRepository(pool);
+            FriendshipDataBaseRepository friendshipDataBaseRepository = new FriendshipDataBaseRepository(pool);
+            if (FRIENDSHIP_ADJACENCY_INDEX)
+                friendshipDataBaseRepository.enableAdjacencyIndex();
+            friendshipRepository = friendshipDataBaseRepository;
+            requestRepository = new FriendRequestDataBaseRepository(pool);
+            if (MESSAGE_LOG_STORAGE) {
+                try {
+                    this.messageLog = MessageLog.open(Paths.get(MESSAGE_LOG_DIRECTORY), MESSAGE_LOG_SEGMENT_BYTES,
+                            MESSAGE_LOG_COMPACTION_RATIO);
+                } catch (IOException e) {
+                    throw new RepositoryException("The message log cannot be opened: " + e.getMessage());
+                }
+                messageRepository = new MessageLogRepository(messageLog, userRepository);
+            } else {
+                messageRepository = new MessageDataBaseRepository(pool);
+            }
+            eventRepository = new EventDataBaseRepository(pool);
+        }
 
-    private void initialize() {
         // User
-        UserDataBaseRepository userRepository = new UserDataBaseRepository(URL, USERNAME, PASSWORD);
         Validator<User> userValidator = new UserValidator();
 
         // Friendship
-        Repository<Tuple<Integer, Integer>, Friendship> friendshipRepository = new FriendshipDataBaseRepository(URL, USERNAME, PASSWORD);
         Validator<Friendship> friendshipValidator = new FriendshipValidator();
 
+        // Passwords
+        PasswordHasher passwordHasher = new PasswordHasher(HASH_ITERATIONS, HASH_MEMORY_KIB, HASH_PARALLELISM,
+                HASH_THREADS, HASH_QUEUE_CAPACITY);
+        if (HASH_CALIBRATION_TARGET_MILLIS > 0)
+            passwordHasher.calibrate(HASH_CALIBRATION_TARGET_MILLIS);
+
+        // Changes of users, friendships and friend requests, shown by the open views
+        ChangeEventBus changeEventBus = new ChangeEventBus(CHANGE_FRAME_MILLIS);
+
         // Network
-        Network network = new Network(userRepository, userValidator, friendshipRepository, friendshipValidator);
+        Network network = new Network(userRepository, userValidator, friendshipRepository, friendshipValidator,
+                passwordHasher, changeEventBus);
 
         // Friend Request
         Validator<FriendRequest> friendRequestValidator = new FriendRequestValidator();
-        Repository<Tuple<Integer,Integer>, FriendRequest> requestRepository = new FriendRequestDataBaseRepository(URL, USERNAME, PASSWORD);
-        FriendRequestService friendRequestService = new FriendRequestService(requestRepository,friendRequestValidator);
+        FriendRequestService friendRequestService = new FriendRequestService(requestRepository,friendRequestValidator, changeEventBus);
 
         // Message
         Validator<Message> messageValidator = new MessageValidator();
-        MessageDataBaseRepository messageRepository = new MessageDataBaseRepository(URL, USERNAME, PASSWORD);
         MessageService messageService = new MessageService(messageRepository, messageValidator);
 
         // Event
         Validator<Event> eventValidator = new EventValidator();
-        EventDataBaseRepository eventDataBaseRepository = new EventDataBaseRepository(URL, USERNAME, PASSWORD);
-        EventService eventService = new EventService(eventDataBaseRepository, eventValidator);
+        EventService eventService = new EventService(eventRepository, eventValidator);
+
 
+        // New messages, pushed by the database; the memory repositories and the message log push nothing
+        ConversationNotifier conversationNotifier = null;
+        if (!IN_MEMORY_STORAGE && !MESSAGE_LOG_STORAGE) {
+            conversationNotifier = new ConversationNotifier(new NotificationListener(URL, USERNAME, PASSWORD), MESSAGE_CHANNEL,
+                    messageRepository);
+            conversationNotifier.start();
+        }
 
         // Super Service
-        this.superService= new SuperService(network, messageService, friendRequestService, eventService);
+        this.superService= new SuperService(network, messageService, friendRequestService, eventService, conversationNotifier);
 
     }
 
@@ -68,6 +131,16 @@ public class NetworkApplication extends Application {
         DatePicker datePicker = new DatePicker();
     }
 
+    @Override
+    public void stop() {
+        if (superService != null)
+            superService.shutdown();
+        if (messageLog != null)
+            messageLog.close();
+        if (pool != null)
+            pool.close();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -2,9 +2,10 @@ package application.contoller;
 
 import application.domain.AddFriendDTO;
 import application.domain.User;
-import application.exceptions.RepositoryException;
-import application.exceptions.ValidationException;
+import application.service.AsyncSuperService;
+import application.service.FriendRecommendations;
 import application.service.SuperService;
+import application.utils.FxCallbacks;
 import application.utils.SceneChanger;
 import application.utils.WarningBox;
 import javafx.collections.FXCollections;
@@ -19,12 +20,16 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 public class AddFriendController implements Controller{
 
     private SuperService superService;
+    private AsyncSuperService service; // runs the calls of superService off the FX thread
     private User user;
+    private FriendRecommendations.Cursor recommendations; // position in the recommendations shown in the table
+    private String searchName; // name searched by the filter, null when recommendations are shown
 
     // Table View
     @FXML
@@ -34,6 +39,8 @@ public class AddFriendController implements Controller{
     @FXML
     private TableColumn<AddFriendDTO, String> nameColumn;
     @FXML
+    private TableColumn<AddFriendDTO, Integer> mutualColumn;
+    @FXML
     private TableColumn<AddFriendDTO, String> requestColumn;
 
     private ObservableList<AddFriendDTO> addFriendList = FXCollections.observableArrayList();
@@ -43,12 +50,15 @@ public class AddFriendController implements Controller{
     private Button addButton;
     @FXML
     private Button backButton;
+    @FXML
+    private Button moreButton;
 
     public void setUser(User user){
         this.user = user;
     }
     public void setService(SuperService superService){
         this.superService = superService;
+        this.service = superService.async();
     }
 
     // Filter
@@ -59,19 +69,39 @@ public class AddFriendController implements Controller{
     private TextField filterTextField;
 
     private void updateTableView(){
-        try {
-            addFriendList.setAll(superService.getAddFriendDtoOfUser(user.getId()));
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
+        searchName = null;
+        recommendations = null;
         tableView.setItems(addFriendList);
+        FxCallbacks.onSuccess(service.callLatest("add-friend-page", "getFriendRecommendations", superService -> {
+                    FriendRecommendations.Cursor cursor = superService.getFriendRecommendations(user.getId());
+                    return new Page(cursor, superService.getAddFriendDtoOfUser(cursor));
+                }),
+                page -> {
+                    recommendations = page.recommendations;
+                    addFriendList.setAll(page.users);
+                    moreButton.setDisable(!recommendations.hasMore());
+                });
+    }
+
+    /**
+     * Users shown in the table, with the position in the recommendations they were read from
+     */
+    private static final class Page {
+        private final FriendRecommendations.Cursor recommendations;
+        private final List<AddFriendDTO> users;
+
+        private Page(FriendRecommendations.Cursor recommendations, List<AddFriendDTO> users) {
+            this.recommendations = recommendations;
+            this.users = users;
+        }
     }
     private void initializeTableView(){
         idColumn.setCellValueFactory(new PropertyValueFactory<AddFriendDTO, Integer>("id"));
         nameColumn.setCellValueFactory(new PropertyValueFactory<AddFriendDTO, String>("name"));
+        mutualColumn.setCellValueFactory(new PropertyValueFactory<AddFriendDTO, Integer>("mutualFriends"));
         requestColumn.setCellValueFactory(new PropertyValueFactory<AddFriendDTO, String>("request"));
         updateTableView();
-
+        filterTextField.textProperty().addListener((observable, oldValue, newValue) -> search(newValue));
     }
     @FXML
     public void initialize(){
@@ -81,29 +111,27 @@ public class AddFriendController implements Controller{
 
     @FXML
     public void addFriendRequest(ActionEvent actionEvent){
-        try{
-            AddFriendDTO addFriendDTO = tableView.getSelectionModel().getSelectedItem();
-            if (addFriendDTO == null)
-            {
-                WarningBox.show("Select a user from the table!");
-                return;
-            }
-            if (addFriendDTO.getRequest().equals("Already sent"))
-            {
-                WarningBox.show("A request was already sent");
-                return;
-            }
-
-            Integer userId = addFriendDTO.getId();
-            superService.addFriendRequest(user.getId(), userId);
-            addFriendDTO.setRequest("Already sent");
-            addFriendList.set(tableView.getSelectionModel().getSelectedIndex(), addFriendDTO);
-            tableView.setItems(addFriendList);
-
-        } catch (ValidationException | RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        AddFriendDTO addFriendDTO = tableView.getSelectionModel().getSelectedItem();
+        if (addFriendDTO == null)
+        {
+            WarningBox.show("Select a user from the table!");
+            return;
+        }
+        if (addFriendDTO.getRequest().equals("Already sent"))
+        {
+            WarningBox.show("A request was already sent");
+            return;
         }
 
+        Integer userId = addFriendDTO.getId();
+        FxCallbacks.onSuccess(service.run("addFriendRequest", superService -> superService.addFriendRequest(user.getId(), userId)),
+                sent -> {
+                    addFriendDTO.setRequest("Already sent");
+                    int index = addFriendList.indexOf(addFriendDTO);
+                    if (index >= 0)
+                        addFriendList.set(index, addFriendDTO);
+                    tableView.setItems(addFriendList);
+                });
     }
 
     @FXML
@@ -117,22 +145,51 @@ public class AddFriendController implements Controller{
     }
 
     @FXML
-    public void filterButtonAction(ActionEvent actionEvent){
-        try{
-            String name = filterTextField.getText();
-            addFriendList.setAll(superService.getAddFriendDtoOfUserByName(user.getId(), name));
-
-            //tableView.setItems(addFriendList);
+    public void moreButtonAction(ActionEvent actionEvent){
+        String name = searchName;
+        FriendRecommendations.Cursor cursor = recommendations;
+        int offset = addFriendList.size();
+        if (name == null && cursor == null)
+            return;
+        moreButton.setDisable(true);
+        FxCallbacks.onSuccess(service.callLatest("add-friend-page", "getAddFriendDtoOfUser", superService -> name != null
+                        ? superService.getAddFriendDtoOfUserByName(user.getId(), name, offset)
+                        : superService.getAddFriendDtoOfUser(cursor)),
+                page -> {
+                    addFriendList.addAll(page);
+                    moreButton.setDisable(name != null ? page.isEmpty() : !cursor.hasMore());
+                });
+    }
 
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
+    /**
+     * Shows the first page of users matching the name, or the recommendations if the name is blank
+     * @param name String
+     */
+    private void search(String name){
+        if (name == null || name.isBlank()) {
+            updateTableView();
+            return;
         }
+        searchName = name;
+        recommendations = null;
+        FxCallbacks.onSuccess(service.callLatest("add-friend-page", "getAddFriendDtoOfUserByName",
+                        superService -> superService.getAddFriendDtoOfUserByName(user.getId(), name)),
+                page -> {
+                    addFriendList.setAll(page);
+                    moreButton.setDisable(page.isEmpty());
+                });
+    }
+
+    @FXML
+    public void filterButtonAction(ActionEvent actionEvent){
+        search(filterTextField.getText());
     }
 
 
     @Override
     public void initializeController(SuperService superService, Optional<User> user) {
         this.superService = superService;
+        this.service = superService.async();
         this.user = user.get();
         initializeTableView();
     }
@@ -2,12 +2,16 @@ package application.contoller;
 
 import application.domain.FriendDTO;
 import application.domain.Message;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
 import application.domain.User;
 import application.domain.UserDTO;
 import application.exceptions.RepositoryException;
-import application.exceptions.ServiceException;
-import application.exceptions.ValidationException;
+import application.service.AsyncSuperService;
+import application.service.ConversationNotifier;
 import application.service.SuperService;
+import application.utils.FxCallbacks;
+import application.utils.InfoBox;
 import application.utils.SceneChanger;
 import application.utils.WarningBox;
 import javafx.beans.value.ChangeListener;
@@ -26,15 +30,24 @@ import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 public class ChatController implements Controller {
+    private static final String PAGE_REQUEST = "chat-page"; // a newer page request cancels the one still loading
+
     private SuperService superService;
+    private AsyncSuperService service; // runs the calls of superService off the FX thread
     private User user;
     private Integer currentFriendId;
     private Integer currentPage;
+    private MessageCursor pageAnchor; // the shown page ends before (or starts after) this message; null for the newest page
+    private boolean pageBeforeAnchor = true;
+    private ConversationNotifier.Subscription conversationSubscription; // new messages of the current conversation
+    private ReadCursor friendReadCursor; // how far the friend read the shown conversation, null if not at all
 
     // ===========  Messages List Fields ================
     @FXML
@@ -58,6 +71,8 @@ public class ChatController implements Controller {
     @FXML
     private TableColumn<FriendDTO, String> chatNameColumn;
     @FXML
+    private TableColumn<FriendDTO, Integer> chatUnreadColumn;
+    @FXML
     private TableColumn<FriendDTO, CheckBox> chatSelectColumn;
     @FXML
     private TableColumn<FriendDTO, Integer> chatIdColumn;
@@ -94,6 +109,7 @@ public class ChatController implements Controller {
 
     public void setService(SuperService superService){
         this.superService = superService;
+        this.service = superService.async();
     }
 
     public void setUser(User user){
@@ -108,37 +124,42 @@ public class ChatController implements Controller {
     // ===========  Friends Table  ================
 
     private void updateChatFriendsTableView(){
-        try {
-            friendsList.setAll(superService.getFriendDtoOfUser(user.getId()));
-            chatFriendTableView.setItems(friendsList);
-
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
-
+        chatFriendTableView.setItems(friendsList);
+        FxCallbacks.onSuccess(service.callLatest("chat-friends", "getInboxOfUser",
+                        superService -> superService.getInboxOfUser(user.getId())),
+                friends -> {
+                    friendsList.setAll(friends);
+                    if (currentFriendId.equals(0) && !friendsList.isEmpty())
+                        showNewestPage(friendsList.get(0).getId());
+                });
     }
 
 
     private void initializeChatFriendsTableView(){
         chatIdColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
         chatNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+        chatUnreadColumn.setCellValueFactory(new PropertyValueFactory<>("unread"));
         chatSelectColumn.setCellValueFactory(new PropertyValueFactory<>("select"));
+        chatFriendTableView.setRowFactory(tableView -> new TableRow<>() {
+            @Override
+            protected void updateItem(FriendDTO friend, boolean empty) {
+                super.updateItem(friend, empty);
+                setTooltip(empty || friend == null || friend.getLastMessage() == null
+                        ? null
+                        : new Tooltip(friend.getLastMessage()));
+            }
+        });
         updateChatFriendsTableView();
 
         chatFriendTableView.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<FriendDTO>() {
             @Override
             public void changed(ObservableValue<? extends FriendDTO> observable, FriendDTO oldValue, FriendDTO newValue) {
-                try {
-                    User friend = superService.findUser(newValue.getId());
-                    currentPage = superService.getNumberOfConversationPages(user,friend);
-                } catch (RepositoryException ignored) { }
-                pageNumberLabel.setText(currentPage.toString());
                 if (newValue != null) {
                     if (oldValue != null) {
                         if (oldValue.getId() == newValue.getId())
                             return;
                     }
-                    updateMessageListView(newValue.getId(), currentPage);
+                    showNewestPage(newValue.getId());
                 }
             }
         });
@@ -147,6 +168,7 @@ public class ChatController implements Controller {
     @Override
     public void initializeController(SuperService superService, Optional<User> user) {
         this.superService = superService;
+        this.service = superService.async();
         this.user = user.get();
 
         currentFriendId = 0;
@@ -181,59 +203,216 @@ public class ChatController implements Controller {
                     label.getStyleClass().add("message_friend");
                 }
                 hBox.getChildren().add(label);
+                if (item.getFrom().getId().equals(user.getId()) && friendReadCursor != null
+                        && friendReadCursor.hasRead(MessageCursor.of(item))) {
+                    Label seen = new Label("seen");
+                    seen.getStyleClass().add("message_seen");
+                    hBox.getChildren().add(0, seen);
+                }
                 setGraphic(hBox);
             }
         }
     }
-    private void updateMessageListView(Integer userId, Integer page){
-        try {
-            currentFriendId = userId;
-            User friend = superService.findUser(userId);
-            messagesList.setAll(superService.getConversationPage(user, friend, page));
-            chatMessageListView.setItems(messagesList);
+    /**
+     * A page of the conversation with a friend
+     */
+    private static final class ConversationPage {
+        private final User friend;
+        private final List<Message> messages;
+        private final Integer pageNumber; // null if only the messages were loaded
+        private final ReadCursor friendRead; // null if the friend read none of the conversation
+
+        private ConversationPage(User friend, List<Message> messages, Integer pageNumber, ReadCursor friendRead) {
+            this.friend = friend;
+            this.messages = messages;
+            this.pageNumber = pageNumber;
+            this.friendRead = friendRead;
+        }
+    }
 
-            friendNameLabel.setText(friend.getFirstName() + " " + friend.getLastName());
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
+    /**
+     * Receives the new messages of the conversation with a friend, instead of the previous conversation
+     * @param friendId Integer
+     */
+    private void subscribeToConversation(Integer friendId){
+        if (conversationSubscription != null)
+            conversationSubscription.close();
+        conversationSubscription = superService.subscribeToConversation(user.getId(), friendId,
+                messageId -> FxCallbacks.onSuccess(service.call("findMessage", superService -> superService.findMessage(messageId)),
+                        message -> appendMessage(friendId, message)));
+    }
+
+    /**
+     * Marks the conversation with a friend as read up to a shown message; the read cursor is written in a batch
+     * with the next ones, so paging through the conversation does not wait for the database
+     * @param friendId Integer
+     * @param message Message, the newest shown message
+     * @param newest boolean, true if no newer message exists, so the friend has no unread messages left
+     */
+    private void markRead(Integer friendId, Message message, boolean newest){
+        superService.markRead(user.getId(), friendId, MessageCursor.of(message));
+        if (!newest)
+            return;
+        for (FriendDTO friend : friendsList)
+            if (friend.getId().equals(friendId) && friend.getUnread() != 0) {
+                friend.setUnread(0);
+                chatFriendTableView.refresh();
+            }
+    }
+
+    /**
+     * Adds a new message at the end of the shown conversation, if the newest page of that conversation is shown
+     * @param friendId Integer
+     * @param message Message
+     */
+    private void appendMessage(Integer friendId, Message message){
+        if (!friendId.equals(currentFriendId) || pageAnchor != null)
+            return;
+        for (Message shown : messagesList)
+            if (shown.getId().equals(message.getId()))
+                return;
+        messagesList.add(message);
+        chatMessageListView.scrollTo(messagesList.size() - 1);
+        markRead(friendId, message, true);
+    }
+
+    /**
+     * Shows the messages sent by the user: pushed messages are appended as they arrive,
+     * otherwise the newest page is loaded again
+     * @param friendId Integer
+     */
+    private void showSentMessages(Integer friendId){
+        if (!superService.isMessagePushConnected() || pageAnchor != null)
+            showNewestPage(friendId);
+    }
+
+    private void showNewestPage(Integer userId){
+        if (!userId.equals(currentFriendId) || conversationSubscription == null)
+            subscribeToConversation(userId);
+        currentFriendId = userId;
+        pageAnchor = null;
+        pageBeforeAnchor = true;
+        FxCallbacks.onSuccess(service.callLatest(PAGE_REQUEST, "getConversationPage", superService -> {
+                    User friend = superService.findUser(userId);
+                    Integer pageNumber;
+                    try {
+                        pageNumber = superService.getNumberOfConversationPages(user, friend);
+                    } catch (RepositoryException e) {
+                        pageNumber = 1;
+                    }
+                    return new ConversationPage(friend, loadPage(superService, friend, null, true), pageNumber,
+                            superService.getReadCursor(userId, user.getId()));
+                }),
+                this::showPage);
+    }
+
+    private List<Message> loadPage(SuperService superService, User friend, MessageCursor anchor, boolean beforeAnchor) throws RepositoryException {
+        if (beforeAnchor)
+            return superService.getConversationPageBefore(user, friend, anchor);
+        return superService.getConversationPageAfter(user, friend, anchor);
+    }
+
+    private void showPage(ConversationPage page){
+        if (page.pageNumber != null) {
+            currentPage = page.pageNumber;
+            pageNumberLabel.setText(currentPage.toString());
         }
+        friendReadCursor = page.friendRead;
+        messagesList.setAll(page.messages);
+        if (!page.messages.isEmpty())
+            markRead(page.friend.getId(), page.messages.get(page.messages.size() - 1), pageAnchor == null);
+        chatMessageListView.setItems(messagesList);
+        friendNameLabel.setText(page.friend.getFirstName() + " " + page.friend.getLastName());
+    }
+
+    private void updateMessageListView(Integer userId){
+        currentFriendId = userId;
+        MessageCursor anchor = pageAnchor;
+        boolean beforeAnchor = pageBeforeAnchor;
+        FxCallbacks.onSuccess(service.callLatest(PAGE_REQUEST, "getConversationPage", superService -> {
+                    User friend = superService.findUser(userId);
+                    return new ConversationPage(friend, loadPage(superService, friend, anchor, beforeAnchor), null,
+                            superService.getReadCursor(userId, user.getId()));
+                }),
+                this::showPage);
+    }
+
+    /**
+     * Shows the page next to the current one, found from the first or last message shown.
+     * Nothing changes if there is no such page.
+     * @param older true for the previous page, false for the next one
+     */
+    private void moveToAdjacentPage(boolean older) {
+        if (currentFriendId.equals(0) || messagesList.isEmpty())
+            return;
+        Integer friendId = currentFriendId;
+        Message edge = older ? messagesList.get(0) : messagesList.get(messagesList.size() - 1);
+        MessageCursor anchor = MessageCursor.of(edge);
+        FxCallbacks.onSuccess(service.callLatest(PAGE_REQUEST, "getConversationPage", superService -> {
+                    User friend = superService.findUser(friendId);
+                    return new ConversationPage(friend, loadPage(superService, friend, anchor, older), null,
+                            superService.getReadCursor(friendId, user.getId()));
+                }),
+                page -> {
+                    if (page.messages.isEmpty())
+                        return;
+                    pageAnchor = anchor;
+                    pageBeforeAnchor = older;
+                    currentPage = older ? Math.max(1, currentPage - 1) : currentPage + 1;
+                    pageNumberLabel.setText(currentPage.toString());
+                    showPage(page);
+                });
     }
 
 
+    /**
+     * Shows the thread of a message, every reply indented under the message it replies to
+     * @param message Message
+     */
+    private void showThread(Message message){
+        FxCallbacks.onSuccess(service.call("getThread", superService -> superService.getThread(message.getId())),
+                thread -> {
+                    Map<Integer, Integer> depths = new HashMap<>();
+                    StringBuilder text = new StringBuilder();
+                    for (Message reply : thread) {
+                        int depth = depths.getOrDefault(reply.getReplyOfId(), -1) + 1;
+                        depths.put(reply.getId(), depth);
+                        text.append("    ".repeat(depth))
+                                .append(reply.getFrom().getUserName()).append(": ")
+                                .append(reply.getText()).append('\n');
+                    }
+                    InfoBox.show(text.toString());
+                });
+    }
+
     private void initializeChatMessageListView() {
         chatMessageListView.setCellFactory(messageListView -> new MessageListViewCell());
-        try {
-            if (friendsList.size() > 0){
-                currentFriendId = friendsList.get(0).getId();
-                currentPage = 0;
-
-                currentPage = superService.getNumberOfConversationPages(user, superService.findUser(currentFriendId));
+        chatMessageListView.setOnMouseClicked(mouseEvent -> {
+            Message selected = chatMessageListView.getSelectionModel().getSelectedItem();
+            if (mouseEvent.getClickCount() == 2 && selected != null)
+                showThread(selected);
+        });
+        friendNameLabel.setText(""); // set when the first conversation is loaded
 
-                updateMessageListView(currentFriendId, currentPage);
-            }
-            else
-                friendNameLabel.setText("");
-
-            chatMessageListView.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<Message>() {
-                @Override
-                public void changed(ObservableValue<? extends Message> observable, Message oldValue, Message newValue) {
-                    if (newValue != null) {
-                        if (oldValue != null) {
-                            if (oldValue.getId() == newValue.getId())
-                                return;
-                        }
+        chatMessageListView.getSelectionModel().selectedItemProperty().addListener(new ChangeListener<Message>() {
+            @Override
+            public void changed(ObservableValue<? extends Message> observable, Message oldValue, Message newValue) {
+                if (newValue != null) {
+                    if (oldValue != null) {
+                        if (oldValue.getId() == newValue.getId())
+                            return;
                     }
                 }
-            });
-        } catch (RepositoryException e) {
-            e.printStackTrace();
-        }
-
+            }
+        });
     }
 
     // ===========  Buttons Actions  ================
 
     @FXML
     private void backButtonAction(ActionEvent actionEvent){
+        if (conversationSubscription != null)
+            conversationSubscription.close();
         try {
             SceneChanger.changeTo(actionEvent, "mainpage.fxml", new MainPageController(), superService, Optional.of(user));
         } catch (NumberFormatException | IOException e) {
@@ -248,15 +427,14 @@ public class ChatController implements Controller {
             WarningBox.show("You have to write a message!");
         }
         else{
-            try {
-                Message message = superService.addMessage(user.getId(), List.of(currentFriendId), text);
-                //messagesList.add(message);
-                //chatMessageListView.setItems(messagesList);
-                updateMessageListView(currentFriendId, currentPage);
-                messageTextField.clear();
-            } catch (ValidationException | RepositoryException e) {
-                WarningBox.show(e.getMessage());
-            }
+            Integer friendId = currentFriendId;
+            FxCallbacks.onSuccess(service.call("addMessage",
+                            superService -> superService.addMessage(user.getId(), List.of(friendId), text)),
+                    message -> {
+                        showSentMessages(friendId);
+                        messageTextField.clear();
+                        updateChatFriendsTableView();
+                    });
         }
 
     }
@@ -273,14 +451,17 @@ public class ChatController implements Controller {
             WarningBox.show("You have to select a message to reply to!");
             return;
         }
-        try {
-            superService.addReply(user.getId(), message.getId(), text);
-        } catch (ValidationException | RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
-
-        updateMessageListView(currentFriendId, currentPage);
-        messageTextField.clear();
+        Integer friendId = currentFriendId;
+        FxCallbacks.onComplete(service.run("addReply", superService -> superService.addReply(user.getId(), message.getId(), text)),
+                replied -> {
+                    showSentMessages(friendId);
+                    messageTextField.clear();
+                },
+                exception -> {
+                    WarningBox.show(exception.getMessage());
+                    showNewestPage(friendId);
+                    messageTextField.clear();
+                });
     }
 
 
@@ -293,37 +474,17 @@ public class ChatController implements Controller {
             WarningBox.show("You have to select a message to delete!");
             return;
         }
-        try {
-            superService.userDeleteMessage(user, selectedMessage.getId());
-            updateMessageListView(currentFriendId,currentPage);
-        } catch (ServiceException | RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
+        Integer friendId = currentFriendId;
+        FxCallbacks.onSuccess(service.run("userDeleteMessage", superService -> superService.userDeleteMessage(user, selectedMessage.getId())),
+                deleted -> updateMessageListView(friendId));
     }
 
     @FXML
     private void previousPageAction(ActionEvent actionEvent){
-        if (currentPage > 1 && !currentFriendId.equals(0)) {
-            currentPage--;
-            updateMessageListView(currentFriendId, currentPage);
-            pageNumberLabel.setText(currentPage.toString());
-        }
-
+        moveToAdjacentPage(true);
     }
     @FXML
     private void nextPageAction(ActionEvent actionEvent){
-        try {
-            if (!currentFriendId.equals(0)) {
-                User currentFriend = superService.findUser(currentFriendId);
-                if (currentPage < superService.getNumberOfConversationPages(user, currentFriend)) {
-                    currentPage++;
-                    updateMessageListView(currentFriendId, currentPage);
-                    pageNumberLabel.setText(currentPage.toString());
-                }
-            }
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
-
+        moveToAdjacentPage(false);
     }
 }
@@ -3,12 +3,13 @@ package application.contoller;
 import application.domain.FriendRequestDTO;
 import application.domain.FriendRequestStatus;
 import application.domain.User;
-import application.exceptions.RepositoryException;
-import application.exceptions.ValidationException;
+import application.service.AsyncSuperService;
 import application.service.SuperService;
+import application.utils.FxCallbacks;
 import application.utils.SceneChanger;
 import application.utils.WarningBox;
-import application.utils.observer.Observer;
+import application.utils.events.ChangeEvent;
+import application.utils.events.ChangeEventBus;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -22,16 +23,18 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import java.io.IOException;
 import java.util.Optional;
 
-public class FriendRequestsController implements Observer, Controller {
+public class FriendRequestsController implements Controller {
     private SuperService superService;
+    private AsyncSuperService service; // runs the calls of superService off the FX thread
     private User user;
+    private ChangeEventBus.Subscription changesSubscription; // reloads the table when a request of the user changes
 
     public void setUser(User user){
         this.user = user;
     }
     public void setService(SuperService superService){
         this.superService = superService;
-        superService.addObserverForFriendRequests(this);
+        this.service = superService.async();
     }
 
     @FXML
@@ -58,18 +61,19 @@ public class FriendRequestsController implements Observer, Controller {
     private ObservableList<FriendRequestDTO> friendRequestList = FXCollections.observableArrayList();
 
     private void updateTableView() {
-        try {
-            friendRequestList.setAll(superService.getAllFriendRequestsDtoForUser(user.getId()));
-        }
-        catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
-        requestsTableView.setItems(friendRequestList);
+        FxCallbacks.onSuccess(service.callLatest("friend-requests", "getAllFriendRequestsDtoForUser",
+                        superService -> superService.getAllFriendRequestsDtoForUser(user.getId())),
+                requests -> {
+                    friendRequestList.setAll(requests);
+                    requestsTableView.setItems(friendRequestList);
+                });
     }
 
-    @Override
-    public void observerUpdate() {
-        updateTableView();
+    private void subscribeToChanges() {
+        int userId = user.getId();
+        changesSubscription = superService.subscribeToChanges(
+                event -> event.getType() == ChangeEvent.Type.FRIEND_REQUEST && event.involves(userId),
+                events -> updateTableView());
     }
 
     private void initializeRequestsTableView() {
@@ -89,68 +93,61 @@ public class FriendRequestsController implements Observer, Controller {
 
     @FXML
     public void acceptFriendRequestAction(ActionEvent actionEvent) {
-        try {
-            FriendRequestDTO friendRequestDTO = requestsTableView.getSelectionModel().getSelectedItem();
-            if (friendRequestDTO==null) {
-                WarningBox.show("Nothing was selected from the table");
-                return;
-            }
-            if (friendRequestDTO.getNameFrom().equals("You")) {
-                WarningBox.show("That request isn't yours to accept!");
-                return;
-            }
-            superService.updateFriendRequest(friendRequestDTO.getIdFrom(),friendRequestDTO.getIdTo(),"ACCEPTED");
-            updateTableView();
-        } catch (ValidationException | RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        FriendRequestDTO friendRequestDTO = requestsTableView.getSelectionModel().getSelectedItem();
+        if (friendRequestDTO==null) {
+            WarningBox.show("Nothing was selected from the table");
+            return;
+        }
+        if (friendRequestDTO.getNameFrom().equals("You")) {
+            WarningBox.show("That request isn't yours to accept!");
+            return;
         }
+        FxCallbacks.onSuccess(service.run("updateFriendRequest", superService ->
+                        superService.updateFriendRequest(friendRequestDTO.getIdFrom(),friendRequestDTO.getIdTo(),"ACCEPTED")),
+                updated -> { }); // the table is reloaded by the change of the request
     }
 
     @FXML
     public void declineFriendRequestAction(ActionEvent actionEvent) {
-        try {
-            FriendRequestDTO friendRequestDTO = requestsTableView.getSelectionModel().getSelectedItem();
-            if (friendRequestDTO==null) {
-                WarningBox.show("Nothing was selected from the table");
-                return;
-            }
-            if (friendRequestDTO.getNameFrom().equals("You")) {
-                WarningBox.show("That request isn't yours to decline!");
-                return;
-            }
-            if (friendRequestDTO.getStatus().equals(FriendRequestStatus.ACCEPTED)) {
-                WarningBox.show("You can't decline an accepted request!");
-                return;
-            }
-
-            superService.updateFriendRequest(friendRequestDTO.getIdFrom(),friendRequestDTO.getIdTo(),"DECLINED");
-            updateTableView();
-        } catch (ValidationException | RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        FriendRequestDTO friendRequestDTO = requestsTableView.getSelectionModel().getSelectedItem();
+        if (friendRequestDTO==null) {
+            WarningBox.show("Nothing was selected from the table");
+            return;
+        }
+        if (friendRequestDTO.getNameFrom().equals("You")) {
+            WarningBox.show("That request isn't yours to decline!");
+            return;
+        }
+        if (friendRequestDTO.getStatus().equals(FriendRequestStatus.ACCEPTED)) {
+            WarningBox.show("You can't decline an accepted request!");
+            return;
         }
+
+        FxCallbacks.onSuccess(service.run("updateFriendRequest", superService ->
+                        superService.updateFriendRequest(friendRequestDTO.getIdFrom(),friendRequestDTO.getIdTo(),"DECLINED")),
+                updated -> { }); // the table is reloaded by the change of the request
     }
 
     @FXML
     public void cancelFriendRequestAction(ActionEvent actionEvent) {
-        try {
-            FriendRequestDTO friendRequestDTO = requestsTableView.getSelectionModel().getSelectedItem();
-            if (friendRequestDTO==null) {
-                WarningBox.show("Nothing was selected from the table");
-                return;
-            }
-            if (friendRequestDTO.getNameTo().equals("You")) {
-                WarningBox.show("That request isn't yours to cancel!");
-                return;
-            }
-            superService.deleteFriendRequest(friendRequestDTO.getIdFrom(),friendRequestDTO.getIdTo());
-            updateTableView();
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        FriendRequestDTO friendRequestDTO = requestsTableView.getSelectionModel().getSelectedItem();
+        if (friendRequestDTO==null) {
+            WarningBox.show("Nothing was selected from the table");
+            return;
+        }
+        if (friendRequestDTO.getNameTo().equals("You")) {
+            WarningBox.show("That request isn't yours to cancel!");
+            return;
         }
+        FxCallbacks.onSuccess(service.run("deleteFriendRequest", superService ->
+                        superService.deleteFriendRequest(friendRequestDTO.getIdFrom(),friendRequestDTO.getIdTo())),
+                deleted -> { }); // the table is reloaded by the change of the request
     }
 
     @FXML
     public void backMenuAction(ActionEvent actionEvent){
+        if (changesSubscription != null)
+            changesSubscription.close();
         try {
             SceneChanger.changeTo(actionEvent, "mainpage.fxml", new MainPageController(), superService, Optional.of(user));
 
@@ -162,7 +159,9 @@ public class FriendRequestsController implements Observer, Controller {
     @Override
     public void initializeController(SuperService superService, Optional<User> user) {
         this.superService = superService;
+        this.service = superService.async();
         this.user = user.get();
         initializeRequestsTableView();
+        subscribeToChanges();
     }
 }
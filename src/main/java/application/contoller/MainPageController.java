@@ -5,11 +5,15 @@ import application.domain.Event;
 import application.domain.User;
 import application.domain.FriendDTO;
 import application.exceptions.RepositoryException;
+import application.service.AsyncSuperService;
 import application.service.SuperService;
+import application.utils.FxCallbacks;
 import application.utils.InfoBox;
 import application.utils.SceneChanger;
 import application.utils.WarningBox;
-import application.utils.observer.Observer;
+import application.utils.events.ChangeEvent;
+import application.utils.events.ChangeEventBus;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -32,7 +36,9 @@ import static application.utils.Constants.DATE_FORMATTER;
 public class MainPageController implements Controller {
 
     private SuperService superService;
+    private AsyncSuperService service; // runs the calls of superService off the FX thread
     private User user;
+    private ChangeEventBus.Subscription changesSubscription; // reloads the friends when a friendship of the user changes
 
     private Scene friendRequestWindow = null;
     private Scene addFriendWindow = null;
@@ -99,10 +105,12 @@ public class MainPageController implements Controller {
     @Override
     public void initializeController(SuperService superService, Optional<User> user) {
         this.superService = superService;
+        this.service = superService.async();
         this.user = user.get();
         welcomeLabel.setText("Welcome " + this.user.getUserName() + " (" + this.user.getFirstName() + " " + this.user.getLastName() + ") " + "!");
         initializeFriendsTableView();
         initializeEventListView();
+        subscribeToChanges();
 
     }
 
@@ -132,12 +140,16 @@ public class MainPageController implements Controller {
                 // Author
                 Label authorLabel = new Label("Author: " + event.getAuthor().getUserName());
                 authorLabel.getStyleClass().add("event_details_text");
-                // Subscribed/Unsubscribed
+                // Subscribed/Unsubscribed; the subscriber ids were loaded with the page, off the FX thread
                 String subscribedText;
-                if (event.getSubscribers().contains(user))
-                    subscribedText = "You are subscribed.";
-                else
-                    subscribedText = "You are not subscribed.";
+                try {
+                    subscribedText = event.isSubscribed(user.getId())
+                            ? "You are subscribed."
+                            : "You are not subscribed.";
+                } catch (RepositoryException e) {
+                    subscribedText = "";
+                }
+                subscribedText += " Subscribers: " + event.getSubscriberCount();
                 Label subscribedLabel = new Label(subscribedText);
                 subscribedLabel.getStyleClass().add("event_details_text");
                 // Events that will take place soon -> different background color
@@ -151,43 +163,39 @@ public class MainPageController implements Controller {
     }
 
     private void updateEventListView(){
-
-        try {
-            if (!subscribedCheckBox.isSelected())
-                eventObservableList.setAll(superService.getEventsForUser(user));
-            else
-                eventObservableList.setAll(superService.getSubscribedEventsForUser(user));
-            if (eventListView != null)
-                eventListView.setItems(eventObservableList);
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
+        boolean subscribed = subscribedCheckBox.isSelected();
+        FxCallbacks.onSuccess(service.callLatest("main-events", "getEventsForUser", superService -> subscribed
+                        ? superService.getSubscribedEventsForUser(user)
+                        : superService.getEventsForUser(user)),
+                events -> {
+                    eventObservableList.setAll(events);
+                    if (eventListView != null)
+                        eventListView.setItems(eventObservableList);
+                });
     }
 
     @FXML
     public void subscribedCheckBoxAction(ActionEvent actionEvent){
-
-        try {
-            if (subscribedCheckBox.isSelected()){
-                eventObservableList.setAll(superService.getSubscribedEventsForUser(user));
-                eventListView.setItems(eventObservableList);
-            }
-            else{
-                eventObservableList.setAll(superService.getEventsForUser(user));
-                eventListView.setItems(eventObservableList);
-            }
-
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
+        updateEventListView();
     }
 
     private void updateFriendsTableView(){
-        try {
-            friendsList.setAll(superService.getFriendDtoOfUser(user.getId())); }
-        catch (RepositoryException e) {
-            WarningBox.show(e.getMessage()); }
         friendsTableView.setItems(friendsList);
+        FxCallbacks.onSuccess(service.callLatest("main-friends", "getFriendDtoOfUser",
+                        superService -> superService.getFriendDtoOfUser(user.getId())),
+                friends -> friendsList.setAll(friends));
+    }
+
+    private void subscribeToChanges() {
+        int userId = user.getId();
+        changesSubscription = superService.subscribeToChanges(
+                event -> event.getType() == ChangeEvent.Type.FRIENDSHIP && event.involves(userId),
+                events -> Platform.runLater(this::updateFriendsTableView));
+    }
+
+    private void unsubscribeFromChanges() {
+        if (changesSubscription != null)
+            changesSubscription.close();
     }
 
     private void initializeFriendsTableView(){
@@ -226,18 +234,16 @@ public class MainPageController implements Controller {
 
         updateEventListView();
 
-        try {
-            String eventLabelText = "Events: ";
-            Integer nr = superService.getNumberOfSoonEventsForUser(user);
-            if (nr > 0){
-                eventLabelText += "-> " + nr.toString() + " events will take place soon!";
+        FxCallbacks.onSuccess(service.call("getNumberOfSoonEventsForUser",
+                        superService -> superService.getNumberOfSoonEventsForUser(user)),
+                nr -> {
+                    String eventLabelText = "Events: ";
+                    if (nr > 0){
+                        eventLabelText += "-> " + nr.toString() + " events will take place soon!";
 
-            }
-            eventsLabel.setText(eventLabelText);
-
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
-        }
+                    }
+                    eventsLabel.setText(eventLabelText);
+                });
     }
 
     @FXML
@@ -248,59 +254,48 @@ public class MainPageController implements Controller {
 
     @FXML
     public void deleteFriendButtonAction(ActionEvent actionEvent){
-
-        try{
-            //delete from repository
-            FriendDTO friendDto = friendsTableView.getSelectionModel().getSelectedItem();
-            if (friendDto == null) {
-                WarningBox.show("Select a friend to delete!");
-                return;
-            }
-            Integer friendId = friendDto.getId();
-            superService.deleteFriendship(user.getId(), friendId);
-            //delete from table view if no exception was thrown
-            friendsList.remove(friendDto);
-            friendsTableView.setItems(friendsList);
-        } catch (NumberFormatException e){
-            WarningBox.show("The id must be an integer!");
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        //delete from repository
+        FriendDTO friendDto = friendsTableView.getSelectionModel().getSelectedItem();
+        if (friendDto == null) {
+            WarningBox.show("Select a friend to delete!");
+            return;
         }
+        Integer friendId = friendDto.getId();
+        FxCallbacks.onSuccess(service.run("deleteFriendship",
+                        superService -> superService.deleteFriendship(user.getId(), friendId)),
+                deleted -> {
+                    //delete from table view if no exception was thrown
+                    friendsList.remove(friendDto);
+                    friendsTableView.setItems(friendsList);
+                });
     }
 
     @FXML
     public void subscribeButtonAction(ActionEvent actionEvent){
-        try{
-            Event selectedEvent = eventListView.getSelectionModel().getSelectedItem();
-            if (selectedEvent == null) {
-                WarningBox.show("You have to select an event to subscribe to!");
-                return;
-            }
-            superService.addSubscriber(selectedEvent, user);
-            updateEventListView();
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        Event selectedEvent = eventListView.getSelectionModel().getSelectedItem();
+        if (selectedEvent == null) {
+            WarningBox.show("You have to select an event to subscribe to!");
+            return;
         }
+        FxCallbacks.onSuccess(service.run("addSubscriber", superService -> superService.addSubscriber(selectedEvent, user)),
+                subscribed -> updateEventListView());
     }
 
     @FXML
     public void unsubscribeButtonAction(ActionEvent actionEvent){
-        try{
-            Event selectedEvent = eventListView.getSelectionModel().getSelectedItem();
-            if (selectedEvent == null) {
-                WarningBox.show("You have to select an event to unsubscribe to!");
-                return;
-            }
-            superService.removeSubscriber(selectedEvent, user);
-            updateEventListView();
-        } catch (RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        Event selectedEvent = eventListView.getSelectionModel().getSelectedItem();
+        if (selectedEvent == null) {
+            WarningBox.show("You have to select an event to unsubscribe to!");
+            return;
         }
+        FxCallbacks.onSuccess(service.run("removeSubscriber", superService -> superService.removeSubscriber(selectedEvent, user)),
+                unsubscribed -> updateEventListView());
     }
 
     @FXML
     public void createEventButtonAction(ActionEvent actionEvent){
 
+        unsubscribeFromChanges();
         try {
             SceneChanger.changeTo(actionEvent, "createEventScene.fxml", new CreateEventController(), superService, Optional.of(user));
 
@@ -312,6 +307,7 @@ public class MainPageController implements Controller {
     // ============== Change Scene Actions ======================
     @FXML
     public void changeToAddFriendScene(ActionEvent actionEvent){
+        unsubscribeFromChanges();
         try {
             SceneChanger.changeTo(actionEvent, "addFriendScene.fxml", new AddFriendController(), superService, Optional.of(user));
 
@@ -322,6 +318,7 @@ public class MainPageController implements Controller {
 
     @FXML
     public void friendRequestsView(ActionEvent actionEvent) {
+        unsubscribeFromChanges();
         try {
             SceneChanger.changeTo(actionEvent, "friendRequestScene.fxml", new FriendRequestsController(), superService, Optional.of(user));
 
@@ -332,6 +329,7 @@ public class MainPageController implements Controller {
 
     @FXML
     public void backToLoginAction(ActionEvent actionEvent){
+        unsubscribeFromChanges();
         try {
             SceneChanger.changeTo(actionEvent, "network.fxml", new NetworkController(), superService);
 
@@ -343,6 +341,7 @@ public class MainPageController implements Controller {
 
     @FXML
     public void changeToChatScene(ActionEvent actionEvent){
+        unsubscribeFromChanges();
         try {
             SceneChanger.changeTo(actionEvent, "chatScene.fxml", new ChatController(), superService, Optional.of(user));
 
@@ -2,8 +2,8 @@ package application.contoller;
 
 import application.cloud_chat.NetworkApplication;
 import application.domain.*;
-import application.exceptions.RepositoryException;
 import application.service.SuperService;
+import application.utils.FxCallbacks;
 import application.utils.SceneChanger;
 import application.utils.WarningBox;
 import javafx.application.Application;
@@ -36,22 +36,26 @@ public class NetworkController implements Controller {
 
     @FXML
     protected void tryLogin(ActionEvent event) {
-        try {
-
-            String username = textFieldUser.getText();
-            String password = passwordField.getText();
-
-            Integer id = superService.loginUser(username, password);
-            if (id > 0) {
-                User user = superService.findUser(id);
-                // create user's main page
-                SceneChanger.changeTo(event, "mainpage.fxml", new MainPageController(), superService, Optional.of(user));
-            } else
-                WarningBox.show("Invalid login information!");
+        String username = textFieldUser.getText();
+        String password = passwordField.getText();
 
-        } catch (RepositoryException | NumberFormatException | IOException e) {
-            WarningBox.show(e.getMessage());
-        }
+        // the password check is slow on purpose, so it runs off the FX thread
+        FxCallbacks.onSuccess(superService.async().call("loginUser", service -> {
+                    int id = service.loginUser(username, password);
+                    return id > 0 ? Optional.of(service.findUser(id)) : Optional.<User>empty();
+                }),
+                user -> {
+                    if (user.isEmpty()) {
+                        WarningBox.show("Invalid login information!");
+                        return;
+                    }
+                    try {
+                        // create user's main page
+                        SceneChanger.changeTo(event, "mainpage.fxml", new MainPageController(), superService, user);
+                    } catch (IOException e) {
+                        WarningBox.show(e.getMessage());
+                    }
+                });
     }
 
     @FXML
@@ -1,9 +1,8 @@
 package application.contoller;
 
 import application.domain.User;
-import application.exceptions.RepositoryException;
-import application.exceptions.ValidationException;
 import application.service.SuperService;
+import application.utils.FxCallbacks;
 import application.utils.InfoBox;
 import application.utils.SceneChanger;
 import application.utils.WarningBox;
@@ -39,35 +38,35 @@ public class SignUpController implements Controller {
 
     @FXML
     protected void createAccountAction(ActionEvent event) {
-        try {
-            String errors = "";
+        String errors = "";
 
-            String firstName = firstNameTextField.getText();
-            String lastName = lastNameTextField.getText();
-            String username = userNameTextField.getText();
-            String password = passWordTextField.getText();
+        String firstName = firstNameTextField.getText();
+        String lastName = lastNameTextField.getText();
+        String username = userNameTextField.getText();
+        String password = passWordTextField.getText();
 
-            if (firstName.length()<2 || firstName.length()>25)
-                errors+= "The first name must be between 2 and 25 characters!\n";
-            if (lastName.length()<2 || lastName.length()>25)
-                errors+= "The last name must be between 2 and 25 characters!\n";
-            if (username.length()<3 || username.length()>25) {
-                errors += "The username must be between 3 and 25 characters long\n";
-            }
-            if (password.length()<4 || password.length()>16) {
-                errors += "The password must be between 4 and 16 characters long\n";
-            }
+        if (firstName.length()<2 || firstName.length()>25)
+            errors+= "The first name must be between 2 and 25 characters!\n";
+        if (lastName.length()<2 || lastName.length()>25)
+            errors+= "The last name must be between 2 and 25 characters!\n";
+        if (username.length()<3 || username.length()>25) {
+            errors += "The username must be between 3 and 25 characters long\n";
+        }
+        if (password.length()<4 || password.length()>16) {
+            errors += "The password must be between 4 and 16 characters long\n";
+        }
 
-            if (!errors.equals("")) {
-                WarningBox.show(errors);
-                return;
-            }
-            superService.addUser(firstName,lastName, username, password);
-            InfoBox.show("Account successfully created! You can now login from the main page.");
-            ((Node) (event.getSource())).getScene().getWindow().hide();
-        } catch (ValidationException | RepositoryException e) {
-            WarningBox.show(e.getMessage());
+        if (!errors.equals("")) {
+            WarningBox.show(errors);
+            return;
         }
+        // hashing the password is slow on purpose, so it runs off the FX thread
+        FxCallbacks.onSuccess(superService.async().call("addUser",
+                        service -> service.addUser(firstName,lastName, username, password)),
+                added -> {
+                    InfoBox.show("Account successfully created! You can now login from the main page.");
+                    ((Node) (event.getSource())).getScene().getWindow().hide();
+                });
     }
 
     @FXML
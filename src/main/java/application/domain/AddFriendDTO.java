@@ -9,6 +9,7 @@ public class AddFriendDTO {
     private Integer id;
     private String name;
     private String request;
+    private Integer mutualFriends = 0;
 
     /**
      * Default constructor
@@ -27,6 +28,18 @@ public class AddFriendDTO {
         this.request = request;
     }
 
+    /**
+     * Constructor
+     * @param id Integer
+     * @param name String
+     * @param request String
+     * @param mutualFriends Integer
+     */
+    public AddFriendDTO(Integer id, String name, String request, Integer mutualFriends) {
+        this(id, name, request);
+        this.mutualFriends = mutualFriends;
+    }
+
     /**
      * Returns object ID
      * @return Integer
@@ -75,16 +88,32 @@ public class AddFriendDTO {
         this.request = request;
     }
 
+    /**
+     * Gets the number of mutual friends
+     * @return Integer
+     */
+    public Integer getMutualFriends() {
+        return mutualFriends;
+    }
+
+    /**
+     * Sets the number of mutual friends
+     * @param mutualFriends Integer
+     */
+    public void setMutualFriends(Integer mutualFriends) {
+        this.mutualFriends = mutualFriends;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         AddFriendDTO that = (AddFriendDTO) o;
-        return Objects.equals(id, that.id) && Objects.equals(name, that.name) && Objects.equals(request, that.request);
+        return Objects.equals(id, that.id) && Objects.equals(name, that.name) && Objects.equals(request, that.request) && Objects.equals(mutualFriends, that.mutualFriends);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, request);
+        return Objects.hash(id, name, request, mutualFriends);
     }
 }
@@ -1,17 +1,32 @@
 package application.domain;
 
+import application.exceptions.RepositoryException;
+import application.utils.collections.IntHashSet;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
 
 public class Event extends Entity<Integer>{
 
+    /**
+     * Loads the subscriber ids of the events read together with an event, e.g. a page, with a single query
+     */
+    public interface SubscriberLoader {
+        /**
+         * Sets the subscriber ids of every event of the batch, once
+         * @throws RepositoryException if the repository cannot be reached
+         */
+        void load() throws RepositoryException;
+    }
+
     User author;
     String title;
     String description;
     LocalDateTime creationDate;
     LocalDate eventDate;
-    List<User> subscribers;
+    int subscriberCount;
+    volatile IntHashSet subscriberIds; // null until loaded
+    SubscriberLoader subscriberLoader; // null if the subscribers are loaded or the event has none
 
     /**
      * Constructor
@@ -110,19 +125,92 @@ public class Event extends Entity<Integer>{
     }
 
     /**
-     * Gets the list of subscribers
-     * @return List(User)
+     * Gets the number of subscribers, known without loading them
+     * @return int
+     */
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    /**
+     * Sets the number of subscribers
+     * @param subscriberCount int
+     */
+    public void setSubscriberCount(int subscriberCount) {
+        this.subscriberCount = subscriberCount;
+    }
+
+    /**
+     * Sets the loader of the subscriber ids, used the first time they are needed
+     * @param subscriberLoader SubscriberLoader
+     */
+    public void setSubscriberLoader(SubscriberLoader subscriberLoader) {
+        this.subscriberLoader = subscriberLoader;
+    }
+
+    /**
+     * Gets the ids of the subscribers, loading them with the other events of the batch the first time
+     * @return IntHashSet
+     * @throws RepositoryException if the subscribers cannot be loaded
+     */
+    public IntHashSet getSubscriberIds() throws RepositoryException {
+        IntHashSet ids = subscriberIds;
+        if (ids != null)
+            return ids;
+        SubscriberLoader loader = subscriberLoader;
+        if (loader != null)
+            loader.load();
+        if (subscriberIds == null)
+            setSubscriberIds(new IntHashSet());
+        return subscriberIds;
+    }
+
+    /**
+     * Sets the ids of the subscribers
+     * @param subscriberIds IntHashSet
+     */
+    public void setSubscriberIds(IntHashSet subscriberIds) {
+        this.subscriberIds = subscriberIds;
+        this.subscriberCount = subscriberIds.size();
+        this.subscriberLoader = null;
+    }
+
+    /**
+     * Tests if a user is subscribed to the event
+     * @param userId int
+     * @return boolean
+     * @throws RepositoryException if the subscribers cannot be loaded
+     */
+    public boolean isSubscribed(int userId) throws RepositoryException {
+        return getSubscriberIds().contains(userId);
+    }
+
+    /**
+     * Adds a subscriber, after it was saved; without a loader the ids are known, so they are kept from now on
+     * @param userId int
      */
-    public List<User> getSubscribers() {
-        return subscribers;
+    public void addSubscriber(int userId) {
+        IntHashSet ids = subscriberIds;
+        if (ids == null && subscriberLoader == null) {
+            ids = new IntHashSet();
+            setSubscriberIds(ids);
+        }
+        if (ids == null)
+            subscriberCount++;
+        else if (ids.add(userId))
+            subscriberCount = ids.size();
     }
 
     /**
-     * Sets the list of subscribers
-     * @param subscribers List(User)
+     * Removes a subscriber, after it was saved
+     * @param userId int
      */
-    public void setSubscribers(List<User> subscribers) {
-        this.subscribers = subscribers;
+    public void removeSubscriber(int userId) {
+        IntHashSet ids = subscriberIds;
+        if (ids == null)
+            subscriberCount = Math.max(0, subscriberCount - 1);
+        else if (ids.remove(userId))
+            subscriberCount = ids.size();
     }
 
     @Override
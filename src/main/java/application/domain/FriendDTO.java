@@ -11,6 +11,8 @@ public class FriendDTO {
     private Integer id;
     private String name;
     private String date;
+    private String lastMessage; // preview of the last message of the conversation, null if there is none
+    private Integer unread = 0;
     private CheckBox select;
 
     /**
@@ -81,6 +83,38 @@ public class FriendDTO {
         this.date = date;
     }
 
+    /**
+     * Gets the preview of the last message of the conversation with the friend
+     * @return String, null if they have no messages
+     */
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    /**
+     * Sets the preview of the last message of the conversation with the friend
+     * @param lastMessage String
+     */
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    /**
+     * Gets the number of messages of the friend the user has not read
+     * @return Integer
+     */
+    public Integer getUnread() {
+        return unread;
+    }
+
+    /**
+     * Sets the number of messages of the friend the user has not read
+     * @param unread Integer
+     */
+    public void setUnread(Integer unread) {
+        this.unread = unread;
+    }
+
     /**
      * Gets object checkbox
      * @return CheckBox
@@ -0,0 +1,101 @@
+package application.domain;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A conversation of a user as shown in the inbox: its last message and how many messages the user has not read
+ */
+public class InboxEntry {
+    private final int friendId;
+    private final int lastMessageId;
+    private final int lastMessageFromId;
+    private final String lastMessageText;
+    private final LocalDateTime lastMessageDate;
+    private final int unread;
+
+    /**
+     * Constructor
+     * @param friendId int, the other user of the conversation
+     * @param lastMessageId int
+     * @param lastMessageFromId int, the sender of the last message
+     * @param lastMessageText String
+     * @param lastMessageDate LocalDateTime
+     * @param unread int, number of messages of the other user the user has not read
+     */
+    public InboxEntry(int friendId, int lastMessageId, int lastMessageFromId, String lastMessageText,
+                      LocalDateTime lastMessageDate, int unread) {
+        this.friendId = friendId;
+        this.lastMessageId = lastMessageId;
+        this.lastMessageFromId = lastMessageFromId;
+        this.lastMessageText = lastMessageText;
+        this.lastMessageDate = lastMessageDate;
+        this.unread = unread;
+    }
+
+    /**
+     * Gets the other user of the conversation
+     * @return int
+     */
+    public int getFriendId() {
+        return friendId;
+    }
+
+    /**
+     * Gets the id of the last message
+     * @return int
+     */
+    public int getLastMessageId() {
+        return lastMessageId;
+    }
+
+    /**
+     * Gets the sender of the last message
+     * @return int
+     */
+    public int getLastMessageFromId() {
+        return lastMessageFromId;
+    }
+
+    /**
+     * Gets the text of the last message
+     * @return String
+     */
+    public String getLastMessageText() {
+        return lastMessageText;
+    }
+
+    /**
+     * Gets the date of the last message
+     * @return LocalDateTime
+     */
+    public LocalDateTime getLastMessageDate() {
+        return lastMessageDate;
+    }
+
+    /**
+     * Gets the number of messages of the other user the user has not read
+     * @return int
+     */
+    public int getUnread() {
+        return unread;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        InboxEntry that = (InboxEntry) o;
+        return friendId == that.friendId && lastMessageId == that.lastMessageId && unread == that.unread;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(friendId, lastMessageId, unread);
+    }
+
+    @Override
+    public String toString() {
+        return friendId + ": " + lastMessageText + " (" + unread + " unread)";
+    }
+}
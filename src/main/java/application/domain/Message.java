@@ -1,5 +1,7 @@
 package application.domain;
 
+import application.exceptions.RepositoryException;
+
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -9,19 +11,52 @@ import java.util.Optional;
  */
 public class Message extends Entity<Integer> {
 
+    /**
+     * Loads a message replied to, the first time it is needed
+     */
+    public interface ReplyLoader {
+        /**
+         * Loads a message; its own reply is again loaded only when needed
+         * @param id int
+         * @return Message
+         * @throws RepositoryException if the message doesn't exist
+         */
+        Message load(int id) throws RepositoryException;
+    }
+
     private User from;
     private List<User> to;
     private String text;
     private LocalDateTime date;
-    private Optional<Message> replyOf;
+    private volatile int replyOfId; // 0 if the message is not a reply
+    private volatile Message replyOf; // null until loaded
+    private volatile ReplyLoader replyLoader; // null once the message replied to is loaded
 
 
     /**
-     * Gets the message this message replies to
-     * @return Optional(Message)
+     * Gets the message this message replies to, loading it the first time; the messages it replies to
+     * in turn are not loaded
+     * @return Optional(Message), empty if the message is not a reply or the message replied to was deleted
      */
     public Optional<Message> getReplyOf() {
-        return replyOf;
+        ReplyLoader loader = replyLoader;
+        if (replyOf == null && loader != null) {
+            try {
+                replyOf = loader.load(replyOfId);
+            } catch (RepositoryException e) {
+                replyOfId = 0;
+            }
+            replyLoader = null;
+        }
+        return Optional.ofNullable(replyOf);
+    }
+
+    /**
+     * Gets the id of the message this one replies to, without loading it
+     * @return int, 0 if the message is not a reply
+     */
+    public int getReplyOfId() {
+        return replyOfId;
     }
 
     /**
@@ -29,7 +64,20 @@ public class Message extends Entity<Integer> {
      * @param replyOfMessage Message
      */
     public void setReplyOf(Message replyOfMessage) {
-        this.replyOf = Optional.ofNullable(replyOfMessage);
+        this.replyOf = replyOfMessage;
+        this.replyOfId = replyOfMessage == null || replyOfMessage.getId() == null ? 0 : replyOfMessage.getId();
+        this.replyLoader = null;
+    }
+
+    /**
+     * Sets the message this one replies to by its id, loaded the first time it is needed
+     * @param replyOfId int
+     * @param replyLoader ReplyLoader
+     */
+    public void setReplyOf(int replyOfId, ReplyLoader replyLoader) {
+        this.replyOf = null;
+        this.replyOfId = replyOfId;
+        this.replyLoader = replyLoader;
     }
 
     /**
@@ -44,7 +92,6 @@ public class Message extends Entity<Integer> {
         this.to = to;
         this.text = text;
         this.date = date;
-        this.replyOf = Optional.empty();
     }
 
     /**
@@ -117,6 +164,7 @@ public class Message extends Entity<Integer> {
 
         String messageAsString = text;
 
+        Optional<Message> replyOf = getReplyOf();
         if (replyOf.isPresent())
             messageAsString += " - replied to " +  "'" + replyOf.get().getText() + "'";
 
@@ -0,0 +1,77 @@
+package application.domain;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Position of a message in a conversation, used to page through it without offsets.
+ * Messages are ordered by date, and by id when they have the same date.
+ */
+public class MessageCursor {
+    private final LocalDateTime date;
+    private final int id;
+
+    /**
+     * Constructor
+     * @param date LocalDateTime
+     * @param id int
+     */
+    public MessageCursor(LocalDateTime date, int id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * Gets the position of a message
+     * @param message Message
+     * @return MessageCursor
+     */
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getDate(), message.getId());
+    }
+
+    /**
+     * Compares two positions of a conversation
+     * @param left MessageCursor
+     * @param right MessageCursor
+     * @return int, negative if left is before right, 0 if they are the same, positive otherwise
+     */
+    public static int compare(MessageCursor left, MessageCursor right) {
+        int byDate = left.date.compareTo(right.date);
+        return byDate != 0 ? byDate : Integer.compare(left.id, right.id);
+    }
+
+    /**
+     * Gets the date of the message
+     * @return LocalDateTime
+     */
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the id of the message
+     * @return int
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageCursor that = (MessageCursor) o;
+        return id == that.id && date.equals(that.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, id);
+    }
+
+    @Override
+    public String toString() {
+        return date + "#" + id;
+    }
+}
@@ -0,0 +1,75 @@
+package application.domain;
+
+import java.util.Objects;
+
+/**
+ * Position up to which a user read a conversation: every message of the other user at or before it is read
+ */
+public class ReadCursor {
+    private final int userId;
+    private final int friendId;
+    private final MessageCursor position;
+
+    /**
+     * Constructor
+     * @param userId int, the reader
+     * @param friendId int, the other user of the conversation
+     * @param position MessageCursor, of the last read message
+     */
+    public ReadCursor(int userId, int friendId, MessageCursor position) {
+        this.userId = userId;
+        this.friendId = friendId;
+        this.position = position;
+    }
+
+    /**
+     * Gets the reader
+     * @return int
+     */
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the other user of the conversation
+     * @return int
+     */
+    public int getFriendId() {
+        return friendId;
+    }
+
+    /**
+     * Gets the position of the last read message
+     * @return MessageCursor
+     */
+    public MessageCursor getPosition() {
+        return position;
+    }
+
+    /**
+     * Tests if a message of the conversation is at or before this cursor
+     * @param message MessageCursor
+     * @return boolean
+     */
+    public boolean hasRead(MessageCursor message) {
+        return MessageCursor.compare(message, position) <= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReadCursor that = (ReadCursor) o;
+        return userId == that.userId && friendId == that.friendId && position.equals(that.position);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, friendId, position);
+    }
+
+    @Override
+    public String toString() {
+        return userId + " read " + friendId + " up to " + position;
+    }
+}
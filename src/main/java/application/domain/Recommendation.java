@@ -0,0 +1,66 @@
+package application.domain;
+
+import java.util.Objects;
+
+/**
+ * A user recommended as a friend to another user
+ */
+public class Recommendation {
+    private final User user;
+    private final int mutualFriends;
+    private final boolean requestPending;
+
+    /**
+     * Constructor
+     * @param user User, the recommended user
+     * @param mutualFriends int, number of friends the two users have in common
+     * @param requestPending boolean, true if a pending friend request was already sent to the recommended user
+     */
+    public Recommendation(User user, int mutualFriends, boolean requestPending) {
+        this.user = user;
+        this.mutualFriends = mutualFriends;
+        this.requestPending = requestPending;
+    }
+
+    /**
+     * Gets the recommended user
+     * @return User
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the number of friends the two users have in common
+     * @return int
+     */
+    public int getMutualFriends() {
+        return mutualFriends;
+    }
+
+    /**
+     * Tests if a pending friend request was already sent to the recommended user
+     * @return boolean
+     */
+    public boolean isRequestPending() {
+        return requestPending;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Recommendation that = (Recommendation) o;
+        return mutualFriends == that.mutualFriends && requestPending == that.requestPending && user.equals(that.user);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(user, mutualFriends, requestPending);
+    }
+
+    @Override
+    public String toString() {
+        return user + " (" + mutualFriends + " mutual friends)";
+    }
+}
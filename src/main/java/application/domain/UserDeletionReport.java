@@ -0,0 +1,114 @@
+package application.domain;
+
+/**
+ * What was removed together with a deleted user
+ */
+public class UserDeletionReport {
+    private final User user;
+    private final int friendRequests;
+    private final int friendships;
+    private final int subscriptions;
+    private final int events;
+    private final int recipients;
+    private final int messages;
+    private final int unlinkedReplies;
+
+    /**
+     * Constructor
+     * @param user User, the deleted user
+     * @param friendRequests int, friend requests sent or received by the user
+     * @param friendships int, friendships of the user
+     * @param subscriptions int, subscriptions of the user to events
+     * @param events int, events authored by the user
+     * @param recipients int, messages the user was a recipient of
+     * @param messages int, messages sent by the user or left without recipients
+     * @param unlinkedReplies int, remaining messages that replied to a deleted message
+     */
+    public UserDeletionReport(User user, int friendRequests, int friendships, int subscriptions, int events,
+                              int recipients, int messages, int unlinkedReplies) {
+        this.user = user;
+        this.friendRequests = friendRequests;
+        this.friendships = friendships;
+        this.subscriptions = subscriptions;
+        this.events = events;
+        this.recipients = recipients;
+        this.messages = messages;
+        this.unlinkedReplies = unlinkedReplies;
+    }
+
+    /**
+     * Gets the deleted user
+     * @return User
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the number of deleted friend requests
+     * @return int
+     */
+    public int getFriendRequests() {
+        return friendRequests;
+    }
+
+    /**
+     * Gets the number of deleted friendships
+     * @return int
+     */
+    public int getFriendships() {
+        return friendships;
+    }
+
+    /**
+     * Gets the number of deleted event subscriptions of the user
+     * @return int
+     */
+    public int getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Gets the number of deleted events
+     * @return int
+     */
+    public int getEvents() {
+        return events;
+    }
+
+    /**
+     * Gets the number of messages the user was removed from as a recipient
+     * @return int
+     */
+    public int getRecipients() {
+        return recipients;
+    }
+
+    /**
+     * Gets the number of deleted messages
+     * @return int
+     */
+    public int getMessages() {
+        return messages;
+    }
+
+    /**
+     * Gets the number of messages that no longer reply to a message
+     * @return int
+     */
+    public int getUnlinkedReplies() {
+        return unlinkedReplies;
+    }
+
+    @Override
+    public String toString() {
+        return "Deleted " + user +
+                ": friend requests=" + friendRequests +
+                ", friendships=" + friendships +
+                ", subscriptions=" + subscriptions +
+                ", events=" + events +
+                ", recipients=" + recipients +
+                ", messages=" + messages +
+                ", unlinked replies=" + unlinkedReplies;
+    }
+}
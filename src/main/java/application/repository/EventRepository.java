@@ -0,0 +1,65 @@
+package application.repository;
+
+import application.domain.Event;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Interface for the repositories of events and of their subscribers
+ */
+public interface EventRepository extends Repository<Integer, Event>, PagingRepository<Integer, Event> {
+
+    /**
+     * Gets the events shown to a user: the ones authored by the user or by a friend of the user,
+     * and the ones a friend of the user is subscribed to
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Event> getFeed(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException;
+
+    /**
+     * Gets the events a user is subscribed to
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Event> getSubscribedEvents(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException;
+
+    /**
+     * Counts the events a user is subscribed to that take place in a range of dates
+     * @param userId Integer
+     * @param from LocalDate, inclusive
+     * @param to LocalDate, exclusive
+     * @return int
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    int countSubscribedEvents(Integer userId, LocalDate from, LocalDate to) throws RepositoryException;
+
+    /**
+     * Adds a subscriber to the event
+     * @param event Event
+     * @param user User
+     * @return Event
+     * @throws RepositoryException if the user is already subscribed to the event
+     */
+    Event addSubscriber(Event event, User user) throws RepositoryException;
+
+    /**
+     * Removes a subscriber from an event
+     * @param event Event
+     * @param user User
+     * @return Event
+     * @throws RepositoryException if the user isn't subscribed to the event
+     */
+    Event removeSubscriber(Event event, User user) throws RepositoryException;
+}
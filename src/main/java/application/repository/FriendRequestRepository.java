@@ -0,0 +1,40 @@
+package application.repository;
+
+import application.domain.FriendRequest;
+import application.domain.FriendRequestDTO;
+import application.domain.FriendRequestStatus;
+import application.domain.Tuple;
+import application.exceptions.RepositoryException;
+
+import java.util.List;
+
+/**
+ * Interface for the repositories of friend requests, identified by the ids of their sender and receiver
+ */
+public interface FriendRequestRepository extends Repository<Tuple<Integer, Integer>, FriendRequest>,
+        PagingRepository<Tuple<Integer, Integer>, FriendRequest> {
+
+    /**
+     * Gets the requests sent to a user, each with the name of its sender; the name of the receiver is left empty
+     * @param userId Integer
+     * @param status FriendRequestStatus, null for requests of any status
+     * @param offset int, number of requests to skip
+     * @param limit int, maximum number of requests
+     * @return List(FriendRequestDTO), sorted by sender
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<FriendRequestDTO> getRequestsToUser(Integer userId, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException;
+
+    /**
+     * Gets the requests sent by a user, each with the name of its receiver; the name of the sender is left empty
+     * @param userId Integer
+     * @param status FriendRequestStatus, null for requests of any status
+     * @param offset int, number of requests to skip
+     * @param limit int, maximum number of requests
+     * @return List(FriendRequestDTO), sorted by receiver
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<FriendRequestDTO> getRequestsFromUser(Integer userId, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException;
+}
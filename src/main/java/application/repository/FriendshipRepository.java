@@ -0,0 +1,54 @@
+package application.repository;
+
+import application.domain.Friendship;
+import application.domain.Tuple;
+import application.exceptions.RepositoryException;
+
+import java.util.List;
+
+/**
+ * Interface for the repositories of friendships, identified by the ids of their users, smaller first
+ */
+public interface FriendshipRepository extends Repository<Tuple<Integer, Integer>, Friendship>,
+        PagingRepository<Tuple<Integer, Integer>, Friendship> {
+
+    /**
+     * Gets the friendships of a user, with both users of every friendship set
+     * @param userId Integer
+     * @return List(Friendship)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Friendship> getFriendshipsOfUser(Integer userId) throws RepositoryException;
+
+    /**
+     * Gets the friendships of a user made in a month of any year, with both users of every friendship set
+     * @param userId Integer
+     * @param month int, from 1 to 12
+     * @return List(Friendship)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Friendship> getFriendshipsOfUserFromMonth(Integer userId, int month) throws RepositoryException;
+
+    /**
+     * Gets the ids of the friends of a user
+     * @param userId Integer
+     * @return int[]
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    int[] getFriendIds(Integer userId) throws RepositoryException;
+
+    /**
+     * Tests if two users are friends
+     * @param leftId Integer
+     * @param rightId Integer
+     * @return true, if the users are friends ; false, otherwise
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    boolean areFriends(Integer leftId, Integer rightId) throws RepositoryException;
+
+    /**
+     * Forgets what is kept in memory about a deleted user, after its friendships were deleted by the user repository
+     * @param userId Integer
+     */
+    void forgetUser(Integer userId);
+}
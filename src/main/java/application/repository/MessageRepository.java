@@ -0,0 +1,126 @@
+package application.repository;
+
+import application.domain.InboxEntry;
+import application.domain.Message;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface for the repositories of messages, paged by conversation
+ */
+public interface MessageRepository extends Repository<Integer, Message>, PagingRepository<Integer, Message> {
+
+    /**
+     * Counts the messages of a conversation
+     * @param user1 User
+     * @param user2 User
+     * @return int
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    int countConversation(User user1, User user2) throws RepositoryException;
+
+    /**
+     * Forgets the cached message counts of every conversation, after messages were changed outside this repository
+     */
+    void invalidateConversationSizes();
+
+    /**
+     * Removes a deleted user from the messages the user repository cannot reach, after the user was deleted by it
+     * @param userId Integer
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    void forgetUser(Integer userId) throws RepositoryException;
+
+    /**
+     * Gets the messages of a conversation sent right before a position, oldest first
+     * @param user1 User
+     * @param user2 User
+     * @param before MessageCursor, or null for the newest messages
+     * @param limit int
+     * @return List(Message)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Message> getConversationBefore(User user1, User user2, MessageCursor before, int limit) throws RepositoryException;
+
+    /**
+     * Gets the messages of a conversation sent right after a position, oldest first
+     * @param user1 User
+     * @param user2 User
+     * @param after MessageCursor, or null for the oldest messages
+     * @param limit int
+     * @return List(Message)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Message> getConversationAfter(User user1, User user2, MessageCursor after, int limit) throws RepositoryException;
+
+    /**
+     * Gets the conversations of a user with their last message and unread count, the most recent first
+     * @param userId Integer
+     * @return List(InboxEntry)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<InboxEntry> getInbox(Integer userId) throws RepositoryException;
+
+    /**
+     * Moves read cursors forward in one batch; a cursor behind the stored one of its conversation is ignored,
+     * and the unread counts of the inbox follow the cursors
+     * @param cursors List(ReadCursor), at most one per reader and conversation
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    void markRead(List<ReadCursor> cursors) throws RepositoryException;
+
+    /**
+     * Gets the position up to which a user read a conversation
+     * @param userId Integer, the reader
+     * @param friendId Integer, the other user of the conversation
+     * @return ReadCursor, null if the user read none of it
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    ReadCursor getReadCursor(Integer userId, Integer friendId) throws RepositoryException;
+
+    /**
+     * Searches the messages a user sent or received that contain every word of a text, best matches first,
+     * then the newest
+     * @param userId Integer
+     * @param text String, the words to search
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(Message)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Message> search(Integer userId, String text, int offset, int limit) throws RepositoryException;
+
+    /**
+     * Gets the thread of a message: the first message of its reply chain and every reply to it,
+     * directly or through other replies; every reply is linked to its message in the thread.
+     * The thread is cut at THREAD_MAX_DEPTH levels of replies and THREAD_MAX_MESSAGES messages, the closest
+     * replies first
+     * @param messageId Integer
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the message doesn't exist
+     */
+    List<Message> getThread(Integer messageId) throws RepositoryException;
+
+    /**
+     * Finds which of the given users received a message
+     * @param messageId Integer
+     * @param userIds Collection(Integer), the users to look for
+     * @return List(Integer), the given users that received the message, empty if the message doesn't exist
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Integer> getRecipientsAmong(Integer messageId, Collection<Integer> userIds) throws RepositoryException;
+
+    /**
+     * Gets a conversation between two users, oldest message first
+     * @param user1 User
+     * @param user2 User
+     * @return List(Message)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Message> getConversation(User user1, User user2) throws RepositoryException;
+}
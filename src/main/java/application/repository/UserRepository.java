@@ -0,0 +1,75 @@
+package application.repository;
+
+import application.domain.Recommendation;
+import application.domain.Tuple;
+import application.domain.User;
+import application.domain.UserDeletionReport;
+import application.exceptions.RepositoryException;
+
+import java.util.List;
+
+/**
+ * Interface for the repositories of users
+ */
+public interface UserRepository extends Repository<Integer, User>, PagingRepository<Integer, User> {
+
+    /**
+     * Gets the id and the password hash of a user, used to authenticate the user logging in the application
+     * @param userName String
+     * @return Tuple(Integer, String), the id and the encoded hash
+     * @throws RepositoryException if there is no user with the username
+     */
+    Tuple<Integer, String> findCredentials(String userName) throws RepositoryException;
+
+    /**
+     * Replaces the password hash of a user
+     * @param id Integer
+     * @param hash String, the new encoded hash
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    void updateHash(Integer id, String hash) throws RepositoryException;
+
+    /**
+     * Deletes a user together with everything that references the user: friend requests, friendships,
+     * event subscriptions, authored events, the user's place among the recipients of messages,
+     * and the messages sent by the user or left without recipients
+     * @param id Integer
+     * @return UserDeletionReport, with the number of entities removed of every kind
+     * @throws RepositoryException if the user doesn't exist
+     */
+    UserDeletionReport deleteCascade(Integer id) throws RepositoryException;
+
+    /**
+     * Gets the next users that are friends of a friend of the user but not friends of the user,
+     * ranked by the number of mutual friends, then by id
+     * @param userId Integer
+     * @param mutualFriends int, mutual friends of the last user read, Integer.MAX_VALUE to start from the first
+     * @param afterId int, id of the last user read
+     * @param limit int
+     * @return List(Recommendation)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Recommendation> getFriendsOfFriendsAfter(Integer userId, int mutualFriends, int afterId, int limit)
+            throws RepositoryException;
+
+    /**
+     * Gets the next users, in id order, that are not friends of the user
+     * @param userId Integer
+     * @param afterId int, only users with a greater id are returned
+     * @param limit int
+     * @return List(Recommendation), without mutual friends
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Recommendation> getNonFriendsAfter(Integer userId, int afterId, int limit) throws RepositoryException;
+
+    /**
+     * Searches the users that are not friends of the user by name, names starting with the term first
+     * @param userId Integer
+     * @param name String, the search term
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(Recommendation), without mutual friends
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    List<Recommendation> searchByName(Integer userId, String name, int offset, int limit) throws RepositoryException;
+}
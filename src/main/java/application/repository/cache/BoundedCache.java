@@ -0,0 +1,286 @@
+package application.repository.cache;
+
+import application.exceptions.RepositoryException;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe read-through cache with a bounded number of entries, least-recently-used eviction
+ * and a time to live for every entry.
+ * The entries are split in segments locked separately, each evicting its own least recently used entries.
+ * A value read from the database is put with the stamp taken before it was read, and is left out if its key
+ * was invalidated in the meantime, so a load racing with an update or a delete cannot bring the old value back.
+ * @param <K> generic type, defines the keys of the cache
+ * @param <V> generic type, defines the cached values
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Loads a value missing from the cache
+     * @param <K> generic type, defines the keys of the cache
+     * @param <V> generic type, defines the cached values
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        /**
+         * Loads the value of a key
+         * @param key generic type K
+         * @return generic type V
+         * @throws RepositoryException if the value doesn't exist
+         */
+        V load(K key) throws RepositoryException;
+    }
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MAX_INVALIDATED_KEYS = 64; // per segment, older invalidations are only kept as a floor
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment {
+        private final int maxSize;
+        private final LinkedHashMap<K, Entry<V>> entries;
+        // stamps of the last invalidations of keys, oldest first
+        private final LinkedHashMap<K, Long> invalidated = new LinkedHashMap<>();
+        // values stamped before this may have been invalidated without their key being remembered
+        private long floor = 0;
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > Segment.this.maxSize) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized void invalidate(K key, long stamp) {
+            entries.remove(key);
+            invalidated.remove(key);
+            invalidated.put(key, stamp);
+            if (invalidated.size() > MAX_INVALIDATED_KEYS) {
+                Iterator<Long> oldest = invalidated.values().iterator();
+                floor = Math.max(floor, oldest.next());
+                oldest.remove();
+            }
+        }
+
+        private synchronized void invalidateIf(Predicate<V> condition, long stamp) {
+            entries.values().removeIf(entry -> condition.test(entry.value));
+            // a value being loaded may match the condition too
+            invalidated.clear();
+            floor = stamp;
+        }
+
+        private synchronized boolean put(K key, V value, long stamp) {
+            if (stamp < floor || invalidated.getOrDefault(key, Long.MIN_VALUE) > stamp)
+                return false;
+            entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+            return true;
+        }
+    }
+
+    private final int maxSize; // maximum number of entries
+    private final long ttlMillis; // how long an entry is served before it is loaded again
+    private final List<Segment> segments;
+    private final AtomicLong invalidations = new AtomicLong(); // stamp of the last invalidation
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param maxSize int
+     * @param ttlMillis long
+     */
+    public BoundedCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize + "!\n");
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // a power of two no larger than the size, so every segment holds at least one of the maxSize entries
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize));
+        this.segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            segments.add(new Segment(maxSize / count + (i < maxSize % count ? 1 : 0)));
+    }
+
+    private Segment segment(K key) {
+        int hash = key.hashCode();
+        return segments.get((hash ^ (hash >>> 16)) & (segments.size() - 1));
+    }
+
+    /**
+     * Gets a value from the cache, loading and caching it if it is missing or expired
+     * @param key generic type K
+     * @param loader Loader(K, V)
+     * @return generic type V
+     * @throws RepositoryException if the loader fails
+     */
+    public V get(K key, Loader<K, V> loader) throws RepositoryException {
+        Optional<V> cached = getIfPresent(key);
+        if (cached.isPresent())
+            return cached.get();
+
+        long stamp = stamp();
+        V value = loader.load(key);
+        put(key, value, stamp);
+        return value;
+    }
+
+    /**
+     * Gets a value from the cache without loading it
+     * @param key generic type K
+     * @return Optional(V), empty if the key is missing or expired
+     */
+    public Optional<V> getIfPresent(K key) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                segment.entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            hits.incrementAndGet();
+            return Optional.of(entry.value);
+        }
+    }
+
+    /**
+     * Gets all the cached values of the given keys; missing keys are left out
+     * @param keys Collection(K)
+     * @return Map(K, V)
+     */
+    public Map<K, V> getAllPresent(Collection<K> keys) {
+        Map<K, V> found = new HashMap<>();
+        for (K key : keys)
+            getIfPresent(key).ifPresent(value -> found.put(key, value));
+        return found;
+    }
+
+    /**
+     * Gets the stamp to put the values read from now on with; it must be taken before they are read
+     * @return long
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Adds or replaces a value read after the stamp was taken, unless its key was invalidated since
+     * @param key generic type K
+     * @param value generic type V
+     * @param stamp long, from stamp()
+     * @return boolean, false if the value was left out
+     */
+    public boolean put(K key, V value, long stamp) {
+        return segment(key).put(key, value, stamp);
+    }
+
+    /**
+     * Removes a key from the cache; values of the key being loaded are not cached either
+     * @param key generic type K
+     */
+    public void invalidate(K key) {
+        segment(key).invalidate(key, invalidations.incrementAndGet());
+    }
+
+    /**
+     * Removes all the values matching a condition; no value being loaded is cached
+     * @param condition Predicate(V)
+     */
+    public void invalidateIf(Predicate<V> condition) {
+        long stamp = invalidations.incrementAndGet();
+        for (Segment segment : segments)
+            segment.invalidateIf(condition, stamp);
+    }
+
+    /**
+     * Removes every value from the cache; no value being loaded is cached
+     */
+    public void invalidateAll() {
+        invalidateIf(value -> true);
+    }
+
+    /**
+     * Gets the number of cached values
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the number of lookups served from the cache
+     * @return long
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that were not in the cache
+     * @return long
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of values removed to keep the cache under its maximum size
+     * @return long
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of values removed because they outlived their time to live
+     * @return long
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Gets the fraction of lookups served from the cache
+     * @return double
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : hits.get() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BoundedCache[size=%d/%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, expirations=%d]",
+                size(), maxSize, getHits(), getMisses(), getHitRate(), getEvictions(), getExpirations());
+    }
+}
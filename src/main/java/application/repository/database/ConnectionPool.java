@@ -0,0 +1,487 @@
+package application.repository.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static application.utils.DatabaseConstants.*;
+
+/**
+ * Bounded pool of JDBC connections shared by the database repositories.
+ * Connections handed out by the pool are proxies: closing them returns the physical connection to the pool.
+ * Borrowing costs no round trip to the database unless the connection was idle for a while.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Map<String, ConnectionPool> sharedPools = new ConcurrentHashMap<>();
+
+    private final String url; // url of the database
+    private final String username; // the username of the postgres server
+    private final String password; // the password of the user
+
+    private final int minSize; // connections kept open even when idle
+    private final int maxSize; // connections that can be open at the same time
+    private final long acquireTimeoutMillis; // how long a caller waits for a free connection
+    private final long idleTimeoutMillis; // idle connections above minSize are closed after this time
+    private final long validationIdleMillis; // idle connections older than this are checked before being borrowed
+    private final long leakThresholdMillis; // borrowed connections held longer than this are reported, 0 to disable
+
+    private final Semaphore permits; // one permit for every connection that can still be borrowed
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    // metrics
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param url String
+     * @param username String
+     * @param password String
+     * @param minSize int
+     * @param maxSize int
+     * @param acquireTimeoutMillis long
+     * @param idleTimeoutMillis long
+     * @param validationIdleMillis long, idle time after which a connection is checked before being borrowed
+     * @param leakThresholdMillis long, 0 to disable leak detection
+     */
+    public ConnectionPool(String url, String username, String password,
+                          int minSize, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+                          long validationIdleMillis, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("Invalid pool size: " + minSize + ".." + maxSize + "!\n");
+
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIdleMillis = validationIdleMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.min(idleTimeoutMillis, validationIdleMillis);
+        if (isLeakDetectionEnabled())
+            period = Math.min(period, leakThresholdMillis);
+        period = Math.max(1000, period / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor with the default pool settings from DatabaseConstants
+     * @param url String
+     * @param username String
+     * @param password String
+     */
+    public ConnectionPool(String url, String username, String password) {
+        this(url, username, password,
+                POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_ACQUIRE_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS,
+                POOL_VALIDATION_IDLE_MILLIS, POOL_LEAK_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * Gets the pool shared by every repository that connects to the same database with the same account
+     * @param url String
+     * @param username String
+     * @param password String
+     * @return ConnectionPool
+     */
+    public static ConnectionPool shared(String url, String username, String password) {
+        return sharedPools.computeIfAbsent(url + "|" + username, key -> new ConnectionPool(url, username, password));
+    }
+
+    /**
+     * Borrows a connection from the pool; closing it gives it back
+     * @return Connection
+     * @throws SQLException if no connection becomes available in time or the database cannot be reached
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed)
+            throw new SQLException("The connection pool is closed!\n");
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out waiting for a database connection!\n");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection!\n");
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Connection physical = takeIdleConnection();
+            if (physical == null)
+                physical = openConnection();
+
+            Lease lease = new Lease(physical);
+            leased.add(lease);
+            acquisitions.incrementAndGet();
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeIdleConnection() {
+        long now = System.currentTimeMillis();
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            // a connection used recently is trusted without a round trip; the housekeeper checks the older ones
+            boolean healthy = now - candidate.validatedAt > validationIdleMillis
+                    ? isHealthy(candidate.connection) : isOpen(candidate.connection);
+            if (healthy)
+                return candidate.connection;
+            closeQuietly(candidate.connection);
+            evicted.incrementAndGet();
+        }
+        return null;
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        created.incrementAndGet();
+        return connection;
+    }
+
+    private boolean isOpen(Connection connection) {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isHealthy(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void release(Lease lease) {
+        if (!leased.remove(lease))
+            return;
+
+        Connection physical = lease.physical;
+        lease.closeStatements();
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (closed || physical.isClosed())
+                closeQuietly(physical);
+            else
+                idle.offerFirst(new IdleConnection(physical));
+        } catch (SQLException e) {
+            closeQuietly(physical);
+            evicted.incrementAndGet();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+
+        // evict connections that were idle for too long, keeping at least minSize open
+        for (IdleConnection candidate : idle) {
+            if (getTotalConnections() <= minSize)
+                break;
+            if (now - candidate.idleSince > idleTimeoutMillis && idle.remove(candidate)) {
+                closeQuietly(candidate.connection);
+                evicted.incrementAndGet();
+            }
+        }
+
+        // check the connections that were idle long enough to have been dropped by the server or the network
+        for (IdleConnection candidate : idle) {
+            if (now - candidate.validatedAt <= validationIdleMillis || !idle.remove(candidate))
+                continue;
+            if (isHealthy(candidate.connection)) {
+                idle.offerLast(new IdleConnection(candidate.connection, candidate.idleSince, System.currentTimeMillis()));
+            } else {
+                closeQuietly(candidate.connection);
+                evicted.incrementAndGet();
+            }
+        }
+
+        // keep the minimum number of connections warm
+        while (!closed && getTotalConnections() < minSize) {
+            try {
+                idle.offerLast(new IdleConnection(openConnection()));
+            } catch (SQLException e) {
+                break;
+            }
+        }
+
+        // report connections that were borrowed and never given back
+        if (!isLeakDetectionEnabled())
+            return;
+        for (Lease lease : leased) {
+            if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                lease.reported = true;
+                leaks.incrementAndGet();
+                System.err.println("Possible connection leak: connection borrowed " + (now - lease.borrowedAt) + " ms ago by");
+                lease.borrowTrace.printStackTrace();
+            }
+        }
+    }
+
+    private boolean isLeakDetectionEnabled() {
+        return leakThresholdMillis > 0;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) { }
+    }
+
+    /**
+     * Closes every idle connection and stops the pool; borrowed connections are closed when given back
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null)
+            closeQuietly(candidate.connection);
+    }
+
+    // ===================== METRICS ==========================
+
+    /**
+     * Gets the number of connections currently borrowed
+     * @return int
+     */
+    public int getActiveConnections() {
+        return leased.size();
+    }
+
+    /**
+     * Gets the number of open connections waiting in the pool
+     * @return int
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of open physical connections
+     * @return int
+     */
+    public int getTotalConnections() {
+        return leased.size() + idle.size();
+    }
+
+    /**
+     * Gets the number of callers currently waiting for a connection
+     * @return int
+     */
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Gets the maximum number of connections of the pool
+     * @return int
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of connections handed out since the pool was created
+     * @return long
+     */
+    public long getTotalAcquisitions() {
+        return acquisitions.get();
+    }
+
+    /**
+     * Gets the number of callers that gave up waiting for a connection
+     * @return long
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Gets the average time callers waited for a connection
+     * @return double, in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = acquisitions.get() + timeouts.get();
+        if (count == 0)
+            return 0;
+        return totalWaitNanos.get() / (double) count / 1_000_000;
+    }
+
+    /**
+     * Gets the longest time a caller waited for a connection
+     * @return double, in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Gets the number of physical connections opened since the pool was created
+     * @return long
+     */
+    public long getCreatedConnections() {
+        return created.get();
+    }
+
+    /**
+     * Gets the number of physical connections closed because they were broken or idle for too long
+     * @return long
+     */
+    public long getEvictedConnections() {
+        return evicted.get();
+    }
+
+    /**
+     * Gets the number of borrowed connections reported as possible leaks
+     * @return long
+     */
+    public long getDetectedLeaks() {
+        return leaks.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[active=%d, idle=%d, waiting=%d, max=%d, acquired=%d, timeouts=%d, " +
+                        "avgWait=%.3fms, maxWait=%.3fms, created=%d, evicted=%d, leaks=%d]",
+                getActiveConnections(), getIdleConnections(), getWaitingThreads(), maxSize,
+                getTotalAcquisitions(), getTimeouts(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getCreatedConnections(), getEvictedConnections(), getDetectedLeaks());
+    }
+
+    // ===================== CONNECTIONS ==========================
+
+    /**
+     * A physical connection waiting in the pool
+     */
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final long idleSince;
+        private final long validatedAt; // when the connection last worked, in use or checked by the housekeeper
+
+        private IdleConnection(Connection connection) {
+            this(connection, System.currentTimeMillis(), System.currentTimeMillis());
+        }
+
+        private IdleConnection(Connection connection, long idleSince, long validatedAt) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    /**
+     * A physical connection borrowed by a caller, seen by the caller through a proxy
+     */
+    private final class Lease implements InvocationHandler {
+        private final Connection physical;
+        private final Connection proxy;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable borrowTrace = isLeakDetectionEnabled() ? new Throwable("Connection borrowed here") : null;
+        private final List<Statement> statements = new ArrayList<>();
+        private volatile boolean released = false;
+        private volatile boolean reported = false;
+
+        private Lease(Connection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    break;
+            }
+            if (released)
+                throw new SQLException("The connection was already given back to the pool!\n");
+
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement statement) {
+                    synchronized (statements) {
+                        statements.add(statement);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // statements that were not closed by the caller would otherwise stay open on the physical connection
+        private void closeStatements() {
+            synchronized (statements) {
+                statements.forEach(ConnectionPool::closeQuietly);
+                statements.clear();
+            }
+        }
+    }
+}
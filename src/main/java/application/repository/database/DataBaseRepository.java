@@ -1,17 +1,30 @@
 package application.repository.database;
 
 import application.domain.Entity;
+import application.domain.User;
 import application.repository.PagingRepository;
 import application.repository.Repository;
+import application.repository.cache.BoundedCache;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static application.utils.DatabaseConstants.USER_CACHE_MAX_SIZE;
+import static application.utils.DatabaseConstants.USER_CACHE_TTL_MILLIS;
 
 /**
  * @param <ID> generic type, defines the type of entity ids used
  * @param <E> generic type, defines the type of entity used
  */
 public abstract class DataBaseRepository<ID, E extends Entity<ID>> implements Repository<ID, E>, PagingRepository<ID,E> {
-    protected String url; // url of the database
-    protected String username; // the username of the postgres server
-    protected String password; // the password of the user
+    private static final Map<ConnectionPool, BoundedCache<Integer, User>> userCaches = new ConcurrentHashMap<>();
+
+    protected final ConnectionPool pool; // pool the connections to the database are borrowed from
+    protected final BoundedCache<Integer, User> userCache; // users by id, shared by the repositories of the same pool
 
     /**
      * Constructor
@@ -20,8 +33,61 @@ public abstract class DataBaseRepository<ID, E extends Entity<ID>> implements Re
      * @param password String
      */
     public DataBaseRepository(String url, String username, String password) {
-        this.url = url;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPool.shared(url, username, password));
+    }
+
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public DataBaseRepository(ConnectionPool pool) {
+        this(pool, userCaches.computeIfAbsent(pool,
+                key -> new BoundedCache<>(USER_CACHE_MAX_SIZE, USER_CACHE_TTL_MILLIS)));
+    }
+
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     * @param userCache BoundedCache(Integer, User)
+     */
+    public DataBaseRepository(ConnectionPool pool, BoundedCache<Integer, User> userCache) {
+        this.pool = pool;
+        this.userCache = userCache;
+    }
+
+    /**
+     * Borrows a connection from the pool; it must be closed to be given back
+     * @return Connection
+     * @throws SQLException if the database cannot be reached
+     */
+    protected Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    /**
+     * Builds an SQL integer array, used to look up many rows with a single "= ANY(?)" parameter
+     * @param connection Connection
+     * @param ids Collection(Integer)
+     * @return Array
+     * @throws SQLException if the database cannot be reached
+     */
+    protected static Array toIntArray(Connection connection, Collection<Integer> ids) throws SQLException {
+        return connection.createArrayOf("integer", ids.toArray(new Integer[0]));
+    }
+
+    /**
+     * Gets the connection pool used by the repository
+     * @return ConnectionPool
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the user cache used by the repository
+     * @return BoundedCache(Integer, User)
+     */
+    public BoundedCache<Integer, User> getUserCache() {
+        return userCache;
     }
 }
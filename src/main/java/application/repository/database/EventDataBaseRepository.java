@@ -3,16 +3,16 @@ package application.repository.database;
 import application.domain.Event;
 import application.domain.User;
 import application.exceptions.RepositoryException;
+import application.repository.EventRepository;
+import application.utils.collections.IntHashSet;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 
-public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
+public class EventDataBaseRepository extends DataBaseRepository<Integer, Event> implements EventRepository {
     private int pageSize = 6;
     /**
      * Constructor
@@ -25,123 +25,255 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
         super(url, username, password);
     }
 
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public EventDataBaseRepository(ConnectionPool pool) {
+        super(pool);
+    }
+
     @Override
     public Event find(Integer eventId) throws RepositoryException {
-        String getEventSql =
-                "select event.id as event_id, author_id, title, description, creation_date, event_date,\n" +
-                "       \"user\".id as user_id, first_name, last_name, username\n" +
-                "from event\n" +
-                "inner join \"user\" on event.author_id = \"user\".id\n" +
-                "where event.id = ?";
-        String getSubscribersSql = "select * from \"user\"\n" +
-                "where \"user\".id in \n" +
-                "(select user_id from subscribed where event_id = ?)";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement eventStatement = connection.prepareStatement(getEventSql);
-             PreparedStatement subscribersStatement = connection.prepareStatement(getSubscribersSql)) {
-
-            //get fields from message table
-            eventStatement.setInt(1, eventId);
-            ResultSet eventResultSet = eventStatement.executeQuery();
-            eventResultSet.next();
-
-            //author user
-            Integer userId = eventResultSet.getInt("user_id");
-            String firstName = eventResultSet.getString("first_name");
-            String lastName = eventResultSet.getString("last_name");
-            String userName = eventResultSet.getString("username");
-            User author = new User(firstName, lastName, userName);
-            author.setId(userId);
-
-            //event
-            String title = eventResultSet.getString("title");
-            String description = eventResultSet.getString("description");
-            LocalDateTime creationDate = LocalDateTime.parse(eventResultSet.getString("creation_date"));
-            LocalDate eventDate = LocalDate.parse(eventResultSet.getString("event_date"));
-
-            Event event = new Event(author, title, description, creationDate, eventDate);
-            event.setId(eventId);
-            eventResultSet.close();
-
-            //subscribers list
-            subscribersStatement.setInt(1, eventId);
-            ResultSet subscribersResultSet = subscribersStatement.executeQuery();
-
-            List<User> subscribersList = new ArrayList<>();
-            while(subscribersResultSet.next()){
-                Integer subscriberUserId = subscribersResultSet.getInt("id");
-                String subscriberFirstName = subscribersResultSet.getString("first_name");
-                String subscriberLastName = subscribersResultSet.getString("last_name");
-                String subscriberUserName = subscribersResultSet.getString("username");
-                User subscriber = new User(subscriberFirstName, subscriberLastName, subscriberUserName);
-                subscriber.setId(subscriberUserId);
-                subscribersList.add(subscriber);
-            }
-            event.setSubscribers(subscribersList);
+        String sql =
+                "SELECT " + EVENT_COLUMNS +
+                "FROM event e\n" +
+                "INNER JOIN \"user\" u ON e.author_id = u.id\n" +
+                "WHERE e.id = ?;";
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setInt(1, eventId);
+            List<Event> events = readEvents(statement);
+            if (events.isEmpty())
+                throw new RepositoryException("Nonexistent event!\n");
+            return events.get(0);
 
-            return event;
         } catch (SQLException throwable) {
-            throw new RepositoryException("Nonexistent message!\n");
+            throw new RepositoryException(throwable.getMessage());
         }
     }
 
 
-    @Override
-    public List<Event> getAll() throws RepositoryException {
+    private static final String EVENT_COLUMNS =
+            "e.id AS event_id, e.author_id, e.title, e.description, e.creation_date, e.event_date,\n" +
+            "       u.id AS user_id, u.first_name, u.last_name, u.username,\n" +
+            "       (SELECT COUNT(*) FROM subscribed s WHERE s.event_id = e.id) AS subscriber_count\n";
+
+    private User readUser(ResultSet resultSet, String idColumn, Map<Integer, User> users, long stamp)
+            throws SQLException {
+        Integer userId = resultSet.getInt(idColumn);
+        User user = users.get(userId);
+        if (user == null) {
+            user = new User(resultSet.getString("first_name"),
+                    resultSet.getString("last_name"),
+                    resultSet.getString("username"));
+            user.setId(userId);
+            users.put(userId, user);
+            userCache.put(userId, user, stamp);
+        }
+        return user;
+    }
 
-        String getEventSql =
-                "select event.id as event_id, author_id, title, description, creation_date, event_date,\n" +
-                "       \"user\".id as user_id, first_name, last_name, username\n" +
-                "from event\n" +
-                "inner join \"user\" on event.author_id = \"user\".id;";
-        String getSubscribersSql = "select * from \"user\"\n" +
-                "where \"user\".id in \n" +
-                "(select user_id from subscribed where event_id = ?)";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement eventStatement = connection.prepareStatement(getEventSql);
-             PreparedStatement subscribersStatement = connection.prepareStatement(getSubscribersSql)) {
-
-
-            ResultSet eventResultSet = eventStatement.executeQuery();
-            List<Event> eventList = new ArrayList<>();
-            while(eventResultSet.next()){
-                //author user
-                Integer userId = eventResultSet.getInt("user_id");
-                String firstName = eventResultSet.getString("first_name");
-                String lastName = eventResultSet.getString("last_name");
-                String userName = eventResultSet.getString("username");
-                User author = new User(firstName, lastName, userName);
-                author.setId(userId);
-
-                //event
-                Integer eventId = eventResultSet.getInt("event_id");
-                String title = eventResultSet.getString("title");
-                String description = eventResultSet.getString("description");
-                LocalDateTime creationDate = LocalDateTime.parse(eventResultSet.getString("creation_date"));
-                LocalDate eventDate = LocalDate.parse(eventResultSet.getString("event_date"));
-
-                Event event = new Event(author, title, description, creationDate, eventDate);
-                event.setId(eventId);
-
-                //subscribers list
-                subscribersStatement.setInt(1, eventId);
-                ResultSet subscribersResultSet = subscribersStatement.executeQuery();
-
-                List<User> subscribersList = new ArrayList<>();
-                while(subscribersResultSet.next()){
-                    Integer subscriberUserId = subscribersResultSet.getInt("id");
-                    String subscriberFirstName = subscribersResultSet.getString("first_name");
-                    String subscriberLastName = subscribersResultSet.getString("last_name");
-                    String subscriberUserName = subscribersResultSet.getString("username");
-                    User subscriber = new User(subscriberFirstName, subscriberLastName, subscriberUserName);
-                    subscriber.setId(subscriberUserId);
-                    subscribersList.add(subscriber);
+    static final String SUBSCRIBERS_SQL = "SELECT event_id, user_id FROM subscribed WHERE event_id = ANY(?);";
+
+    /**
+     * Loads the subscriber ids of a batch of events with a single query, the first time one of them needs them
+     */
+    private final class SubscriberBatch implements Event.SubscriberLoader {
+        private final Map<Integer, Event> events; // the events without their subscriber ids, by id
+        private boolean loaded = false; // guarded by this
+
+        private SubscriberBatch(Map<Integer, Event> events) {
+            this.events = events;
+        }
+
+        @Override
+        public synchronized void load() throws RepositoryException {
+            if (loaded)
+                return;
+            Map<Integer, IntHashSet> subscriberIds = new HashMap<>();
+            for (Event event : events.values())
+                subscriberIds.put(event.getId(), new IntHashSet(event.getSubscriberCount()));
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(SUBSCRIBERS_SQL)) {
+
+                statement.setArray(1, toIntArray(connection, events.keySet()));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next())
+                        subscriberIds.get(resultSet.getInt("event_id")).add(resultSet.getInt("user_id"));
                 }
-                event.setSubscribers(subscribersList);
-                eventList.add(event);
+            } catch (SQLException throwable) {
+                throw new RepositoryException(throwable.getMessage());
             }
+            for (Event event : events.values())
+                event.setSubscriberIds(subscriberIds.get(event.getId()));
+            loaded = true;
+        }
+    }
+
+    /**
+     * Runs a query selecting EVENT_COLUMNS and builds its events with their subscriber counts;
+     * the subscriber ids of all of them are loaded together, with a single query, the first time they are needed
+     * @param statement PreparedStatement, with its parameters set
+     * @return List(Event), in the order of the query
+     * @throws SQLException if the database cannot be reached
+     */
+    private List<Event> readEvents(PreparedStatement statement) throws SQLException {
+        Map<Integer, User> users = new HashMap<>();
+        Map<Integer, Event> events = new LinkedHashMap<>();
+        Map<Integer, Event> withSubscribers = new HashMap<>();
+        long stamp = userCache.stamp();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                User author = readUser(resultSet, "user_id", users, stamp);
+                Event event = new Event(author,
+                        resultSet.getString("title"),
+                        resultSet.getString("description"),
+                        resultSet.getObject("creation_date", LocalDateTime.class),
+                        resultSet.getObject("event_date", LocalDate.class));
+                event.setId(resultSet.getInt("event_id"));
+                int subscriberCount = resultSet.getInt("subscriber_count");
+                if (subscriberCount == 0)
+                    event.setSubscriberIds(new IntHashSet());
+                else {
+                    event.setSubscriberCount(subscriberCount);
+                    withSubscribers.put(event.getId(), event);
+                }
+                events.put(event.getId(), event);
+            }
+        }
+        if (!withSubscribers.isEmpty()) {
+            SubscriberBatch batch = new SubscriberBatch(withSubscribers);
+            for (Event event : withSubscribers.values())
+                event.setSubscriberLoader(batch);
+        }
+        return new ArrayList<>(events.values());
+    }
+
+    @Override
+    public List<Event> getAll() throws RepositoryException {
+        String sql =
+                "SELECT " + EVENT_COLUMNS +
+                "FROM event e\n" +
+                "INNER JOIN \"user\" u ON e.author_id = u.id;";
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
 
-            return eventList;
+            return readEvents(statement);
+
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+    }
+
+    static final String FEED_SQL =
+            "WITH friends AS (\n" +
+            "    SELECT id_right AS id FROM friendship WHERE id_left = ?\n" +
+            "    UNION ALL\n" +
+            "    SELECT id_left FROM friendship WHERE id_right = ?\n" +
+            "), feed AS (\n" +
+            "    SELECT id FROM event WHERE author_id = ? AND event_date >= ?\n" +
+            "    UNION\n" +
+            "    SELECT e.id FROM event e INNER JOIN friends f ON e.author_id = f.id WHERE e.event_date >= ?\n" +
+            "    UNION\n" +
+            "    SELECT s.event_id FROM subscribed s INNER JOIN friends f ON s.user_id = f.id\n" +
+            ")\n" +
+            "SELECT " + EVENT_COLUMNS +
+            "FROM feed\n" +
+            "INNER JOIN event e ON e.id = feed.id\n" +
+            "INNER JOIN \"user\" u ON e.author_id = u.id\n" +
+            "WHERE e.event_date >= ?\n" +
+            "ORDER BY e.event_date, e.id\n" +
+            "LIMIT ? OFFSET ?;";
+
+    /**
+     * Gets the events shown to a user: the ones authored by the user or by a friend of the user,
+     * and the ones a friend of the user is subscribed to. Each of the three sets is read through
+     * an index on the author or the subscriber, so only the events around the user are visited.
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Event> getFeed(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(FEED_SQL)) {
+
+            statement.setInt(1, userId);
+            statement.setInt(2, userId);
+            statement.setInt(3, userId);
+            statement.setObject(4, from);
+            statement.setObject(5, from);
+            statement.setObject(6, from);
+            statement.setInt(7, limit);
+            statement.setInt(8, offset);
+            return readEvents(statement);
+
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+    }
+
+    static final String SUBSCRIBED_EVENTS_SQL =
+            "SELECT " + EVENT_COLUMNS +
+            "FROM subscribed s\n" +
+            "INNER JOIN event e ON e.id = s.event_id\n" +
+            "INNER JOIN \"user\" u ON e.author_id = u.id\n" +
+            "WHERE s.user_id = ? AND e.event_date >= ?\n" +
+            "ORDER BY e.event_date, e.id\n" +
+            "LIMIT ? OFFSET ?;";
+
+    /**
+     * Gets the events a user is subscribed to
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Event> getSubscribedEvents(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(SUBSCRIBED_EVENTS_SQL)) {
+
+            statement.setInt(1, userId);
+            statement.setObject(2, from);
+            statement.setInt(3, limit);
+            statement.setInt(4, offset);
+            return readEvents(statement);
+
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+    }
+
+    /**
+     * Counts the events a user is subscribed to that take place in a range of dates
+     * @param userId Integer
+     * @param from LocalDate, inclusive
+     * @param to LocalDate, exclusive
+     * @return int
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public int countSubscribedEvents(Integer userId, LocalDate from, LocalDate to) throws RepositoryException {
+        String sql =
+                "SELECT COUNT(*) AS count\n" +
+                "FROM subscribed s\n" +
+                "INNER JOIN event e ON e.id = s.event_id\n" +
+                "WHERE s.user_id = ? AND e.event_date >= ? AND e.event_date < ?;";
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setInt(1, userId);
+            statement.setObject(2, from);
+            statement.setObject(3, to);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt("count");
+            }
 
         } catch (SQLException throwable) {
             throw new RepositoryException(throwable.getMessage());
@@ -150,7 +282,7 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
 
     @Override
     public Event add(Event event) throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement eventStatement = connection.prepareStatement(
                      "insert into event (id, author_id, title, description, creation_date, event_date) values (?, ?, ?, ?, ?, ?)");
              PreparedStatement nextIdStatement = connection.prepareStatement(
@@ -165,12 +297,14 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
             eventStatement.setInt(2, event.getAuthor().getId());
             eventStatement.setString(3, event.getTitle());
             eventStatement.setString(4, event.getDescription());
-            eventStatement.setString(5, event.getCreationDate().toString());
-            eventStatement.setString(6, event.getEventDate().toString());
+            eventStatement.setObject(5, event.getCreationDate());
+            eventStatement.setObject(6, event.getEventDate());
 
             eventStatement.executeUpdate();
 
+            // a new event has no subscribers yet
             event.setId(eventId);
+            event.setSubscriberIds(new IntHashSet());
             return event;
         } catch (SQLException e) {
             throw new RepositoryException(e.getMessage());
@@ -186,7 +320,7 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
      * @throws RepositoryException if the user is already subscribed to the event
      */
     public Event addSubscriber(Event event, User user) throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement eventStatement = connection.prepareStatement(
                      "insert into subscribed (user_id, event_id) values (?, ?)");
 
@@ -197,9 +331,7 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
 
             eventStatement.executeUpdate();
 
-            List<User>subscribers = event.getSubscribers();
-            subscribers.add(user);
-            event.setSubscribers(subscribers);
+            event.addSubscriber(user.getId());
             return event;
         } catch (SQLException e) {
             throw new RepositoryException("You already are subscribed to this event!\n");
@@ -214,22 +346,16 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
      * @throws RepositoryException if the user isn't subscribed to the event
      */
     public Event removeSubscriber(Event event, User user) throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(
                      "delete from subscribed where user_id = ? and event_id = ?");
         ) {
-            List<User>subscribers = event.getSubscribers();
-            if (!subscribers.contains(user)){
-                throw new RepositoryException("You are not subscribed to this event!\n");
-            }
             statement.setInt(1, user.getId());
             statement.setInt(2, event.getId());
-            statement.executeUpdate();
-
-
+            if (statement.executeUpdate() == 0)
+                throw new RepositoryException("You are not subscribed to this event!\n");
 
-            subscribers.remove(user);
-            event.setSubscribers(subscribers);
+            event.removeSubscriber(user.getId());
             return event;
 
         } catch (SQLException throwable) {
@@ -239,7 +365,7 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
 
     @Override
     public Event delete(Integer eventId) throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(
                      "delete from event where id = ?");
         ) {
@@ -257,7 +383,7 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
 
     @Override
     public Event update(Event event) throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(
                      "update message set title = ?, description = ? where id = ?");
 
@@ -277,7 +403,7 @@ public class EventDataBaseRepository extends DataBaseRepository<Integer, Event>{
 
     @Override
     public Integer size() throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) as count from event");
              ResultSet resultSet = statement.executeQuery()) {
 
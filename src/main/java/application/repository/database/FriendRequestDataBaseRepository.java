@@ -2,25 +2,35 @@ package application.repository.database;
 
 import application.domain.*;
 import application.exceptions.RepositoryException;
+import application.repository.FriendRequestRepository;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<Integer, Integer>, FriendRequest> {
+public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<Integer, Integer>, FriendRequest>
+        implements FriendRequestRepository {
     private int pageSize = 20;
 
     public FriendRequestDataBaseRepository(String url, String username, String password) {
         super(url, username, password);
     }
 
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public FriendRequestDataBaseRepository(ConnectionPool pool) {
+        super(pool);
+    }
+
     @Override
     public FriendRequest find(Tuple<Integer, Integer> id) throws RepositoryException {
 
-        String sql = "SELECT u1.id, u1.first_name, u1.last_name, u1.username, u2.id, u2.first_name, u2.last_name,u2.username,status FROM friend_request fr INNER JOIN user u1 on fr.id_from = u1.id  INNER JOIN user u2 on fr.id_to = u2.id  WHERE fr.id_from=? AND fr.id_to=?";
+        String sql = "SELECT u1.id, u1.first_name, u1.last_name, u1.username, u2.id, u2.first_name, u2.last_name,u2.username,status FROM friend_request fr INNER JOIN \"user\" u1 on fr.id_from = u1.id  INNER JOIN \"user\" u2 on fr.id_to = u2.id  WHERE fr.id_from=? AND fr.id_to=?";
 
-        try(Connection connection = DriverManager.getConnection(url, username, password);
+        try(Connection connection = getConnection();
             PreparedStatement requestStatement = connection.prepareStatement(sql)) {
 
             requestStatement.setInt(1, id.getLeft());
@@ -57,7 +67,7 @@ public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<In
     @Override
     public List<FriendRequest> getAll() throws RepositoryException {
         List<FriendRequest> requests = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(
               "SELECT u1.id, u1.first_name, u1.last_name,u1.username, u2.id, u2.first_name, u2.last_name, u2.username, status FROM friend_request fr INNER JOIN \"user\" u1 on fr.id_from = u1.id INNER JOIN \"user\" u2 on fr.id_to = u2.id ");
 
@@ -88,14 +98,76 @@ public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<In
 
     }
 
-    public List<FriendRequest> getAllFromUser() {
-        return null;
+    @Override
+    public List<FriendRequestDTO> getRequestsToUser(Integer userId, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        return getRequestsOfUser("id_to", "id_from", userId, status, offset, limit);
+    }
+
+    @Override
+    public List<FriendRequestDTO> getRequestsFromUser(Integer userId, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        return getRequestsOfUser("id_from", "id_to", userId, status, offset, limit);
+    }
+
+    /**
+     * Builds the query of getRequestsOfUser
+     * @param side String, the column of the user, id_to or id_from
+     * @param other String, the column of the other user
+     * @param withStatus boolean, true to keep only the requests of the status bound after the user
+     * @return String
+     */
+    static String requestsOfUserSql(String side, String other, boolean withStatus) {
+        return "SELECT fr.id_from, fr.id_to, fr.status, u.first_name, u.last_name\n" +
+                "FROM friend_request fr INNER JOIN \"user\" u ON u.id = fr." + other + "\n" +
+                "WHERE fr." + side + " = ?" + (withStatus ? " AND fr.status = ?" : "") + "\n" +
+                "ORDER BY fr." + other + "\n" +
+                "LIMIT ? OFFSET ?";
+    }
+
+    /**
+     * Gets the requests of one side of a user, served by the index on (side, status), with the other user joined
+     * @param side String, the column of the user, id_to or id_from
+     * @param other String, the column of the other user
+     * @param userId Integer
+     * @param status FriendRequestStatus, null for any status
+     * @param offset int
+     * @param limit int
+     * @return List(FriendRequestDTO)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    private List<FriendRequestDTO> getRequestsOfUser(String side, String other, Integer userId,
+                                                     FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        List<FriendRequestDTO> requests = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(requestsOfUserSql(side, other, status != null))) {
+            int parameter = 1;
+            statement.setInt(parameter++, userId);
+            if (status != null)
+                statement.setString(parameter++, status.toString());
+            statement.setInt(parameter++, limit);
+            statement.setInt(parameter, offset);
+
+            boolean incoming = side.equals("id_to");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString("first_name") + " " + resultSet.getString("last_name");
+                    requests.add(new FriendRequestDTO(incoming ? name : "", incoming ? "" : name,
+                            resultSet.getInt("id_from"), resultSet.getInt("id_to"),
+                            FriendRequestStatus.valueOf(resultSet.getString("status"))));
+                }
+            }
+            return requests;
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
     }
 
     @Override
     public FriendRequest add(FriendRequest entity) throws RepositoryException {
         String sql = "insert into friend_request (id_from, id_to, status ) values (?, ?, ?)";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, entity.getId().getLeft());
@@ -113,7 +185,7 @@ public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<In
     public FriendRequest delete(Tuple<Integer, Integer> id) throws RepositoryException {
         String sql = "delete from friend_request where id_from = ? and id_to = ?";
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, id.getLeft());
@@ -132,7 +204,7 @@ public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<In
     public FriendRequest update(FriendRequest entity) throws RepositoryException {
         String sql = "update friend_request set status = ? where id_from = ? and id_to = ?";
         FriendRequest updated;
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setString(1, entity.getStatus().toString());
@@ -151,8 +223,8 @@ public class FriendRequestDataBaseRepository extends DataBaseRepository<Tuple<In
 
     @Override
     public Integer size() throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) as count from friendship");
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) as count from friend_request");
              ResultSet resultSet = statement.executeQuery()) {
 
             resultSet.next();
@@ -4,6 +4,8 @@ import application.domain.Friendship;
 import application.domain.Tuple;
 import application.domain.User;
 import application.exceptions.RepositoryException;
+import application.repository.FriendshipRepository;
+import application.utils.collections.AdjacencyIndex;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -11,8 +13,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integer, Integer>, Friendship> {
+public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integer, Integer>, Friendship>
+        implements FriendshipRepository {
     private int pageSize = 20;
+    private volatile AdjacencyIndex adjacencyIndex; // friend ids of every user, null until enabled
     /**
      * Constructor
      * @param url database URL
@@ -23,11 +27,19 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
         super(url, username, password);
     }
 
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public FriendshipDataBaseRepository(ConnectionPool pool) {
+        super(pool);
+    }
+
     @Override
     public Friendship find(Tuple<Integer, Integer> id) throws RepositoryException {
         String sql = "SELECT * from friendship where id_left = ? and id_right = ?";
 
-        try(Connection connection = DriverManager.getConnection(url, username, password);
+        try(Connection connection = getConnection();
             PreparedStatement statement = connection.prepareStatement(sql)) {
 
             statement.setInt(1, id.getLeft());
@@ -36,7 +48,7 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
 
             resultSet.next();
 
-            LocalDateTime date = LocalDateTime.parse(resultSet.getString("date"));
+            LocalDateTime date = resultSet.getObject("date", LocalDateTime.class);
 
             Friendship friendship = new Friendship(date);
             friendship.setId(new Tuple<>(id.getLeft(), id.getRight()));
@@ -53,13 +65,13 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
     @Override
     public List<Friendship> getAll() throws RepositoryException {
         List<Friendship> friendships = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT * from friendship");
              ResultSet resultSet = statement.executeQuery()) {
             while (resultSet.next()) {
                 Integer leftId = resultSet.getInt("id_left");
                 Integer rightId = resultSet.getInt("id_right");
-                LocalDateTime date = LocalDateTime.parse(resultSet.getString("date"));
+                LocalDateTime date = resultSet.getObject("date", LocalDateTime.class);
                 Friendship friendship = new Friendship(date);
                 friendship.setId(new Tuple<>(leftId, rightId));
                 friendships.add(friendship);
@@ -70,18 +82,204 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
         }
     }
 
+    /**
+     * Gets the friendships of a user, with both users of every friendship set.
+     * Each branch of the query is served by an index (id_left by the primary key, id_right by its own index),
+     * so the cost depends on the number of friends of the user, not on the size of the friendship table.
+     * @param userId Integer
+     * @return List(Friendship)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Friendship> getFriendshipsOfUser(Integer userId) throws RepositoryException {
+        return friendshipsOfUser(userId, null);
+    }
+
+    /**
+     * Gets the friendships of a user made in a month of any year, filtered in the query through the indexes
+     * on the month of the friendships of every user
+     * @param userId Integer
+     * @param month int, from 1 to 12
+     * @return List(Friendship)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    @Override
+    public List<Friendship> getFriendshipsOfUserFromMonth(Integer userId, int month) throws RepositoryException {
+        return friendshipsOfUser(userId, month);
+    }
+
+    /**
+     * Runs the query of getFriendshipsOfUser
+     * @param userId Integer
+     * @param month Integer, only the friendships of this month are kept; null to keep all of them
+     * @return List(Friendship)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    private List<Friendship> friendshipsOfUser(Integer userId, Integer month) throws RepositoryException {
+        String columns =
+                "SELECT f.id_left, f.id_right, f.date,\n" +
+                "       ul.first_name AS left_first_name, ul.last_name AS left_last_name, ul.username AS left_username,\n" +
+                "       ur.first_name AS right_first_name, ur.last_name AS right_last_name, ur.username AS right_username\n" +
+                "FROM friendship f\n" +
+                "INNER JOIN \"user\" ul ON ul.id = f.id_left\n" +
+                "INNER JOIN \"user\" ur ON ur.id = f.id_right\n";
+        String inMonth = month == null ? "" : " AND EXTRACT(MONTH FROM f.date) = ?";
+        String sql = columns + "WHERE f.id_left = ?" + inMonth + "\n" +
+                "UNION ALL\n" +
+                columns + "WHERE f.id_right = ?" + inMonth + ";";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            int parameter = 1;
+            for (int branch = 0; branch < 2; branch++) {
+                statement.setInt(parameter++, userId);
+                if (month != null)
+                    statement.setInt(parameter++, month);
+            }
+
+            List<Friendship> friendships = new ArrayList<>();
+            long stamp = userCache.stamp();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Integer leftId = resultSet.getInt("id_left");
+                    Integer rightId = resultSet.getInt("id_right");
+                    LocalDateTime date = resultSet.getObject("date", LocalDateTime.class);
+
+                    User userLeft = new User(resultSet.getString("left_first_name"),
+                            resultSet.getString("left_last_name"),
+                            resultSet.getString("left_username"));
+                    userLeft.setId(leftId);
+                    User userRight = new User(resultSet.getString("right_first_name"),
+                            resultSet.getString("right_last_name"),
+                            resultSet.getString("right_username"));
+                    userRight.setId(rightId);
+                    userCache.put(leftId, userLeft, stamp);
+                    userCache.put(rightId, userRight, stamp);
+
+                    Friendship friendship = new Friendship(date);
+                    friendship.setId(new Tuple<>(leftId, rightId));
+                    friendship.setUserLeft(userLeft);
+                    friendship.setUserRight(userRight);
+                    friendships.add(friendship);
+                }
+            }
+            return friendships;
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    static final String FRIEND_IDS_SQL =
+            "SELECT id_right AS friend_id FROM friendship WHERE id_left = ?\n" +
+            "UNION ALL\n" +
+            "SELECT id_left FROM friendship WHERE id_right = ?;";
+
+    /**
+     * Gets the ids of the friends of a user, from the adjacency index if it is enabled
+     * @param userId Integer
+     * @return int[]
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public int[] getFriendIds(Integer userId) throws RepositoryException {
+        AdjacencyIndex index = adjacencyIndex;
+        if (index != null)
+            return index.neighbours(userId);
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(FRIEND_IDS_SQL)) {
+
+            statement.setInt(1, userId);
+            statement.setInt(2, userId);
+
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    ids.add(resultSet.getInt(1));
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    /**
+     * Tests if two users are friends, from the adjacency index if it is enabled
+     * @param leftId Integer
+     * @param rightId Integer
+     * @return true, if the users are friends ; false, otherwise
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public boolean areFriends(Integer leftId, Integer rightId) throws RepositoryException {
+        AdjacencyIndex index = adjacencyIndex;
+        if (index != null)
+            return index.containsEdge(leftId, rightId);
+
+        try {
+            find(new Tuple<>(Math.min(leftId, rightId), Math.max(leftId, rightId)));
+            return true;
+        } catch (RepositoryException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads every friendship in an in-memory adjacency index, kept in sync by add and delete.
+     * Afterwards getFriendIds and areFriends no longer query the database.
+     * Only valid while this repository is the only writer of the friendship table.
+     * @return AdjacencyIndex
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public synchronized AdjacencyIndex enableAdjacencyIndex() throws RepositoryException {
+        if (adjacencyIndex != null)
+            return adjacencyIndex;
+
+        AdjacencyIndex index = new AdjacencyIndex();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id_left, id_right from friendship");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next())
+                index.addEdge(resultSet.getInt("id_left"), resultSet.getInt("id_right"));
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+        adjacencyIndex = index;
+        return index;
+    }
+
+    /**
+     * Removes a deleted user from the adjacency index, after its friendships were deleted outside this repository
+     * @param userId Integer
+     */
+    public void forgetUser(Integer userId) {
+        AdjacencyIndex index = adjacencyIndex;
+        if (index != null)
+            index.removeVertex(userId);
+    }
+
+    /**
+     * Gets the adjacency index, if it was enabled
+     * @return AdjacencyIndex or null
+     */
+    public AdjacencyIndex getAdjacencyIndex() {
+        return adjacencyIndex;
+    }
+
     @Override
     public Friendship add(Friendship entity) throws RepositoryException {
         String sql = "insert into friendship (id_left, id_right, date ) values (?, ?, ?)";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, entity.getId().getLeft());
             ps.setInt(2, entity.getId().getRight());
-            ps.setString(3, entity.getDate().toString());
+            ps.setObject(3, entity.getDate());
 
             ps.executeUpdate();
 
+            AdjacencyIndex index = adjacencyIndex;
+            if (index != null)
+                index.addEdge(entity.getId().getLeft(), entity.getId().getRight());
+
             return entity;
 
         } catch (SQLException e) {
@@ -94,7 +292,7 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
     public Friendship delete(Tuple<Integer, Integer> id) throws RepositoryException {
         String sql = "delete from friendship where id_left = ? and id_right = ?";
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, id.getLeft());
@@ -102,6 +300,10 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
             Friendship deleted = find(id);
             ps.executeUpdate();
 
+            AdjacencyIndex index = adjacencyIndex;
+            if (index != null)
+                index.removeEdge(id.getLeft(), id.getRight());
+
             return deleted;
         }
         catch (SQLException throwable) {
@@ -114,10 +316,10 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
         String sql = "update friendship set date = ? where id_left = ? and id_right = ?";
         Friendship updated;
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, entity.getDate().toString());
+            ps.setObject(1, entity.getDate());
             ps.setInt(2, entity.getId().getLeft());
             ps.setInt(3, entity.getId().getRight());
 
@@ -133,7 +335,7 @@ public class FriendshipDataBaseRepository extends DataBaseRepository<Tuple<Integ
 
     @Override
     public Integer size() throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) as count from friendship");
              ResultSet resultSet = statement.executeQuery()) {
 
@@ -1,17 +1,35 @@
 package application.repository.database;
 
+import application.domain.InboxEntry;
 import application.domain.Message;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
+import application.domain.Tuple;
 import application.domain.User;
 import application.exceptions.RepositoryException;
+import application.repository.MessageRepository;
+import application.repository.cache.BoundedCache;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
-public class MessageDataBaseRepository extends DataBaseRepository<Integer, Message> {
+import static application.utils.DatabaseConstants.CONVERSATION_SIZE_CACHE_MAX_SIZE;
+import static application.utils.DatabaseConstants.CONVERSATION_SIZE_CACHE_TTL_MILLIS;
+import static application.utils.DatabaseConstants.MESSAGE_CHANNEL;
+import static application.utils.DatabaseConstants.REPLY_CACHE_MAX_SIZE;
+import static application.utils.DatabaseConstants.REPLY_CACHE_TTL_MILLIS;
+import static application.utils.DatabaseConstants.THREAD_MAX_DEPTH;
+import static application.utils.DatabaseConstants.THREAD_MAX_MESSAGES;
+
+public class MessageDataBaseRepository extends DataBaseRepository<Integer, Message> implements MessageRepository {
     int pageSize = 10;
+    // number of messages of every conversation, keyed by the ids of its users in ascending order
+    private final BoundedCache<Tuple<Integer, Integer>, Integer> conversationSizes =
+            new BoundedCache<>(CONVERSATION_SIZE_CACHE_MAX_SIZE, CONVERSATION_SIZE_CACHE_TTL_MILLIS);
+    // messages replied to, shared by the messages replying to them across pages
+    private final BoundedCache<Integer, Message> replies =
+            new BoundedCache<>(REPLY_CACHE_MAX_SIZE, REPLY_CACHE_TTL_MILLIS);
     /**
      * Constructor
      * @param url      of database
@@ -22,75 +40,193 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
         super(url, username, password);
     }
 
-    private User findUser(Integer id) throws RepositoryException {
-
-        String sql = "SELECT first_name,last_name,username from \"user\" where id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sql)
-        ) {
-
-            statement.setInt(1, id);
-            ResultSet resultSet = statement.executeQuery();
-
-            resultSet.next();
-
-            String firstName = resultSet.getString("first_name");
-            String lastName = resultSet.getString("last_name");
-            String userName = resultSet.getString("username");
-            User user = new User(firstName, lastName,userName);
-            user.setId(id);
-
-            resultSet.close();
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public MessageDataBaseRepository(ConnectionPool pool) {
+        super(pool);
+    }
 
-            return user;
-        } catch (SQLException throwable) {
-            throw new RepositoryException("Nonexistent user!\n");
+    /**
+     * Row of the message table, before its users and the message it replies to are resolved
+     */
+    private static final class MessageRow {
+        private final int id;
+        private final int fromId;
+        private final LocalDateTime date;
+        private final String text;
+        private final int replyOfId; // 0 if the message is not a reply
+
+        private MessageRow(ResultSet resultSet) throws SQLException {
+            this.id = resultSet.getInt("id");
+            this.fromId = resultSet.getInt("from");
+            this.date = resultSet.getObject("date", LocalDateTime.class);
+            this.text = resultSet.getString("text");
+            this.replyOfId = resultSet.getInt("reply_of");
         }
     }
 
-    @Override
-    public Message find(Integer id) throws RepositoryException {
-
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement messageStatement = connection.prepareStatement(
-                     "SELECT * from message where id = ? ");
-             PreparedStatement sendToStatement = connection.prepareStatement(
-                     "SELECT user_id from send_to where message_id = ? ")) {
+    private static List<MessageRow> readRows(PreparedStatement statement) throws SQLException {
+        List<MessageRow> rows = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next())
+                rows.add(new MessageRow(resultSet));
+        }
+        return rows;
+    }
 
+    /**
+     * Loads the messages replied to by a batch of messages, all of them with the same queries, the first time
+     * one of them is needed; the loaded messages are shared through the reply cache
+     */
+    private final class ReplyBatch implements Message.ReplyLoader {
+        private final Set<Integer> ids; // the messages replied to
+        private Map<Integer, Message> loaded; // guarded by this, null until loaded
 
-            //get fields from message table
-            messageStatement.setInt(1, id);
-            ResultSet messageResultSet = messageStatement.executeQuery();
+        private ReplyBatch(Set<Integer> ids) {
+            this.ids = ids;
+        }
 
-            messageResultSet.next();
+        @Override
+        public synchronized Message load(int id) throws RepositoryException {
+            if (loaded == null) {
+                Map<Integer, Message> messages = new HashMap<>(replies.getAllPresent(ids));
+                Set<Integer> missing = new HashSet<>(ids);
+                missing.removeAll(messages.keySet());
+                if (!missing.isEmpty()) {
+                    long stamp = replies.stamp();
+                    try (Connection connection = getConnection();
+                         PreparedStatement statement = connection.prepareStatement(
+                                 "SELECT id, \"from\", date, text, reply_of FROM message WHERE id = ANY(?)")) {
+
+                        statement.setArray(1, toIntArray(connection, missing));
+                        for (Message message : hydrate(connection, readRows(statement)).values()) {
+                            messages.put(message.getId(), message);
+                            replies.put(message.getId(), message, stamp);
+                        }
+                    } catch (SQLException throwable) {
+                        throw new RepositoryException(throwable.getMessage());
+                    }
+                }
+                loaded = messages;
+            }
+            Message message = loaded.get(id);
+            if (message == null)
+                throw new RepositoryException("Nonexistent message!\n");
+            return message;
+        }
+    }
 
-            Integer fromId = messageResultSet.getInt("from");
-            User from = findUser(fromId);
-            LocalDateTime date = LocalDateTime.parse(messageResultSet.getString("date"));
-            String text = messageResultSet.getString("text");
+    /**
+     * Links the messages of a batch to the messages they reply to: directly if those are part of the batch,
+     * otherwise through a ReplyBatch loading all the others together when one is first needed
+     * @param messages Map(Integer, Message), the batch by id
+     * @param replyOfIds Map(Integer, Integer), the message replied to by every reply of the batch
+     */
+    private void linkReplies(Map<Integer, Message> messages, Map<Integer, Integer> replyOfIds) {
+        Map<Integer, Integer> outside = new HashMap<>();
+        replyOfIds.forEach((id, replyOfId) -> {
+            Message replyOf = messages.get(replyOfId);
+            if (replyOf != null)
+                messages.get(id).setReplyOf(replyOf);
+            else
+                outside.put(id, replyOfId);
+        });
+        if (outside.isEmpty())
+            return;
+        ReplyBatch batch = new ReplyBatch(new HashSet<>(outside.values()));
+        outside.forEach((id, replyOfId) -> messages.get(id).setReplyOf(replyOfId, batch));
+    }
 
-            //get fields from send_to table
+    static final String RECIPIENTS_SQL = "SELECT message_id, user_id from send_to where message_id = ANY(?)";
 
-            sendToStatement.setInt(1, id);
-            ResultSet sendToResultSet = sendToStatement.executeQuery();
+    /**
+     * Builds the messages of the given rows with a fixed number of queries: one for the recipients and one for
+     * the users. The messages replied to that are missing from the rows are only loaded when needed.
+     * Every user and message is created once and shared by all the messages that reference it.
+     * @param connection Connection
+     * @param rows List(MessageRow)
+     * @return Map(Integer, Message), in the order of the rows
+     * @throws SQLException if the database cannot be reached
+     */
+    private Map<Integer, Message> hydrate(Connection connection, List<MessageRow> rows) throws SQLException {
+        Map<Integer, MessageRow> rowsById = new LinkedHashMap<>();
+        rows.forEach(row -> rowsById.put(row.id, row));
+
+        Map<Integer, List<Integer>> recipientIds = new HashMap<>();
+        Set<Integer> userIds = new HashSet<>();
+        if (!rowsById.isEmpty()) {
+            try (PreparedStatement sendToStatement = connection.prepareStatement(RECIPIENTS_SQL)) {
+                sendToStatement.setArray(1, toIntArray(connection, rowsById.keySet()));
+                try (ResultSet resultSet = sendToStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        int userId = resultSet.getInt("user_id");
+                        recipientIds.computeIfAbsent(resultSet.getInt("message_id"), id -> new ArrayList<>()).add(userId);
+                        userIds.add(userId);
+                    }
+                }
+            }
+        }
+        rowsById.values().forEach(row -> userIds.add(row.fromId));
+
+        //identity map of users, seeded from the shared user cache
+        Map<Integer, User> users = new HashMap<>(userCache.getAllPresent(userIds));
+        userIds.removeAll(users.keySet());
+        if (!userIds.isEmpty()) {
+            try (PreparedStatement userStatement = connection.prepareStatement(
+                    "SELECT id,first_name,last_name,username from \"user\" where id = ANY(?)")) {
+                userStatement.setArray(1, toIntArray(connection, userIds));
+                long stamp = userCache.stamp();
+                try (ResultSet resultSet = userStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        User user = new User(
+                                resultSet.getString("first_name"),
+                                resultSet.getString("last_name"),
+                                resultSet.getString("username"));
+                        user.setId(resultSet.getInt("id"));
+                        users.put(user.getId(), user);
+                        userCache.put(user.getId(), user, stamp);
+                    }
+                }
+            }
+        }
 
+        //identity map of messages
+        Map<Integer, Message> messages = new LinkedHashMap<>();
+        for (MessageRow row : rowsById.values()) {
             List<User> to = new ArrayList<>();
-            while (sendToResultSet.next()) {
+            for (Integer userId : recipientIds.getOrDefault(row.id, Collections.emptyList()))
+                to.add(users.get(userId));
 
-                Integer userId = sendToResultSet.getInt(1);
-                User toUser = findUser(userId);
-                to.add(toUser);
-            }
-            sendToResultSet.close();
-            //create Message object
-            Message message = new Message(from, to, text, date);
-            message.setId(id);
-            //set replyOf field if necessary
-            int replyOfId = messageResultSet.getInt("reply_of");
-            if (replyOfId != 0)
-                message.setReplyOf(find(replyOfId));
+            Message message = new Message(users.get(row.fromId), to, row.text, row.date);
+            message.setId(row.id);
+            messages.put(row.id, message);
+        }
+        Map<Integer, Integer> replyOfIds = new HashMap<>();
+        for (MessageRow row : rowsById.values())
+            if (row.replyOfId != 0)
+                replyOfIds.put(row.id, row.replyOfId);
+        linkReplies(messages, replyOfIds);
 
+        return messages;
+    }
+
+    private Message find(Connection connection, Integer id) throws RepositoryException, SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, \"from\", date, text, reply_of FROM message WHERE id = ?")) {
+            statement.setInt(1, id);
+            Message message = hydrate(connection, readRows(statement)).get(id);
+            if (message == null)
+                throw new RepositoryException("Nonexistent message!\n");
             return message;
+        }
+    }
+
+    @Override
+    public Message find(Integer id) throws RepositoryException {
+        try (Connection connection = getConnection()) {
+            return find(connection, id);
         } catch (SQLException throwable) {
             throw new RepositoryException("Nonexistent message!\n");
         }
@@ -99,101 +235,151 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
     @Override
     public List<Message> getAll() throws RepositoryException {
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement messageStatement = connection.prepareStatement(
-                     "SELECT * from message")
+                     "SELECT id, \"from\", date, text, reply_of from message")
         ) {
-
-
-            ResultSet messageResultSet = messageStatement.executeQuery();
-            List<Message> messageList = new ArrayList<>();
-
-            while (messageResultSet.next()) {
-                //get fields from message table
-
-                int id = messageResultSet.getInt("id");
-                Integer fromId = messageResultSet.getInt("from");
-                User from = findUser(fromId);
-                LocalDateTime date = LocalDateTime.parse(messageResultSet.getString("date"));
-                String text = messageResultSet.getString("text");
-
-                //get fields from send_to table
-
-                PreparedStatement sendToStatement = connection.prepareStatement(
-                        "SELECT user_id from send_to where message_id = ? ");
-                sendToStatement.setInt(1, id);
-                ResultSet sendToResultSet = sendToStatement.executeQuery();
-
-                List<User> to = new ArrayList<>();
-                while (sendToResultSet.next()) {
-
-                    Integer userId = sendToResultSet.getInt(1);
-                    User toUser = findUser(userId);
-                    to.add(toUser);
-                }
-                sendToResultSet.close();
-
-                Message message = new Message(from, to, text, date);
-                message.setId(id);
-
-                int replyOfId = messageResultSet.getInt("reply_of");
-                if (replyOfId != 0)
-                    message.setReplyOf(find(replyOfId));
-
-                messageList.add(message);
-            }
-
-            return messageList;
+            List<MessageRow> rows = readRows(messageStatement);
+            return new ArrayList<>(hydrate(connection, rows).values());
         } catch (SQLException throwable) {
             throw new RepositoryException("Error database extraction!\n");
         }
     }
 
+    private static List<Integer> recipientIds(Message message) {
+        List<Integer> ids = new ArrayList<>(message.getTo().size());
+        for (User user : message.getTo())
+            ids.add(user.getId());
+        return ids;
+    }
+
+    /**
+     * Upsert clause of an inbox row: the message becomes the last one of the conversation if it is newer
+     * @param unread String, the new unread count
+     * @return String
+     */
+    private static String inboxConflict(String unread) {
+        String newer = "(inbox.last_date, inbox.last_message_id) < (excluded.last_date, excluded.last_message_id)";
+        return "    ON CONFLICT (user_id, friend_id) DO UPDATE SET\n" +
+                "        last_message_id = CASE WHEN " + newer + " THEN excluded.last_message_id ELSE inbox.last_message_id END,\n" +
+                "        last_date = CASE WHEN " + newer + " THEN excluded.last_date ELSE inbox.last_date END,\n" +
+                "        unread = " + unread + "\n";
+    }
+
+    /**
+     * Adds a message and all of its recipients with a single statement, so the message is stored atomically
+     * and in one round trip whatever the number of recipients. The same statement moves the conversations
+     * of the message to the top of the inboxes of its users, counts it as unread for the recipients, and
+     * publishes it on MESSAGE_CHANNEL as "id|from", delivered to the listeners when the message is committed.
+     * The recipients are left out of the notification: a payload is limited to 8000 bytes, and a message
+     * to many users would make the whole statement fail. The listeners look them up with getRecipientsAmong.
+     * @param message Message
+     * @return Message, with its generated id
+     * @throws RepositoryException if the message cannot be stored
+     */
     @Override
     public Message add(Message message) throws RepositoryException {
-
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement messageStatement = connection.prepareStatement(
-                     "insert into message (id, \"from\", date, text, reply_of) values (?, ?, ?, ?, ?)");
-             PreparedStatement nextIdStatement = connection.prepareStatement(
-                     "SELECT nextval('message_id_seq');")
+        String sql =
+                "WITH inserted AS (\n" +
+                "    INSERT INTO message (\"from\", date, text, reply_of) VALUES (?, ?, ?, ?)\n" +
+                "    RETURNING id, \"from\", date\n" +
+                "), recipient AS (\n" +
+                "    SELECT DISTINCT unnest(?::integer[]) AS id\n" +
+                "), recipients AS (\n" +
+                "    INSERT INTO send_to (message_id, user_id)\n" +
+                "    SELECT inserted.id, recipient.id FROM inserted, recipient\n" +
+                "), sender_inbox AS (\n" +
+                "    INSERT INTO inbox (user_id, friend_id, last_message_id, last_date, unread)\n" +
+                "    SELECT inserted.\"from\", recipient.id, inserted.id, inserted.date, 0 FROM inserted, recipient\n" +
+                inboxConflict("inbox.unread") +
+                "), recipient_inbox AS (\n" +
+                "    INSERT INTO inbox (user_id, friend_id, last_message_id, last_date, unread)\n" +
+                "    SELECT recipient.id, inserted.\"from\", inserted.id, inserted.date, 1 FROM inserted, recipient\n" +
+                "    WHERE recipient.id <> inserted.\"from\"\n" +
+                inboxConflict("inbox.unread + 1") +
+                ")\n" +
+                "SELECT id, pg_notify(?, id || '|' || \"from\") FROM inserted;";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)
         ) {
-            //get the next id
-            ResultSet messageResultSet = nextIdStatement.executeQuery();
-            messageResultSet.next();
-            int messageId = messageResultSet.getInt("nextval");
-            //insert into message table
-            messageStatement.setInt(1, messageId);
-            messageStatement.setInt(2, message.getFrom().getId());
-            messageStatement.setString(3, message.getDate().toString());
-            messageStatement.setString(4, message.getText());
-            if (message.getReplyOf().isPresent())
-                messageStatement.setInt(5, message.getReplyOf().get().getId());
+            statement.setInt(1, message.getFrom().getId());
+            statement.setObject(2, message.getDate());
+            statement.setString(3, message.getText());
+            if (message.getReplyOfId() != 0)
+                statement.setInt(4, message.getReplyOfId());
             else
-                messageStatement.setNull(5, Types.INTEGER);
-
-            messageStatement.executeUpdate();
+                statement.setNull(4, Types.INTEGER);
+            statement.setArray(5, toIntArray(connection, recipientIds(message)));
+            statement.setString(6, MESSAGE_CHANNEL);
 
-            //insert into send_to table
-            for (User user : message.getTo()) {
-                PreparedStatement sendToStatement = connection.prepareStatement(
-                        "insert into send_to (message_id, user_id) values (?, ?)");
-                sendToStatement.setInt(1, messageId);
-                sendToStatement.setInt(2, user.getId());
-                sendToStatement.executeUpdate();
-                sendToStatement.close();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                message.setId(resultSet.getInt("id"));
             }
-            message.setId(messageId);
+            invalidateConversationSizes(message);
             return message;
         } catch (SQLException e) {
             throw new RepositoryException("The message already exists!\n");
         }
     }
 
+    /**
+     * Finds the last message of the conversations between the sender of a message and each of its recipients
+     * again, in both inboxes, and counts their unread messages again from the read cursors, the way markRead does;
+     * a conversation left without messages leaves the inboxes
+     * @param connection Connection, in the transaction that changed the message
+     * @param message Message
+     * @throws SQLException if the database cannot be reached
+     */
+    private void refreshInbox(Connection connection, Message message) throws SQLException {
+        String latest =
+                "        (SELECT m.id, m.date FROM message m\n" +
+                "         WHERE m.\"from\" = %s\n" +
+                "           AND EXISTS (SELECT 1 FROM send_to st WHERE st.message_id = m.id AND st.user_id = %s)\n" +
+                "         ORDER BY m.date DESC, m.id DESC LIMIT 1)\n";
+        String sql =
+                "WITH pair AS (\n" +
+                "    SELECT ? AS user_id, friend_id FROM unnest(?::integer[]) friend_id\n" +
+                "    UNION\n" +
+                "    SELECT friend_id, ? FROM unnest(?::integer[]) friend_id\n" +
+                "), latest AS (\n" +
+                "    SELECT pair.user_id, pair.friend_id, last.id, last.date, (\n" +
+                "        SELECT COUNT(*) FROM message m\n" +
+                "        WHERE m.\"from\" = pair.friend_id\n" +
+                "          AND (rc.message_id IS NULL OR (m.date, m.id) > (rc.date, rc.message_id))\n" +
+                "          AND EXISTS (SELECT 1 FROM send_to st WHERE st.message_id = m.id AND st.user_id = pair.user_id)\n" +
+                "    ) AS unread FROM pair\n" +
+                "    LEFT JOIN read_cursor rc ON rc.user_id = pair.user_id AND rc.friend_id = pair.friend_id\n" +
+                "    LEFT JOIN LATERAL (\n" +
+                String.format(latest, "pair.user_id", "pair.friend_id") +
+                "        UNION ALL\n" +
+                String.format(latest, "pair.friend_id", "pair.user_id") +
+                "        ORDER BY date DESC, id DESC LIMIT 1\n" +
+                "    ) last ON true\n" +
+                "), removed AS (\n" +
+                "    DELETE FROM inbox USING latest\n" +
+                "    WHERE inbox.user_id = latest.user_id AND inbox.friend_id = latest.friend_id AND latest.id IS NULL\n" +
+                ")\n" +
+                "INSERT INTO inbox (user_id, friend_id, last_message_id, last_date, unread)\n" +
+                "SELECT user_id, friend_id, id, date, unread FROM latest WHERE id IS NOT NULL\n" +
+                "ON CONFLICT (user_id, friend_id) DO UPDATE SET last_message_id = excluded.last_message_id, last_date = excluded.last_date,\n" +
+                "    unread = excluded.unread;";
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array recipients = toIntArray(connection, recipientIds(message));
+            statement.setInt(1, message.getFrom().getId());
+            statement.setArray(2, recipients);
+            statement.setInt(3, message.getFrom().getId());
+            statement.setArray(4, recipients);
+            statement.executeUpdate();
+        }
+    }
+
     @Override
     public Message delete(Integer id) throws RepositoryException {
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement messageStatement = connection.prepareStatement(
                      "delete from message where id = ?");
              PreparedStatement sendToStatement = connection.prepareStatement(
@@ -202,7 +388,10 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
                      "update message set reply_of = NULL where reply_of = ?")
         ) {
 
-            Message deleted = find(id);
+            Message deleted = find(connection, id);
+
+            // closing the connection without a commit rolls the transaction back
+            connection.setAutoCommit(false);
 
             //update reply_to column in message table
             updateReplyToStatement.setInt(1, id);
@@ -216,6 +405,13 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
             messageStatement.setInt(1, id);
             messageStatement.executeUpdate();
 
+            refreshInbox(connection, deleted);
+
+            connection.commit();
+
+            invalidateConversationSizes(deleted);
+            replies.invalidate(id);
+            replies.invalidateIf(reply -> reply.getReplyOfId() == id);
             return deleted;
 
         } catch (SQLException throwable) {
@@ -223,37 +419,49 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
         }
     }
 
+    /**
+     * Updates the text and the recipients of a message in one transaction
+     * @param message Message
+     * @return Message, as it was before the update
+     * @throws RepositoryException if the message doesn't exist
+     */
     @Override
     public Message update(Message message) throws RepositoryException {
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement updateMessageStatement = connection.prepareStatement(
                      "update message set text = ? where id = ?");
              PreparedStatement deleteSendToStatement = connection.prepareStatement(
-                     "delete from send_to where message_id = ?")
+                     "delete from send_to where message_id = ?");
+             PreparedStatement insertSendToStatement = connection.prepareStatement(
+                     "insert into send_to (message_id, user_id) select ?, recipient from (select distinct unnest(?::integer[]) as recipient) recipients")
         ) {
 
-            Message updated = find(message.getId());
+            Message updated = find(connection, message.getId());
+
+            // closing the connection without a commit rolls the transaction back
+            connection.setAutoCommit(false);
 
             //update text
             updateMessageStatement.setString(1, message.getText());
             updateMessageStatement.setInt(2, message.getId());
             updateMessageStatement.executeUpdate();
 
-            //delete from send_to table
+            //replace the recipients
             deleteSendToStatement.setInt(1, message.getId());
             deleteSendToStatement.executeUpdate();
+            insertSendToStatement.setInt(1, message.getId());
+            insertSendToStatement.setArray(2, toIntArray(connection, recipientIds(message)));
+            insertSendToStatement.executeUpdate();
 
-            //add to send_to table
-            for (User user : message.getTo()) {
-                PreparedStatement insertSendToStatement = connection.prepareStatement(
-                        "insert into send_to (message_id, user_id) values (?, ?)");
-                insertSendToStatement.setInt(1, message.getId());
-                insertSendToStatement.setInt(2, user.getId());
-                insertSendToStatement.executeUpdate();
-                insertSendToStatement.close();
-            }
+            refreshInbox(connection, updated);
+            refreshInbox(connection, message);
+
+            connection.commit();
 
+            invalidateConversationSizes(updated);
+            invalidateConversationSizes(message);
+            replies.invalidate(message.getId());
             return updated;
 
         } catch (SQLException throwable) {
@@ -263,7 +471,7 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
 
     @Override
     public Integer size() throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) as count from message");
              ResultSet resultSet = statement.executeQuery()) {
 
@@ -282,33 +490,109 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
 
     @Override
     public Integer getNumberOfPages(User user1, User user2) throws RepositoryException {
-        String sql =
-                "SELECT COUNT(*) AS COUNT FROM message m\n" +
-                        "INNER JOIN send_to st ON m.id = st.message_id\n" +
-                        "INNER JOIN \"user\" u ON u.id = st.user_id\n" +
-                        "WHERE (u.id = ? AND m.from = ?) OR (m.from = ? AND u.id = ?);";
+        int messages = countConversation(user1, user2);
+        if (messages <= pageSize)
+            return 1;
+        return (messages + pageSize - 1) / pageSize;
+    }
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sql)) {
+    static final String CONVERSATION_SIZE_SQL =
+            "SELECT (SELECT COUNT(*) FROM message m WHERE m.\"from\" = ?\n" +
+            "          AND EXISTS (SELECT 1 FROM send_to st WHERE st.message_id = m.id AND st.user_id = ?))\n" +
+            "     + (SELECT COUNT(*) FROM message m WHERE m.\"from\" = ?\n" +
+            "          AND EXISTS (SELECT 1 FROM send_to st WHERE st.message_id = m.id AND st.user_id = ?));";
 
-            statement.setInt(1, user1.getId());
-            statement.setInt(2, user2.getId());
-            statement.setInt(3, user1.getId());
-            statement.setInt(4, user2.getId());
+    /**
+     * Counts the messages of a conversation; counts are cached until a message of the conversation changes
+     * @param user1 User
+     * @param user2 User
+     * @return int
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public int countConversation(User user1, User user2) throws RepositoryException {
+        return conversationSizes.get(conversationKey(user1.getId(), user2.getId()), key -> {
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(CONVERSATION_SIZE_SQL)) {
+
+                statement.setInt(1, user1.getId());
+                statement.setInt(2, user2.getId());
+                statement.setInt(3, user2.getId());
+                statement.setInt(4, user1.getId());
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getInt(1);
+                }
+            } catch (SQLException e) {
+                throw new RepositoryException(e.getMessage());
+            }
+        });
+    }
 
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-            int pages = resultSet.getInt(1);
-            int mod = pages % pageSize;
-            if (pages/pageSize==0) return 1;
-            if (mod == 0)
-                return pages / pageSize;
-            else
-                return pages / pageSize + 1;
+    private static Tuple<Integer, Integer> conversationKey(Integer id1, Integer id2) {
+        return new Tuple<>(Math.min(id1, id2), Math.max(id1, id2));
+    }
 
-        } catch (SQLException e) {
-            throw new RepositoryException(e.getMessage());
+    private void invalidateConversationSizes(Message message) {
+        for (User user : message.getTo())
+            conversationSizes.invalidate(conversationKey(message.getFrom().getId(), user.getId()));
+    }
+
+    /**
+     * Forgets the cached message counts of every conversation, after messages were changed outside this repository
+     */
+    public void invalidateConversationSizes() {
+        conversationSizes.invalidateAll();
+    }
+
+    /**
+     * The messages of the user were deleted with the user, in the same database; only the cached counts
+     * and messages replied to are stale
+     * @param userId Integer
+     */
+    public void forgetUser(Integer userId) {
+        invalidateConversationSizes();
+        replies.invalidateAll();
+    }
+
+    /**
+     * Builds the messages of a conversation from rows ordered by date; replies to messages outside the rows
+     * load them when needed
+     * @param resultSet ResultSet
+     * @param user1 User
+     * @param user2 User
+     * @return List(Message)
+     * @throws SQLException if the rows cannot be read
+     */
+    private List<Message> readConversation(ResultSet resultSet, User user1, User user2) throws SQLException {
+        List<Message> messageList = new ArrayList<>();
+        Map<Integer, Message> messagesById = new HashMap<>();
+        Map<Integer, Integer> replyOfIds = new HashMap<>();
+
+        while (resultSet.next()) {
+            User from, to;
+            if (resultSet.getInt("from_id") == user1.getId()) {
+                from = user1;
+                to = user2;
+            } else {
+                from = user2;
+                to = user1;
+            }
+            int messageId = resultSet.getInt("message_id");
+            String text = resultSet.getString("text");
+            LocalDateTime date = resultSet.getObject("date", LocalDateTime.class);
+            int replyOfId = resultSet.getInt("reply_of");
+
+            Message message = new Message(from, List.of(to), text, date);
+            message.setId(messageId);
+            if (replyOfId != 0)
+                replyOfIds.put(messageId, replyOfId);
+
+            messagesById.put(messageId, message);
+            messageList.add(message);
         }
+        linkReplies(messagesById, replyOfIds);
+        return messageList;
     }
 
     @Override
@@ -322,7 +606,7 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
                         "WHERE (u.id = ? AND m.from = ?) OR (m.from = ? AND u.id = ?)\n" +
                         "ORDER BY m.date\n" +
                         "LIMIT ? OFFSET ?;";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
 
             statement.setInt(1, user1.getId());
@@ -332,41 +616,331 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
             statement.setInt(5, pageSize);
             statement.setInt(6, pageSize * (pageNumber - 1));
 
-            ResultSet resultSet = statement.executeQuery();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return readConversation(resultSet, user1, user2);
+            }
+        } catch (SQLException throwables) {
+            throw new RepositoryException(throwables.getMessage());
+        }
+    }
+
+    /**
+     * Builds a query over the messages one user sent to the other, which a (from, date, id) index on message
+     * can serve in order, stopping after the first rows
+     * @param comparison String, compares (date, id) with the cursor, or is empty for no cursor
+     * @param direction String, ASC or DESC
+     * @return String
+     */
+    private static String conversationBranch(String comparison, String direction) {
+        return "(SELECT m.\"from\" AS from_id, m.id AS message_id, m.text, m.date, m.reply_of\n" +
+                " FROM message m\n" +
+                " WHERE m.\"from\" = ?" + (comparison.isEmpty() ? "" : " AND (m.date, m.id) " + comparison + " (?, ?)") + "\n" +
+                "   AND EXISTS (SELECT 1 FROM send_to st WHERE st.message_id = m.id AND st.user_id = ?)\n" +
+                " ORDER BY m.date " + direction + ", m.id " + direction + "\n" +
+                " LIMIT ?)\n";
+    }
 
-            List<Message> messageList = new ArrayList<>();
+    /**
+     * Builds the query of a slice of a conversation: the messages each user sent to the other, merged
+     * @param withCursor boolean, true if the slice starts at a cursor, bound after the sender of each branch
+     * @param before boolean, true for the messages before the cursor, newest first
+     * @return String
+     */
+    static String conversationSliceSql(boolean withCursor, boolean before) {
+        String comparison = withCursor ? (before ? "<" : ">") : "";
+        String direction = before ? "DESC" : "ASC";
+        return conversationBranch(comparison, direction) +
+                "UNION ALL\n" +
+                conversationBranch(comparison, direction) +
+                "ORDER BY date " + direction + ", message_id " + direction + "\n" +
+                "LIMIT ?;";
+    }
 
-            while (resultSet.next()) {
-                User from, to;
-                if (resultSet.getInt("from_id") == user1.getId()) {
-                    from = user1;
-                    to = user2;
-                } else {
-                    from = user2;
-                    to = user1;
+    private List<Message> getConversationSlice(User user1, User user2, MessageCursor cursor, int limit, boolean before)
+            throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(conversationSliceSql(cursor != null, before))) {
+
+            int parameter = 1;
+            for (User[] pair : new User[][]{{user1, user2}, {user2, user1}}) {
+                statement.setInt(parameter++, pair[0].getId());
+                if (cursor != null) {
+                    statement.setObject(parameter++, cursor.getDate());
+                    statement.setInt(parameter++, cursor.getId());
                 }
-                int messageId = resultSet.getInt("message_id");
-                String text = resultSet.getString("text");
-                LocalDateTime date = LocalDateTime.parse(resultSet.getString("date"));
-                Integer replyOfId = resultSet.getInt("reply_of");
-                Optional<Message> replyOf = messageList
-                        .stream()
-                        .filter(msg -> msg.getId().equals(replyOfId))
-                        .findFirst();
-
-                Message message = new Message(from, List.of(to), text, date);
-                message.setId(messageId);
-                if (replyOf.isPresent())
-                    message.setReplyOf(replyOf.get());
-
-                messageList.add(message);
+                statement.setInt(parameter++, pair[1].getId());
+                statement.setInt(parameter++, limit);
+            }
+            statement.setInt(parameter, limit);
+
+            List<Message> messages;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                messages = readConversation(resultSet, user1, user2);
+            }
+            if (before)
+                Collections.reverse(messages);
+            return messages;
+        } catch (SQLException throwables) {
+            throw new RepositoryException(throwables.getMessage());
+        }
+    }
+
+    /**
+     * Gets the messages of a conversation sent right before a position, oldest first.
+     * The cost does not depend on how far the position is from the end of the conversation.
+     * @param user1 User
+     * @param user2 User
+     * @param before MessageCursor, or null for the newest messages
+     * @param limit int
+     * @return List(Message)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Message> getConversationBefore(User user1, User user2, MessageCursor before, int limit) throws RepositoryException {
+        return getConversationSlice(user1, user2, before, limit, true);
+    }
+
+    /**
+     * Gets the messages of a conversation sent right after a position, oldest first
+     * @param user1 User
+     * @param user2 User
+     * @param after MessageCursor, or null for the oldest messages
+     * @param limit int
+     * @return List(Message)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Message> getConversationAfter(User user1, User user2, MessageCursor after, int limit) throws RepositoryException {
+        return getConversationSlice(user1, user2, after, limit, false);
+    }
+
+    static final String INBOX_SQL =
+            "SELECT i.friend_id, i.unread, m.id, m.\"from\", m.text, m.date\n" +
+            "FROM inbox i\n" +
+            "INNER JOIN message m ON m.id = i.last_message_id\n" +
+            "WHERE i.user_id = ?\n" +
+            "ORDER BY i.last_date DESC, i.last_message_id DESC;";
+
+    /**
+     * Gets the conversations of a user with their last message and unread count, the most recent first,
+     * read from the inbox table in one index scan
+     * @param userId Integer
+     * @return List(InboxEntry)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    @Override
+    public List<InboxEntry> getInbox(Integer userId) throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(INBOX_SQL)) {
+
+            statement.setInt(1, userId);
+
+            List<InboxEntry> inbox = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    inbox.add(new InboxEntry(
+                            resultSet.getInt("friend_id"),
+                            resultSet.getInt("id"),
+                            resultSet.getInt("from"),
+                            resultSet.getString("text"),
+                            resultSet.getObject("date", LocalDateTime.class),
+                            resultSet.getInt("unread")));
             }
-            return messageList;
+            return inbox;
+        } catch (SQLException throwables) {
+            throw new RepositoryException(throwables.getMessage());
+        }
+    }
+
+    /**
+     * Moves read cursors forward with a single statement, then counts again the unread messages of the inbox
+     * rows whose cursor moved, from the messages after the cursor
+     * @param cursors List(ReadCursor), only the newest one of a reader and conversation is kept
+     * @throws RepositoryException if the database cannot be reached
+     */
+    @Override
+    public void markRead(List<ReadCursor> cursors) throws RepositoryException {
+        if (cursors.isEmpty())
+            return;
+        String sql =
+                "WITH cursor AS (\n" +
+                "    SELECT DISTINCT ON (c.user_id, c.friend_id) c.user_id, c.friend_id, c.date, c.message_id\n" +
+                "    FROM unnest(?::integer[], ?::integer[], ?::timestamp[], ?::integer[]) AS c(user_id, friend_id, date, message_id)\n" +
+                "    ORDER BY c.user_id, c.friend_id, c.date DESC, c.message_id DESC\n" +
+                "), moved AS (\n" +
+                "    INSERT INTO read_cursor (user_id, friend_id, date, message_id)\n" +
+                "    SELECT user_id, friend_id, date, message_id FROM cursor\n" +
+                "    ON CONFLICT (user_id, friend_id) DO UPDATE SET date = excluded.date, message_id = excluded.message_id\n" +
+                "        WHERE (read_cursor.date, read_cursor.message_id) < (excluded.date, excluded.message_id)\n" +
+                "    RETURNING user_id, friend_id, date, message_id\n" +
+                ")\n" +
+                "UPDATE inbox SET unread = (\n" +
+                "    SELECT COUNT(*) FROM message m\n" +
+                "    WHERE m.\"from\" = moved.friend_id AND (m.date, m.id) > (moved.date, moved.message_id)\n" +
+                "      AND EXISTS (SELECT 1 FROM send_to st WHERE st.message_id = m.id AND st.user_id = moved.user_id))\n" +
+                "FROM moved\n" +
+                "WHERE inbox.user_id = moved.user_id AND inbox.friend_id = moved.friend_id;";
+
+        List<Integer> userIds = new ArrayList<>(cursors.size());
+        List<Integer> friendIds = new ArrayList<>(cursors.size());
+        List<Timestamp> dates = new ArrayList<>(cursors.size());
+        List<Integer> messageIds = new ArrayList<>(cursors.size());
+        for (ReadCursor cursor : cursors) {
+            userIds.add(cursor.getUserId());
+            friendIds.add(cursor.getFriendId());
+            dates.add(Timestamp.valueOf(cursor.getPosition().getDate()));
+            messageIds.add(cursor.getPosition().getId());
+        }
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setArray(1, toIntArray(connection, userIds));
+            statement.setArray(2, toIntArray(connection, friendIds));
+            statement.setArray(3, connection.createArrayOf("timestamp", dates.toArray(new Timestamp[0])));
+            statement.setArray(4, toIntArray(connection, messageIds));
+            statement.executeUpdate();
+        } catch (SQLException throwables) {
+            throw new RepositoryException(throwables.getMessage());
+        }
+    }
+
+    static final String READ_CURSOR_SQL = "SELECT date, message_id FROM read_cursor WHERE user_id = ? AND friend_id = ?";
+
+    @Override
+    public ReadCursor getReadCursor(Integer userId, Integer friendId) throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(READ_CURSOR_SQL)) {
+
+            statement.setInt(1, userId);
+            statement.setInt(2, friendId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next())
+                    return null;
+                return new ReadCursor(userId, friendId, new MessageCursor(
+                        resultSet.getObject("date", LocalDateTime.class), resultSet.getInt("message_id")));
+            }
+        } catch (SQLException throwables) {
+            throw new RepositoryException(throwables.getMessage());
+        }
+    }
+
+    static final String SEARCH_SQL =
+            "WITH own AS (\n" +
+            "    SELECT id FROM message WHERE \"from\" = ?\n" +
+            "    UNION\n" +
+            "    SELECT message_id FROM send_to WHERE user_id = ?\n" +
+            ")\n" +
+            "SELECT m.id, m.\"from\", m.date, m.text, m.reply_of\n" +
+            "FROM own INNER JOIN message m ON m.id = own.id, plainto_tsquery('simple', ?) query\n" +
+            "WHERE m.search @@ query\n" +
+            "ORDER BY ts_rank(m.search, query) DESC, m.date DESC, m.id DESC\n" +
+            "LIMIT ? OFFSET ?;";
+
+    /**
+     * Searches the messages a user sent or received that contain every word of a text; the messages are ranked by
+     * how often the words appear in them, then newest first.
+     * The candidates are the messages of the user, found through the indexes on the sender and the recipients, so
+     * only they are matched and ranked, not the matches of every user of the inverted index of the search column.
+     * @param userId Integer
+     * @param text String, the words to search
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(Message)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    @Override
+    public List<Message> search(Integer userId, String text, int offset, int limit) throws RepositoryException {
+        if (text.isBlank())
+            return new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(SEARCH_SQL)) {
+
+            statement.setInt(1, userId);
+            statement.setInt(2, userId);
+            statement.setString(3, text);
+            statement.setInt(4, limit);
+            statement.setInt(5, offset);
+
+            List<MessageRow> rows = readRows(statement);
+            Map<Integer, Message> messages = hydrate(connection, rows);
+            List<Message> found = new ArrayList<>(rows.size());
+            for (MessageRow row : rows)
+                found.add(messages.get(row.id));
+            return found;
         } catch (SQLException throwables) {
             throw new RepositoryException(throwables.getMessage());
         }
     }
 
+    static final String THREAD_SQL =
+            "WITH RECURSIVE chain AS (\n" +
+            "    SELECT id, reply_of, 0 AS depth, ARRAY[id] AS path FROM message WHERE id = ?\n" +
+            "    UNION ALL\n" +
+            "    SELECT m.id, m.reply_of, c.depth + 1, c.path || m.id FROM message m\n" +
+            "    INNER JOIN chain c ON m.id = c.reply_of\n" +
+            "    WHERE c.depth < ? AND m.id <> ALL(c.path)\n" +
+            "), root AS (\n" +
+            "    SELECT id FROM chain ORDER BY depth DESC LIMIT 1\n" +
+            "), thread AS (\n" +
+            "    SELECT m.id, m.\"from\", m.date, m.text, m.reply_of, 0 AS depth, ARRAY[m.id] AS path FROM message m\n" +
+            "    INNER JOIN root ON m.id = root.id\n" +
+            "    UNION ALL\n" +
+            "    SELECT m.id, m.\"from\", m.date, m.text, m.reply_of, t.depth + 1, t.path || m.id FROM message m\n" +
+            "    INNER JOIN thread t ON m.reply_of = t.id\n" +
+            "    WHERE t.depth < ? AND m.id <> ALL(t.path)\n" +
+            ")\n" +
+            // the limit is applied before sorting, so the recursion stops as soon as enough messages are found
+            "SELECT id, \"from\", date, text, reply_of FROM (SELECT * FROM thread LIMIT ?) limited\n" +
+            "ORDER BY date, id;";
+
+    /**
+     * Gets the thread of a message with a single recursive query: it walks up the reply chain to the first
+     * message, through the primary key, then down to every reply, through the index on reply_of.
+     * Both walks stop after THREAD_MAX_DEPTH levels and skip the messages already on their path, so a reply chain
+     * that loops back on itself ends; the walk down is read breadth first and only until THREAD_MAX_MESSAGES
+     * messages are found.
+     * @param messageId Integer
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the message doesn't exist
+     */
+    @Override
+    public List<Message> getThread(Integer messageId) throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(THREAD_SQL)) {
+
+            statement.setInt(1, messageId);
+            statement.setInt(2, THREAD_MAX_DEPTH);
+            statement.setInt(3, THREAD_MAX_DEPTH);
+            statement.setInt(4, THREAD_MAX_MESSAGES);
+            List<MessageRow> rows = readRows(statement);
+            if (rows.isEmpty())
+                throw new RepositoryException("Nonexistent message!\n");
+            return new ArrayList<>(hydrate(connection, rows).values());
+        } catch (SQLException throwables) {
+            throw new RepositoryException(throwables.getMessage());
+        }
+    }
+
+    static final String RECIPIENTS_AMONG_SQL = "SELECT user_id FROM send_to WHERE message_id = ? AND user_id = ANY(?)";
+
+    @Override
+    public List<Integer> getRecipientsAmong(Integer messageId, Collection<Integer> userIds) throws RepositoryException {
+        List<Integer> recipients = new ArrayList<>();
+        if (userIds.isEmpty())
+            return recipients;
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(RECIPIENTS_AMONG_SQL)) {
+            statement.setInt(1, messageId);
+            statement.setArray(2, toIntArray(connection, userIds));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    recipients.add(resultSet.getInt("user_id"));
+            }
+            return recipients;
+        } catch (SQLException throwable) {
+            throw new RepositoryException("Error database extraction!\n");
+        }
+    }
+
     /**
      * Gets a conversation between two users
      * @param user1 User
@@ -384,7 +958,7 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
                 "INNER JOIN \"user\" u ON u.id = st.user_id\n" +
                 "WHERE (u.id = ? AND m.from = ?) OR (m.from = ? AND u.id = ?)\n" +
                 "ORDER BY m.date;";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)){
 
             statement.setInt(1, user1.getId());
@@ -392,37 +966,9 @@ public class MessageDataBaseRepository extends DataBaseRepository<Integer, Messa
             statement.setInt(3, user1.getId());
             statement.setInt(4, user2.getId());
 
-            ResultSet resultSet = statement.executeQuery();
-
-            List<Message> messageList = new ArrayList<>();
-
-            while(resultSet.next()){
-                User from, to;
-                if (resultSet.getInt("from_id") == user1.getId()){
-                    from = user1;
-                    to = user2;
-                }
-                else{
-                    from = user2;
-                    to = user1;
-                }
-                int messageId = resultSet.getInt("message_id");
-                String text = resultSet.getString("text");
-                LocalDateTime date = LocalDateTime.parse(resultSet.getString("date"));
-                Integer replyOfId = resultSet.getInt("reply_of");
-                Optional<Message> replyOf = messageList
-                        .stream()
-                        .filter(msg -> msg.getId().equals(replyOfId))
-                        .findFirst();
-
-                Message message = new Message(from, List.of(to), text, date);
-                message.setId(messageId);
-                if(replyOf.isPresent())
-                    message.setReplyOf(replyOf.get());
-
-                messageList.add(message);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return readConversation(resultSet, user1, user2);
             }
-            return messageList;
         } catch (SQLException throwables) {
             throw new RepositoryException(throwables.getMessage());
         }
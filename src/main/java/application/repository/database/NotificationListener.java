@@ -0,0 +1,141 @@
+package application.repository.database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Receives Postgres notifications (NOTIFY / pg_notify) on a single dedicated connection and hands their
+ * payloads to the handlers of their channel, on the listener thread.
+ * The connection does not come from the pool: it is held for as long as the listener runs.
+ * If the connection is lost it is opened again, and the notifications sent in the meantime are lost.
+ */
+public class NotificationListener implements AutoCloseable {
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final int POLL_MILLIS = 500;
+    private static final long RECONNECT_MILLIS = 2_000;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Map<String, List<Consumer<String>>> handlers = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
+
+    /**
+     * Constructor
+     * @param url String
+     * @param username String
+     * @param password String
+     */
+    public NotificationListener(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.thread = new Thread(this::run, "notification-listener");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Adds a handler for the notifications of a channel; channels must be added before the listener is started
+     * @param channel String, lower case letters, digits and underscores
+     * @param handler Consumer(String), receives the payload of each notification
+     */
+    public void listen(String channel, Consumer<String> handler) {
+        if (!CHANNEL_NAME.matcher(channel).matches())
+            throw new IllegalArgumentException("Invalid channel name!\n");
+        if (running)
+            throw new IllegalStateException("The listener is already started!\n");
+        handlers.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /**
+     * Starts listening on a background thread
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Tests if the listener is currently connected, i.e. if notifications are being received
+     * @return boolean
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    for (String channel : handlers.keySet())
+                        statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                connected = true;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null)
+                        for (PGNotification notification : notifications)
+                            dispatch(notification.getName(), notification.getParameter());
+                }
+            } catch (SQLException e) {
+                if (running)
+                    System.err.println("Notification listener disconnected: " + e.getMessage());
+            } finally {
+                connected = false;
+            }
+            if (running)
+                sleep(RECONNECT_MILLIS);
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        List<Consumer<String>> channelHandlers = handlers.get(channel);
+        if (channelHandlers == null)
+            return;
+        for (Consumer<String> handler : channelHandlers) {
+            try {
+                handler.accept(payload);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops listening and closes the connection
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(POLL_MILLIS * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
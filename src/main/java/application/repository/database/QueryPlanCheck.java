@@ -0,0 +1,152 @@
+package application.repository.database;
+
+import application.exceptions.RepositoryException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static application.utils.DatabaseConstants.THREAD_MAX_DEPTH;
+import static application.utils.DatabaseConstants.THREAD_MAX_MESSAGES;
+
+/**
+ * Checks that the hot queries of the repositories are served by an index. Every query is planned with sequential
+ * scans discouraged, so a small table still shows which plan a large one would get: a query that is planned with
+ * a sequential scan anyway has no index it can use, e.g. after one was dropped or a predicate changed.
+ * The queries are the statements of the repositories, planned with sample values bound to their parameters.
+ */
+public class QueryPlanCheck {
+    private static final LocalDateTime SAMPLE_DATE = LocalDateTime.of(2022, 1, 10, 12, 0);
+    private static final LocalDate SAMPLE_DAY = SAMPLE_DATE.toLocalDate();
+
+    /**
+     * A statement of a repository, with the values of its parameters
+     */
+    private static final class HotQuery {
+        private final String name;
+        private final String sql;
+        private final Object[] parameters;
+
+        private HotQuery(String name, String sql, Object... parameters) {
+            this.name = name;
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    private static final List<HotQuery> HOT_QUERIES = List.of(
+            new HotQuery("messages of a conversation, newest first",
+                    MessageDataBaseRepository.conversationSliceSql(false, true),
+                    1, 2, 20, 2, 1, 20, 20),
+            new HotQuery("messages of a conversation before a cursor",
+                    MessageDataBaseRepository.conversationSliceSql(true, true),
+                    1, SAMPLE_DATE, 100, 2, 20, 2, SAMPLE_DATE, 100, 1, 20, 20),
+            new HotQuery("messages of a conversation after a cursor",
+                    MessageDataBaseRepository.conversationSliceSql(true, false),
+                    1, SAMPLE_DATE, 100, 2, 20, 2, SAMPLE_DATE, 100, 1, 20, 20),
+            new HotQuery("size of a conversation",
+                    MessageDataBaseRepository.CONVERSATION_SIZE_SQL, 1, 2, 2, 1),
+            new HotQuery("recipients of messages",
+                    MessageDataBaseRepository.RECIPIENTS_SQL, new int[]{1, 2}),
+            new HotQuery("recipients of a message among users",
+                    MessageDataBaseRepository.RECIPIENTS_AMONG_SQL, 1, new int[]{1, 2}),
+            new HotQuery("thread of a message",
+                    MessageDataBaseRepository.THREAD_SQL, 1, THREAD_MAX_DEPTH, THREAD_MAX_DEPTH, THREAD_MAX_MESSAGES),
+            new HotQuery("message search",
+                    MessageDataBaseRepository.SEARCH_SQL, 1, 1, "hello", 20, 0),
+            new HotQuery("inbox",
+                    MessageDataBaseRepository.INBOX_SQL, 1),
+            new HotQuery("read cursor",
+                    MessageDataBaseRepository.READ_CURSOR_SQL, 1, 2),
+            new HotQuery("user search anywhere in the name",
+                    UserDataBaseRepository.searchByNameSql(true, true),
+                    1, "%ann%", 1, 1, 1, "ann%", "ann", 20, 0),
+            new HotQuery("user search at the beginning of the name",
+                    UserDataBaseRepository.searchByNameSql(false, true),
+                    1, "an", "ao", 1, 1, 1, "an%", "an", 20, 0),
+            new HotQuery("friends of a user",
+                    FriendshipDataBaseRepository.FRIEND_IDS_SQL, 1, 1),
+            new HotQuery("friend requests to a user",
+                    FriendRequestDataBaseRepository.requestsOfUserSql("id_to", "id_from", false), 1, 20, 0),
+            new HotQuery("friend requests from a user",
+                    FriendRequestDataBaseRepository.requestsOfUserSql("id_from", "id_to", false), 1, 20, 0),
+            new HotQuery("pending friend requests to a user",
+                    FriendRequestDataBaseRepository.requestsOfUserSql("id_to", "id_from", true), 1, "PENDING", 20, 0),
+            new HotQuery("pending friend requests from a user",
+                    FriendRequestDataBaseRepository.requestsOfUserSql("id_from", "id_to", true), 1, "PENDING", 20, 0),
+            new HotQuery("event feed",
+                    EventDataBaseRepository.FEED_SQL, 1, 1, 1, SAMPLE_DAY, SAMPLE_DAY, SAMPLE_DAY, 20, 0),
+            new HotQuery("events a user is subscribed to",
+                    EventDataBaseRepository.SUBSCRIBED_EVENTS_SQL, 1, SAMPLE_DAY, 20, 0),
+            new HotQuery("subscribers of events",
+                    EventDataBaseRepository.SUBSCRIBERS_SQL, new int[]{1, 2})
+    );
+
+    private final ConnectionPool pool;
+
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public QueryPlanCheck(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the hot queries planned with a sequential scan
+     * @return List(String), the names of the queries, empty if every one uses an index
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<String> findSequentialScans() throws RepositoryException {
+        List<String> scanned = new ArrayList<>();
+        try (Connection connection = pool.getConnection()) {
+            // closing the connection without a commit rolls the transaction and its settings back
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL enable_seqscan = off");
+            }
+            for (HotQuery query : HOT_QUERIES)
+                if (scans(connection, query))
+                    scanned.add(query.name);
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+        return scanned;
+    }
+
+    /**
+     * Checks that every hot query uses an index
+     * @throws RepositoryException if a hot query is planned with a sequential scan or the database cannot be reached
+     */
+    public void verify() throws RepositoryException {
+        List<String> scanned = findSequentialScans();
+        if (!scanned.isEmpty())
+            throw new RepositoryException("Queries without an index:\n" + String.join("\n", scanned) + "\n");
+    }
+
+    private static boolean scans(Connection connection, HotQuery query) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN (COSTS OFF) " + query.sql)) {
+            for (int i = 0; i < query.parameters.length; i++) {
+                Object parameter = query.parameters[i];
+                if (parameter instanceof int[])
+                    statement.setArray(i + 1, connection.createArrayOf("integer",
+                            Arrays.stream((int[]) parameter).boxed().toArray()));
+                else
+                    statement.setObject(i + 1, parameter);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    if (resultSet.getString(1).contains("Seq Scan on "))
+                        return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,196 @@
+package application.repository.database;
+
+import application.exceptions.RepositoryException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the schema of the database up to date with the versioned scripts of application/db/migration.
+ * Every script runs once, in version order, in its own transaction with the row that records it in schema_version,
+ * so a failed script leaves nothing behind and is run again at the next start. The checksum of every applied
+ * script is kept: a script whose statements changed after it was applied stops the migration instead of being
+ * silently skipped.
+ * Instances starting together wait for each other on an advisory lock.
+ */
+public class SchemaMigrator {
+    private static final String LOCATION = "/application/db/migration/";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final long LOCK_KEY = 0x436c6f7564436861L; // any constant shared by the instances of the application
+
+    // in version order; a new script is added at the end, and only the comments of a released one are edited
+    private static final String[] SCRIPTS = {
+            "V1__baseline_schema.sql",
+            "V2__friendship_id_right_index.sql",
+            "V3__message_conversation_indexes.sql",
+            "V4__user_name_search_indexes.sql",
+            "V5__event_feed_indexes.sql",
+            "V6__user_deletion_indexes.sql",
+            "V7__message_search_index.sql",
+            "V8__inbox.sql",
+            "V9__read_cursor.sql",
+            "V10__subscribed_event_covering_index.sql",
+            "V11__native_date_columns.sql",
+            "V12__friend_request_status_indexes.sql",
+    };
+
+    private final ConnectionPool pool;
+
+    /**
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public SchemaMigrator(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Runs the scripts that were not applied yet
+     * @return int, number of scripts applied
+     * @throws RepositoryException if a script fails, is missing, or was changed after it was applied
+     */
+    public int migrate() throws RepositoryException {
+        try (Connection connection = pool.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            }
+            try {
+                createHistory(connection);
+                Map<Integer, Long> applied = appliedChecksums(connection);
+
+                int count = 0;
+                int previous = 0;
+                for (String name : SCRIPTS) {
+                    Matcher matcher = SCRIPT_NAME.matcher(name);
+                    if (!matcher.matches())
+                        throw new RepositoryException("Invalid migration name " + name + "!\n");
+                    int version = Integer.parseInt(matcher.group(1));
+                    if (version <= previous)
+                        throw new RepositoryException("Migration " + name + " is out of order!\n");
+                    previous = version;
+
+                    String script = load(name);
+                    long checksum = checksum(script);
+                    Long appliedChecksum = applied.get(version);
+                    if (appliedChecksum == null) {
+                        apply(connection, version, matcher.group(2).replace('_', ' '), script, checksum);
+                        count++;
+                    } else if (appliedChecksum != checksum) {
+                        throw new RepositoryException("Migration " + name + " was changed after it was applied!\n");
+                    }
+                }
+                return count;
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+    }
+
+    /**
+     * Gets the version of the schema
+     * @return int, the version of the last script applied, 0 if none was
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public int getVersion() throws RepositoryException {
+        try (Connection connection = pool.getConnection()) {
+            createHistory(connection);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT coalesce(max(version), 0) FROM schema_version")) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+    }
+
+    private static void createHistory(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (\n" +
+                    "    version integer PRIMARY KEY,\n" +
+                    "    description varchar NOT NULL,\n" +
+                    "    checksum bigint NOT NULL,\n" +
+                    "    installed_on timestamp NOT NULL DEFAULT now(),\n" +
+                    "    execution_millis integer NOT NULL\n" +
+                    ")");
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (resultSet.next())
+                applied.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+        }
+        return applied;
+    }
+
+    private static void apply(Connection connection, int version, String description, String script, long checksum)
+            throws SQLException {
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(script);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description, checksum, execution_millis) VALUES (?, ?, ?, ?)")) {
+                statement.setInt(1, version);
+                statement.setString(2, description);
+                statement.setLong(3, checksum);
+                statement.setInt(4, (int) ((System.nanoTime() - start) / 1_000_000));
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException throwable) {
+            connection.rollback();
+            throw new SQLException("Migration V" + version + " failed: " + throwable.getMessage(), throwable);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String load(String name) throws RepositoryException {
+        try (InputStream input = SchemaMigrator.class.getResourceAsStream(LOCATION + name)) {
+            if (input == null)
+                throw new RepositoryException("Missing migration " + name + "!\n");
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RepositoryException("Migration " + name + " cannot be read: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the checksum of the statements of a script: comment lines, blank lines and line endings are left out,
+     * so documenting an applied script does not count as changing it
+     * @param script String
+     * @return long
+     */
+    static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        for (String line : script.split("\r?\n")) {
+            String statement = line.strip();
+            if (statement.isEmpty() || statement.startsWith("--"))
+                continue;
+            crc.update(statement.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+}
@@ -1,15 +1,18 @@
 package application.repository.database;
 
+import application.domain.Recommendation;
+import application.domain.Tuple;
 import application.domain.User;
+import application.domain.UserDeletionReport;
 import application.exceptions.RepositoryException;
+import application.repository.UserRepository;
 
-import de.mkammerer.argon2.*;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
+public class UserDataBaseRepository extends DataBaseRepository<Integer, User> implements UserRepository {
     private int pageSize = 20;
 
     /**
@@ -23,41 +26,70 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
     }
 
     /**
-     * Used to authenticate a user logging in the application
+     * Constructor
+     * @param pool ConnectionPool
+     */
+    public UserDataBaseRepository(ConnectionPool pool) {
+        super(pool);
+    }
+
+    /**
+     * Gets the id and the password hash of a user, used to authenticate the user logging in the application
      * @param userName the user's provided username
-     * @param passWord the user's provided password
-     * @return int user's ID or -1 if it failed
-     * @throws RepositoryException if the params are invalid
+     * @return Tuple(Integer, String), the id and the encoded hash
+     * @throws RepositoryException if there is no user with the username
      */
-    public int login(String userName, String passWord) throws RepositoryException {
+    public Tuple<Integer, String> findCredentials(String userName) throws RepositoryException {
         String sql = "SELECT id,hash from \"user\" where username = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)
         ) {
 
             statement.setString(1, userName);
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-
-            String hash = resultSet.getString("hash");
-            int id = resultSet.getInt("id");
-
-            Argon2 argon2 = Argon2Factory.create(16, 32);
-
-            if (argon2.verify(hash,passWord))
-                return id;
-            else return -1;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next())
+                    throw new RepositoryException("Invalid login information!\n");
+                return new Tuple<>(resultSet.getInt("id"), resultSet.getString("hash"));
+            }
         }
         catch (SQLException throwable){
             throw new RepositoryException("Invalid login information!\n");
         }
     }
 
+    /**
+     * Replaces the password hash of a user
+     * @param id Integer
+     * @param hash String, the new encoded hash
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public void updateHash(Integer id, String hash) throws RepositoryException {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement("update \"user\" set hash = ? where id = ?")) {
+
+            statement.setString(1, hash);
+            statement.setInt(2, id);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
     @Override
     public User find(Integer id) throws RepositoryException {
+        return userCache.get(id, this::load);
+    }
+
+    /**
+     * Loads a user from the database, bypassing the cache
+     * @param id Integer
+     * @return User
+     * @throws RepositoryException if the user doesn't exist
+     */
+    private User load(Integer id) throws RepositoryException {
 
         String sql = "SELECT id,first_name,last_name,username from \"user\" where id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)
              ){
 
@@ -83,7 +115,7 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
     @Override
     public List<User> getAll() throws RepositoryException {
         List<User> users = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT id,first_name,last_name,username from \"user\"");
              ResultSet resultSet = statement.executeQuery()) {
             while (resultSet.next()) {
@@ -103,8 +135,8 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
 
     @Override
     public User add(User entity) throws RepositoryException {
-        String sql = "insert into \"user\" (first_name, last_name, username, hash) values (?, ?, ?, ?)";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        String sql = "insert into \"user\" (first_name, last_name, username, hash) values (?, ?, ?, ?) returning id";
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setString(1, entity.getFirstName());
@@ -112,7 +144,10 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
             ps.setString(3, entity.getUserName());
             ps.setString(4,entity.getPassWord());
 
-            ps.executeUpdate();
+            try (ResultSet resultSet = ps.executeQuery()) {
+                resultSet.next();
+                entity.setId(resultSet.getInt("id"));
+            }
 
             return entity;
 
@@ -126,12 +161,13 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
 
         String sql = "delete from \"user\" where id = ?";
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, id);
             User deleted = find(id);
             ps.executeUpdate();
+            userCache.invalidate(id);
 
             return deleted;
         } catch (SQLException throwable) {
@@ -139,11 +175,90 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
         }
     }
 
+    private static int executeUpdate(Connection connection, String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++)
+                statement.setObject(i + 1, parameters[i]);
+            return statement.executeUpdate();
+        }
+    }
+
+    private static List<Integer> queryIds(Connection connection, String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++)
+                statement.setObject(i + 1, parameters[i]);
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    ids.add(resultSet.getInt(1));
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Deletes a user together with everything that references the user, in one transaction:
+     * friend requests, friendships, event subscriptions, authored events, the user's place among
+     * the recipients of messages, and the messages sent by the user or left without recipients.
+     * Messages replying to a deleted message are kept, without the reply.
+     * Every step is a single set-based statement, so the cost does not depend on the size of the tables.
+     * @param id Integer
+     * @return UserDeletionReport, with the number of rows removed from every table
+     * @throws RepositoryException if the user doesn't exist or the database cannot be reached
+     */
+    public UserDeletionReport deleteCascade(Integer id) throws RepositoryException {
+        User deleted = find(id);
+
+        try (Connection connection = getConnection()) {
+            // closing the connection without a commit rolls the transaction back
+            connection.setAutoCommit(false);
+
+            int friendRequests = executeUpdate(connection,
+                    "DELETE FROM friend_request WHERE id_from = ? OR id_to = ?", id, id);
+            int friendships = executeUpdate(connection,
+                    "DELETE FROM friendship WHERE id_left = ? OR id_right = ?", id, id);
+            int subscriptions = executeUpdate(connection,
+                    "DELETE FROM subscribed WHERE user_id = ?", id);
+            // the subscriptions of other users to these events are removed by the foreign key cascade
+            int events = executeUpdate(connection,
+                    "DELETE FROM event WHERE author_id = ?", id);
+
+            List<Integer> received = queryIds(connection,
+                    "DELETE FROM send_to WHERE user_id = ? RETURNING message_id", id);
+            List<Integer> doomed = queryIds(connection,
+                    "SELECT id FROM message WHERE \"from\" = ?\n" +
+                    "UNION\n" +
+                    "SELECT m.id FROM message m\n" +
+                    "WHERE m.id = ANY(?) AND NOT EXISTS (SELECT 1 FROM send_to s WHERE s.message_id = m.id)",
+                    id, toIntArray(connection, received));
+
+            int unlinkedReplies = 0;
+            int messages = 0;
+            if (!doomed.isEmpty()) {
+                Array doomedIds = toIntArray(connection, doomed);
+                unlinkedReplies = executeUpdate(connection,
+                        "UPDATE message SET reply_of = NULL WHERE reply_of = ANY(?) AND NOT (id = ANY(?))",
+                        doomedIds, doomedIds);
+                executeUpdate(connection, "DELETE FROM send_to WHERE message_id = ANY(?)", doomedIds);
+                messages = executeUpdate(connection, "DELETE FROM message WHERE id = ANY(?)", doomedIds);
+            }
+
+            executeUpdate(connection, "DELETE FROM \"user\" WHERE id = ?", id);
+            connection.commit();
+            userCache.invalidate(id);
+
+            return new UserDeletionReport(deleted, friendRequests, friendships, subscriptions, events,
+                    received.size(), messages, unlinkedReplies);
+        } catch (SQLException throwable) {
+            throw new RepositoryException(throwable.getMessage());
+        }
+    }
+
     @Override
     public User update(User entity) throws RepositoryException {
         String sql = "update \"user\" set first_name = ?, last_name = ? where username = ?";
         User updated;
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setString(1, entity.getFirstName());
@@ -151,6 +266,7 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
             ps.setString(3, entity.getUserName());
             updated = find(entity.getId());
             ps.executeUpdate();
+            userCache.invalidateIf(user -> user.getUserName().equals(entity.getUserName()));
 
             return updated;
         }
@@ -159,9 +275,227 @@ public class UserDataBaseRepository extends DataBaseRepository<Integer, User> {
         }
     }
 
+    // true if a pending friend request from the user bound to the parameter to u already exists
+    private static final String REQUEST_PENDING_COLUMN =
+            "EXISTS (SELECT 1 FROM friend_request fr\n" +
+            "        WHERE fr.id_from = ? AND fr.id_to = u.id AND fr.status = 'PENDING') AS request_pending";
+
+    private Recommendation readRecommendation(ResultSet resultSet, int mutualFriends, long stamp) throws SQLException {
+        User user = new User(resultSet.getString("first_name"),
+                resultSet.getString("last_name"),
+                resultSet.getString("username"));
+        user.setId(resultSet.getInt("id"));
+        userCache.put(user.getId(), user, stamp);
+        return new Recommendation(user, mutualFriends, resultSet.getBoolean("request_pending"));
+    }
+
+    /**
+     * Gets the next users that are friends of a friend of the user but not friends of the user,
+     * ranked by the number of mutual friends. Only the friends of the user's friends are visited,
+     * so the cost depends on the size of the user's neighbourhood, not on the number of users,
+     * and only one page of them is returned.
+     * @param userId Integer
+     * @param mutualFriends int, mutual friends of the last user read, Integer.MAX_VALUE to start from the first
+     * @param afterId int, id of the last user read
+     * @param limit int
+     * @return List(Recommendation)
+     * @throws RepositoryException if the database cannot be reached
+     */
+    @Override
+    public List<Recommendation> getFriendsOfFriendsAfter(Integer userId, int mutualFriends, int afterId, int limit)
+            throws RepositoryException {
+        String sql =
+                "WITH friends AS (\n" +
+                "    SELECT id_right AS id FROM friendship WHERE id_left = ?\n" +
+                "    UNION ALL\n" +
+                "    SELECT id_left FROM friendship WHERE id_right = ?\n" +
+                "), candidates AS (\n" +
+                "    SELECT f.id_right AS id FROM friendship f INNER JOIN friends ON f.id_left = friends.id\n" +
+                "    UNION ALL\n" +
+                "    SELECT f.id_left FROM friendship f INNER JOIN friends ON f.id_right = friends.id\n" +
+                ")\n" +
+                "SELECT u.id, u.first_name, u.last_name, u.username, COUNT(*) AS mutual_friends,\n" +
+                "       " + REQUEST_PENDING_COLUMN + "\n" +
+                "FROM candidates c\n" +
+                "INNER JOIN \"user\" u ON u.id = c.id\n" +
+                "WHERE u.id <> ? AND NOT EXISTS (SELECT 1 FROM friends WHERE friends.id = u.id)\n" +
+                "GROUP BY u.id\n" +
+                "HAVING COUNT(*) < ? OR (COUNT(*) = ? AND u.id > ?)\n" +
+                "ORDER BY mutual_friends DESC, u.id\n" +
+                "LIMIT ?;";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setInt(1, userId);
+            statement.setInt(2, userId);
+            statement.setInt(3, userId);
+            statement.setInt(4, userId);
+            statement.setInt(5, mutualFriends);
+            statement.setInt(6, mutualFriends);
+            statement.setInt(7, afterId);
+            statement.setInt(8, limit);
+
+            List<Recommendation> recommendations = new ArrayList<>();
+            long stamp = userCache.stamp();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    recommendations.add(readRecommendation(resultSet, resultSet.getInt("mutual_friends"), stamp));
+            }
+            return recommendations;
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the next users, in id order, that are not friends of the user.
+     * The friendship indexes turn both NOT EXISTS checks into anti-joins and the users are read
+     * from the primary key starting after afterId, so each call costs one page.
+     * @param userId Integer
+     * @param afterId int, only users with a greater id are returned
+     * @param limit int
+     * @return List(Recommendation), without mutual friends
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Recommendation> getNonFriendsAfter(Integer userId, int afterId, int limit) throws RepositoryException {
+        String sql =
+                "SELECT u.id, u.first_name, u.last_name, u.username,\n" +
+                "       " + REQUEST_PENDING_COLUMN + "\n" +
+                "FROM \"user\" u\n" +
+                "WHERE u.id > ? AND u.id <> ?\n" +
+                "  AND NOT EXISTS (SELECT 1 FROM friendship f WHERE f.id_left = ? AND f.id_right = u.id)\n" +
+                "  AND NOT EXISTS (SELECT 1 FROM friendship f WHERE f.id_right = ? AND f.id_left = u.id)\n" +
+                "ORDER BY u.id\n" +
+                "LIMIT ?;";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setInt(1, userId);
+            statement.setInt(2, afterId);
+            statement.setInt(3, userId);
+            statement.setInt(4, userId);
+            statement.setInt(5, userId);
+            statement.setInt(6, limit);
+
+            List<Recommendation> recommendations = new ArrayList<>();
+            long stamp = userCache.stamp();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    recommendations.add(readRecommendation(resultSet, 0, stamp));
+            }
+            return recommendations;
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    private static final String FULL_NAME = "lower(u.first_name || ' ' || u.last_name)";
+
+    /**
+     * Escapes the LIKE wildcards of a search term
+     * @param term String
+     * @return String
+     */
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Computes the smallest string greater than every string starting with a prefix
+     * @param prefix String
+     * @return String, null if there is none
+     */
+    private static String prefixUpperBound(String prefix) {
+        for (int end = prefix.length(); end > 0; end = prefix.offsetByCodePoints(end, -1)) {
+            int last = prefix.codePointBefore(end);
+            if (last == Character.MAX_CODE_POINT)
+                continue;
+            int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+            return prefix.substring(0, prefix.offsetByCodePoints(end, -1)) + Character.toString(next);
+        }
+        return null;
+    }
+
+    /**
+     * Builds the query of searchByName
+     * @param substring boolean, true to match the term anywhere in the name, bound as a LIKE pattern
+     * @param bounded boolean, true if a prefix has an upper bound as well as a lower one
+     * @return String
+     */
+    static String searchByNameSql(boolean substring, boolean bounded) {
+        // ~>=~ and ~<~ are the operators of text_pattern_ops, compared byte by byte like the index
+        String match = substring ? FULL_NAME + " LIKE ?"
+                : !bounded ? FULL_NAME + " ~>=~ ?"
+                : FULL_NAME + " ~>=~ ? AND " + FULL_NAME + " ~<~ ?";
+
+        return "SELECT u.id, u.first_name, u.last_name, u.username,\n" +
+                "       " + REQUEST_PENDING_COLUMN + "\n" +
+                "FROM \"user\" u\n" +
+                "WHERE " + match + " AND u.id <> ?\n" +
+                "  AND NOT EXISTS (SELECT 1 FROM friendship f WHERE f.id_left = ? AND f.id_right = u.id)\n" +
+                "  AND NOT EXISTS (SELECT 1 FROM friendship f WHERE f.id_right = ? AND f.id_left = u.id)\n" +
+                "ORDER BY " + FULL_NAME + " LIKE ? DESC, similarity(" + FULL_NAME + ", ?) DESC, u.id\n" +
+                "LIMIT ? OFFSET ?;";
+    }
+
+    /**
+     * Searches the users that are not friends of the user by name.
+     * Terms of at least three characters match anywhere in the full name through the trigram index,
+     * shorter terms match the beginning of the full name. Names starting with the term come first,
+     * then the names most similar to the term.
+     * The beginning of the name is matched as a range of the text_pattern_ops index rather than a LIKE pattern:
+     * a bound pattern is not known to be a prefix once the driver switches to a generic server-side plan,
+     * while a range is an index bound whatever its values.
+     * @param userId Integer
+     * @param name String, the search term
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(Recommendation), without mutual friends
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Recommendation> searchByName(Integer userId, String name, int offset, int limit) throws RepositoryException {
+        String term = name.strip().toLowerCase();
+        String prefix = escapeLike(term) + "%";
+        String upperBound = prefixUpperBound(term);
+        boolean substring = term.length() >= 3;
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(searchByNameSql(substring, upperBound != null))) {
+
+            int index = 1;
+            statement.setInt(index++, userId);
+            if (substring) {
+                statement.setString(index++, "%" + prefix);
+            } else {
+                statement.setString(index++, term);
+                if (upperBound != null)
+                    statement.setString(index++, upperBound);
+            }
+            statement.setInt(index++, userId);
+            statement.setInt(index++, userId);
+            statement.setInt(index++, userId);
+            statement.setString(index++, prefix);
+            statement.setString(index++, term);
+            statement.setInt(index++, limit);
+            statement.setInt(index, offset);
+
+            List<Recommendation> users = new ArrayList<>();
+            long stamp = userCache.stamp();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    users.add(readRecommendation(resultSet, 0, stamp));
+            }
+            return users;
+        } catch (SQLException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
     @Override
     public Integer size() throws RepositoryException {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) as count from \"user\"");
              ResultSet resultSet = statement.executeQuery()) {
 
@@ -0,0 +1,151 @@
+package application.repository.log;
+
+import java.util.Arrays;
+
+/**
+ * The messages of one conversation, sorted by date, then by id, as parallel primitive arrays.
+ * Messages mostly arrive in date order, so adding one usually appends it.
+ * A running count of the messages sent by the first user gives the messages each user sent in a range
+ * without reading them.
+ * Not thread safe: the message log guards every index with its lock.
+ */
+final class ConversationIndex {
+    private final int firstId;
+    private long[] seconds = new long[4];
+    private int[] nanos = new int[4];
+    private int[] ids = new int[4];
+    private int[] sentByFirst = new int[4]; // messages sent by the first user, up to each index included
+    private int size;
+
+    /**
+     * Constructor
+     * @param firstId int, one of the two users, whose messages are counted
+     */
+    ConversationIndex(int firstId) {
+        this.firstId = firstId;
+    }
+
+    private int sentByFirstBefore(int index) {
+        return index == 0 ? 0 : sentByFirst[index - 1];
+    }
+
+    private int compare(int index, long second, int nano, int id) {
+        if (seconds[index] != second)
+            return Long.compare(seconds[index], second);
+        if (nanos[index] != nano)
+            return Integer.compare(nanos[index], nano);
+        return Integer.compare(ids[index], id);
+    }
+
+    /**
+     * Adds a message
+     * @param second long, the epoch second of its date
+     * @param nano int, the nanosecond of its date
+     * @param id int
+     * @param fromId int, the sender
+     */
+    void add(long second, int nano, int id, int fromId) {
+        if (size == ids.length) {
+            seconds = Arrays.copyOf(seconds, size * 2);
+            nanos = Arrays.copyOf(nanos, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+            sentByFirst = Arrays.copyOf(sentByFirst, size * 2);
+        }
+        int index = size;
+        while (index > 0 && compare(index - 1, second, nano, id) > 0)
+            index--;
+        int byFirst = fromId == firstId ? 1 : 0;
+        System.arraycopy(seconds, index, seconds, index + 1, size - index);
+        System.arraycopy(nanos, index, nanos, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        System.arraycopy(sentByFirst, index, sentByFirst, index + 1, size - index);
+        seconds[index] = second;
+        nanos[index] = nano;
+        ids[index] = id;
+        sentByFirst[index] = sentByFirstBefore(index) + byFirst;
+        size++;
+        for (int later = index + 1; later < size && byFirst != 0; later++)
+            sentByFirst[later]++;
+    }
+
+    /**
+     * Removes a message
+     * @param id int
+     * @return true, if the message was in the conversation ; false, otherwise
+     */
+    boolean remove(int id) {
+        for (int index = size - 1; index >= 0; index--)
+            if (ids[index] == id) {
+                int byFirst = sentByFirst[index] - sentByFirstBefore(index);
+                System.arraycopy(seconds, index + 1, seconds, index, size - index - 1);
+                System.arraycopy(nanos, index + 1, nanos, index, size - index - 1);
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                System.arraycopy(sentByFirst, index + 1, sentByFirst, index, size - index - 1);
+                size--;
+                for (int later = index; later < size && byFirst != 0; later++)
+                    sentByFirst[later]--;
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Gets the number of messages
+     * @return int
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds where a position falls in the conversation
+     * @param second long
+     * @param nano int
+     * @param id int
+     * @param inclusive boolean, true to count a message at the position as after it
+     * @return int, the index of the first message after the position
+     */
+    int indexAfter(long second, int nano, int id, boolean inclusive) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, second, nano, id);
+            if (comparison < 0 || (comparison == 0 && !inclusive))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Counts the messages a user sent from an index on
+     * @param fromId int, one of the two users
+     * @param from int, index of the first message
+     * @return int
+     */
+    int countSentBy(int fromId, int from) {
+        int all = size - from;
+        int byFirst = sentByFirstBefore(size) - sentByFirstBefore(from);
+        return fromId == firstId ? byFirst : all - byFirst;
+    }
+
+    /**
+     * Gets the id of the last message
+     * @return int, 0 if there are no messages
+     */
+    int lastId() {
+        return size == 0 ? 0 : ids[size - 1];
+    }
+
+    /**
+     * Gets the ids of a range of messages
+     * @param from int, inclusive
+     * @param to int, exclusive
+     * @return int[]
+     */
+    int[] ids(int from, int to) {
+        return Arrays.copyOfRange(ids, Math.max(0, from), Math.max(Math.max(0, from), Math.min(size, to)));
+    }
+}
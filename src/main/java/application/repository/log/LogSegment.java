@@ -0,0 +1,181 @@
+package application.repository.log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the message log, mapped in memory whole. The file is created with its full capacity, so the
+ * unwritten part reads as zeros and a record length of 0 marks the end of the records.
+ * A record is its payload length, the CRC32C of its payload and the payload itself.
+ * Not thread safe: the message log guards every segment with its lock.
+ */
+final class LogSegment implements AutoCloseable {
+    static final int HEADER_BYTES = 8;
+
+    /**
+     * Receives the records of a segment while it is scanned
+     */
+    interface RecordConsumer {
+        void accept(int offset, byte[] payload);
+    }
+
+    private final int sequence;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int end; // offset after the last record
+    private int liveBytes; // bytes of the records that are still the latest version of their message
+
+    private LogSegment(int sequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens a segment, creating its file if it doesn't exist
+     * @param sequence int, orders the segments, older first
+     * @param path Path
+     * @param capacity int, the size of a new file
+     * @return LogSegment, with no records until it is scanned
+     * @throws IOException if the file cannot be mapped
+     */
+    static LogSegment open(int sequence, Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = Math.max(channel.size(), capacity);
+            return new LogSegment(sequence, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads the records of the segment up to the first one that is missing or damaged, which becomes the end
+     * of the segment
+     * @param consumer RecordConsumer, receives every valid record in order
+     */
+    void scan(RecordConsumer consumer) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - HEADER_BYTES)
+                break;
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_BYTES, payload);
+            if (checksum(payload) != buffer.getInt(offset + 4))
+                break;
+            consumer.accept(offset, payload);
+            offset += HEADER_BYTES + length;
+        }
+        end = offset;
+    }
+
+    /**
+     * Erases what follows the end of the segment: the rest of a record torn by a crash, or records written
+     * after it that were never made durable, so new records cannot be mistaken for them later
+     */
+    void eraseTail() {
+        for (int i = end; i < buffer.capacity(); i++)
+            if (buffer.get(i) != 0)
+                buffer.put(i, (byte) 0);
+        buffer.force();
+    }
+
+    /**
+     * Tests if a record fits in the rest of the segment
+     * @param payloadLength int
+     * @return boolean
+     */
+    boolean fits(int payloadLength) {
+        return (long) end + HEADER_BYTES + payloadLength <= buffer.capacity();
+    }
+
+    /**
+     * Appends a record, which must fit
+     * @param payload byte[]
+     * @return int, the offset of the record
+     */
+    int append(byte[] payload) {
+        int offset = end;
+        buffer.put(offset + HEADER_BYTES, payload);
+        buffer.putInt(offset + 4, checksum(payload));
+        buffer.putInt(offset, payload.length);
+        end = offset + HEADER_BYTES + payload.length;
+        return offset;
+    }
+
+    /**
+     * Reads the payload of a record
+     * @param offset int
+     * @return byte[]
+     */
+    byte[] payload(int offset) {
+        byte[] payload = new byte[buffer.getInt(offset)];
+        buffer.get(offset + HEADER_BYTES, payload);
+        return payload;
+    }
+
+    /**
+     * Gets the size of a record, with its header
+     * @param offset int
+     * @return int
+     */
+    int recordBytes(int offset) {
+        return HEADER_BYTES + buffer.getInt(offset);
+    }
+
+    /**
+     * Writes a part of the segment to the disk
+     * @param from int, inclusive
+     * @param to int, exclusive
+     */
+    void force(int from, int to) {
+        if (to > from)
+            buffer.force(from, to - from);
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    int getLiveBytes() {
+        return liveBytes;
+    }
+
+    void addLiveBytes(int bytes) {
+        liveBytes += bytes;
+    }
+
+    /**
+     * Closes the segment and deletes its file
+     * @throws IOException if the file cannot be deleted
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,894 @@
+package application.repository.log;
+
+import application.domain.InboxEntry;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
+import application.utils.collections.IntHashSet;
+import application.utils.collections.IntObjectHashMap;
+import application.utils.collections.TextIndex;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Storage engine keeping the messages in an append-only log of memory-mapped segment files.
+ * Every change of a message appends a record: the new version of the message, or a tombstone when it is deleted.
+ * Writing a message is a copy into the mapped file, and the callers that wrote at about the same time share one
+ * fsync (group commit): the first one forces every record written so far while the others wait for it,
+ * so a change is durable when its method returns.
+ * The location of the latest version of every message, the messages of every conversation, sorted by date,
+ * and the words of the messages are kept in memory and rebuilt by reading the segments when the log is opened; a record torn by a crash
+ * ends the log there. Sealed segments whose live records fall under a ratio are compacted: their live records
+ * are appended again and the file is deleted. A tombstone is live while a segment older than its own exists:
+ * any of them may still hold a version of the message it deletes, the latest one or an earlier one replaced
+ * by an update, and the tombstone must keep every version deleted when the log is read again.
+ * The position up to which every user read each conversation is a record of the log as well, live until
+ * a later position replaces it.
+ */
+public class MessageLog implements AutoCloseable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("messages-(\\d{10})\\.log");
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final double compactionRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock
+    private final TreeMap<Integer, LogSegment> segments = new TreeMap<>();
+    private LogSegment active;
+    private long[] locations = new long[1024]; // by message id: segment sequence << 32 | offset, 0 if missing
+    private int size;
+    private int lastId;
+    // the messages of every conversation, under both of its users
+    private final IntObjectHashMap<IntObjectHashMap<ConversationIndex>> conversations = new IntObjectHashMap<>();
+    // the replies to every message
+    private final IntObjectHashMap<IntHashSet> replies = new IntObjectHashMap<>();
+    // the messages containing every word
+    private final TextIndex words = new TextIndex();
+    // the latest read mark of every user, by the other user of the conversation
+    private final IntObjectHashMap<IntObjectHashMap<ReadMark>> readMarks = new IntObjectHashMap<>();
+    private boolean closed = false;
+    private volatile boolean compactionDue = false;
+
+    private final Object syncLock = new Object();
+    private long durable; // guarded by syncLock, position up to which the records are on the disk
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    private MessageLog(Path directory, int segmentBytes, double compactionRatio) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.compactionRatio = compactionRatio;
+    }
+
+    /**
+     * Opens the log of a directory, creating it if needed, and recovers its messages
+     * @param directory Path
+     * @param segmentBytes int, the size of a segment file
+     * @param compactionRatio double, sealed segments with a smaller share of live records are compacted
+     * @return MessageLog
+     * @throws IOException if the segments cannot be read
+     */
+    public static MessageLog open(Path directory, int segmentBytes, double compactionRatio) throws IOException {
+        Files.createDirectories(directory);
+        MessageLog log = new MessageLog(directory, segmentBytes, compactionRatio);
+        try {
+            log.recover();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        log.compact();
+        return log;
+    }
+
+    private Path segmentPath(int sequence) {
+        return directory.resolve(String.format("messages-%010d.log", sequence));
+    }
+
+    private static long position(LogSegment segment, int offset) {
+        return (long) segment.getSequence() << 32 | offset;
+    }
+
+    private LogSegment newSegment(int sequence) throws IOException {
+        LogSegment segment = LogSegment.open(sequence, segmentPath(sequence), segmentBytes);
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        List<Integer> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches())
+                    sequences.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+        Collections.sort(sequences);
+
+        for (int sequence : sequences) {
+            LogSegment segment = newSegment(sequence);
+            segment.scan((offset, payload) -> replay(segment, offset, payload));
+        }
+        if (segments.isEmpty()) {
+            active = newSegment(1);
+        } else {
+            active = segments.lastEntry().getValue();
+            active.eraseTail();
+        }
+        for (LogSegment segment : segments.values())
+            checkCompaction(segment);
+        durable = position(active, active.getEnd());
+    }
+
+    private void replay(LogSegment segment, int offset, byte[] payload) {
+        if (MessageRecord.type(payload) == MessageRecord.READ) {
+            mark(ReadMark.decode(payload), segment, offset);
+            return;
+        }
+        int id = MessageRecord.id(payload);
+        lastId = Math.max(lastId, id);
+        if (MessageRecord.type(payload) == MessageRecord.PUT) {
+            index(MessageRecord.decode(payload), segment, offset);
+        } else {
+            unindex(id);
+            if (tombstoneNeeded(segment))
+                segment.addLiveBytes(segment.recordBytes(offset));
+        }
+    }
+
+    // ---------------------------------------------------------------- index, called with the lock held
+
+    private long location(int id) {
+        return id > 0 && id < locations.length ? locations[id] : 0;
+    }
+
+    private MessageRecord read(long location) {
+        LogSegment segment = segments.get((int) (location >>> 32));
+        return MessageRecord.decode(segment.payload((int) location));
+    }
+
+    // every version of a message is written before its tombstone, so only older segments can hold one
+    private boolean tombstoneNeeded(LogSegment segment) {
+        return segments.firstKey() < segment.getSequence();
+    }
+
+    private void checkCompaction(LogSegment segment) {
+        if (segment != active && segment.getLiveBytes() < compactionRatio * segment.getEnd())
+            compactionDue = true;
+    }
+
+    private ConversationIndex conversation(int leftId, int rightId, boolean create) {
+        IntObjectHashMap<ConversationIndex> ofLeft = conversations.get(leftId);
+        ConversationIndex conversation = ofLeft == null ? null : ofLeft.get(rightId);
+        if (conversation == null && create) {
+            conversation = new ConversationIndex(Math.min(leftId, rightId));
+            conversations.computeIfAbsent(leftId, key -> new IntObjectHashMap<>()).put(rightId, conversation);
+            conversations.computeIfAbsent(rightId, key -> new IntObjectHashMap<>()).put(leftId, conversation);
+        }
+        return conversation;
+    }
+
+    private void forgetConversation(int leftId, int rightId) {
+        for (int[] pair : new int[][]{{leftId, rightId}, {rightId, leftId}}) {
+            IntObjectHashMap<ConversationIndex> ofUser = conversations.get(pair[0]);
+            if (ofUser != null) {
+                ofUser.remove(pair[1]);
+                if (ofUser.isEmpty())
+                    conversations.remove(pair[0]);
+            }
+        }
+    }
+
+    /**
+     * Makes a record the latest version of its message
+     * @param record MessageRecord
+     * @param segment LogSegment, where the record is written
+     * @param offset int
+     */
+    private void index(MessageRecord record, LogSegment segment, int offset) {
+        unindex(record.getId());
+
+        int id = record.getId();
+        if (id >= locations.length)
+            locations = Arrays.copyOf(locations, Math.max(id + 1, locations.length * 2));
+        locations[id] = position(segment, offset);
+        segment.addLiveBytes(segment.recordBytes(offset));
+        size++;
+
+        for (int i = 0; i < record.recipientCount(); i++)
+            conversation(record.getFromId(), record.recipient(i), true)
+                    .add(record.epochSecond(), record.getDate().getNano(), id, record.getFromId());
+        if (record.getReplyOfId() != 0)
+            replies.computeIfAbsent(record.getReplyOfId(), key -> new IntHashSet()).add(id);
+        words.add(id, record.getText());
+    }
+
+    /**
+     * Forgets the latest version of a message; the replies to the message are kept
+     * @param id int
+     * @return MessageRecord, the forgotten version, or null if the message doesn't exist
+     */
+    private MessageRecord unindex(int id) {
+        long location = location(id);
+        if (location == 0)
+            return null;
+        LogSegment segment = segments.get((int) (location >>> 32));
+        MessageRecord record = MessageRecord.decode(segment.payload((int) location));
+        segment.addLiveBytes(-segment.recordBytes((int) location));
+        checkCompaction(segment);
+        locations[id] = 0;
+        size--;
+
+        for (int i = 0; i < record.recipientCount(); i++) {
+            ConversationIndex conversation = conversation(record.getFromId(), record.recipient(i), false);
+            if (conversation != null && conversation.remove(id) && conversation.size() == 0)
+                forgetConversation(record.getFromId(), record.recipient(i));
+        }
+        IntHashSet siblings = replies.get(record.getReplyOfId());
+        if (siblings != null && siblings.remove(id) && siblings.isEmpty())
+            replies.remove(record.getReplyOfId());
+        words.remove(id, record.getText());
+        return record;
+    }
+
+    private ReadMark readMark(int userId, int friendId) {
+        IntObjectHashMap<ReadMark> ofUser = readMarks.get(userId);
+        return ofUser == null ? null : ofUser.get(friendId);
+    }
+
+    /**
+     * Makes a read mark the latest one of its user and conversation
+     * @param mark ReadMark
+     * @param segment LogSegment, where the mark is written
+     * @param offset int
+     */
+    private void mark(ReadMark mark, LogSegment segment, int offset) {
+        ReadMark replaced = readMarks.computeIfAbsent(mark.userId, key -> new IntObjectHashMap<>()).put(mark.friendId, mark);
+        if (replaced != null) {
+            LogSegment old = segments.get((int) (replaced.location >>> 32));
+            old.addLiveBytes(-old.recordBytes((int) replaced.location));
+            checkCompaction(old);
+        }
+        mark.location = position(segment, offset);
+        segment.addLiveBytes(segment.recordBytes(offset));
+    }
+
+    // ---------------------------------------------------------------- writes, called with the write lock held
+
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("The message log is closed!\n");
+    }
+
+    private int write(byte[] payload) throws IOException {
+        if ((long) LogSegment.HEADER_BYTES + payload.length > segmentBytes)
+            throw new IOException("The message is too long!\n");
+        if (!active.fits(payload.length)) {
+            // sealed segments are made durable before the next one is used
+            active.force(0, active.getEnd());
+            LogSegment sealed = active;
+            active = newSegment(sealed.getSequence() + 1);
+            checkCompaction(sealed);
+        }
+        appends.increment();
+        return active.append(payload);
+    }
+
+    private void put(MessageRecord record) throws IOException {
+        int offset = write(record.encode());
+        index(record, active, offset);
+    }
+
+    private MessageRecord deleteLocked(int id) throws IOException {
+        long location = location(id);
+        if (location == 0)
+            return null;
+        byte[] tombstone = MessageRecord.encodeDelete(id, (int) (location >>> 32));
+        int offset = write(tombstone);
+        if (tombstoneNeeded(active))
+            active.addLiveBytes(active.recordBytes(offset));
+        MessageRecord deleted = unindex(id);
+
+        IntHashSet replyIds = replies.remove(id);
+        if (replyIds != null)
+            for (int replyId : replyIds.toArray()) {
+                MessageRecord reply = read(location(replyId));
+                put(reply.with(reply.getText(), reply.getToIds(), 0));
+            }
+        return deleted;
+    }
+
+    private long endPosition() {
+        return position(active, active.getEnd());
+    }
+
+    /**
+     * Waits until every record up to a position is on the disk, forcing them if no other caller is doing it
+     * @param position long
+     */
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (durable >= position)
+                return;
+            LogSegment segment;
+            int end;
+            lock.readLock().lock();
+            try {
+                segment = active;
+                end = segment.getEnd();
+            } finally {
+                lock.readLock().unlock();
+            }
+            int from = (int) (durable >>> 32) == segment.getSequence() ? (int) durable : 0;
+            segment.force(from, end);
+            durable = position(segment, end);
+            syncs.increment();
+        }
+    }
+
+    private void afterWrite(long position) throws IOException {
+        sync(position);
+        if (compactionDue)
+            compact();
+    }
+
+    // ---------------------------------------------------------------- public operations
+
+    /**
+     * Appends a new message
+     * @param fromId int
+     * @param toIds int[], without duplicates
+     * @param text String
+     * @param date LocalDateTime
+     * @param replyOfId int, 0 if the message is not a reply
+     * @return MessageRecord, with its new id
+     * @throws IOException if the log is closed or the message doesn't fit in a segment
+     */
+    public MessageRecord append(int fromId, int[] toIds, String text, LocalDateTime date, int replyOfId) throws IOException {
+        MessageRecord record;
+        long position;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            record = new MessageRecord(lastId + 1, fromId, toIds.clone(), text, date, replyOfId);
+            put(record);
+            lastId++;
+            position = endPosition();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite(position);
+        return record;
+    }
+
+    /**
+     * Replaces the text and the recipients of a message
+     * @param id int
+     * @param text String
+     * @param toIds int[], without duplicates
+     * @return MessageRecord, the message before the update, or null if it doesn't exist
+     * @throws IOException if the log is closed or the message doesn't fit in a segment
+     */
+    public MessageRecord update(int id, String text, int[] toIds) throws IOException {
+        MessageRecord old;
+        long position;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long location = location(id);
+            if (location == 0)
+                return null;
+            old = read(location);
+            put(old.with(text, toIds.clone(), old.getReplyOfId()));
+            position = endPosition();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite(position);
+        return old;
+    }
+
+    /**
+     * Deletes a message; the replies to it are kept, without the reply
+     * @param id int
+     * @return MessageRecord, the deleted message, or null if it doesn't exist
+     * @throws IOException if the log is closed
+     */
+    public MessageRecord delete(int id) throws IOException {
+        MessageRecord deleted;
+        long position;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            deleted = deleteLocked(id);
+            position = endPosition();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite(position);
+        return deleted;
+    }
+
+    /**
+     * Removes a deleted user from the recipients of the messages, then deletes the messages sent by the user
+     * or left without recipients
+     * @param userId int
+     * @return int, the number of deleted messages
+     * @throws IOException if the log is closed
+     */
+    public int forgetUser(int userId) throws IOException {
+        int deleted = 0;
+        long position;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            IntHashSet ids = new IntHashSet();
+            IntObjectHashMap<ConversationIndex> ofUser = conversations.get(userId);
+            if (ofUser != null)
+                for (ConversationIndex conversation : ofUser.values())
+                    for (int id : conversation.ids(0, conversation.size()))
+                        ids.add(id);
+
+            for (int id : ids.toArray()) {
+                long location = location(id);
+                if (location == 0)
+                    continue;
+                MessageRecord record = read(location);
+                int[] toIds = Arrays.stream(record.getToIds()).filter(toId -> toId != userId).toArray();
+                if (record.getFromId() == userId || toIds.length == 0) {
+                    deleteLocked(id);
+                    deleted++;
+                } else if (toIds.length < record.recipientCount()) {
+                    put(record.with(record.getText(), toIds, record.getReplyOfId()));
+                }
+            }
+            position = endPosition();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite(position);
+        return deleted;
+    }
+
+    /**
+     * Gets a message
+     * @param id int
+     * @return MessageRecord, or null if it doesn't exist
+     */
+    public MessageRecord get(int id) {
+        lock.readLock().lock();
+        try {
+            long location = location(id);
+            return location == 0 ? null : read(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the thread of a message: the first message of its reply chain and every reply to it, directly or
+     * through other replies, found through the reply index. A reply chain that loops back on itself is followed once.
+     * @param id int
+     * @param maxDepth int, number of levels of replies followed up and down
+     * @param maxMessages int, the closest replies are kept
+     * @return List(MessageRecord), sorted by date, then by id; empty if the message doesn't exist
+     */
+    public List<MessageRecord> getThread(int id, int maxDepth, int maxMessages) {
+        lock.readLock().lock();
+        try {
+            long location = location(id);
+            if (location == 0)
+                return new ArrayList<>();
+            MessageRecord root = read(location);
+            IntHashSet chain = IntHashSet.of(root.getId());
+            for (int depth = 0; root.getReplyOfId() != 0 && depth < maxDepth; depth++) {
+                long parentLocation = location(root.getReplyOfId());
+                if (parentLocation == 0 || !chain.add(root.getReplyOfId()))
+                    break;
+                root = read(parentLocation);
+            }
+
+            // breadth first: the replies of a level are added after the whole level
+            List<MessageRecord> thread = new ArrayList<>();
+            IntHashSet found = IntHashSet.of(root.getId());
+            thread.add(root);
+            int depth = 0;
+            int levelEnd = thread.size();
+            for (int i = 0; i < thread.size() && thread.size() < maxMessages; i++) {
+                if (i == levelEnd) {
+                    depth++;
+                    levelEnd = thread.size();
+                }
+                if (depth == maxDepth)
+                    break;
+                IntHashSet replyIds = replies.get(thread.get(i).getId());
+                if (replyIds == null)
+                    continue;
+                for (int replyId : replyIds.toArray()) {
+                    long replyLocation = location(replyId);
+                    if (replyLocation != 0 && thread.size() < maxMessages && found.add(replyId))
+                        thread.add(read(replyLocation));
+                }
+            }
+            thread.sort(Comparator.comparing(MessageRecord::getDate).thenComparingInt(MessageRecord::getId));
+            return thread;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets every message, in id order
+     * @return List(MessageRecord)
+     */
+    public List<MessageRecord> getAll() {
+        lock.readLock().lock();
+        try {
+            List<MessageRecord> records = new ArrayList<>(size);
+            for (int id = 1; id < locations.length; id++)
+                if (locations[id] != 0)
+                    records.add(read(locations[id]));
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of messages
+     * @return int
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the messages of a conversation
+     * @param userId1 int
+     * @param userId2 int
+     * @return int
+     */
+    public int countConversation(int userId1, int userId2) {
+        lock.readLock().lock();
+        try {
+            ConversationIndex conversation = conversation(userId1, userId2, false);
+            return conversation == null ? 0 : conversation.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<MessageRecord> read(int[] ids) {
+        List<MessageRecord> records = new ArrayList<>(ids.length);
+        for (int id : ids)
+            records.add(read(location(id)));
+        return records;
+    }
+
+    /**
+     * Gets a range of the messages of a conversation, sorted by date, then by id
+     * @param userId1 int
+     * @param userId2 int
+     * @param from int, index of the first message
+     * @param to int, index after the last message
+     * @return List(MessageRecord)
+     */
+    public List<MessageRecord> getConversation(int userId1, int userId2, int from, int to) {
+        lock.readLock().lock();
+        try {
+            ConversationIndex conversation = conversation(userId1, userId2, false);
+            return conversation == null ? new ArrayList<>() : read(conversation.ids(from, to));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the messages of a conversation sent right before a position, oldest first
+     * @param userId1 int
+     * @param userId2 int
+     * @param date LocalDateTime, or null for the newest messages
+     * @param id int, the id of the message at the position
+     * @param limit int
+     * @return List(MessageRecord)
+     */
+    public List<MessageRecord> getConversationBefore(int userId1, int userId2, LocalDateTime date, int id, int limit) {
+        lock.readLock().lock();
+        try {
+            ConversationIndex conversation = conversation(userId1, userId2, false);
+            if (conversation == null)
+                return new ArrayList<>();
+            int end = date == null
+                    ? conversation.size()
+                    : conversation.indexAfter(date.toEpochSecond(ZoneOffset.UTC), date.getNano(), id, true);
+            return read(conversation.ids(end - limit, end));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the messages of a conversation sent right after a position, oldest first
+     * @param userId1 int
+     * @param userId2 int
+     * @param date LocalDateTime, or null for the oldest messages
+     * @param id int, the id of the message at the position
+     * @param limit int
+     * @return List(MessageRecord)
+     */
+    public List<MessageRecord> getConversationAfter(int userId1, int userId2, LocalDateTime date, int id, int limit) {
+        lock.readLock().lock();
+        try {
+            ConversationIndex conversation = conversation(userId1, userId2, false);
+            if (conversation == null)
+                return new ArrayList<>();
+            int start = date == null
+                    ? 0
+                    : conversation.indexAfter(date.toEpochSecond(ZoneOffset.UTC), date.getNano(), id, false);
+            return read(conversation.ids(start, start + limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the messages a user sent or received that contain every word of a text, ranked by how often
+     * the words appear in them, then newest first
+     * @param userId int
+     * @param text String
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(MessageRecord)
+     */
+    public List<MessageRecord> search(int userId, String text, int offset, int limit) {
+        String[] terms = TextIndex.terms(text);
+        List<MessageRecord> matches = new ArrayList<>();
+        IntObjectHashMap<Integer> ranks = new IntObjectHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int id : words.search(terms, id -> true)) {
+                MessageRecord record = read(location(id));
+                if (record.getFromId() == userId || record.isSentTo(userId)) {
+                    matches.add(record);
+                    ranks.put(id, TextIndex.rank(record.getText(), terms));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparing((MessageRecord record) -> -ranks.get(record.getId()))
+                .thenComparing(MessageRecord::getDate, Comparator.reverseOrder())
+                .thenComparing(MessageRecord::getId, Comparator.reverseOrder()));
+        int from = Math.min(offset, matches.size());
+        return new ArrayList<>(matches.subList(from, from + Math.min(limit, matches.size() - from)));
+    }
+
+    private boolean isLive(LogSegment segment, int offset, byte[] payload) {
+        switch (MessageRecord.type(payload)) {
+            case MessageRecord.PUT:
+                return location(MessageRecord.id(payload)) == position(segment, offset);
+            case MessageRecord.READ:
+                ReadMark mark = ReadMark.decode(payload);
+                ReadMark latest = readMark(mark.userId, mark.friendId);
+                return latest != null && latest.location == position(segment, offset);
+            default:
+                return tombstoneNeeded(segment);
+        }
+    }
+
+    /**
+     * Gets the conversations of a user with their last message and the number of messages of the other user
+     * after the read mark of the user, the most recent first
+     * @param userId int
+     * @return List(InboxEntry)
+     */
+    public List<InboxEntry> getInbox(int userId) {
+        List<InboxEntry> inbox = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntObjectHashMap<ConversationIndex> ofUser = conversations.get(userId);
+            if (ofUser == null)
+                return inbox;
+            for (int friendId : ofUser.keys()) {
+                ConversationIndex conversation = ofUser.get(friendId);
+                MessageRecord last = read(location(conversation.lastId()));
+                ReadMark mark = readMark(userId, friendId);
+                int from = mark == null ? 0 : conversation.indexAfter(mark.second, mark.nano, mark.messageId, false);
+                int unread = friendId == userId ? 0 : conversation.countSentBy(friendId, from);
+                inbox.add(new InboxEntry(friendId, last.getId(), last.getFromId(), last.getText(), last.getDate(), unread));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        inbox.sort(Comparator.comparing(InboxEntry::getLastMessageDate)
+                .thenComparingInt(InboxEntry::getLastMessageId)
+                .reversed());
+        return inbox;
+    }
+
+    /**
+     * Moves read marks forward; a cursor which is not past the mark of its conversation writes nothing, and
+     * the records of a batch are made durable with a single sync
+     * @param cursors List(ReadCursor)
+     * @throws IOException if the log is closed
+     */
+    public void markRead(List<ReadCursor> cursors) throws IOException {
+        long position;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int written = 0;
+            for (ReadCursor cursor : cursors) {
+                LocalDateTime date = cursor.getPosition().getDate();
+                ReadMark mark = new ReadMark(cursor.getUserId(), cursor.getFriendId(),
+                        date.toEpochSecond(ZoneOffset.UTC), date.getNano(), cursor.getPosition().getId());
+                ReadMark current = readMark(mark.userId, mark.friendId);
+                if (current != null && !mark.isAfter(current))
+                    continue;
+                int offset = write(mark.encode());
+                mark(mark, active, offset);
+                written++;
+            }
+            if (written == 0)
+                return;
+            position = endPosition();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite(position);
+    }
+
+    /**
+     * Gets the read mark of a user in a conversation
+     * @param userId int, the reader
+     * @param friendId int, the other user of the conversation
+     * @return ReadCursor, null if the user read none of it
+     */
+    public ReadCursor getReadCursor(int userId, int friendId) {
+        lock.readLock().lock();
+        try {
+            ReadMark mark = readMark(userId, friendId);
+            if (mark == null)
+                return null;
+            LocalDateTime date = LocalDateTime.ofEpochSecond(mark.second, mark.nano, ZoneOffset.UTC);
+            return new ReadCursor(userId, friendId, new MessageCursor(date, mark.messageId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the sealed segments whose share of live records is under the compaction ratio: their live records
+     * are appended again, made durable, and the segment file is deleted. Tombstones are kept while a segment
+     * older than theirs exists.
+     * @return int, the number of compacted segments
+     * @throws IOException if the log is closed or a file cannot be deleted
+     */
+    public int compact() throws IOException {
+        int compacted = 0;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            compactionDue = false;
+            for (LogSegment segment : new ArrayList<>(segments.values())) {
+                if (segment == active || segment.getLiveBytes() >= compactionRatio * segment.getEnd())
+                    continue;
+                List<byte[]> kept = new ArrayList<>();
+                segment.scan((offset, payload) -> {
+                    if (isLive(segment, offset, payload))
+                        kept.add(payload);
+                });
+                for (byte[] payload : kept) {
+                    int offset = write(payload);
+                    byte type = MessageRecord.type(payload);
+                    if (type == MessageRecord.PUT) {
+                        locations[MessageRecord.id(payload)] = position(active, offset);
+                    } else if (type == MessageRecord.READ) {
+                        ReadMark mark = ReadMark.decode(payload);
+                        readMark(mark.userId, mark.friendId).location = position(active, offset);
+                    }
+                    active.addLiveBytes(active.recordBytes(offset));
+                }
+                active.force(0, active.getEnd());
+
+                segments.remove(segment.getSequence());
+                segment.delete();
+                compactions.increment();
+                compacted++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return compacted;
+    }
+
+    /**
+     * Gets the number of segment files
+     * @return int
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records appended since the log was opened
+     * @return long
+     */
+    public long getAppends() {
+        return appends.sum();
+    }
+
+    /**
+     * Gets the number of times the records were forced to the disk; with group commit it is lower than the appends
+     * @return long
+     */
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    /**
+     * Gets the number of compacted segments
+     * @return long
+     */
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    /**
+     * Makes every record durable and closes the segment files
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            if (active != null)
+                active.force(0, active.getEnd());
+            for (LogSegment segment : segments.values()) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MessageLog[messages=%d, segments=%d, appends=%d, syncs=%d, compactions=%d]",
+                size(), getSegmentCount(), getAppends(), getSyncs(), getCompactions());
+    }
+}
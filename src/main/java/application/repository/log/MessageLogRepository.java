@@ -0,0 +1,300 @@
+package application.repository.log;
+
+import application.domain.InboxEntry;
+import application.domain.Message;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.repository.MessageRepository;
+import application.repository.Repository;
+import application.utils.collections.IntHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static application.utils.DatabaseConstants.THREAD_MAX_DEPTH;
+import static application.utils.DatabaseConstants.THREAD_MAX_MESSAGES;
+
+/**
+ * Repository of the messages stored in a MessageLog; the users are still read from their own repository
+ */
+public class MessageLogRepository implements MessageRepository {
+    private final int pageSize = 10;
+    private final MessageLog log;
+    private final Repository<Integer, User> userRepository;
+
+    /**
+     * Constructor
+     * @param log MessageLog
+     * @param userRepository Repository(Integer, User), resolves the users of the messages
+     */
+    public MessageLogRepository(MessageLog log, Repository<Integer, User> userRepository) {
+        this.log = log;
+        this.userRepository = userRepository;
+    }
+
+    private User user(int id, Map<Integer, User> users) throws RepositoryException {
+        User user = users.get(id);
+        if (user == null) {
+            user = userRepository.find(id);
+            users.put(id, user);
+        }
+        return user;
+    }
+
+    /**
+     * Links the messages of a batch to the messages they reply to: directly if those are part of the batch,
+     * otherwise by id, read from the log when needed
+     * @param messages Map(Integer, Message), the batch by id
+     * @param records Collection(MessageRecord), the records of the batch
+     */
+    private void linkReplies(Map<Integer, Message> messages, Collection<MessageRecord> records) {
+        for (MessageRecord record : records) {
+            if (record.getReplyOfId() == 0)
+                continue;
+            Message replyOf = messages.get(record.getReplyOfId());
+            if (replyOf != null)
+                messages.get(record.getId()).setReplyOf(replyOf);
+            else
+                messages.get(record.getId()).setReplyOf(record.getReplyOfId(), this::find);
+        }
+    }
+
+    /**
+     * Builds the messages of the given records; the messages they reply to that are missing from the records
+     * are only read when needed. Every user and message is created once and shared by all the messages
+     * that reference it.
+     * @param records List(MessageRecord)
+     * @return Map(Integer, Message), in the order of the records
+     * @throws RepositoryException if a user of a message doesn't exist
+     */
+    private Map<Integer, Message> hydrate(List<MessageRecord> records) throws RepositoryException {
+        Map<Integer, MessageRecord> recordsById = new LinkedHashMap<>();
+        records.forEach(record -> recordsById.put(record.getId(), record));
+
+        Map<Integer, User> users = new HashMap<>();
+        Map<Integer, Message> messages = new LinkedHashMap<>();
+        for (MessageRecord record : recordsById.values()) {
+            List<User> to = new ArrayList<>(record.recipientCount());
+            for (int i = 0; i < record.recipientCount(); i++)
+                to.add(user(record.recipient(i), users));
+            Message message = new Message(user(record.getFromId(), users), to, record.getText(), record.getDate());
+            message.setId(record.getId());
+            messages.put(record.getId(), message);
+        }
+        linkReplies(messages, recordsById.values());
+        return messages;
+    }
+
+    @Override
+    public Message find(Integer id) throws RepositoryException {
+        MessageRecord record = log.get(id);
+        if (record == null)
+            throw new RepositoryException("Nonexistent message!\n");
+        return hydrate(List.of(record)).get(id);
+    }
+
+    @Override
+    public List<Message> getAll() throws RepositoryException {
+        return new ArrayList<>(hydrate(log.getAll()).values());
+    }
+
+    private static int[] recipientIds(Message message) {
+        IntHashSet ids = new IntHashSet();
+        for (User user : message.getTo())
+            ids.add(user.getId());
+        return ids.toArray();
+    }
+
+    @Override
+    public Message add(Message message) throws RepositoryException {
+        int replyOfId = message.getReplyOfId();
+        if (replyOfId != 0 && log.get(replyOfId) == null)
+            throw new RepositoryException("Nonexistent message!\n");
+        try {
+            MessageRecord record = log.append(message.getFrom().getId(), recipientIds(message),
+                    message.getText(), message.getDate(), replyOfId);
+            message.setId(record.getId());
+            return message;
+        } catch (IOException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    @Override
+    public Message delete(Integer id) throws RepositoryException {
+        Message deleted = find(id);
+        try {
+            log.delete(id);
+        } catch (IOException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+        return deleted;
+    }
+
+    /**
+     * Updates the text and the recipients of a message
+     * @param message Message
+     * @return Message, as it was before the update
+     * @throws RepositoryException if the message doesn't exist
+     */
+    @Override
+    public Message update(Message message) throws RepositoryException {
+        Message updated = find(message.getId());
+        try {
+            if (log.update(message.getId(), message.getText(), recipientIds(message)) == null)
+                throw new RepositoryException("Nonexistent message!\n");
+        } catch (IOException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+        return updated;
+    }
+
+    @Override
+    public Integer size() {
+        return log.size();
+    }
+
+    @Override
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public Integer getNumberOfPages(User user1, User user2) {
+        int messages = countConversation(user1, user2);
+        if (messages <= pageSize)
+            return 1;
+        return (messages + pageSize - 1) / pageSize;
+    }
+
+    @Override
+    public int countConversation(User user1, User user2) {
+        return log.countConversation(user1.getId(), user2.getId());
+    }
+
+    /**
+     * Nothing is cached, the counts are kept up to date by the log
+     */
+    @Override
+    public void invalidateConversationSizes() {
+    }
+
+    /**
+     * Removes a deleted user from the messages of the log, which the user repository cannot reach
+     * @param userId Integer
+     * @throws RepositoryException if the log is closed
+     */
+    @Override
+    public void forgetUser(Integer userId) throws RepositoryException {
+        try {
+            log.forgetUser(userId);
+        } catch (IOException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the messages of a conversation the way the database repository does: every message has the other
+     * user as its only recipient, and replies to messages outside the list read them when needed
+     * @param records List(MessageRecord), sorted by date
+     * @param user1 User
+     * @param user2 User
+     * @return List(Message)
+     */
+    private List<Message> readConversation(List<MessageRecord> records, User user1, User user2) {
+        List<Message> messageList = new ArrayList<>(records.size());
+        Map<Integer, Message> messagesById = new HashMap<>();
+        for (MessageRecord record : records) {
+            boolean fromFirst = record.getFromId() == user1.getId();
+            Message message = new Message(fromFirst ? user1 : user2, List.of(fromFirst ? user2 : user1),
+                    record.getText(), record.getDate());
+            message.setId(record.getId());
+            messagesById.put(record.getId(), message);
+            messageList.add(message);
+        }
+        linkReplies(messagesById, records);
+        return messageList;
+    }
+
+    @Override
+    public List<Message> getPage(User user1, User user2, Integer pageNumber) {
+        int from = pageSize * (pageNumber - 1);
+        return readConversation(log.getConversation(user1.getId(), user2.getId(), from, from + pageSize), user1, user2);
+    }
+
+    @Override
+    public List<Message> getConversationBefore(User user1, User user2, MessageCursor before, int limit) {
+        List<MessageRecord> records = before == null
+                ? log.getConversationBefore(user1.getId(), user2.getId(), null, 0, limit)
+                : log.getConversationBefore(user1.getId(), user2.getId(), before.getDate(), before.getId(), limit);
+        return readConversation(records, user1, user2);
+    }
+
+    @Override
+    public List<Message> getConversationAfter(User user1, User user2, MessageCursor after, int limit) {
+        List<MessageRecord> records = after == null
+                ? log.getConversationAfter(user1.getId(), user2.getId(), null, 0, limit)
+                : log.getConversationAfter(user1.getId(), user2.getId(), after.getDate(), after.getId(), limit);
+        return readConversation(records, user1, user2);
+    }
+
+    @Override
+    public List<InboxEntry> getInbox(Integer userId) {
+        return log.getInbox(userId);
+    }
+
+    @Override
+    public void markRead(List<ReadCursor> cursors) throws RepositoryException {
+        try {
+            log.markRead(cursors);
+        } catch (IOException e) {
+            throw new RepositoryException(e.getMessage());
+        }
+    }
+
+    @Override
+    public ReadCursor getReadCursor(Integer userId, Integer friendId) {
+        return log.getReadCursor(userId, friendId);
+    }
+
+    @Override
+    public List<Message> getThread(Integer messageId) throws RepositoryException {
+        List<MessageRecord> records = log.getThread(messageId, THREAD_MAX_DEPTH, THREAD_MAX_MESSAGES);
+        if (records.isEmpty())
+            throw new RepositoryException("Nonexistent message!\n");
+        return new ArrayList<>(hydrate(records).values());
+    }
+
+    @Override
+    public List<Message> search(Integer userId, String text, int offset, int limit) throws RepositoryException {
+        List<MessageRecord> records = log.search(userId, text, offset, limit);
+        Map<Integer, Message> messages = hydrate(records);
+        List<Message> found = new ArrayList<>(records.size());
+        for (MessageRecord record : records)
+            found.add(messages.get(record.getId()));
+        return found;
+    }
+
+    @Override
+    public List<Integer> getRecipientsAmong(Integer messageId, Collection<Integer> userIds) {
+        MessageRecord record = log.get(messageId);
+        List<Integer> recipients = new ArrayList<>();
+        if (record != null)
+            for (int toId : record.getToIds())
+                if (userIds.contains(toId))
+                    recipients.add(toId);
+        return recipients;
+    }
+
+    @Override
+    public List<Message> getConversation(User user1, User user2) {
+        return readConversation(log.getConversation(user1.getId(), user2.getId(), 0, Integer.MAX_VALUE), user1, user2);
+    }
+}
@@ -0,0 +1,175 @@
+package application.repository.log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * A message as it is stored in the message log, with the ids of its users
+ */
+public final class MessageRecord {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte READ = 3;
+
+    private final int id;
+    private final int fromId;
+    private final int[] toIds;
+    private final String text;
+    private final LocalDateTime date;
+    private final int replyOfId;
+
+    /**
+     * Constructor
+     * @param id int
+     * @param fromId int
+     * @param toIds int[]
+     * @param text String
+     * @param date LocalDateTime
+     * @param replyOfId int, 0 if the message is not a reply
+     */
+    MessageRecord(int id, int fromId, int[] toIds, String text, LocalDateTime date, int replyOfId) {
+        this.id = id;
+        this.fromId = fromId;
+        this.toIds = toIds;
+        this.text = text;
+        this.date = date;
+        this.replyOfId = replyOfId;
+    }
+
+    /**
+     * Gets the id of the message
+     * @return int
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the id of the sender
+     * @return int
+     */
+    public int getFromId() {
+        return fromId;
+    }
+
+    /**
+     * Gets the ids of the recipients
+     * @return int[], a copy
+     */
+    public int[] getToIds() {
+        return toIds.clone();
+    }
+
+    /**
+     * Gets the text of the message
+     * @return String
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the date the message was sent
+     * @return LocalDateTime
+     */
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the id of the message this one replies to
+     * @return int, 0 if the message is not a reply
+     */
+    public int getReplyOfId() {
+        return replyOfId;
+    }
+
+    boolean isSentTo(int userId) {
+        for (int toId : toIds)
+            if (toId == userId)
+                return true;
+        return false;
+    }
+
+    int recipientCount() {
+        return toIds.length;
+    }
+
+    int recipient(int index) {
+        return toIds[index];
+    }
+
+    MessageRecord with(String newText, int[] newToIds, int newReplyOfId) {
+        return new MessageRecord(id, fromId, newToIds, newText, date, newReplyOfId);
+    }
+
+    long epochSecond() {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Encodes the message as the payload of a PUT record
+     * @return byte[]
+     */
+    byte[] encode() {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * 3 + 8 + 4 + 4 + 4 * toIds.length + 4 + textBytes.length);
+        buffer.put(PUT).putInt(id).putInt(fromId).putInt(replyOfId)
+                .putLong(epochSecond()).putInt(date.getNano())
+                .putInt(toIds.length);
+        for (int toId : toIds)
+            buffer.putInt(toId);
+        buffer.putInt(textBytes.length).put(textBytes);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes the payload of a DELETE record
+     * @param id int, the deleted message
+     * @param sequence int, the segment holding the deleted version; informative, older segments may hold
+     *                 earlier versions as well
+     * @return byte[]
+     */
+    static byte[] encodeDelete(int id, int sequence) {
+        return ByteBuffer.allocate(1 + 4 + 4).put(DELETE).putInt(id).putInt(sequence).array();
+    }
+
+    /**
+     * Gets the type of a record
+     * @param payload byte[]
+     * @return byte, PUT or DELETE
+     */
+    static byte type(byte[] payload) {
+        return payload[0];
+    }
+
+    /**
+     * Gets the id of the message of a record
+     * @param payload byte[]
+     * @return int
+     */
+    static int id(byte[] payload) {
+        return ByteBuffer.wrap(payload, 1, 4).getInt();
+    }
+
+    /**
+     * Decodes the payload of a PUT record
+     * @param payload byte[]
+     * @return MessageRecord
+     */
+    static MessageRecord decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        int id = buffer.getInt();
+        int fromId = buffer.getInt();
+        int replyOfId = buffer.getInt();
+        LocalDateTime date = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        int[] toIds = new int[buffer.getInt()];
+        for (int i = 0; i < toIds.length; i++)
+            toIds[i] = buffer.getInt();
+        byte[] textBytes = new byte[buffer.getInt()];
+        buffer.get(textBytes);
+        return new MessageRecord(id, fromId, toIds, new String(textBytes, StandardCharsets.UTF_8), date, replyOfId);
+    }
+}
@@ -0,0 +1,66 @@
+package application.repository.log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Position up to which a user read a conversation, stored in the message log as a READ record.
+ * Only the latest mark of every user and conversation is live.
+ */
+final class ReadMark {
+    final int userId;
+    final int friendId;
+    final long second;
+    final int nano;
+    final int messageId;
+    long location; // of its record: segment sequence << 32 | offset
+
+    /**
+     * Constructor
+     * @param userId int, the reader
+     * @param friendId int, the other user of the conversation
+     * @param second long, the epoch second of the date of the last read message
+     * @param nano int, the nanosecond of that date
+     * @param messageId int, the last read message
+     */
+    ReadMark(int userId, int friendId, long second, int nano, int messageId) {
+        this.userId = userId;
+        this.friendId = friendId;
+        this.second = second;
+        this.nano = nano;
+        this.messageId = messageId;
+    }
+
+    /**
+     * Encodes the mark as the payload of a READ record
+     * @return byte[]
+     */
+    byte[] encode() {
+        return ByteBuffer.allocate(1 + 4 + 4 + 8 + 4 + 4)
+                .put(MessageRecord.READ).putInt(userId).putInt(friendId)
+                .putLong(second).putInt(nano).putInt(messageId)
+                .array();
+    }
+
+    /**
+     * Tests if this mark is past another mark of the same conversation
+     * @param other ReadMark
+     * @return boolean
+     */
+    boolean isAfter(ReadMark other) {
+        if (second != other.second)
+            return second > other.second;
+        if (nano != other.nano)
+            return nano > other.nano;
+        return messageId > other.messageId;
+    }
+
+    /**
+     * Decodes the payload of a READ record
+     * @param payload byte[]
+     * @return ReadMark
+     */
+    static ReadMark decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        return new ReadMark(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+    }
+}
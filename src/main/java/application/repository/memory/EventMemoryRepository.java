@@ -0,0 +1,201 @@
+package application.repository.memory;
+
+import application.domain.Event;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.repository.EventRepository;
+import application.repository.memory.MemoryDatabase.EventRow;
+import application.utils.collections.IntHashSet;
+import application.utils.collections.IntObjectHashMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class EventMemoryRepository implements EventRepository {
+    private static final Comparator<EventRow> BY_DATE =
+            Comparator.comparing((EventRow row) -> row.eventDate).thenComparingInt(row -> row.id);
+
+    private final int pageSize = 6;
+    private final MemoryDatabase database;
+
+    /**
+     * Constructor
+     * @param database MemoryDatabase
+     */
+    public EventMemoryRepository(MemoryDatabase database) {
+        this.database = database;
+    }
+
+    private Event event(EventRow row, IntObjectHashMap<User> users) throws RepositoryException {
+        Event event = new Event(database.user(row.authorId, users), row.title, row.description,
+                row.creationDate, row.eventDate);
+        event.setId(row.id);
+        event.setSubscriberIds(IntHashSet.of(database.subscribers.get(row.id)));
+        return event;
+    }
+
+    private List<Event> events(List<EventRow> rows) throws RepositoryException {
+        IntObjectHashMap<User> users = new IntObjectHashMap<>();
+        List<Event> events = new ArrayList<>(rows.size());
+        for (EventRow row : rows)
+            events.add(event(row, users));
+        return events;
+    }
+
+    /**
+     * Gets the rows of some events that take place from a date on, sorted by date, then by id
+     * @param ids int[]
+     * @param from LocalDate
+     * @return List(EventRow)
+     */
+    private List<EventRow> rowsFrom(int[] ids, LocalDate from) {
+        List<EventRow> rows = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            EventRow row = database.events.get(id);
+            if (row != null && !row.eventDate.isBefore(from))
+                rows.add(row);
+        }
+        rows.sort(BY_DATE);
+        return rows;
+    }
+
+    private List<Event> page(List<EventRow> rows, int offset, int limit) throws RepositoryException {
+        if (offset >= rows.size())
+            return new ArrayList<>();
+        return events(rows.subList(offset, (int) Math.min(rows.size(), (long) offset + limit)));
+    }
+
+    @Override
+    public Event find(Integer eventId) throws RepositoryException {
+        EventRow row = database.events.get(eventId);
+        if (row == null)
+            throw new RepositoryException("Nonexistent event!\n");
+        return event(row, new IntObjectHashMap<>());
+    }
+
+    @Override
+    public List<Event> getAll() throws RepositoryException {
+        List<EventRow> rows = database.events.values();
+        rows.sort(Comparator.comparingInt(row -> row.id));
+        return events(rows);
+    }
+
+    /**
+     * Gets the events shown to a user: the ones authored by the user or by a friend of the user,
+     * and the ones a friend of the user is subscribed to. The candidates are gathered through the author
+     * and subscription indexes of the user and the user's friends, and only the page is built into events.
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if an author doesn't exist
+     */
+    @Override
+    public List<Event> getFeed(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException {
+        IntHashSet candidates = IntHashSet.of(database.eventsOfAuthor.get(userId));
+        for (int friendId : database.friends.get(userId)) {
+            for (int eventId : database.eventsOfAuthor.get(friendId))
+                candidates.add(eventId);
+            for (int eventId : database.subscriptions.get(friendId))
+                candidates.add(eventId);
+        }
+        return page(rowsFrom(candidates.toArray(), from), offset, limit);
+    }
+
+    @Override
+    public List<Event> getSubscribedEvents(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException {
+        return page(rowsFrom(database.subscriptions.get(userId), from), offset, limit);
+    }
+
+    @Override
+    public int countSubscribedEvents(Integer userId, LocalDate from, LocalDate to) {
+        int count = 0;
+        for (EventRow row : rowsFrom(database.subscriptions.get(userId), from))
+            if (row.eventDate.isBefore(to))
+                count++;
+        return count;
+    }
+
+    @Override
+    public Event add(Event event) throws RepositoryException {
+        int authorId = event.getAuthor().getId();
+        if (!database.users.containsKey(authorId))
+            throw new RepositoryException("Nonexistent user!\n");
+
+        int id = database.lastEventId.incrementAndGet();
+        database.events.put(id, new EventRow(id, authorId, event.getTitle(), event.getDescription(),
+                event.getCreationDate(), event.getEventDate()));
+        database.eventsOfAuthor.add(authorId, id);
+
+        // a new event has no subscribers yet
+        event.setId(id);
+        event.setSubscriberIds(new IntHashSet());
+        return event;
+    }
+
+    @Override
+    public Event addSubscriber(Event event, User user) throws RepositoryException {
+        if (!database.events.containsKey(event.getId()))
+            throw new RepositoryException("Nonexistent event!\n");
+        if (!database.subscribers.add(event.getId(), user.getId()))
+            throw new RepositoryException("You already are subscribed to this event!\n");
+        database.subscriptions.add(user.getId(), event.getId());
+
+        event.addSubscriber(user.getId());
+        return event;
+    }
+
+    @Override
+    public Event removeSubscriber(Event event, User user) throws RepositoryException {
+        if (!database.subscribers.remove(event.getId(), user.getId()))
+            throw new RepositoryException("You are not subscribed to this event!\n");
+        database.subscriptions.remove(user.getId(), event.getId());
+
+        event.removeSubscriber(user.getId());
+        return event;
+    }
+
+    @Override
+    public Event delete(Integer eventId) throws RepositoryException {
+        Event event = find(eventId);
+        EventRow row = database.events.remove(eventId);
+        if (row == null)
+            throw new RepositoryException("Nonexistent event!\n");
+        database.eventsOfAuthor.remove(row.authorId, eventId);
+        for (int subscriberId : database.subscribers.removeAll(eventId))
+            database.subscriptions.remove(subscriberId, eventId);
+        return event;
+    }
+
+    @Override
+    public Event update(Event event) throws RepositoryException {
+        Event updated = find(event.getId());
+        database.events.compute(event.getId(), row -> row == null ? null : new EventRow(row.id, row.authorId,
+                event.getTitle(), event.getDescription(), row.creationDate, row.eventDate));
+        return updated;
+    }
+
+    @Override
+    public Integer size() {
+        return database.events.size();
+    }
+
+    @Override
+    public List<Event> getPage(User u1, User u2, Integer page) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Integer getNumberOfPages(User u1, User u2) {
+        return 0;
+    }
+
+    @Override
+    public Integer getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,178 @@
+package application.repository.memory;
+
+import application.domain.FriendRequest;
+import application.domain.FriendRequestDTO;
+import application.domain.FriendRequestStatus;
+import application.domain.Tuple;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.repository.FriendRequestRepository;
+import application.utils.collections.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FriendRequestMemoryRepository implements FriendRequestRepository {
+    private final int pageSize = 20;
+    private final MemoryDatabase database;
+
+    /**
+     * Constructor
+     * @param database MemoryDatabase
+     */
+    public FriendRequestMemoryRepository(MemoryDatabase database) {
+        this.database = database;
+    }
+
+    private FriendRequest request(int fromId, int toId, FriendRequestStatus status, IntObjectHashMap<User> users)
+            throws RepositoryException {
+        FriendRequest request = new FriendRequest(database.user(fromId, users), database.user(toId, users), status);
+        request.setId(new Tuple<>(fromId, toId));
+        return request;
+    }
+
+    @Override
+    public FriendRequest find(Tuple<Integer, Integer> id) throws RepositoryException {
+        FriendRequestStatus status = database.requestStatus(id.getLeft(), id.getRight());
+        if (status == null)
+            throw new RepositoryException("Nonexistent friend request!\n");
+        return request(id.getLeft(), id.getRight(), status, new IntObjectHashMap<>());
+    }
+
+    @Override
+    public List<FriendRequest> getAll() throws RepositoryException {
+        IntObjectHashMap<User> users = new IntObjectHashMap<>();
+        List<FriendRequest> requests = new ArrayList<>();
+        for (int fromId : database.requests.keys()) {
+            IntObjectHashMap<FriendRequestStatus> statuses = database.requests.read(fromId, sent -> {
+                IntObjectHashMap<FriendRequestStatus> copy = new IntObjectHashMap<>();
+                if (sent != null)
+                    for (int toId : sent.keys())
+                        copy.put(toId, sent.get(toId));
+                return copy;
+            });
+            for (int toId : statuses.keys())
+                requests.add(request(fromId, toId, statuses.get(toId), users));
+        }
+        return requests;
+    }
+
+    @Override
+    public List<FriendRequestDTO> getRequestsToUser(Integer userId, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        int[] senders = database.requestSenders.get(userId);
+        Arrays.sort(senders);
+        List<FriendRequestDTO> requests = new ArrayList<>();
+        int skipped = 0;
+        for (int fromId : senders) {
+            if (requests.size() >= limit)
+                break;
+            FriendRequestStatus requestStatus = database.requestStatus(fromId, userId);
+            if (requestStatus == null || (status != null && requestStatus != status) || skipped++ < offset)
+                continue;
+            requests.add(new FriendRequestDTO(name(fromId), "", fromId, userId, requestStatus));
+        }
+        return requests;
+    }
+
+    @Override
+    public List<FriendRequestDTO> getRequestsFromUser(Integer userId, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        IntObjectHashMap<FriendRequestStatus> statuses = database.requests.read(userId, sent -> {
+            IntObjectHashMap<FriendRequestStatus> copy = new IntObjectHashMap<>();
+            if (sent != null)
+                for (int toId : sent.keys())
+                    if (status == null || sent.get(toId) == status)
+                        copy.put(toId, sent.get(toId));
+            return copy;
+        });
+        int[] receivers = statuses.keys();
+        Arrays.sort(receivers);
+        List<FriendRequestDTO> requests = new ArrayList<>();
+        for (int i = offset; i < receivers.length && requests.size() < limit; i++)
+            requests.add(new FriendRequestDTO("", name(receivers[i]), userId, receivers[i], statuses.get(receivers[i])));
+        return requests;
+    }
+
+    private String name(int userId) throws RepositoryException {
+        User user = database.user(userId);
+        return user.getFirstName() + " " + user.getLastName();
+    }
+
+    @Override
+    public FriendRequest add(FriendRequest entity) throws RepositoryException {
+        int fromId = entity.getId().getLeft();
+        int toId = entity.getId().getRight();
+        if (!database.users.containsKey(fromId) || !database.users.containsKey(toId))
+            throw new RepositoryException("Nonexistent user!\n");
+
+        boolean[] added = {false};
+        database.requests.compute(fromId, statuses -> {
+            if (statuses == null)
+                statuses = new IntObjectHashMap<>();
+            if (!statuses.containsKey(toId)) {
+                statuses.put(toId, entity.getStatus());
+                added[0] = true;
+            }
+            return statuses;
+        });
+        if (!added[0])
+            throw new RepositoryException("This friend request already exists!\n");
+
+        database.requestSenders.add(toId, fromId);
+        database.requestCount.incrementAndGet();
+        return entity;
+    }
+
+    @Override
+    public FriendRequest delete(Tuple<Integer, Integer> id) throws RepositoryException {
+        FriendRequest deleted = find(id);
+        int toId = id.getRight();
+        boolean[] removed = {false};
+        database.requests.compute(id.getLeft(), statuses -> {
+            if (statuses == null)
+                return null;
+            removed[0] = statuses.remove(toId) != null;
+            return statuses.isEmpty() ? null : statuses;
+        });
+        if (removed[0]) {
+            database.requestSenders.remove(toId, id.getLeft());
+            database.requestCount.decrementAndGet();
+        }
+        return deleted;
+    }
+
+    @Override
+    public FriendRequest update(FriendRequest entity) throws RepositoryException {
+        FriendRequest updated = find(entity.getId());
+        int toId = entity.getId().getRight();
+        database.requests.compute(entity.getId().getLeft(), statuses -> {
+            if (statuses != null && statuses.containsKey(toId))
+                statuses.put(toId, entity.getStatus());
+            return statuses;
+        });
+        return updated;
+    }
+
+    @Override
+    public Integer size() {
+        return database.requestCount.get();
+    }
+
+    @Override
+    public List<FriendRequest> getPage(User u1, User u2, Integer page) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Integer getNumberOfPages(User u1, User u2) {
+        return 0;
+    }
+
+    @Override
+    public Integer getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,184 @@
+package application.repository.memory;
+
+import application.domain.Friendship;
+import application.domain.Tuple;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.repository.FriendshipRepository;
+import application.utils.collections.IntObjectHashMap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FriendshipMemoryRepository implements FriendshipRepository {
+    private final int pageSize = 20;
+    private final MemoryDatabase database;
+
+    /**
+     * Constructor
+     * @param database MemoryDatabase
+     */
+    public FriendshipMemoryRepository(MemoryDatabase database) {
+        this.database = database;
+    }
+
+    private static Friendship friendship(int leftId, int rightId, LocalDateTime date) {
+        Friendship friendship = new Friendship(date);
+        friendship.setId(new Tuple<>(leftId, rightId));
+        return friendship;
+    }
+
+    @Override
+    public Friendship find(Tuple<Integer, Integer> id) throws RepositoryException {
+        LocalDateTime date = database.friendshipDate(id.getLeft(), id.getRight());
+        if (date == null)
+            throw new RepositoryException("Nonexistent friendship!\n");
+        return friendship(id.getLeft(), id.getRight(), date);
+    }
+
+    @Override
+    public List<Friendship> getAll() {
+        List<Friendship> friendships = new ArrayList<>();
+        for (int leftId : database.friendships.keys())
+            database.friendships.read(leftId, dates -> {
+                if (dates != null)
+                    for (int rightId : dates.keys())
+                        friendships.add(friendship(leftId, rightId, dates.get(rightId)));
+                return null;
+            });
+        return friendships;
+    }
+
+    /**
+     * Gets the friendships of a user from the friend index, with both users of every friendship set
+     * @param userId Integer
+     * @return List(Friendship)
+     * @throws RepositoryException if a friend of the user doesn't exist
+     */
+    @Override
+    public List<Friendship> getFriendshipsOfUser(Integer userId) throws RepositoryException {
+        return friendshipsOfUser(userId, 0);
+    }
+
+    @Override
+    public List<Friendship> getFriendshipsOfUserFromMonth(Integer userId, int month) throws RepositoryException {
+        return friendshipsOfUser(userId, month);
+    }
+
+    private List<Friendship> friendshipsOfUser(int userId, int month) throws RepositoryException {
+        IntObjectHashMap<User> users = new IntObjectHashMap<>();
+        List<Friendship> friendships = new ArrayList<>();
+        for (int friendId : database.friends.get(userId)) {
+            int leftId = Math.min(userId, friendId);
+            int rightId = Math.max(userId, friendId);
+            LocalDateTime date = database.friendshipDate(leftId, rightId);
+            if (date == null || (month != 0 && date.getMonthValue() != month))
+                continue;
+            Friendship friendship = friendship(leftId, rightId, date);
+            friendship.setUserLeft(database.user(leftId, users));
+            friendship.setUserRight(database.user(rightId, users));
+            friendships.add(friendship);
+        }
+        return friendships;
+    }
+
+    @Override
+    public int[] getFriendIds(Integer userId) {
+        return database.friends.get(userId);
+    }
+
+    @Override
+    public boolean areFriends(Integer leftId, Integer rightId) {
+        return database.friends.contains(leftId, rightId);
+    }
+
+    /**
+     * Nothing is kept apart from the friendships, which are deleted together with the user
+     * @param userId Integer
+     */
+    @Override
+    public void forgetUser(Integer userId) {
+    }
+
+    @Override
+    public Friendship add(Friendship entity) throws RepositoryException {
+        int leftId = entity.getId().getLeft();
+        int rightId = entity.getId().getRight();
+        if (!database.users.containsKey(leftId) || !database.users.containsKey(rightId))
+            throw new RepositoryException("Nonexistent user!\n");
+
+        boolean[] added = {false};
+        database.friendships.compute(leftId, dates -> {
+            if (dates == null)
+                dates = new IntObjectHashMap<>();
+            if (!dates.containsKey(rightId)) {
+                dates.put(rightId, entity.getDate());
+                added[0] = true;
+            }
+            return dates;
+        });
+        if (!added[0])
+            throw new RepositoryException("The friendship already exists!\n");
+
+        database.friends.add(leftId, rightId);
+        database.friends.add(rightId, leftId);
+        database.friendshipCount.incrementAndGet();
+        return entity;
+    }
+
+    @Override
+    public Friendship delete(Tuple<Integer, Integer> id) throws RepositoryException {
+        int leftId = id.getLeft();
+        int rightId = id.getRight();
+        Object[] removed = {null};
+        database.friendships.compute(leftId, dates -> {
+            if (dates == null)
+                return null;
+            removed[0] = dates.remove(rightId);
+            return dates.isEmpty() ? null : dates;
+        });
+        if (removed[0] == null)
+            throw new RepositoryException("Nonexistent friendship!\n");
+
+        database.friends.remove(leftId, rightId);
+        database.friends.remove(rightId, leftId);
+        database.friendshipCount.decrementAndGet();
+        return friendship(leftId, rightId, (LocalDateTime) removed[0]);
+    }
+
+    @Override
+    public Friendship update(Friendship entity) throws RepositoryException {
+        int rightId = entity.getId().getRight();
+        Object[] updated = {null};
+        database.friendships.compute(entity.getId().getLeft(), dates -> {
+            if (dates != null && dates.containsKey(rightId))
+                updated[0] = dates.put(rightId, entity.getDate());
+            return dates;
+        });
+        if (updated[0] == null)
+            throw new RepositoryException("Nonexistent Friendship!\n");
+        return friendship(entity.getId().getLeft(), rightId, (LocalDateTime) updated[0]);
+    }
+
+    @Override
+    public Integer size() {
+        return database.friendshipCount.get();
+    }
+
+    @Override
+    public List<Friendship> getPage(User u1, User u2, Integer page) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Integer getNumberOfPages(User u1, User u2) {
+        return 0;
+    }
+
+    @Override
+    public Integer getPageSize() {
+        return pageSize;
+    }
+}
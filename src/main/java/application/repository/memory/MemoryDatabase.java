@@ -0,0 +1,269 @@
+package application.repository.memory;
+
+import application.domain.FriendRequestStatus;
+import application.domain.MessageCursor;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.utils.collections.IntObjectHashMap;
+import application.utils.collections.IntSetIndex;
+import application.utils.collections.StripedIntMap;
+import application.utils.collections.TextIndex;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static application.utils.DatabaseConstants.MEMORY_STRIPES;
+
+/**
+ * The tables of the in-memory repositories, shared by the repositories created on it the way the database
+ * repositories share a database. Rows are kept in primitive int-keyed maps split in stripes that are locked
+ * separately, next to per-user indexes, so the operations of different users rarely wait for each other.
+ * Every change of one row is atomic; changes of several rows, like the deletion of a user with everything
+ * that references the user, are not isolated from concurrent changes of the same rows.
+ */
+public class MemoryDatabase {
+
+    /**
+     * Row of the message table, with the ids of its recipients
+     */
+    static final class MessageRow {
+        final int id;
+        final int fromId;
+        final int[] toIds;
+        final String text;
+        final LocalDateTime date;
+        final int replyOfId; // 0 if the message is not a reply
+
+        MessageRow(int id, int fromId, int[] toIds, String text, LocalDateTime date, int replyOfId) {
+            this.id = id;
+            this.fromId = fromId;
+            this.toIds = toIds;
+            this.text = text;
+            this.date = date;
+            this.replyOfId = replyOfId;
+        }
+
+        boolean isSentTo(int userId) {
+            for (int toId : toIds)
+                if (toId == userId)
+                    return true;
+            return false;
+        }
+
+        MessageRow withRecipients(String newText, int[] newToIds) {
+            return new MessageRow(id, fromId, newToIds, newText, date, replyOfId);
+        }
+
+        MessageRow withoutReply() {
+            return new MessageRow(id, fromId, toIds, text, date, 0);
+        }
+    }
+
+    /**
+     * Row of the event table
+     */
+    static final class EventRow {
+        final int id;
+        final int authorId;
+        final String title;
+        final String description;
+        final LocalDateTime creationDate;
+        final LocalDate eventDate;
+
+        EventRow(int id, int authorId, String title, String description, LocalDateTime creationDate, LocalDate eventDate) {
+            this.id = id;
+            this.authorId = authorId;
+            this.title = title;
+            this.description = description;
+            this.creationDate = creationDate;
+            this.eventDate = eventDate;
+        }
+    }
+
+    // users, their password hashes and their ids by username
+    final StripedIntMap<User> users;
+    final StripedIntMap<String> hashes;
+    final Map<String, Integer> userIdsByName = new ConcurrentHashMap<>();
+    final AtomicInteger lastUserId = new AtomicInteger();
+
+    // dates of the friendships by the smaller id, then the greater id, and the friends of every user
+    final StripedIntMap<IntObjectHashMap<LocalDateTime>> friendships;
+    final IntSetIndex friends;
+    final AtomicInteger friendshipCount = new AtomicInteger();
+
+    // statuses of the friend requests by sender, then receiver, and the senders of the requests to every user
+    final StripedIntMap<IntObjectHashMap<FriendRequestStatus>> requests;
+    final IntSetIndex requestSenders;
+    final AtomicInteger requestCount = new AtomicInteger();
+
+    // messages, the messages sent or received by every user, and the replies to every message
+    final StripedIntMap<MessageRow> messages;
+    final IntSetIndex messagesOfUser;
+    final IntSetIndex replies;
+    final AtomicInteger lastMessageId = new AtomicInteger();
+
+    // position up to which every user read each of the user's conversations, by the other user
+    final StripedIntMap<IntObjectHashMap<MessageCursor>> readPositions;
+
+    // words of the messages, with a lock of their own as every message shares the index
+    private final TextIndex messageWords = new TextIndex();
+    private final ReentrantReadWriteLock messageWordsLock = new ReentrantReadWriteLock();
+
+    // events, the events of every author, the subscribers of every event and the subscriptions of every user
+    final StripedIntMap<EventRow> events;
+    final IntSetIndex eventsOfAuthor;
+    final IntSetIndex subscribers;
+    final IntSetIndex subscriptions;
+    final AtomicInteger lastEventId = new AtomicInteger();
+
+    /**
+     * Constructor with the number of stripes from DatabaseConstants
+     */
+    public MemoryDatabase() {
+        this(MEMORY_STRIPES);
+    }
+
+    /**
+     * Constructor
+     * @param stripes int, number of separately locked parts of every table and index
+     */
+    public MemoryDatabase(int stripes) {
+        users = new StripedIntMap<>(stripes);
+        hashes = new StripedIntMap<>(stripes);
+        friendships = new StripedIntMap<>(stripes);
+        friends = new IntSetIndex(stripes);
+        requests = new StripedIntMap<>(stripes);
+        requestSenders = new IntSetIndex(stripes);
+        messages = new StripedIntMap<>(stripes);
+        messagesOfUser = new IntSetIndex(stripes);
+        replies = new IntSetIndex(stripes);
+        readPositions = new StripedIntMap<>(stripes);
+        events = new StripedIntMap<>(stripes);
+        eventsOfAuthor = new IntSetIndex(stripes);
+        subscribers = new IntSetIndex(stripes);
+        subscriptions = new IntSetIndex(stripes);
+    }
+
+    /**
+     * Gets a copy of a stored user, so the callers never change the stored one
+     * @param user User
+     * @return User, without password
+     */
+    static User copyOf(User user) {
+        User copy = new User(user.getFirstName(), user.getLastName(), user.getUserName());
+        copy.setId(user.getId());
+        return copy;
+    }
+
+    /**
+     * Gets a user
+     * @param id int
+     * @return User, a copy of the stored user
+     * @throws RepositoryException if the user doesn't exist
+     */
+    User user(int id) throws RepositoryException {
+        User user = users.get(id);
+        if (user == null)
+            throw new RepositoryException("Nonexistent user!\n");
+        return copyOf(user);
+    }
+
+    /**
+     * Gets a user, sharing one copy of every user between the entities built from them
+     * @param id int
+     * @param identityMap IntObjectHashMap(User), the users already copied
+     * @return User
+     * @throws RepositoryException if the user doesn't exist
+     */
+    User user(int id, IntObjectHashMap<User> identityMap) throws RepositoryException {
+        User user = identityMap.get(id);
+        if (user == null) {
+            user = user(id);
+            identityMap.put(id, user);
+        }
+        return user;
+    }
+
+    /**
+     * Moves the position up to which a user read a conversation forward
+     * @param userId int, the reader
+     * @param friendId int, the other user of the conversation
+     * @param position MessageCursor, ignored if the conversation was already read past it
+     */
+    void markRead(int userId, int friendId, MessageCursor position) {
+        readPositions.compute(userId, positions -> {
+            if (positions == null)
+                positions = new IntObjectHashMap<>();
+            MessageCursor read = positions.get(friendId);
+            if (read == null || MessageCursor.compare(read, position) < 0)
+                positions.put(friendId, position);
+            return positions;
+        });
+    }
+
+    /**
+     * Gets the position up to which a user read a conversation
+     * @param userId int, the reader
+     * @param friendId int, the other user of the conversation
+     * @return MessageCursor, null if the user read none of it
+     */
+    MessageCursor readPosition(int userId, int friendId) {
+        return readPositions.read(userId, positions -> positions == null ? null : positions.get(friendId));
+    }
+
+    /**
+     * Replaces the words of a message in the word index
+     * @param messageId int
+     * @param oldText String, null for a new message
+     * @param newText String, null for a deleted message
+     */
+    void indexWords(int messageId, String oldText, String newText) {
+        messageWordsLock.writeLock().lock();
+        try {
+            if (oldText != null)
+                messageWords.remove(messageId, oldText);
+            if (newText != null)
+                messageWords.add(messageId, newText);
+        } finally {
+            messageWordsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the messages containing every term
+     * @param terms String[]
+     * @return int[], the ids of the messages
+     */
+    int[] searchWords(String[] terms) {
+        messageWordsLock.readLock().lock();
+        try {
+            return messageWords.search(terms, id -> true);
+        } finally {
+            messageWordsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the date of a friendship
+     * @param leftId int, the smaller id
+     * @param rightId int, the greater id
+     * @return LocalDateTime, null if the users are not friends
+     */
+    LocalDateTime friendshipDate(int leftId, int rightId) {
+        return friendships.read(leftId, dates -> dates == null ? null : dates.get(rightId));
+    }
+
+    /**
+     * Gets the status of a friend request
+     * @param fromId int
+     * @param toId int
+     * @return FriendRequestStatus, null if there is no such request
+     */
+    FriendRequestStatus requestStatus(int fromId, int toId) {
+        return requests.read(fromId, statuses -> statuses == null ? null : statuses.get(toId));
+    }
+}
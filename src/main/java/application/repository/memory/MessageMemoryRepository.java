@@ -0,0 +1,457 @@
+package application.repository.memory;
+
+import application.domain.InboxEntry;
+import application.domain.Message;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import application.repository.MessageRepository;
+import application.repository.memory.MemoryDatabase.MessageRow;
+import application.utils.collections.IntHashSet;
+import application.utils.collections.IntObjectHashMap;
+import application.utils.collections.TextIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static application.utils.DatabaseConstants.THREAD_MAX_DEPTH;
+import static application.utils.DatabaseConstants.THREAD_MAX_MESSAGES;
+
+public class MessageMemoryRepository implements MessageRepository {
+    private static final Comparator<MessageRow> BY_DATE =
+            Comparator.comparing((MessageRow row) -> row.date).thenComparingInt(row -> row.id);
+
+    private final int pageSize = 10;
+    private final MemoryDatabase database;
+
+    /**
+     * Constructor
+     * @param database MemoryDatabase
+     */
+    public MessageMemoryRepository(MemoryDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Links the messages of a batch to the messages they reply to: directly if those are part of the batch,
+     * otherwise by id, built when needed
+     * @param messages Map(Integer, Message), the batch by id
+     * @param rows Collection(MessageRow), the rows of the batch
+     */
+    private void linkReplies(Map<Integer, Message> messages, Collection<MessageRow> rows) {
+        for (MessageRow row : rows) {
+            if (row.replyOfId == 0)
+                continue;
+            Message replyOf = messages.get(row.replyOfId);
+            if (replyOf != null)
+                messages.get(row.id).setReplyOf(replyOf);
+            else
+                messages.get(row.id).setReplyOf(row.replyOfId, this::find);
+        }
+    }
+
+    /**
+     * Builds the messages of the given rows; the messages they reply to that are missing from the rows
+     * are only built when needed. Every user and message is created once and shared by all the messages
+     * that reference it.
+     * @param rows List(MessageRow)
+     * @return Map(Integer, Message), in the order of the rows
+     * @throws RepositoryException if a user of a message doesn't exist
+     */
+    private Map<Integer, Message> hydrate(List<MessageRow> rows) throws RepositoryException {
+        Map<Integer, MessageRow> rowsById = new LinkedHashMap<>();
+        rows.forEach(row -> rowsById.put(row.id, row));
+
+        IntObjectHashMap<User> users = new IntObjectHashMap<>();
+        Map<Integer, Message> messages = new LinkedHashMap<>();
+        for (MessageRow row : rowsById.values()) {
+            List<User> to = new ArrayList<>(row.toIds.length);
+            for (int toId : row.toIds)
+                to.add(database.user(toId, users));
+            Message message = new Message(database.user(row.fromId, users), to, row.text, row.date);
+            message.setId(row.id);
+            messages.put(row.id, message);
+        }
+        linkReplies(messages, rowsById.values());
+        return messages;
+    }
+
+    @Override
+    public Message find(Integer id) throws RepositoryException {
+        MessageRow row = database.messages.get(id);
+        if (row == null)
+            throw new RepositoryException("Nonexistent message!\n");
+        return hydrate(List.of(row)).get(id);
+    }
+
+    @Override
+    public List<Message> getAll() throws RepositoryException {
+        List<MessageRow> rows = database.messages.values();
+        rows.sort(Comparator.comparingInt(row -> row.id));
+        return new ArrayList<>(hydrate(rows).values());
+    }
+
+    private static int[] recipientIds(Message message) {
+        IntHashSet ids = new IntHashSet();
+        for (User user : message.getTo())
+            ids.add(user.getId());
+        return ids.toArray();
+    }
+
+    @Override
+    public Message add(Message message) throws RepositoryException {
+        int fromId = message.getFrom().getId();
+        int[] toIds = recipientIds(message);
+        if (!database.users.containsKey(fromId))
+            throw new RepositoryException("Nonexistent user!\n");
+        for (int toId : toIds)
+            if (!database.users.containsKey(toId))
+                throw new RepositoryException("Nonexistent user!\n");
+        int replyOfId = message.getReplyOfId();
+        if (replyOfId != 0 && !database.messages.containsKey(replyOfId))
+            throw new RepositoryException("Nonexistent message!\n");
+
+        int id = database.lastMessageId.incrementAndGet();
+        database.messages.put(id, new MessageRow(id, fromId, toIds, message.getText(), message.getDate(), replyOfId));
+        database.messagesOfUser.add(fromId, id);
+        for (int toId : toIds)
+            database.messagesOfUser.add(toId, id);
+        if (replyOfId != 0)
+            database.replies.add(replyOfId, id);
+        database.indexWords(id, null, message.getText());
+
+        message.setId(id);
+        return message;
+    }
+
+    @Override
+    public Message delete(Integer id) throws RepositoryException {
+        Message deleted = find(id);
+        MessageRow row = database.messages.remove(id);
+        if (row == null)
+            throw new RepositoryException("Nonexistent message!\n");
+        database.indexWords(id, row.text, null);
+
+        for (int replyId : database.replies.removeAll(id))
+            database.messages.compute(replyId, reply -> reply == null || reply.replyOfId != id ? reply : reply.withoutReply());
+        if (row.replyOfId != 0)
+            database.replies.remove(row.replyOfId, id);
+        database.messagesOfUser.remove(row.fromId, id);
+        for (int toId : row.toIds)
+            if (toId != row.fromId)
+                database.messagesOfUser.remove(toId, id);
+        return deleted;
+    }
+
+    /**
+     * Updates the text and the recipients of a message
+     * @param message Message
+     * @return Message, as it was before the update
+     * @throws RepositoryException if the message doesn't exist
+     */
+    @Override
+    public Message update(Message message) throws RepositoryException {
+        Message updated = find(message.getId());
+        int[] toIds = recipientIds(message);
+        MessageRow[] old = {null};
+        database.messages.compute(message.getId(), row -> {
+            old[0] = row;
+            return row == null ? null : row.withRecipients(message.getText(), toIds);
+        });
+        if (old[0] == null)
+            throw new RepositoryException("Nonexistent message!\n");
+        database.indexWords(message.getId(), old[0].text, message.getText());
+
+        IntHashSet newRecipients = IntHashSet.of(toIds);
+        for (int toId : old[0].toIds)
+            if (!newRecipients.contains(toId) && toId != old[0].fromId)
+                database.messagesOfUser.remove(toId, message.getId());
+        for (int toId : toIds)
+            database.messagesOfUser.add(toId, message.getId());
+        return updated;
+    }
+
+    @Override
+    public Integer size() {
+        return database.messages.size();
+    }
+
+    @Override
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public Integer getNumberOfPages(User user1, User user2) {
+        int messages = countConversation(user1, user2);
+        if (messages <= pageSize)
+            return 1;
+        return (messages + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Gets the rows of a conversation, read through the message index of the user with fewer messages
+     * @param id1 int
+     * @param id2 int
+     * @return List(MessageRow), sorted by date, then by id
+     */
+    private List<MessageRow> conversationRows(int id1, int id2) {
+        int[] candidates = database.messagesOfUser.size(id1) <= database.messagesOfUser.size(id2)
+                ? database.messagesOfUser.get(id1)
+                : database.messagesOfUser.get(id2);
+
+        List<MessageRow> rows = new ArrayList<>();
+        for (int messageId : candidates) {
+            MessageRow row = database.messages.get(messageId);
+            if (row != null && ((row.fromId == id1 && row.isSentTo(id2)) || (row.fromId == id2 && row.isSentTo(id1))))
+                rows.add(row);
+        }
+        rows.sort(BY_DATE);
+        return rows;
+    }
+
+    /**
+     * Builds the messages of a conversation the way the database repository does: every message has the other
+     * user as its only recipient, and replies to messages outside the list build them when needed
+     * @param rows List(MessageRow), sorted by date
+     * @param user1 User
+     * @param user2 User
+     * @return List(Message)
+     */
+    private List<Message> readConversation(List<MessageRow> rows, User user1, User user2) {
+        List<Message> messageList = new ArrayList<>(rows.size());
+        Map<Integer, Message> messagesById = new HashMap<>(rows.size());
+        for (MessageRow row : rows) {
+            boolean fromFirst = row.fromId == user1.getId();
+            Message message = new Message(fromFirst ? user1 : user2, List.of(fromFirst ? user2 : user1), row.text, row.date);
+            message.setId(row.id);
+            messagesById.put(row.id, message);
+            messageList.add(message);
+        }
+        linkReplies(messagesById, rows);
+        return messageList;
+    }
+
+    /**
+     * Gets the thread of a message: the first message of its reply chain and every reply to it, directly or
+     * through other replies, found through the reply index; cut at THREAD_MAX_DEPTH levels of replies and
+     * THREAD_MAX_MESSAGES messages, and a reply chain that loops back on itself is followed once
+     * @param messageId Integer
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the message doesn't exist
+     */
+    @Override
+    public List<Message> getThread(Integer messageId) throws RepositoryException {
+        MessageRow root = database.messages.get(messageId);
+        if (root == null)
+            throw new RepositoryException("Nonexistent message!\n");
+        IntHashSet chain = IntHashSet.of(root.id);
+        for (int depth = 0; root.replyOfId != 0 && depth < THREAD_MAX_DEPTH; depth++) {
+            MessageRow parent = database.messages.get(root.replyOfId);
+            if (parent == null || !chain.add(parent.id))
+                break;
+            root = parent;
+        }
+
+        // breadth first: the replies of a level are added after the whole level
+        List<MessageRow> thread = new ArrayList<>();
+        IntHashSet found = IntHashSet.of(root.id);
+        thread.add(root);
+        int depth = 0;
+        int levelEnd = thread.size();
+        for (int i = 0; i < thread.size() && thread.size() < THREAD_MAX_MESSAGES; i++) {
+            if (i == levelEnd) {
+                depth++;
+                levelEnd = thread.size();
+            }
+            if (depth == THREAD_MAX_DEPTH)
+                break;
+            for (int replyId : database.replies.get(thread.get(i).id)) {
+                MessageRow reply = database.messages.get(replyId);
+                if (reply != null && thread.size() < THREAD_MAX_MESSAGES && found.add(replyId))
+                    thread.add(reply);
+            }
+        }
+        thread.sort(BY_DATE);
+        return new ArrayList<>(hydrate(thread).values());
+    }
+
+    @Override
+    public int countConversation(User user1, User user2) {
+        return conversationRows(user1.getId(), user2.getId()).size();
+    }
+
+    /**
+     * Nothing is cached, the counts are always computed from the indexes
+     */
+    @Override
+    public void invalidateConversationSizes() {
+    }
+
+    /**
+     * The messages of the user were deleted with the user, in the same memory database
+     * @param userId Integer
+     */
+    @Override
+    public void forgetUser(Integer userId) {
+    }
+
+    @Override
+    public List<Message> getPage(User user1, User user2, Integer pageNumber) {
+        List<MessageRow> rows = conversationRows(user1.getId(), user2.getId());
+        int from = Math.min(rows.size(), pageSize * (pageNumber - 1));
+        int to = Math.min(rows.size(), from + pageSize);
+        return readConversation(rows.subList(from, to), user1, user2);
+    }
+
+    private static int compare(MessageRow row, MessageCursor cursor) {
+        int byDate = row.date.compareTo(cursor.getDate());
+        return byDate != 0 ? byDate : Integer.compare(row.id, cursor.getId());
+    }
+
+    @Override
+    public List<Message> getConversationBefore(User user1, User user2, MessageCursor before, int limit) {
+        List<MessageRow> rows = conversationRows(user1.getId(), user2.getId());
+        int end = rows.size();
+        if (before != null)
+            while (end > 0 && compare(rows.get(end - 1), before) >= 0)
+                end--;
+        return readConversation(rows.subList(Math.max(0, end - limit), end), user1, user2);
+    }
+
+    @Override
+    public List<Message> getConversationAfter(User user1, User user2, MessageCursor after, int limit) {
+        List<MessageRow> rows = conversationRows(user1.getId(), user2.getId());
+        int start = 0;
+        if (after != null)
+            while (start < rows.size() && compare(rows.get(start), after) <= 0)
+                start++;
+        return readConversation(rows.subList(start, Math.min(rows.size(), start + limit)), user1, user2);
+    }
+
+    /**
+     * Last message and unread count of a conversation, while the inbox is computed
+     */
+    private static final class InboxConversation {
+        private MessageRow last;
+        private int unread;
+        private MessageCursor read;
+    }
+
+    /**
+     * Gets the conversations of a user with their last message and unread count, the most recent first,
+     * computed from the message index of the user
+     * @param userId Integer
+     * @return List(InboxEntry)
+     */
+    @Override
+    public List<InboxEntry> getInbox(Integer userId) {
+        IntObjectHashMap<InboxConversation> conversations = new IntObjectHashMap<>();
+        for (int messageId : database.messagesOfUser.get(userId)) {
+            MessageRow row = database.messages.get(messageId);
+            if (row == null || (row.fromId != userId && !row.isSentTo(userId)))
+                continue;
+            int[] friendIds = row.fromId == userId ? row.toIds : new int[]{row.fromId};
+            for (int friendId : friendIds) {
+                InboxConversation conversation = conversations.computeIfAbsent(friendId, key -> {
+                    InboxConversation created = new InboxConversation();
+                    created.read = database.readPosition(userId, key);
+                    return created;
+                });
+                if (conversation.last == null || BY_DATE.compare(conversation.last, row) < 0)
+                    conversation.last = row;
+                if (row.fromId != userId && (conversation.read == null
+                        || MessageCursor.compare(conversation.read, new MessageCursor(row.date, row.id)) < 0))
+                    conversation.unread++;
+            }
+        }
+
+        List<InboxEntry> inbox = new ArrayList<>(conversations.size());
+        for (int friendId : conversations.keys()) {
+            InboxConversation conversation = conversations.get(friendId);
+            MessageRow last = conversation.last;
+            inbox.add(new InboxEntry(friendId, last.id, last.fromId, last.text, last.date, conversation.unread));
+        }
+        inbox.sort(Comparator.comparing(InboxEntry::getLastMessageDate)
+                .thenComparingInt(InboxEntry::getLastMessageId)
+                .reversed());
+        return inbox;
+    }
+
+    @Override
+    public void markRead(List<ReadCursor> cursors) {
+        for (ReadCursor cursor : cursors)
+            database.markRead(cursor.getUserId(), cursor.getFriendId(), cursor.getPosition());
+    }
+
+    @Override
+    public ReadCursor getReadCursor(Integer userId, Integer friendId) {
+        MessageCursor position = database.readPosition(userId, friendId);
+        return position == null ? null : new ReadCursor(userId, friendId, position);
+    }
+
+    /**
+     * Searches the messages a user sent or received that contain every word of a text, through the word index
+     * of the memory database; the messages are ranked by how often the words appear in them, then newest first
+     * @param userId Integer
+     * @param text String, the words to search
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(Message)
+     * @throws RepositoryException if a user of a message doesn't exist
+     */
+    @Override
+    public List<Message> search(Integer userId, String text, int offset, int limit) throws RepositoryException {
+        String[] terms = TextIndex.terms(text);
+
+        class Match {
+            final MessageRow row;
+            final int rank;
+
+            Match(MessageRow row, int rank) {
+                this.row = row;
+                this.rank = rank;
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int messageId : database.searchWords(terms)) {
+            MessageRow row = database.messages.get(messageId);
+            if (row != null && (row.fromId == userId || row.isSentTo(userId)))
+                matches.add(new Match(row, TextIndex.rank(row.text, terms)));
+        }
+        matches.sort(Comparator.comparing((Match match) -> -match.rank)
+                .thenComparing(match -> match.row, BY_DATE.reversed()));
+
+        List<MessageRow> rows = new ArrayList<>();
+        for (int i = offset; i < matches.size() && rows.size() < limit; i++)
+            rows.add(matches.get(i).row);
+        Map<Integer, Message> messages = hydrate(rows);
+        List<Message> found = new ArrayList<>(rows.size());
+        for (MessageRow row : rows)
+            found.add(messages.get(row.id));
+        return found;
+    }
+
+    @Override
+    public List<Integer> getRecipientsAmong(Integer messageId, Collection<Integer> userIds) {
+        MessageRow row = database.messages.get(messageId);
+        List<Integer> recipients = new ArrayList<>();
+        if (row != null)
+            for (int toId : row.toIds)
+                if (userIds.contains(toId))
+                    recipients.add(toId);
+        return recipients;
+    }
+
+    @Override
+    public List<Message> getConversation(User user1, User user2) {
+        return readConversation(conversationRows(user1.getId(), user2.getId()), user1, user2);
+    }
+}
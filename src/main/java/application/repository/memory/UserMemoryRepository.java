@@ -0,0 +1,364 @@
+package application.repository.memory;
+
+import application.domain.FriendRequestStatus;
+import application.domain.Recommendation;
+import application.domain.Tuple;
+import application.domain.User;
+import application.domain.UserDeletionReport;
+import application.exceptions.RepositoryException;
+import application.repository.UserRepository;
+import application.repository.memory.MemoryDatabase.MessageRow;
+import application.utils.collections.IntHashSet;
+import application.utils.collections.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class UserMemoryRepository implements UserRepository {
+    private final int pageSize = 20;
+    private final MemoryDatabase database;
+
+    /**
+     * Constructor
+     * @param database MemoryDatabase
+     */
+    public UserMemoryRepository(MemoryDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public Tuple<Integer, String> findCredentials(String userName) throws RepositoryException {
+        Integer id = database.userIdsByName.get(userName);
+        String hash = id == null ? null : database.hashes.get(id);
+        if (hash == null)
+            throw new RepositoryException("Invalid login information!\n");
+        return new Tuple<>(id, hash);
+    }
+
+    @Override
+    public void updateHash(Integer id, String hash) {
+        database.hashes.compute(id, old -> old == null ? null : hash);
+    }
+
+    @Override
+    public User find(Integer id) throws RepositoryException {
+        return database.user(id);
+    }
+
+    @Override
+    public List<User> getAll() {
+        List<User> users = new ArrayList<>();
+        for (User user : database.users.values())
+            users.add(MemoryDatabase.copyOf(user));
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    public User add(User entity) throws RepositoryException {
+        int id = database.lastUserId.incrementAndGet();
+        if (database.userIdsByName.putIfAbsent(entity.getUserName(), id) != null)
+            throw new RepositoryException("This username already exists!\n");
+
+        User stored = new User(entity.getFirstName(), entity.getLastName(), entity.getUserName());
+        stored.setId(id);
+        database.hashes.put(id, entity.getPassWord());
+        database.users.put(id, stored);
+
+        entity.setId(id);
+        return entity;
+    }
+
+    @Override
+    public User delete(Integer id) throws RepositoryException {
+        User deleted = database.users.remove(id);
+        if (deleted == null)
+            throw new RepositoryException("Nonexistent user!\n");
+        database.hashes.remove(id);
+        database.userIdsByName.remove(deleted.getUserName(), id);
+        return MemoryDatabase.copyOf(deleted);
+    }
+
+    /**
+     * Deletes a user together with everything that references the user, walking the per-user indexes
+     * so only the rows of the user are visited. Messages replying to a deleted message are kept, without the reply.
+     * @param id Integer
+     * @return UserDeletionReport, with the number of entities removed of every kind
+     * @throws RepositoryException if the user doesn't exist
+     */
+    @Override
+    public UserDeletionReport deleteCascade(Integer id) throws RepositoryException {
+        User deleted = find(id);
+
+        int friendRequests = 0;
+        IntObjectHashMap<FriendRequestStatus> sent = database.requests.remove(id);
+        if (sent != null)
+            for (int toId : sent.keys()) {
+                database.requestSenders.remove(toId, id);
+                friendRequests++;
+            }
+        for (int fromId : database.requestSenders.removeAll(id)) {
+            boolean[] removed = {false};
+            database.requests.compute(fromId, statuses -> {
+                if (statuses == null)
+                    return null;
+                removed[0] = statuses.remove(id) != null;
+                return statuses.isEmpty() ? null : statuses;
+            });
+            if (removed[0])
+                friendRequests++;
+        }
+        database.requestCount.addAndGet(-friendRequests);
+
+        int[] friendIds = database.friends.removeAll(id);
+        for (int friendId : friendIds) {
+            database.friends.remove(friendId, id);
+            int rightId = Math.max(id, friendId);
+            database.friendships.compute(Math.min(id, friendId), dates -> {
+                if (dates == null)
+                    return null;
+                dates.remove(rightId);
+                return dates.isEmpty() ? null : dates;
+            });
+        }
+        database.friendshipCount.addAndGet(-friendIds.length);
+
+        int[] subscribedEvents = database.subscriptions.removeAll(id);
+        for (int eventId : subscribedEvents)
+            database.subscribers.remove(eventId, id);
+
+        int[] authoredEvents = database.eventsOfAuthor.removeAll(id);
+        for (int eventId : authoredEvents) {
+            database.events.remove(eventId);
+            for (int subscriberId : database.subscribers.removeAll(eventId))
+                database.subscriptions.remove(subscriberId, eventId);
+        }
+
+        // remove the user from the recipients, then collect the messages to delete
+        int recipients = 0;
+        IntHashSet doomed = new IntHashSet();
+        for (int messageId : database.messagesOfUser.removeAll(id)) {
+            boolean[] received = {false};
+            MessageRow row = database.messages.compute(messageId, old -> {
+                if (old == null || !old.isSentTo(id))
+                    return old;
+                received[0] = true;
+                int[] toIds = new int[old.toIds.length - 1];
+                int i = 0;
+                for (int toId : old.toIds)
+                    if (toId != id)
+                        toIds[i++] = toId;
+                return old.withRecipients(old.text, toIds);
+            });
+            if (received[0])
+                recipients++;
+            if (row != null && (row.fromId == id || row.toIds.length == 0))
+                doomed.add(messageId);
+        }
+
+        int[] unlinkedReplies = {0};
+        int messages = 0;
+        for (int messageId : doomed.toArray()) {
+            for (int replyId : database.replies.removeAll(messageId))
+                if (!doomed.contains(replyId))
+                    database.messages.compute(replyId, reply -> {
+                        if (reply == null || reply.replyOfId != messageId)
+                            return reply;
+                        unlinkedReplies[0]++;
+                        return reply.withoutReply();
+                    });
+            MessageRow row = database.messages.remove(messageId);
+            if (row == null)
+                continue;
+            messages++;
+            database.indexWords(messageId, row.text, null);
+            if (row.replyOfId != 0)
+                database.replies.remove(row.replyOfId, messageId);
+            database.messagesOfUser.remove(row.fromId, messageId);
+            for (int toId : row.toIds)
+                database.messagesOfUser.remove(toId, messageId);
+        }
+
+        database.readPositions.remove(id);
+        delete(id);
+        return new UserDeletionReport(deleted, friendRequests, friendIds.length, subscribedEvents.length,
+                authoredEvents.length, recipients, messages, unlinkedReplies[0]);
+    }
+
+    @Override
+    public User update(User entity) throws RepositoryException {
+        User updated = find(entity.getId());
+        Integer id = database.userIdsByName.get(entity.getUserName());
+        if (id == null)
+            throw new RepositoryException("Nonexistent user!\n");
+        database.users.compute(id, old -> {
+            if (old == null)
+                return null;
+            User user = new User(entity.getFirstName(), entity.getLastName(), old.getUserName());
+            user.setId(id);
+            return user;
+        });
+        return updated;
+    }
+
+    private Recommendation recommendation(int userId, User candidate, int mutualFriends) {
+        boolean requestPending = database.requestStatus(userId, candidate.getId()) == FriendRequestStatus.PENDING;
+        return new Recommendation(MemoryDatabase.copyOf(candidate), mutualFriends, requestPending);
+    }
+
+    /**
+     * Gets the next users that are friends of a friend of the user but not friends of the user,
+     * ranked by the number of mutual friends. Mutual friends are counted in a primitive map,
+     * visiting only the friends of the user's friends.
+     * @param userId Integer
+     * @param mutualFriends int, mutual friends of the last user read, Integer.MAX_VALUE to start from the first
+     * @param afterId int, id of the last user read
+     * @param limit int
+     * @return List(Recommendation)
+     */
+    @Override
+    public List<Recommendation> getFriendsOfFriendsAfter(Integer userId, int mutualFriends, int afterId, int limit) {
+        int[] friendIds = database.friends.get(userId);
+        IntHashSet friends = IntHashSet.of(friendIds);
+        IntObjectHashMap<int[]> counts = new IntObjectHashMap<>();
+        for (int friendId : friendIds)
+            for (int candidateId : database.friends.get(friendId))
+                if (candidateId != userId && !friends.contains(candidateId))
+                    counts.computeIfAbsent(candidateId, key -> new int[1])[0]++;
+
+        List<Recommendation> recommendations = new ArrayList<>(counts.size());
+        for (int candidateId : counts.keys()) {
+            int mutual = counts.get(candidateId)[0];
+            if (mutual > mutualFriends || (mutual == mutualFriends && candidateId <= afterId))
+                continue;
+            User candidate = database.users.get(candidateId);
+            if (candidate != null)
+                recommendations.add(recommendation(userId, candidate, mutual));
+        }
+        recommendations.sort(Comparator.comparing(Recommendation::getMutualFriends).reversed()
+                .thenComparing(recommendation -> recommendation.getUser().getId()));
+        return recommendations.size() > limit ? new ArrayList<>(recommendations.subList(0, limit)) : recommendations;
+    }
+
+    /**
+     * Gets the next users, in id order, that are not friends of the user.
+     * Ids are handed out in order, so the users are visited from afterId up, until the page is full.
+     * @param userId Integer
+     * @param afterId int, only users with a greater id are returned
+     * @param limit int
+     * @return List(Recommendation), without mutual friends
+     */
+    @Override
+    public List<Recommendation> getNonFriendsAfter(Integer userId, int afterId, int limit) {
+        IntHashSet friends = IntHashSet.of(database.friends.get(userId));
+        List<Recommendation> recommendations = new ArrayList<>();
+        int lastId = database.lastUserId.get();
+        for (int id = afterId + 1; id <= lastId && recommendations.size() < limit; id++) {
+            if (id == userId || friends.contains(id))
+                continue;
+            User user = database.users.get(id);
+            if (user != null)
+                recommendations.add(recommendation(userId, user, 0));
+        }
+        return recommendations;
+    }
+
+    /**
+     * Gets the trigrams of a text the way pg_trgm does: every word is padded with two spaces before and one after
+     * @param text String, in lower case
+     * @return Set(String)
+     */
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++)
+                trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static double similarity(Set<String> left, Set<String> right) {
+        if (left.isEmpty() || right.isEmpty())
+            return 0;
+        int shared = 0;
+        for (String trigram : left)
+            if (right.contains(trigram))
+                shared++;
+        return (double) shared / (left.size() + right.size() - shared);
+    }
+
+    /**
+     * Searches the users that are not friends of the user by name, with the rules of the database repository:
+     * terms of at least three characters match anywhere in the full name, shorter terms match its beginning,
+     * and names starting with the term come first, then the names most similar to the term.
+     * Every user is visited, as there is no name index.
+     * @param userId Integer
+     * @param name String, the search term
+     * @param offset int, number of results to skip
+     * @param limit int, maximum number of results
+     * @return List(Recommendation), without mutual friends
+     */
+    @Override
+    public List<Recommendation> searchByName(Integer userId, String name, int offset, int limit) {
+        String term = name.strip().toLowerCase();
+        Set<String> termTrigrams = trigrams(term);
+        IntHashSet friends = IntHashSet.of(database.friends.get(userId));
+
+        class Match {
+            final User user;
+            final boolean prefix;
+            final double similarity;
+
+            Match(User user, boolean prefix, double similarity) {
+                this.user = user;
+                this.prefix = prefix;
+                this.similarity = similarity;
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (User user : database.users.values()) {
+            if (user.getId().equals(userId) || friends.contains(user.getId()))
+                continue;
+            String fullName = (user.getFirstName() + " " + user.getLastName()).toLowerCase();
+            boolean prefix = fullName.startsWith(term);
+            if (prefix || (term.length() >= 3 && fullName.contains(term)))
+                matches.add(new Match(user, prefix, similarity(trigrams(fullName), termTrigrams)));
+        }
+        matches.sort(Comparator.comparing((Match match) -> !match.prefix)
+                .thenComparing(match -> -match.similarity)
+                .thenComparing(match -> match.user.getId()));
+
+        List<Recommendation> users = new ArrayList<>();
+        for (int i = offset; i < matches.size() && users.size() < limit; i++)
+            users.add(recommendation(userId, matches.get(i).user, 0));
+        return users;
+    }
+
+    @Override
+    public Integer size() {
+        return database.users.size();
+    }
+
+    @Override
+    public List<User> getPage(User u1, User u2, Integer page) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Integer getNumberOfPages(User u1, User u2) {
+        return 1;
+    }
+
+    @Override
+    public Integer getPageSize() {
+        return pageSize;
+    }
+}
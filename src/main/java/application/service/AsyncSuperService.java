@@ -0,0 +1,261 @@
+package application.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the calls of a SuperService on background threads, so the UI thread never waits for the database.
+ * Every call gets a name, used to keep latency metrics, and may get a key: a call with a key
+ * cancels the unfinished call with the same key, so only the latest request of a kind is answered.
+ */
+public class AsyncSuperService {
+
+    /**
+     * A call of the service that returns a value
+     * @param <T> generic type, the type of the returned value
+     */
+    @FunctionalInterface
+    public interface ServiceCall<T> {
+        T call(SuperService service) throws Exception;
+    }
+
+    /**
+     * A call of the service that returns nothing
+     */
+    @FunctionalInterface
+    public interface ServiceAction {
+        void run(SuperService service) throws Exception;
+    }
+
+    /**
+     * Latency metrics of the calls with the same name
+     */
+    public static class CallMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder cancellations = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder queueNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long queued, long latency, boolean failed) {
+            calls.increment();
+            if (failed)
+                failures.increment();
+            totalNanos.add(latency);
+            queueNanos.add(queued);
+            maxNanos.accumulateAndGet(latency, Math::max);
+        }
+
+        /**
+         * Gets the number of calls that were run
+         * @return long
+         */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * Gets the number of calls that threw an exception
+         * @return long
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Gets the number of calls cancelled before they were run
+         * @return long
+         */
+        public long getCancellations() {
+            return cancellations.sum();
+        }
+
+        /**
+         * Gets the average time from submitting a call to its completion
+         * @return double, in milliseconds
+         */
+        public double getAverageMillis() {
+            long count = calls.sum();
+            return count == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / count;
+        }
+
+        /**
+         * Gets the average time a call waited for a free thread
+         * @return double, in milliseconds
+         */
+        public double getAverageQueueMillis() {
+            long count = calls.sum();
+            return count == 0 ? 0 : queueNanos.sum() / 1_000_000.0 / count;
+        }
+
+        /**
+         * Gets the longest time from submitting a call to its completion
+         * @return double, in milliseconds
+         */
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d, failures=%d, cancelled=%d, avg=%.2fms (queued %.2fms), max=%.2fms",
+                    getCalls(), getFailures(), getCancellations(), getAverageMillis(), getAverageQueueMillis(), getMaxMillis());
+        }
+    }
+
+    private final SuperService service;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+    private final Map<String, CallMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param service SuperService
+     * @param threads int, maximum number of calls run at the same time
+     */
+    public AsyncSuperService(SuperService service, int threads) {
+        this.service = service;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "service-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a call on a background thread
+     * @param name String, the name used for the metrics of the call
+     * @param call ServiceCall(T)
+     * @param <T> generic type, the type of the returned value
+     * @return CompletableFuture(T), completed with the value or the exception of the call
+     */
+    public <T> CompletableFuture<T> call(String name, ServiceCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CallMetrics callMetrics = metrics.computeIfAbsent(name, key -> new CallMetrics());
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    callMetrics.cancellations.increment();
+                    return;
+                }
+                long started = System.nanoTime();
+                try {
+                    T result = call.call(service);
+                    callMetrics.record(started - submitted, System.nanoTime() - submitted, false);
+                    future.complete(result);
+                } catch (Exception e) {
+                    callMetrics.record(started - submitted, System.nanoTime() - submitted, true);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Runs a call that returns nothing on a background thread
+     * @param name String, the name used for the metrics of the call
+     * @param action ServiceAction
+     * @return CompletableFuture(Void), completed when the call finishes
+     */
+    public CompletableFuture<Void> run(String name, ServiceAction action) {
+        return call(name, service -> {
+            action.run(service);
+            return null;
+        });
+    }
+
+    /**
+     * Runs a call on a background thread, cancelling the unfinished call with the same key.
+     * A cancelled call is not run if it did not start yet, and its result is dropped otherwise.
+     * @param key String, the kind of request, e.g. the conversation shown in a view
+     * @param name String, the name used for the metrics of the call
+     * @param call ServiceCall(T)
+     * @param <T> generic type, the type of the returned value
+     * @return CompletableFuture(T), cancelled if a newer call with the same key is made before it completes
+     */
+    public <T> CompletableFuture<T> callLatest(String key, String name, ServiceCall<T> call) {
+        CompletableFuture<T> future = call(name, call);
+        CompletableFuture<?> previous = latest.put(key, future);
+        if (previous != null)
+            previous.cancel(false);
+        future.whenComplete((result, exception) -> latest.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Cancels the unfinished call with the given key, if any
+     * @param key String
+     */
+    public void cancel(String key) {
+        CompletableFuture<?> previous = latest.remove(key);
+        if (previous != null)
+            previous.cancel(false);
+    }
+
+    /**
+     * Tests if an exception only means that a call was superseded
+     * @param exception Throwable, as passed to a completion handler
+     * @return true, if the call was cancelled ; false, otherwise
+     */
+    public static boolean isCancellation(Throwable exception) {
+        while (exception != null) {
+            if (exception instanceof CancellationException)
+                return true;
+            exception = exception.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Gets the metrics of every call name
+     * @return Map(String, CallMetrics), sorted by name
+     */
+    public Map<String, CallMetrics> getMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<>(metrics));
+    }
+
+    /**
+     * Gets the wrapped service, for calls that do not reach the database
+     * @return SuperService
+     */
+    public SuperService getService() {
+        return service;
+    }
+
+    /**
+     * Stops accepting calls and waits a little for the running ones
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("AsyncSuperService");
+        getMetrics().forEach((name, callMetrics) ->
+                builder.append("\n  ").append(name).append(": ").append(callMetrics));
+        return builder.toString();
+    }
+}
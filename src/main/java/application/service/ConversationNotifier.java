@@ -0,0 +1,126 @@
+package application.service;
+
+import application.domain.Tuple;
+import application.exceptions.RepositoryException;
+import application.repository.MessageRepository;
+import application.repository.database.NotificationListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Demultiplexes the new message notifications of a NotificationListener to the conversations they belong to.
+ * Subscribers receive the id of each new message of their conversation, on the listener thread.
+ * A notification only names the message and its sender: the recipients are looked up when one of them
+ * has a conversation with the sender subscribed, and only among those.
+ */
+public class ConversationNotifier implements AutoCloseable {
+    /**
+     * Subscription to the messages of a conversation
+     */
+    public interface Subscription extends AutoCloseable {
+        /**
+         * Ends the subscription
+         */
+        @Override
+        void close();
+    }
+
+    private final NotificationListener listener;
+    private final MessageRepository messageRepository;
+    private final Map<Tuple<Integer, Integer>, List<IntConsumer>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor; the listener must not be started yet
+     * @param listener NotificationListener
+     * @param channel String, the channel new messages are published on
+     * @param messageRepository MessageRepository, looks up the recipients of the new messages
+     */
+    public ConversationNotifier(NotificationListener listener, String channel, MessageRepository messageRepository) {
+        this.listener = listener;
+        this.messageRepository = messageRepository;
+        listener.listen(channel, this::onNotification);
+    }
+
+    private static Tuple<Integer, Integer> conversationKey(int id1, int id2) {
+        return new Tuple<>(Math.min(id1, id2), Math.max(id1, id2));
+    }
+
+    /**
+     * Parses a "id|from" payload and notifies the subscribers of every conversation of the message
+     * @param payload String
+     */
+    private void onNotification(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 2)
+            return;
+        int messageId = Integer.parseInt(parts[0]);
+        int from = Integer.parseInt(parts[1]);
+
+        // the subscribed conversations of the sender, by the other user
+        Map<Integer, List<IntConsumer>> peers = new HashMap<>();
+        subscribers.forEach((key, conversationSubscribers) -> {
+            if (key.getLeft() == from)
+                peers.put(key.getRight(), conversationSubscribers);
+            else if (key.getRight() == from)
+                peers.put(key.getLeft(), conversationSubscribers);
+        });
+        if (peers.isEmpty())
+            return;
+
+        List<Integer> recipients;
+        try {
+            recipients = messageRepository.getRecipientsAmong(messageId, peers.keySet());
+        } catch (RepositoryException e) {
+            System.err.println("Recipients of message " + messageId + " not found: " + e.getMessage());
+            return;
+        }
+        for (Integer to : recipients)
+            peers.get(to).forEach(subscriber -> subscriber.accept(messageId));
+    }
+
+    /**
+     * Subscribes to the new messages between two users, in both directions
+     * @param userId int
+     * @param peerId int
+     * @param onMessage IntConsumer, receives the id of each new message
+     * @return Subscription, closing it ends the subscription
+     */
+    public Subscription subscribe(int userId, int peerId, IntConsumer onMessage) {
+        Tuple<Integer, Integer> key = conversationKey(userId, peerId);
+        subscribers.compute(key, (k, list) -> {
+            if (list == null)
+                list = new CopyOnWriteArrayList<>();
+            list.add(onMessage);
+            return list;
+        });
+        return () -> subscribers.computeIfPresent(key, (k, list) -> {
+            list.remove(onMessage);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * Tests if new messages are currently being received
+     * @return boolean
+     */
+    public boolean isConnected() {
+        return listener.isConnected();
+    }
+
+    /**
+     * Starts receiving notifications
+     */
+    public void start() {
+        listener.start();
+    }
+
+    @Override
+    public void close() {
+        listener.close();
+    }
+}
@@ -5,7 +5,7 @@ import application.domain.User;
 import application.domain.validator.Validator;
 import application.exceptions.RepositoryException;
 import application.exceptions.ValidationException;
-import application.repository.database.EventDataBaseRepository;
+import application.repository.EventRepository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -16,15 +16,15 @@ import java.util.List;
  */
 public class EventService {
 
-    private final EventDataBaseRepository repository;
+    private final EventRepository repository;
     private final Validator<Event> validator;
 
     /**
      * Constructor
-     * @param repository EventDataBaseRepository
+     * @param repository EventRepository
      * @param validator Validator(Event)
      */
-    public EventService(EventDataBaseRepository repository, Validator<Event> validator) {
+    public EventService(EventRepository repository, Validator<Event> validator) {
         this.repository = repository;
         this.validator = validator;
     }
@@ -38,6 +38,52 @@ public class EventService {
         return repository.getAll();
     }
 
+    /**
+     * Gets the events shown to a user: authored by the user or a friend, or with a friend subscribed
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Event> getFeed(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException {
+        return repository.getFeed(userId, from, offset, limit);
+    }
+
+    /**
+     * Gets the events a user is subscribed to
+     * @param userId Integer
+     * @param from LocalDate, events before this date are left out
+     * @param offset int, number of events to skip
+     * @param limit int, maximum number of events
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Event> getSubscribedEvents(Integer userId, LocalDate from, int offset, int limit) throws RepositoryException {
+        return repository.getSubscribedEvents(userId, from, offset, limit);
+    }
+
+    /**
+     * Counts the events a user is subscribed to that take place in a range of dates
+     * @param userId Integer
+     * @param from LocalDate, inclusive
+     * @param to LocalDate, exclusive
+     * @return int
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public int countSubscribedEvents(Integer userId, LocalDate from, LocalDate to) throws RepositoryException {
+        return repository.countSubscribedEvents(userId, from, to);
+    }
+
+    /**
+     * Gets the number of events in a page
+     * @return int
+     */
+    public int getPageSize() {
+        return repository.getPageSize();
+    }
+
     /**
      * Finds an event by ID
      * @param eventId Integer
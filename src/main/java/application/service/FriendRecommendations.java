@@ -0,0 +1,134 @@
+package application.service;
+
+import application.domain.Recommendation;
+import application.exceptions.RepositoryException;
+import application.repository.UserRepository;
+import application.utils.collections.IntHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recommends friends to a user ("people you may know"): first the friends of the user's friends,
+ * the ones with the most mutual friends first, then every other user that is not a friend, in id order.
+ * Recommendations are read one page at a time, so only the pages actually shown are loaded.
+ */
+public class FriendRecommendations {
+    private final UserRepository userRepository;
+    private int pageSize = 50;
+
+    /**
+     * Constructor
+     * @param userRepository UserRepository
+     */
+    public FriendRecommendations(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Starts reading the recommendations of a user
+     * @param userId Integer
+     * @return Cursor, positioned before the first recommendation
+     */
+    public Cursor recommendFor(Integer userId) {
+        return new Cursor(userId);
+    }
+
+    /**
+     * Searches a page of users that are not friends of the user by name, best matches first
+     * @param userId Integer
+     * @param name String
+     * @param offset int, number of results to skip
+     * @return List(Recommendation), empty if there are no more results
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Recommendation> search(Integer userId, String name, int offset) throws RepositoryException {
+        return userRepository.searchByName(userId, name, offset, pageSize);
+    }
+
+    /**
+     * Gets the number of recommendations in a page
+     * @return int
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Position in the recommendations of a user
+     */
+    public class Cursor {
+        private final Integer userId;
+        private final IntHashSet rankedIds = new IntHashSet(); // friends of friends read so far
+        private int lastMutualFriends = Integer.MAX_VALUE; // position in the friends of friends
+        private int lastRankedId = Integer.MIN_VALUE;
+        private boolean rankedExhausted = false;
+        private int lastId = Integer.MIN_VALUE; // id of the last user read after the ranked ones
+        private boolean exhausted = false;
+
+        private Cursor(Integer userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * Gets the id of the user the recommendations are for
+         * @return Integer
+         */
+        public Integer getUserId() {
+            return userId;
+        }
+
+        /**
+         * Tests if there may be more recommendations to read
+         * @return boolean
+         */
+        public boolean hasMore() {
+            return !exhausted;
+        }
+
+        /**
+         * Reads the next page of recommendations
+         * @return List(Recommendation), empty if there are no more recommendations
+         * @throws RepositoryException if the database cannot be reached
+         */
+        public List<Recommendation> nextPage() throws RepositoryException {
+            return next(pageSize);
+        }
+
+        /**
+         * Reads the next recommendations
+         * @param count int, maximum number of recommendations
+         * @return List(Recommendation), empty if there are no more recommendations
+         * @throws RepositoryException if the database cannot be reached
+         */
+        public List<Recommendation> next(int count) throws RepositoryException {
+            List<Recommendation> page = new ArrayList<>(count);
+            while (page.size() < count && !rankedExhausted) {
+                int requested = count - page.size();
+                List<Recommendation> batch =
+                        userRepository.getFriendsOfFriendsAfter(userId, lastMutualFriends, lastRankedId, requested);
+                if (batch.size() < requested)
+                    rankedExhausted = true;
+                for (Recommendation recommendation : batch) {
+                    lastMutualFriends = recommendation.getMutualFriends();
+                    lastRankedId = recommendation.getUser().getId();
+                    rankedIds.add(lastRankedId);
+                    page.add(recommendation);
+                }
+            }
+
+            while (page.size() < count && !exhausted) {
+                int requested = count - page.size();
+                List<Recommendation> batch = userRepository.getNonFriendsAfter(userId, lastId, requested);
+                if (batch.size() < requested)
+                    exhausted = true;
+                for (Recommendation recommendation : batch) {
+                    lastId = recommendation.getUser().getId();
+                    if (!rankedIds.contains(lastId))
+                        page.add(recommendation);
+                }
+            }
+            return page;
+        }
+    }
+}
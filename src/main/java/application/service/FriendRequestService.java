@@ -1,33 +1,47 @@
 package application.service;
 
 import application.domain.FriendRequest;
+import application.domain.FriendRequestDTO;
 import application.domain.FriendRequestStatus;
 import application.domain.Tuple;
 import application.domain.validator.Validator;
 import application.exceptions.RepositoryException;
 import application.exceptions.ValidationException;
-import application.repository.Repository;
-import application.utils.observer.Observable;
-import application.utils.observer.Observer;
+import application.repository.FriendRequestRepository;
+import application.utils.events.ChangeEvent;
+import application.utils.events.ChangeEventBus;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
+import static application.utils.Constants.CHANGE_FRAME_MILLIS;
 
 /**
  * Handles friend requests from the repository
  */
-public class FriendRequestService implements Observable {
-    private Repository<Tuple<Integer,Integer>, FriendRequest> requestRepository;
+public class FriendRequestService {
+    private FriendRequestRepository requestRepository;
     private Validator<FriendRequest> validatorRequest;
-    public FriendRequestService (Repository<Tuple<Integer, Integer>, FriendRequest> friendRequestDatabase,
+    private final ChangeEventBus changeEventBus; // publishes the changes of friend requests
+    public FriendRequestService (FriendRequestRepository friendRequestDatabase,
                                  Validator<FriendRequest> validator) {
+        this(friendRequestDatabase, validator, new ChangeEventBus(CHANGE_FRAME_MILLIS));
+    }
+
+    /**
+     * Constructor
+     * @param friendRequestDatabase FriendRequestRepository
+     * @param validator Validator(FriendRequest)
+     * @param changeEventBus ChangeEventBus, receives the changes of friend requests
+     */
+    public FriendRequestService (FriendRequestRepository friendRequestDatabase,
+                                 Validator<FriendRequest> validator,
+                                 ChangeEventBus changeEventBus) {
         this.requestRepository=friendRequestDatabase;
         this.validatorRequest =validator;
+        this.changeEventBus = changeEventBus;
     }
-    private List<Observer> observers=new ArrayList<>();
 
     /**
      * Find a request
@@ -48,8 +62,9 @@ public class FriendRequestService implements Observable {
      */
     public void addRequest (FriendRequest request) throws RepositoryException, ValidationException {
         validatorRequest.validate(request);
-        notifyObservers();
         requestRepository.add(request);
+        changeEventBus.publish(ChangeEvent.friendRequest(ChangeEvent.Action.ADDED,
+                request.getId().getLeft(), request.getId().getRight()));
     }
 
     /**
@@ -61,7 +76,7 @@ public class FriendRequestService implements Observable {
      */
     public FriendRequest deleteRequest (Integer idFrom, Integer idTo) throws RepositoryException {
         FriendRequest old = requestRepository.delete(new Tuple<>(idFrom,idTo));
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.friendRequest(ChangeEvent.Action.DELETED, idFrom, idTo));
         return old;
     }
 
@@ -82,7 +97,7 @@ public class FriendRequestService implements Observable {
         request.setId(new Tuple<>(idFrom,idTo));
 
         FriendRequest upd = requestRepository.update(request);
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.friendRequest(ChangeEvent.Action.UPDATED, idFrom, idTo));
         return upd;
     }
 
@@ -120,41 +135,38 @@ public class FriendRequestService implements Observable {
     }
 
     /**
-     * Deletes all friend requests from a specific user
+     * Returns a page of the requests sent to a user, with the names of their senders
      * @param id Integer
-     * @throws RepositoryException if the user doesn't exist
+     * @param status FriendRequestStatus, null for requests of any status
+     * @param offset int, number of requests to skip
+     * @param limit int, maximum number of requests
+     * @return List(FriendRequestDTO), sorted by sender
+     * @throws RepositoryException if the repository cannot be reached
      */
-    public void deleteRequestsOfUser(Integer id) throws RepositoryException {
-
-        boolean done = false;
-        while (!done) {
-            for (FriendRequest f : getAll()) {
-                if (id.equals(f.getId().getLeft())) {
-                    requestRepository.delete(new Tuple<>(id, f.getId().getRight()));
-                    break;
-                }
-                else if (id.equals(f.getId().getRight())) {
-                    requestRepository.delete(new Tuple<>(f.getId().getLeft(), id));
-                    break;
-                }
-            }
-            done = true;
-        }
-    }
-
-    @Override
-    public void addObserver(Observer e) {
-        observers.add(e);
+    public List<FriendRequestDTO> getRequestsToUser(Integer id, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        return requestRepository.getRequestsToUser(id, status, offset, limit);
     }
 
-    @Override
-    public void removeObserver(Observer e) {
-        observers.remove(e);
+    /**
+     * Returns a page of the requests sent by a user, with the names of their receivers
+     * @param id Integer
+     * @param status FriendRequestStatus, null for requests of any status
+     * @param offset int, number of requests to skip
+     * @param limit int, maximum number of requests
+     * @return List(FriendRequestDTO), sorted by receiver
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public List<FriendRequestDTO> getRequestsFromUser(Integer id, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        return requestRepository.getRequestsFromUser(id, status, offset, limit);
     }
 
-    @Override
-    public void notifyObservers() {
-        observers.stream()
-                .forEach(Observer::observerUpdate);
+    /**
+     * Gets the bus the changes of friend requests are published on
+     * @return ChangeEventBus
+     */
+    public ChangeEventBus getChangeEventBus() {
+        return changeEventBus;
     }
 }
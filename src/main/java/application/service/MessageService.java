@@ -1,11 +1,14 @@
 package application.service;
 
+import application.domain.InboxEntry;
 import application.domain.Message;
+import application.domain.MessageCursor;
+import application.domain.ReadCursor;
 import application.domain.User;
 import application.domain.validator.Validator;
 import application.exceptions.RepositoryException;
 import application.exceptions.ValidationException;
-import application.repository.database.MessageDataBaseRepository;
+import application.repository.MessageRepository;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -13,19 +16,23 @@ import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 
+import static application.utils.DatabaseConstants.READ_CURSOR_FLUSH_MILLIS;
+
 /**
  * Handles the message repository
  */
 public class MessageService {
 
-    private final MessageDataBaseRepository repository;
+    private final MessageRepository repository;
     private final Validator<Message> validator;
+    private final ReadCursorBuffer readCursors;
 
 
-    public MessageService(MessageDataBaseRepository repository, Validator<Message> validator) {
+    public MessageService(MessageRepository repository, Validator<Message> validator) {
 
         this.repository = repository;
         this.validator = validator;
+        this.readCursors = new ReadCursorBuffer(repository, READ_CURSOR_FLUSH_MILLIS);
     }
 
     /**
@@ -141,41 +148,12 @@ public class MessageService {
     }
 
     /**
-     * Deletes all the messages from a specific user
-     * @param deleted User
-     * @throws ValidationException if the messages are invalid
-     * @throws RepositoryException if the user or his messages don't exist
-     */
-    public void deleteMessagesOfUser(User deleted) throws ValidationException, RepositoryException {
-        //delete all messages sent by user and user references in to list
-
-        List<Message> messages = getAll();
-        for(Message m : messages){
-            if (m.getFrom().equals(deleted)){
-                delete(m.getId());
-            }
-            else {
-
-                int initialSize = m.getTo().size();
-                boolean found = true;
-                while(found){
-                    found = false;
-                    for (User u : m.getTo()){
-                        if (u.equals(deleted)){
-                            m.getTo().remove(u);
-                            found = true;
-                            break;
-                        }
-                    }
-                }
-                if (m.getTo().size() == 0){
-                    delete(m.getId());
-                }
-                else if (m.getTo().size() != initialSize){
-                    update(m.getId(), m.getTo(), m.getText());
-                }
-            }
-        }
+     * Removes a deleted user from the messages, after the user was deleted with the messages the user repository reaches
+     * @param userId Integer
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public void forgetUser(Integer userId) throws RepositoryException {
+        repository.forgetUser(userId);
     }
 
     /**
@@ -189,6 +167,87 @@ public class MessageService {
         return repository.getConversation(user1, user2);
     }
 
+    /**
+     * Gets the conversations of a user with their last message and unread count, the most recent first;
+     * the buffered read cursors are written first, so the counts include them
+     * @param userId Integer
+     * @return List(InboxEntry)
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public List<InboxEntry> getInbox(Integer userId) throws RepositoryException {
+        readCursors.flush();
+        return repository.getInbox(userId);
+    }
+
+    /**
+     * Marks the messages of a conversation up to a position as read by a user; the cursor is buffered and
+     * written with the next batch
+     * @param userId Integer, the reader
+     * @param friendId Integer, the other user of the conversation
+     * @param position MessageCursor, of the last read message
+     */
+    public void markRead(Integer userId, Integer friendId, MessageCursor position) {
+        readCursors.add(new ReadCursor(userId, friendId, position));
+    }
+
+    /**
+     * Gets the position up to which a user read a conversation, including a cursor which is not written yet
+     * @param userId Integer, the reader
+     * @param friendId Integer, the other user of the conversation
+     * @return ReadCursor, null if the user read none of it
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public ReadCursor getReadCursor(Integer userId, Integer friendId) throws RepositoryException {
+        ReadCursor pending = readCursors.getPending(userId, friendId);
+        ReadCursor stored = repository.getReadCursor(userId, friendId);
+        if (pending == null)
+            return stored;
+        if (stored == null || !stored.hasRead(pending.getPosition()))
+            return pending;
+        return stored;
+    }
+
+    /**
+     * Writes the buffered read cursors and stops their flusher thread
+     */
+    public void close() {
+        readCursors.close();
+    }
+
+    /**
+     * Searches a page of the messages a user sent or received by their words, best matches first
+     * @param user User
+     * @param text String, the words the messages must contain
+     * @param offset int, number of results to skip
+     * @return List(Message), empty if there are no more results
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public List<Message> search(User user, String text, int offset) throws RepositoryException {
+        return withReplies(repository.search(user.getId(), text, offset, getPageSize()));
+    }
+
+    /**
+     * Gets the thread of a message: the first message of its reply chain and every reply to it
+     * @param messageId Integer
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the message doesn't exist
+     */
+    public List<Message> getThread(Integer messageId) throws RepositoryException {
+        return repository.getThread(messageId);
+    }
+
+    /**
+     * Loads the messages replied to by messages about to be shown, so the UI never loads them on its own thread;
+     * the ones missing from the same page are loaded together
+     * @param messages List(Message)
+     * @return List(Message), the same list
+     */
+    private static List<Message> withReplies(List<Message> messages) {
+        for (Message message : messages)
+            message.getReplyOf();
+        return messages;
+    }
+
     /**
      * Gets the page size of the repository
      * @return Integer
@@ -225,8 +284,30 @@ public class MessageService {
 
         if ( conversation == null)
             return Collections.emptyList();
-        else return conversation;
+        else return withReplies(conversation);
     }
 
+    /**
+     * Gets a page of a conversation, made of the messages sent right before a position
+     * @param user1 User
+     * @param user2 User
+     * @param before MessageCursor, or null for the newest page
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the users don't exist
+     */
+    public List<Message> getConversationPageBefore(User user1, User user2, MessageCursor before) throws RepositoryException {
+        return withReplies(repository.getConversationBefore(user1, user2, before, getPageSize()));
+    }
 
+    /**
+     * Gets a page of a conversation, made of the messages sent right after a position
+     * @param user1 User
+     * @param user2 User
+     * @param after MessageCursor, or null for the oldest page
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the users don't exist
+     */
+    public List<Message> getConversationPageAfter(User user1, User user2, MessageCursor after) throws RepositoryException {
+        return withReplies(repository.getConversationAfter(user1, user2, after, getPageSize()));
+    }
 }
@@ -1,18 +1,19 @@
 package application.service;
 
 import application.domain.Friendship;
+import application.domain.Recommendation;
 import application.domain.Tuple;
 import application.domain.User;
+import application.domain.UserDeletionReport;
 import application.domain.FriendDTO;
 import application.domain.validator.Validator;
 import application.exceptions.RepositoryException;
+import application.exceptions.ServiceException;
 import application.exceptions.ValidationException;
-import application.repository.Repository;
-import application.repository.database.UserDataBaseRepository;
-import application.utils.observer.Observable;
-import application.utils.observer.Observer;
-import de.mkammerer.argon2.Argon2;
-import de.mkammerer.argon2.Argon2Factory;
+import application.repository.FriendshipRepository;
+import application.repository.UserRepository;
+import application.utils.events.ChangeEvent;
+import application.utils.events.ChangeEventBus;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -20,35 +21,74 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import static application.utils.Constants.DATE_TIME_FORMATTER;
+import static application.utils.Constants.*;
 
-public class Network implements Observable {
+public class Network {
 
     // ===================== NETWORK ==========================
-    private final UserDataBaseRepository userRepository; // stores the users of the network
+    private final UserRepository userRepository; // stores the users of the network
     private final Validator<User> userValidator; // validates the users
-    private final Repository<Tuple<Integer, Integer>, Friendship> friendshipRepository; // stores the friendships of the network
+    private final FriendshipRepository friendshipRepository; // stores the friendships of the network
     private final Validator<Friendship> friendshipValidator; // validates the friendships
+    private final FriendRecommendations recommendations; // recommends friends to the users
+    private final PasswordHasher passwordHasher; // hashes the passwords of the users
+    private final ChangeEventBus changeEventBus; // publishes the changes of users and friendships
 
+    /**
+     * Constructor
+     * @param userRepository Repository(Integer,User)
+     * @param userValidator Validator(User)
+     * @param friendshipRepository FriendshipRepository
+     * @param friendshipValidator Validator(Friendship)
+     */
+    public Network(UserRepository userRepository,
+                   Validator<User> userValidator,
+                   FriendshipRepository friendshipRepository,
+                   Validator<Friendship> friendshipValidator) {
+        this(userRepository, userValidator, friendshipRepository, friendshipValidator,
+                new PasswordHasher(HASH_ITERATIONS, HASH_MEMORY_KIB, HASH_PARALLELISM, HASH_THREADS, HASH_QUEUE_CAPACITY));
+    }
 
-    private List<Observer> observers=new ArrayList<>(); // list of observer objects that observe for changes in this service
+    /**
+     * Constructor
+     * @param userRepository Repository(Integer,User)
+     * @param userValidator Validator(User)
+     * @param friendshipRepository FriendshipRepository
+     * @param friendshipValidator Validator(Friendship)
+     * @param passwordHasher PasswordHasher
+     */
+    public Network(UserRepository userRepository,
+                   Validator<User> userValidator,
+                   FriendshipRepository friendshipRepository,
+                   Validator<Friendship> friendshipValidator,
+                   PasswordHasher passwordHasher) {
+        this(userRepository, userValidator, friendshipRepository, friendshipValidator, passwordHasher,
+                new ChangeEventBus(CHANGE_FRAME_MILLIS));
+    }
 
     /**
      * Constructor
      * @param userRepository Repository(Integer,User)
      * @param userValidator Validator(User)
-     * @param friendshipRepository Repository(Tuple(Integer,Integer),Friendship)
+     * @param friendshipRepository FriendshipRepository
      * @param friendshipValidator Validator(Friendship)
+     * @param passwordHasher PasswordHasher
+     * @param changeEventBus ChangeEventBus, receives the changes of users and friendships
      */
-    public Network(UserDataBaseRepository userRepository,
+    public Network(UserRepository userRepository,
                    Validator<User> userValidator,
-                   Repository<Tuple<Integer, Integer>, Friendship> friendshipRepository,
-                   Validator<Friendship> friendshipValidator) {
+                   FriendshipRepository friendshipRepository,
+                   Validator<Friendship> friendshipValidator,
+                   PasswordHasher passwordHasher,
+                   ChangeEventBus changeEventBus) {
 
         this.userRepository = userRepository;
         this.userValidator = userValidator;
         this.friendshipRepository = friendshipRepository;
         this.friendshipValidator = friendshipValidator;
+        this.recommendations = new FriendRecommendations(userRepository);
+        this.passwordHasher = passwordHasher;
+        this.changeEventBus = changeEventBus;
     }
 
 
@@ -62,17 +102,60 @@ public class Network implements Observable {
     public List<User> friendList(User user) throws RepositoryException {
         List<User> list = new ArrayList<>();
 
-        for (Friendship f : friendshipRepository.getAll()){
-            if(user.getId().equals(f.getId().getLeft())){
-                list.add(userRepository.find(f.getId().getRight()));
-            }
-            else if(user.getId().equals(f.getId().getRight())){
-                list.add(userRepository.find(f.getId().getLeft()));
-            }
+        for (Friendship f : friendshipRepository.getFriendshipsOfUser(user.getId())){
+            list.add(friendOf(f, user.getId()));
         }
         return list;
     }
 
+    /**
+     * Gets the friend recommendations of a user, friends of friends first
+     * @param userId Integer
+     * @return FriendRecommendations.Cursor, positioned before the first recommendation
+     * @throws RepositoryException if the user doesn't exist
+     */
+    public FriendRecommendations.Cursor getFriendRecommendations(Integer userId) throws RepositoryException {
+        userRepository.find(userId);
+        return recommendations.recommendFor(userId);
+    }
+
+    /**
+     * Searches the users that are not friends of a user by name
+     * @param userId Integer
+     * @param name String
+     * @param offset int, number of results to skip
+     * @return List(Recommendation), a page of results, empty if there are no more results
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Recommendation> searchNonFriends(Integer userId, String name, int offset) throws RepositoryException {
+        return recommendations.search(userId, name, offset);
+    }
+
+    /**
+     * Gets the other user of a friendship
+     * @param friendship Friendship, with both users set
+     * @param userId Integer
+     * @return User
+     */
+    private User friendOf(Friendship friendship, Integer userId) {
+        if (friendship.getId().getLeft().equals(userId))
+            return friendship.getUserRight();
+        return friendship.getUserLeft();
+    }
+
+    /**
+     * Describes a friendship of a user as "first name | last name | date" of the friend
+     * @param friendship Friendship, with both users set
+     * @param userId Integer
+     * @return String
+     */
+    private String describeFriendship(Friendship friendship, Integer userId) {
+        User friendUser = friendOf(friendship, userId);
+        return friendUser.getFirstName() + " | " +
+                friendUser.getLastName() + " | " +
+                friendship.getDate().format(DATE_TIME_FORMATTER);
+    }
+
     /**
      * Gets a string list of all the friendships the user has
      * @param userId Integer
@@ -81,33 +164,10 @@ public class Network implements Observable {
      */
     public List<String> getFriendshipsOfUser(Integer userId) throws RepositoryException {
 
-        List<Friendship> userFriendship = friendshipRepository.getAll();
         userRepository.find(userId);
-        return userFriendship
+        return friendshipRepository.getFriendshipsOfUser(userId)
                 .stream()
-                .filter(x -> (x.getId().getLeft().equals(userId) || x.getId().getRight().equals(userId)))
-                .map(x -> {
-                        String friendString = "";
-                        try {
-                            User friendUser;
-                            if (x.getId().getLeft().equals(userId)) {//the friend is the right one
-                                friendUser = userRepository.find(x.getId().getRight());
-                            }
-                            else {//the friend is the left one
-                                friendUser = userRepository.find(x.getId().getLeft());
-                            }
-
-                            friendString =
-                                    friendUser.getFirstName() + " | " +
-                                            friendUser.getLastName() + " | " +
-                                            x.getDate().format(DATE_TIME_FORMATTER);
-
-                        } catch (RepositoryException e) {
-                            e.printStackTrace();
-                        }
-                    return friendString;
-
-                })
+                .map(friendship -> describeFriendship(friendship, userId))
                 .collect(Collectors.toList());
     }
 
@@ -121,14 +181,10 @@ public class Network implements Observable {
      */
     public List<String> getFriendshipsOfUserFromMonth(Integer userId, Integer month) throws ValidationException, RepositoryException {
         if (month < 1 || month > 12) throw new ValidationException("Invalid month!");
-        List<String> unfilteredList = getFriendshipsOfUser(userId);
-        return unfilteredList
+        userRepository.find(userId);
+        return friendshipRepository.getFriendshipsOfUserFromMonth(userId, month)
                 .stream()
-                .filter(x ->{
-                    String dateString=x.split("\\|")[2].substring(1); // get date from string with name and date
-                    LocalDateTime date = LocalDateTime.parse(dateString,DATE_TIME_FORMATTER);
-                    return date.getMonthValue() == month; // verify if month is correct
-                })
+                .map(friendship -> describeFriendship(friendship, userId))
                 .collect(Collectors.toList());
     }
 
@@ -139,39 +195,45 @@ public class Network implements Observable {
      * @throws RepositoryException if the user isn't found
      */
     public List<FriendDTO> getFriendDtoOfUser(Integer userId) throws RepositoryException {
-        List<Friendship> userFriendship = friendshipRepository.getAll();
         userRepository.find(userId);
-        return userFriendship
+        return friendshipRepository.getFriendshipsOfUser(userId)
                 .stream()
-                .filter(x -> (x.getId().getLeft().equals(userId) || x.getId().getRight().equals(userId)))
                 .map(friendship -> {
                     FriendDTO friend = new FriendDTO();
-                    try {
-                        User friendUser;
-                        if (friendship.getId().getLeft().equals(userId)) {//the friend is the right one
-                            friendUser = userRepository.find(friendship.getId().getRight());
-                        }
-                        else {//the friend is the left one
-                            friendUser = userRepository.find(friendship.getId().getLeft());
-                        }
-                        friend.setId(friendUser.getId());
-                        friend.setName(friendUser.getFirstName() + " " + friendUser.getLastName());
-                        friend.setDate(friendship.getDate().format(DATE_TIME_FORMATTER));
-
-
-                    } catch (RepositoryException e) {
-                        e.printStackTrace();
-                    }
+                    User friendUser = friendOf(friendship, userId);
+                    friend.setId(friendUser.getId());
+                    friend.setName(friendUser.getFirstName() + " " + friendUser.getLastName());
+                    friend.setDate(friendship.getDate().format(DATE_TIME_FORMATTER));
                     return friend;
-
                 })
                 .collect(Collectors.toList());
     }
 
     //==================== USERS ==========================
 
-    public int loginUser(String username, String password) throws RepositoryException {
-        return userRepository.login(username,password);
+    /**
+     * Authenticates a user; a password hashed with weaker parameters than the current ones is hashed again
+     * @param username String
+     * @param password String
+     * @return int user's ID or -1 if the password is wrong
+     * @throws RepositoryException if there is no user with the username
+     * @throws ServiceException if too many logins are waiting
+     */
+    public int loginUser(String username, String password) throws RepositoryException, ServiceException {
+        Tuple<Integer, String> credentials = userRepository.findCredentials(username);
+        if (!passwordHasher.verify(credentials.getRight(), password))
+            return -1;
+        if (passwordHasher.needsRehash(credentials.getRight()))
+            userRepository.updateHash(credentials.getLeft(), passwordHasher.hash(password));
+        return credentials.getLeft();
+    }
+
+    /**
+     * Gets the password hasher of the network
+     * @return PasswordHasher
+     */
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
     }
 
     /**
@@ -179,30 +241,29 @@ public class Network implements Observable {
      * @param user User type object
      * @throws ValidationException if the user is not valid
      * @throws RepositoryException if a user with the same username already exists
+     * @throws ServiceException if too many passwords are waiting to be hashed
      */
-    public User addUser(User user) throws ValidationException, RepositoryException {
+    public User addUser(User user) throws ValidationException, RepositoryException, ServiceException {
         userValidator.validate(user);
 
-        Argon2 argon2 = Argon2Factory.create(16,32);
-        user.setPassWord(argon2.hash(6,4096,1,user.getPassWord()));
+        user.setPassWord(passwordHasher.hash(user.getPassWord()));
 
         User added = userRepository.add(user);
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.user(ChangeEvent.Action.ADDED, added.getId()));
         return added;
     }
 
     /**
-     * Deletes a user from the network and returns his value
+     * Deletes a user from the network, together with everything that references the user
      * @param id Integer
-     * @return User
+     * @return UserDeletionReport
      * @throws RepositoryException if the user doesn't exist
      */
-    public User deleteUser(Integer id) throws RepositoryException {
-        User deleted = userRepository.delete(id);
-
-        deleteFriendshipsOfUser(deleted);
-        notifyObservers();
-        return deleted;
+    public UserDeletionReport deleteUser(Integer id) throws RepositoryException {
+        UserDeletionReport report = userRepository.deleteCascade(id);
+        friendshipRepository.forgetUser(id);
+        changeEventBus.publish(ChangeEvent.user(ChangeEvent.Action.DELETED, id));
+        return report;
     }
 
     /**
@@ -216,7 +277,7 @@ public class Network implements Observable {
         userValidator.validate(user);
 
         User updated = userRepository.update(user);
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.user(ChangeEvent.Action.UPDATED, updated.getId()));
         return updated;
     }
 
@@ -241,24 +302,6 @@ public class Network implements Observable {
 
     //=================== FRIENDSHIPS =======================
 
-    /**
-     * Deletes friendships of a specific user
-     * @param user User
-     * @throws RepositoryException if the user doesn't exist
-     */
-    private void deleteFriendshipsOfUser(User user) throws RepositoryException {
-        boolean done = false;
-        while (!done) {
-            for (Friendship f : friendshipRepository.getAll()) {
-                if (user.getId().equals(f.getId().getLeft()) || user.getId().equals(f.getId().getRight())) {
-                    friendshipRepository.delete(f.getId());
-                    break;
-                }
-            }
-            done = true;
-        }
-    }
-
     /**
      * Adds a friendship
      * @param leftId Integer
@@ -284,7 +327,7 @@ public class Network implements Observable {
         friendshipValidator.validate(friendship);
         friendshipRepository.add(friendship);
 
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.friendship(ChangeEvent.Action.ADDED, leftId, rightId));
     }
 
     /**
@@ -326,7 +369,7 @@ public class Network implements Observable {
         Tuple<Integer, Integer> friendshipId = new Tuple<>(leftId, rightId);
 
         Friendship deleted = friendshipRepository.delete(friendshipId);
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.friendship(ChangeEvent.Action.DELETED, leftId, rightId));
         return deleted;
     }
 
@@ -356,7 +399,7 @@ public class Network implements Observable {
         Friendship updatedFriendship = friendshipRepository.update(friendship);
         addUsersToFriendship(updatedFriendship);
 
-        notifyObservers();
+        changeEventBus.publish(ChangeEvent.friendship(ChangeEvent.Action.UPDATED, leftId, rightId));
         return updatedFriendship;
     }
 
@@ -392,29 +435,10 @@ public class Network implements Observable {
     }
 
     /**
-     * Adds observers to the current service
-     * @param e Observer object
+     * Gets the bus the changes of users and friendships are published on
+     * @return ChangeEventBus
      */
-    @Override
-    public void addObserver(Observer e) {
-        observers.add(e);
-    }
-
-    /**
-     * Removes observers from the current service
-     * @param e Observer object
-     */
-    @Override
-    public void removeObserver(Observer e) {
-        observers.remove(e);
-    }
-
-    /**
-     * Notifies all observers of any changes occuring in the service
-     */
-    @Override
-    public void notifyObservers() {
-        observers.forEach(Observer::observerUpdate);
+    public ChangeEventBus getChangeEventBus() {
+        return changeEventBus;
     }
 }
-
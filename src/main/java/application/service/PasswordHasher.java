@@ -0,0 +1,221 @@
+package application.service;
+
+import application.exceptions.ServiceException;
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Helper;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hashes and verifies passwords with Argon2 on a bounded pool of worker threads.
+ * Argon2 is slow and memory-hard on purpose, so the number of hashes computed at the same time is limited
+ * and the requests over the limit wait in a bounded queue; when the queue is full they are refused.
+ */
+public class PasswordHasher {
+    private static final Pattern PARAMETERS = Pattern.compile("\\$m=(\\d+),t=(\\d+),p=(\\d+)\\$");
+
+    private final Argon2 argon2 = Argon2Factory.create(16, 32); // thread safe, shared by every worker
+    private final ThreadPoolExecutor executor;
+
+    private volatile int iterations;
+    private final int memoryKiB;
+    private final int parallelism;
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verifyNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * Constructor
+     * @param iterations int, number of passes over the memory
+     * @param memoryKiB int, memory used by a hash, in KiB
+     * @param parallelism int, number of lanes of a hash
+     * @param threads int, maximum number of hashes computed at the same time
+     * @param queueCapacity int, maximum number of hashes waiting for a thread
+     */
+    public PasswordHasher(int iterations, int memoryKiB, int parallelism, int threads, int queueCapacity) {
+        this.iterations = iterations;
+        this.memoryKiB = memoryKiB;
+        this.parallelism = parallelism;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Picks the number of iterations so that a hash takes about the given time on this machine,
+     * keeping the configured memory and parallelism. The number of iterations is never lowered.
+     * @param targetMillis long, the wanted duration of a hash
+     * @return int, the number of iterations used from now on
+     */
+    public int calibrate(long targetMillis) {
+        int found = Argon2Helper.findIterations(argon2, targetMillis, memoryKiB, parallelism);
+        iterations = Math.max(iterations, found);
+        return iterations;
+    }
+
+    private <T> Future<T> submit(Callable<T> task) throws ServiceException {
+        try {
+            Future<T> future = executor.submit(task);
+            maxQueueDepth.accumulateAndGet(executor.getQueue().size(), Math::max);
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceException("The server is busy, please try again!\n");
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws ServiceException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceException("The password check was interrupted!\n");
+        } catch (ExecutionException e) {
+            throw new ServiceException(e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Hashes a password with the current parameters
+     * @param password String
+     * @return String, the encoded hash, with its parameters and salt
+     * @throws ServiceException if too many passwords are waiting to be hashed
+     */
+    public String hash(String password) throws ServiceException {
+        int currentIterations = iterations;
+        return await(submit(() -> {
+            long start = System.nanoTime();
+            char[] characters = password.toCharArray();
+            try {
+                return argon2.hash(currentIterations, memoryKiB, parallelism, characters);
+            } finally {
+                argon2.wipeArray(characters);
+                hashes.increment();
+                hashNanos.add(System.nanoTime() - start);
+            }
+        }));
+    }
+
+    /**
+     * Verifies a password against an encoded hash
+     * @param hash String, as returned by hash
+     * @param password String
+     * @return true, if the password matches ; false, otherwise
+     * @throws ServiceException if too many passwords are waiting to be verified
+     */
+    public boolean verify(String hash, String password) throws ServiceException {
+        return await(submit(() -> {
+            long start = System.nanoTime();
+            char[] characters = password.toCharArray();
+            try {
+                return argon2.verify(hash, characters);
+            } finally {
+                argon2.wipeArray(characters);
+                verifications.increment();
+                verifyNanos.add(System.nanoTime() - start);
+            }
+        }));
+    }
+
+    /**
+     * Tests if a hash was made with weaker parameters than the current ones
+     * @param hash String, an encoded hash
+     * @return true, if the password should be hashed again ; false, otherwise
+     */
+    public boolean needsRehash(String hash) {
+        Matcher matcher = PARAMETERS.matcher(hash);
+        if (!matcher.find())
+            return true;
+        return Integer.parseInt(matcher.group(1)) < memoryKiB
+                || Integer.parseInt(matcher.group(2)) < iterations
+                || Integer.parseInt(matcher.group(3)) < parallelism;
+    }
+
+    /**
+     * Gets the number of iterations of new hashes
+     * @return int
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gets the number of hashes waiting for a thread
+     * @return int
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Gets the largest number of hashes that waited for a thread at the same time
+     * @return int
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Gets the number of hashes being computed
+     * @return int
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of requests refused because the queue was full
+     * @return long
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the average duration of a hash
+     * @return double, in milliseconds
+     */
+    public double getAverageHashMillis() {
+        long count = hashes.sum();
+        return count == 0 ? 0 : hashNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Gets the average duration of a verification
+     * @return double, in milliseconds
+     */
+    public double getAverageVerifyMillis() {
+        long count = verifications.sum();
+        return count == 0 ? 0 : verifyNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PasswordHasher[t=%d, m=%dKiB, p=%d, active=%d, queued=%d (max %d), rejected=%d, " +
+                        "hash=%.1fms x%d, verify=%.1fms x%d]",
+                iterations, memoryKiB, parallelism, getActiveCount(), getQueueDepth(), getMaxQueueDepth(), getRejected(),
+                getAverageHashMillis(), hashes.sum(), getAverageVerifyMillis(), verifications.sum());
+    }
+}
@@ -0,0 +1,135 @@
+package application.service;
+
+import application.domain.ReadCursor;
+import application.domain.Tuple;
+import application.exceptions.RepositoryException;
+import application.repository.MessageRepository;
+import application.utils.events.DebouncedBatcher;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gathers the read cursors of the conversations shown to the users and writes them to the repository in batches,
+ * on a dedicated flusher thread, so paging through a conversation does not write once per page.
+ * Only the newest cursor of every reader and conversation is kept until it is written.
+ */
+public class ReadCursorBuffer implements AutoCloseable {
+    private final MessageRepository repository;
+    // the pending cursors, keyed by reader and friend; the newer of two cursors of a conversation is kept
+    private final DebouncedBatcher<Tuple<Integer, Integer>, ReadCursor> pending;
+
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    /**
+     * Constructor
+     * @param repository MessageRepository, the cursors are written to
+     * @param delayMillis long, how long cursors are gathered before they are written
+     */
+    public ReadCursorBuffer(MessageRepository repository, long delayMillis) {
+        this.repository = repository;
+        this.pending = new DebouncedBatcher<>("read-cursor-flusher", delayMillis,
+                cursor -> keyOf(cursor.getUserId(), cursor.getFriendId()),
+                (current, cursor) -> current.hasRead(cursor.getPosition()) ? current : cursor,
+                this::flushInBackground);
+    }
+
+    private static Tuple<Integer, Integer> keyOf(int userId, int friendId) {
+        return new Tuple<>(userId, friendId);
+    }
+
+    /**
+     * Buffers a cursor; it is written with the next batch, unless a newer cursor of its conversation replaces it
+     * @param cursor ReadCursor
+     */
+    public void add(ReadCursor cursor) {
+        if (pending.isClosed())
+            return;
+        buffered.increment();
+        if (pending.add(cursor))
+            merged.increment();
+    }
+
+    /**
+     * Gets the cursor of a conversation which is not written yet
+     * @param userId int, the reader
+     * @param friendId int, the other user of the conversation
+     * @return ReadCursor, null if there is none
+     */
+    public ReadCursor getPending(int userId, int friendId) {
+        return pending.getPending(keyOf(userId, friendId));
+    }
+
+    /**
+     * Writes the pending cursors now, in one batch; if the batch fails, its cursors stay pending
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public void flush() throws RepositoryException {
+        List<ReadCursor> batch = pending.drain();
+        if (!batch.isEmpty())
+            write(batch);
+    }
+
+    private void write(List<ReadCursor> batch) throws RepositoryException {
+        try {
+            repository.markRead(batch);
+            flushes.increment();
+        } catch (RepositoryException e) {
+            pending.restore(batch);
+            throw e;
+        }
+    }
+
+    private void flushInBackground(List<ReadCursor> batch) {
+        try {
+            write(batch);
+        } catch (RepositoryException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the number of cursors buffered
+     * @return long
+     */
+    public long getBuffered() {
+        return buffered.sum();
+    }
+
+    /**
+     * Gets the number of cursors merged with a pending cursor of the same conversation
+     * @return long
+     */
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    /**
+     * Gets the number of batches written
+     * @return long
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * Stops the flusher thread, then writes the pending cursors
+     */
+    @Override
+    public void close() {
+        pending.close();
+        try {
+            flush();
+        } catch (RepositoryException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReadCursorBuffer[buffered=%d, merged=%d, flushes=%d]",
+                getBuffered(), getMerged(), getFlushes());
+    }
+}
@@ -4,18 +4,24 @@ import application.domain.*;
 import application.exceptions.RepositoryException;
 import application.exceptions.ServiceException;
 import application.exceptions.ValidationException;
-import application.utils.observer.Observer;
+import application.utils.events.ChangeEvent;
+import application.utils.events.ChangeEventBus;
+import application.utils.events.ChangeListener;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static application.utils.Constants.DATE_TIME_FORMATTER;
-import static java.time.temporal.ChronoUnit.DAYS;
+import static application.utils.Constants.INBOX_PREVIEW_LENGTH;
+import static application.utils.DatabaseConstants.SERVICE_THREADS;
 
 public class SuperService {
     private final Network network;
@@ -23,12 +29,52 @@ public class SuperService {
     private final MessageService messageService;
     private final FriendRequestService friendRequestService;
     private final EventService eventService;
+    private final ConversationNotifier conversationNotifier; // pushes new messages, null if disabled
+    private AsyncSuperService async; // created on first use
 
     public SuperService(Network network, MessageService messageService, FriendRequestService friendRequestService, EventService eventService) {
+        this(network, messageService, friendRequestService, eventService, null);
+    }
+
+    /**
+     * Constructor
+     * @param network Network
+     * @param messageService MessageService
+     * @param friendRequestService FriendRequestService
+     * @param eventService EventService
+     * @param conversationNotifier ConversationNotifier, pushes new messages; null to disable
+     */
+    public SuperService(Network network, MessageService messageService, FriendRequestService friendRequestService,
+                        EventService eventService, ConversationNotifier conversationNotifier) {
         this.network = network;
         this.messageService = messageService;
         this.friendRequestService = friendRequestService;
         this.eventService = eventService;
+        this.conversationNotifier = conversationNotifier;
+    }
+
+    /**
+     * Gets the asynchronous view of this service, used by the UI so it never waits for the database
+     * @return AsyncSuperService
+     */
+    public synchronized AsyncSuperService async() {
+        if (async == null)
+            async = new AsyncSuperService(this, SERVICE_THREADS);
+        return async;
+    }
+
+    /**
+     * Stops the threads of the asynchronous view, if it was used, and of the password hasher
+     */
+    public synchronized void shutdown() {
+        if (async != null)
+            async.shutdown();
+        network.getPasswordHasher().shutdown();
+        network.getChangeEventBus().close();
+        friendRequestService.getChangeEventBus().close();
+        if (conversationNotifier != null)
+            conversationNotifier.close();
+        messageService.close();
     }
 
     // ===================== NETWORK ==========================
@@ -71,6 +117,55 @@ public class SuperService {
         return network.getFriendDtoOfUser(id);
     }
 
+    /**
+     * Gets a user's friends for the chat, the friends with the most recent conversations first, each with
+     * a preview of the last message and the number of unread messages
+     * @param id Integer
+     * @return List(FriendDTO)
+     * @throws RepositoryException if there is no user with given ID
+     */
+    public List<FriendDTO> getInboxOfUser(Integer id) throws RepositoryException {
+        Map<Integer, FriendDTO> friends = new LinkedHashMap<>();
+        for (FriendDTO friend : network.getFriendDtoOfUser(id))
+            friends.put(friend.getId(), friend);
+
+        List<FriendDTO> inbox = new ArrayList<>(friends.size());
+        for (InboxEntry entry : messageService.getInbox(id)) {
+            FriendDTO friend = friends.remove(entry.getFriendId());
+            if (friend == null)
+                continue;
+            String text = entry.getLastMessageText();
+            if (text.length() > INBOX_PREVIEW_LENGTH)
+                text = text.substring(0, INBOX_PREVIEW_LENGTH) + "...";
+            friend.setLastMessage(entry.getLastMessageFromId() == id ? "You: " + text : text);
+            friend.setUnread(entry.getUnread());
+            inbox.add(friend);
+        }
+        inbox.addAll(friends.values());
+        return inbox;
+    }
+
+    /**
+     * Marks the messages of a conversation up to a position as read by a user; written in the next batch
+     * @param userId Integer, the reader
+     * @param friendId Integer, the other user of the conversation
+     * @param position MessageCursor, of the last read message
+     */
+    public void markRead(Integer userId, Integer friendId, MessageCursor position) {
+        messageService.markRead(userId, friendId, position);
+    }
+
+    /**
+     * Gets the position up to which a user read a conversation
+     * @param userId Integer, the reader
+     * @param friendId Integer, the other user of the conversation
+     * @return ReadCursor, null if the user read none of it
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public ReadCursor getReadCursor(Integer userId, Integer friendId) throws RepositoryException {
+        return messageService.getReadCursor(userId, friendId);
+    }
+
     /**
      * Gets list of message receivers
      * @param message Message
@@ -88,89 +183,84 @@ public class SuperService {
     }
 
     /**
-     * Gets users that are not friends of the user
+     * Gets the next page of users that are not friends of the user, friends of friends first
+     * @param recommendations FriendRecommendations.Cursor, from getFriendRecommendations
+     * @return List(User), empty if there are no more users
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<User> getNonFriendOfUser(FriendRecommendations.Cursor recommendations) throws RepositoryException {
+        return recommendations.nextPage()
+                .stream()
+                .map(Recommendation::getUser)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the friend recommendations of a user, to be read one page at a time
      * @param id Integer
-     * @return List(User)
+     * @return FriendRecommendations.Cursor
      * @throws RepositoryException if the user doesn't exist
      */
-    public List<User> getNonFriendOfUser(Integer id) throws RepositoryException {
-        List<User> friendsOfUser = friendList(network.findUser(id));
-        return getAllUsers()
+    public FriendRecommendations.Cursor getFriendRecommendations(Integer id) throws RepositoryException {
+        return network.getFriendRecommendations(id);
+    }
+
+    /**
+     * Gets the next page of users a user can add as friends
+     * @param recommendations FriendRecommendations.Cursor
+     * @return List(AddFriendDTO), empty if there are no more users
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<AddFriendDTO> getAddFriendDtoOfUser(FriendRecommendations.Cursor recommendations) throws RepositoryException {
+        return recommendations.nextPage()
                 .stream()
-                .filter(user -> !(friendsOfUser.contains(user)) && !user.getId().equals(id))
+                .map(this::toAddFriendDto)
                 .collect(Collectors.toList());
     }
 
     /**
-     * Gets a list of added friends for a user
+     * Gets the first page of users a user can add as friends
      * @param id Integer
      * @return List(AddFriendDTO)
      * @throws RepositoryException if the user with the given id doesn't exist
      */
     public List<AddFriendDTO> getAddFriendDtoOfUser(Integer id) throws RepositoryException {
-
-        List<Integer> pendingRequests = friendRequestService.getAllFromUser(id)
-                .stream()
-                .filter(request -> request.getStatus().equals(FriendRequestStatus.PENDING))
-                .map(request -> request.getUserTo().getId())
-                .collect(Collectors.toList());
-
-
-        return getNonFriendOfUser(id)
-                .stream()
-                .map(user -> {
-                    Integer userId = user.getId();
-                    String name = user.getFirstName() + " " + user.getLastName();
-                    String request;
-
-                    if (pendingRequests.contains(userId))
-                        request = "Already sent";
-                    else
-                        request = "Send";
-
-                    return new AddFriendDTO(userId, name, request);
-
-                })
-                .collect(Collectors.toList());
+        return getAddFriendDtoOfUser(getFriendRecommendations(id));
     }
 
     /**
-     * Gets list of users that are not friends filtered by name
+     * Gets the first page of users that are not friends of the user, searched by name
      * @param id Integer
      * @param name String
      * @return List(AddFriendDTO)
-     * @throws RepositoryException if the user doesn't exist
+     * @throws RepositoryException if the database cannot be reached
      */
     public List<AddFriendDTO> getAddFriendDtoOfUserByName(Integer id, String name) throws RepositoryException {
-        List<Integer> pendingRequests = friendRequestService.getAllFromUser(id)
-                .stream()
-                .filter(request -> request.getStatus().equals(FriendRequestStatus.PENDING))
-                .map(request -> request.getUserTo().getId())
-                .collect(Collectors.toList());
-
+        return getAddFriendDtoOfUserByName(id, name, 0);
+    }
 
-        return getNonFriendOfUser(id)
+    /**
+     * Gets a page of users that are not friends of the user, searched by name, best matches first
+     * @param id Integer
+     * @param name String
+     * @param offset int, number of results to skip
+     * @return List(AddFriendDTO), empty if there are no more results
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<AddFriendDTO> getAddFriendDtoOfUserByName(Integer id, String name, int offset) throws RepositoryException {
+        return network.searchNonFriends(id, name, offset)
                 .stream()
-                .filter(user -> {
-                    String userName = (user.getFirstName() + " " + user.getLastName()).toLowerCase();
-                    return userName.contains(name.toLowerCase());
-                })
-                .map(user -> {
-                    Integer userId = user.getId();
-                    String userName = user.getFirstName() + " " + user.getLastName();
-                    String request;
-
-                    if (pendingRequests.contains(userId))
-                        request = "Already sent";
-                    else
-                        request = "Send";
-
-                    return new AddFriendDTO(userId, userName, request);
-
-                })
+                .map(this::toAddFriendDto)
                 .collect(Collectors.toList());
     }
 
+    private AddFriendDTO toAddFriendDto(Recommendation recommendation) {
+        User user = recommendation.getUser();
+        String name = user.getFirstName() + " " + user.getLastName();
+        String request = recommendation.isRequestPending() ? "Already sent" : "Send";
+        return new AddFriendDTO(user.getId(), name, request, recommendation.getMutualFriends());
+    }
+
     //==================== USERS ==========================
 
     /**
@@ -182,24 +272,22 @@ public class SuperService {
      * @return User type object
      * @throws ValidationException if the params are invalid
      * @throws RepositoryException if a user with that username already exists
+     * @throws ServiceException if too many passwords are waiting to be hashed
      */
-    public User addUser(String firstName, String lastName, String userName, String passWord) throws ValidationException, RepositoryException {
+    public User addUser(String firstName, String lastName, String userName, String passWord) throws ValidationException, RepositoryException, ServiceException {
         return network.addUser(new User(firstName,lastName,userName,passWord));
     }
 
     /**
-     * deletes a user from the network
+     * deletes a user from the network, with the user's friend requests, friendships, events and messages
      * @param id of the user that will be deleted
-     * @return the user that was deleted
-     * @throws ValidationException if the user is invalid
+     * @return what was deleted, with the deleted user
      * @throws RepositoryException if the user doesn't exist
      */
-    public User deleteUser(Integer id) throws RepositoryException, ValidationException {
-
-        friendRequestService.deleteRequestsOfUser(id);  // delete all friend requests
-        User deleted = network.findUser(id);            // delete user
-        messageService.deleteMessagesOfUser(deleted);   // delete all messages related to user
-        return network.deleteUser(id);
+    public UserDeletionReport deleteUser(Integer id) throws RepositoryException {
+        UserDeletionReport report = network.deleteUser(id);
+        messageService.forgetUser(id);
+        return report;
     }
 
     /**
@@ -239,8 +327,9 @@ public class SuperService {
      * @param password String
      * @return int
      * @throws RepositoryException if the password is invalid
+     * @throws ServiceException if too many logins are waiting
      */
-    public int loginUser(String username, String password) throws RepositoryException {
+    public int loginUser(String username, String password) throws RepositoryException, ServiceException {
         return network.loginUser(username, password);
     }
 
@@ -379,6 +468,28 @@ public class SuperService {
         messageService.addReplyToAll(from,text,replyTo);
     }
 
+    /**
+     * Subscribes to the new messages between two users, pushed by the database as soon as they are stored.
+     * The handler runs on the notification thread.
+     * @param userId Integer
+     * @param friendId Integer
+     * @param onMessage IntConsumer, receives the id of each new message
+     * @return ConversationNotifier.Subscription, closing it ends the subscription
+     */
+    public ConversationNotifier.Subscription subscribeToConversation(Integer userId, Integer friendId, IntConsumer onMessage) {
+        if (conversationNotifier == null)
+            return () -> { };
+        return conversationNotifier.subscribe(userId, friendId, onMessage);
+    }
+
+    /**
+     * Tests if new messages are currently pushed to the subscribers of the conversations
+     * @return boolean
+     */
+    public boolean isMessagePushConnected() {
+        return conversationNotifier != null && conversationNotifier.isConnected();
+    }
+
     /**
      * Updates a message
      * @param messageId Integer
@@ -464,43 +575,97 @@ public class SuperService {
         return messageService.getNumberOfConversationPages(user1, user2);
     }
 
+    /**
+     * Gets the page of a conversation that ends right before a position
+     * @param user1 User
+     * @param user2 User
+     * @param before MessageCursor, or null for the newest page
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the users are not found
+     */
+    public List<Message> getConversationPageBefore(User user1, User user2, MessageCursor before) throws RepositoryException {
+        return messageService.getConversationPageBefore(user1, user2, before);
+    }
+
+    /**
+     * Searches a page of the messages a user sent or received by their words, best matches first
+     * @param user User
+     * @param text String
+     * @param offset int, number of results to skip
+     * @return List(Message), empty if there are no more results
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Message> searchMessages(User user, String text, int offset) throws RepositoryException {
+        return messageService.search(user, text, offset);
+    }
+
+    /**
+     * Gets the thread of a message: the first message of its reply chain and every reply to it
+     * @param messageId Integer
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the message doesn't exist
+     */
+    public List<Message> getThread(Integer messageId) throws RepositoryException {
+        return messageService.getThread(messageId);
+    }
+
+    /**
+     * Gets the page of a conversation that starts right after a position
+     * @param user1 User
+     * @param user2 User
+     * @param after MessageCursor, or null for the oldest page
+     * @return List(Message), oldest first
+     * @throws RepositoryException if the users are not found
+     */
+    public List<Message> getConversationPageAfter(User user1, User user2, MessageCursor after) throws RepositoryException {
+        return messageService.getConversationPageAfter(user1, user2, after);
+    }
+
     // ===================== FRIEND REQUEST ==========================
 
     /**
-     * Gets all friend requests for a user
+     * Gets all friend requests for a user, the ones sent by the user first
      * @param id Integer
      * @return List(FriendRequestDTO)
      * @throws RepositoryException if the user isn't found
      */
     public List<FriendRequestDTO> getAllFriendRequestsDtoForUser(Integer id ) throws RepositoryException {
-        //User user=findUser(id);
-        List<FriendRequestDTO> list1 = getAllFriendRequestsFromUser(id)
-                .stream()
-                .map(request ->{
-                    return new FriendRequestDTO(
-                            "You",
-                            request.getUserTo().getFirstName() +" "+ request.getUserTo().getLastName(),
-                            id,
-                            request.getUserTo().getId(),
-                            request.getStatus()
-                            );
-                })
-                .collect(Collectors.toList());
+        findUser(id);
+        List<FriendRequestDTO> requests = new ArrayList<>(getOutgoingFriendRequests(id, null, 0, Integer.MAX_VALUE));
+        requests.addAll(getIncomingFriendRequests(id, null, 0, Integer.MAX_VALUE));
+        return requests;
+    }
 
-        List<FriendRequestDTO> list2 = getAllFriendRequestsForUser(id)
-                .stream()
-                .map(request ->{
-                    return new FriendRequestDTO(
-                            request.getUserFrom().getFirstName() +" "+ request.getUserFrom().getLastName(),
-                            "You",
-                            request.getUserFrom().getId(),
-                            id,
-                            request.getStatus()
-                    );
-                })
-                .collect(Collectors.toList());
+    /**
+     * Gets a page of the friend requests sent to a user
+     * @param id Integer
+     * @param status FriendRequestStatus, null for requests of any status
+     * @param offset int, number of requests to skip
+     * @param limit int, maximum number of requests
+     * @return List(FriendRequestDTO), sorted by sender, the user named "You"
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public List<FriendRequestDTO> getIncomingFriendRequests(Integer id, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        List<FriendRequestDTO> requests = friendRequestService.getRequestsToUser(id, status, offset, limit);
+        requests.forEach(request -> request.setNameTo("You"));
+        return requests;
+    }
 
-        return Stream.concat(list1.stream(),list2.stream()).collect(Collectors.toList());
+    /**
+     * Gets a page of the friend requests sent by a user
+     * @param id Integer
+     * @param status FriendRequestStatus, null for requests of any status
+     * @param offset int, number of requests to skip
+     * @param limit int, maximum number of requests
+     * @return List(FriendRequestDTO), sorted by receiver, the user named "You"
+     * @throws RepositoryException if the repository cannot be reached
+     */
+    public List<FriendRequestDTO> getOutgoingFriendRequests(Integer id, FriendRequestStatus status, int offset, int limit)
+            throws RepositoryException {
+        List<FriendRequestDTO> requests = friendRequestService.getRequestsFromUser(id, status, offset, limit);
+        requests.forEach(request -> request.setNameFrom("You"));
+        return requests;
     }
 
     /**
@@ -613,19 +778,25 @@ public class SuperService {
     }
 
     /**
-     * Adds an observer to the Network service
-     * @param observer Observer object
+     * Subscribes to the changes of users, friendships and friend requests.
+     * The listener runs on the dispatcher thread of the bus, once for the changes of a frame.
+     * @param filter Predicate(ChangeEvent), selects the changes the listener receives
+     * @param listener ChangeListener
+     * @return ChangeEventBus.Subscription, closing it ends the subscription
      */
-    public void addObserverForNetwork(Observer observer) {
-        network.addObserver(observer);
+    public ChangeEventBus.Subscription subscribeToChanges(Predicate<ChangeEvent> filter, ChangeListener listener) {
+        ChangeEventBus networkBus = network.getChangeEventBus();
+        ChangeEventBus requestBus = friendRequestService.getChangeEventBus();
+        ChangeEventBus.Subscription networkSubscription = networkBus.subscribe(filter, listener);
+        if (requestBus == networkBus)
+            return networkSubscription;
+        ChangeEventBus.Subscription requestSubscription = requestBus.subscribe(filter, listener);
+        return () -> {
+            networkSubscription.close();
+            requestSubscription.close();
+        };
     }
 
-    /**
-     * Adds an observer to the Friend Request service
-     * @param observer Observer object
-     */
-    public void addObserverForFriendRequests(Observer observer) { friendRequestService.addObserver(observer);}
-
 
     // ===================== EVENTS ==========================
 
@@ -717,82 +888,59 @@ public class SuperService {
     }
 
     /**
-     * Gets a list of events a user has subscribed to
+     * Gets a list of events a user has subscribed to, from today on
      * @param user User
-     * @return List(Event)
-     * @throws RepositoryException if the user doesn't exist
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
      */
     public List<Event> getSubscribedEventsForUser(User user) throws RepositoryException {
-        return eventService.getAll()
-                .stream()
-                .filter(event -> event.getEventDate().isAfter(LocalDate.now()) || event.getEventDate().equals(LocalDate.now()))
-                .filter(event -> event.getSubscribers().contains(user))
-                .sorted((event1, event2) ->
-                {
-                    if (event1.getEventDate().isBefore(event2.getEventDate()))
-                        return -1;
-                    return 1;
-                })
-                .collect(Collectors.toList());
+        return withSubscribers(eventService.getSubscribedEvents(user.getId(), LocalDate.now(), 0, Integer.MAX_VALUE));
+    }
 
+    /**
+     * Loads the subscriber ids of events about to be shown, so the UI never loads them on its own thread;
+     * the events read together are loaded with a single query
+     * @param events List(Event)
+     * @return List(Event), the same list
+     * @throws RepositoryException if the database cannot be reached
+     */
+    private static List<Event> withSubscribers(List<Event> events) throws RepositoryException {
+        for (Event event : events)
+            event.getSubscriberIds();
+        return events;
     }
 
     /**
-     * Gets a list of events for a user
+     * Gets a list of events for a user, from today on: the events authored by the user or by a friend,
+     * and the events a friend is subscribed to
      * @param user User
-     * @return List(Event)
-     * @throws RepositoryException if the user doesn't exist
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
      */
     public List<Event> getEventsForUser(User user) throws RepositoryException {
-        List<Event> eventList = eventService.getAll();
-        List<User> friendsList = friendList(user);
+        return withSubscribers(eventService.getFeed(user.getId(), LocalDate.now(), 0, Integer.MAX_VALUE));
+    }
 
-        return eventList
-                .stream()
-                .filter(event -> event.getEventDate().isAfter(LocalDate.now()) || event.getEventDate().equals(LocalDate.now()))
-                .filter(event -> {
-                    if (event.getAuthor().equals(user)) // if the author is the user
-                        return true;
-                    if (friendsList.contains(event.getAuthor())) // if the author is one of the user's friend
-                        return true;
-                    List<User> intersectionList = friendsList  // intersection of friends of the user and subscribers of the event
-                            .stream()
-                            .distinct()
-                            .filter(event.getSubscribers()::contains)
-                            .collect(Collectors.toList());
-                    if (intersectionList.size() > 0) // if there is one of the user's friend subscribed to this event
-                        return true;
-
-                    return false;
-                })
-                .sorted((event1, event2) ->
-                {
-                    if (event1.getEventDate().isBefore(event2.getEventDate()))
-                        return -1;
-                    return 1;
-                })
-                .collect(Collectors.toList());
+    /**
+     * Gets a page of the events for a user, from today on
+     * @param user User
+     * @param page int, starting from 1
+     * @return List(Event), sorted by date
+     * @throws RepositoryException if the database cannot be reached
+     */
+    public List<Event> getEventsForUser(User user, int page) throws RepositoryException {
+        int pageSize = eventService.getPageSize();
+        return withSubscribers(eventService.getFeed(user.getId(), LocalDate.now(), (page - 1) * pageSize, pageSize));
     }
 
     /**
-     * Gets number of events that will happen soon for a user
+     * Gets number of events that will happen soon (today or tomorrow) for a user
      * @param user User
      * @return Integer
-     * @throws RepositoryException if the user doesn't exist
+     * @throws RepositoryException if the database cannot be reached
      */
     public Integer getNumberOfSoonEventsForUser(User user) throws RepositoryException {
-        long notificationsNumber = eventService.getAll()
-                .stream()
-                .filter(event -> event.getSubscribers().contains(user))
-                .filter(event -> DAYS.between(LocalDate.now(), event.getEventDate()) < 2)
-                .filter(event -> event.getEventDate().isAfter(LocalDate.now()) || event.getEventDate().equals(LocalDate.now()))
-                .sorted((event1, event2) ->
-                {
-                    if (event1.getEventDate().isBefore(event2.getEventDate()))
-                        return -1;
-                    return 1;
-                })
-                .count();
-        return (int) notificationsNumber;
+        LocalDate today = LocalDate.now();
+        return eventService.countSubscribedEvents(user.getId(), today, today.plusDays(2));
     }
 }
@@ -12,4 +12,19 @@ public class Constants {
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    // password hashing; stored hashes made with weaker parameters are replaced at the next login
+    public static final int HASH_ITERATIONS = 6;
+    public static final int HASH_MEMORY_KIB = 4096;
+    public static final int HASH_PARALLELISM = 1;
+    public static final int HASH_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int HASH_QUEUE_CAPACITY = 64;
+    // when positive, the iterations are raised at startup until a hash takes about this long on the host
+    public static final long HASH_CALIBRATION_TARGET_MILLIS = 0;
+
+    // characters of the last message shown next to a conversation in the inbox
+    public static final int INBOX_PREVIEW_LENGTH = 40;
+
+    // changes published during this time are delivered together, about one frame of the UI
+    public static final long CHANGE_FRAME_MILLIS = 16;
+
 }
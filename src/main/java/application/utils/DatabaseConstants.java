@@ -4,4 +4,62 @@ public class DatabaseConstants {
     public static final String URL = "jdbc:postgresql://localhost:5432/network";
     public static final String USERNAME = "postgres";
     public static final String PASSWORD = "Andr31aaa";
+
+    // the schema is brought up to date at startup, see SchemaMigrator
+    public static final boolean SCHEMA_MIGRATION = true;
+    // startup fails if a hot query of the repositories is not served by an index, see QueryPlanCheck
+    public static final boolean QUERY_PLAN_CHECK = true;
+
+    // connection pool
+    public static final int POOL_MIN_SIZE = 2;
+    public static final int POOL_MAX_SIZE = 10;
+    public static final long POOL_ACQUIRE_TIMEOUT_MILLIS = 5_000;
+    public static final long POOL_IDLE_TIMEOUT_MILLIS = 600_000;
+    // idle connections are checked with a round trip to the database when borrowed only after this long;
+    // the housekeeper checks the ones idle that long in the background
+    public static final long POOL_VALIDATION_IDLE_MILLIS = 30_000;
+    // borrowed connections held longer than this are reported with the stack of their borrower, which costs
+    // a stack capture on every borrow; 0 disables leak detection, enable it while looking for a leak
+    public static final long POOL_LEAK_THRESHOLD_MILLIS = 0;
+
+    // threads running service calls for the UI; more threads than connections would only wait for the pool
+    public static final int SERVICE_THREADS = POOL_MAX_SIZE;
+
+    // user cache
+    public static final int USER_CACHE_MAX_SIZE = 10_000;
+    public static final long USER_CACHE_TTL_MILLIS = 300_000;
+
+    // message counts of conversations, used for page numbers
+    public static final int CONVERSATION_SIZE_CACHE_MAX_SIZE = 1_000;
+    public static final long CONVERSATION_SIZE_CACHE_TTL_MILLIS = 60_000;
+
+    // messages replied to by the messages shown, loaded when first needed
+    public static final int REPLY_CACHE_MAX_SIZE = 1_000;
+    public static final long REPLY_CACHE_TTL_MILLIS = 60_000;
+
+    // threads are cut at this many levels of replies, up and down, and at this many messages; a reply chain
+    // that loops back on itself is followed once
+    public static final int THREAD_MAX_DEPTH = 100;
+    public static final int THREAD_MAX_MESSAGES = 1_000;
+
+    // read cursors of the conversations shown to the users are written in batches, at most this late
+    public static final long READ_CURSOR_FLUSH_MILLIS = 2_000;
+
+    // notification channel of new messages, see MessageDataBaseRepository.add
+    public static final String MESSAGE_CHANNEL = "message_added";
+
+    // keeps every friendship in memory; only safe when a single application instance writes to the database
+    public static final boolean FRIENDSHIP_ADJACENCY_INDEX = false;
+
+    // keeps every entity in memory instead of the database: nothing is saved when the application stops
+    public static final boolean IN_MEMORY_STORAGE = false;
+    // number of separately locked parts of every in-memory table
+    public static final int MEMORY_STRIPES = 64;
+
+    // keeps the messages in an append-only log of memory-mapped files instead of the database
+    public static final boolean MESSAGE_LOG_STORAGE = false;
+    public static final String MESSAGE_LOG_DIRECTORY = "data/messages";
+    public static final int MESSAGE_LOG_SEGMENT_BYTES = 64 * 1024 * 1024;
+    // sealed segment files with a smaller share of live messages are rewritten
+    public static final double MESSAGE_LOG_COMPACTION_RATIO = 0.5;
 }
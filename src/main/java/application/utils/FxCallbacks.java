@@ -0,0 +1,56 @@
+package application.utils;
+
+import application.service.AsyncSuperService;
+import javafx.application.Platform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Hands the results of background calls back to the JavaFX application thread
+ */
+public class FxCallbacks {
+
+    /**
+     * Runs an action with the result of a call on the JavaFX thread, or shows the error of the call in a warning box.
+     * Nothing happens if the call was cancelled.
+     * @param future CompletableFuture(T)
+     * @param onSuccess Consumer(T)
+     * @param <T> generic type, the type of the result
+     */
+    public static <T> void onSuccess(CompletableFuture<T> future, Consumer<? super T> onSuccess) {
+        onComplete(future, onSuccess, exception -> WarningBox.show(exception.getMessage()));
+    }
+
+    /**
+     * Runs an action with the result or the error of a call on the JavaFX thread.
+     * Nothing happens if the call was cancelled.
+     * @param future CompletableFuture(T)
+     * @param onSuccess Consumer(T)
+     * @param onFailure Consumer(Throwable), receives the exception thrown by the call
+     * @param <T> generic type, the type of the result
+     */
+    public static <T> void onComplete(CompletableFuture<T> future, Consumer<? super T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, exception) -> {
+            if (exception != null && AsyncSuperService.isCancellation(exception))
+                return;
+            Platform.runLater(() -> {
+                if (future.isCancelled())
+                    return;
+                if (exception == null)
+                    onSuccess.accept(result);
+                else
+                    onFailure.accept(unwrap(exception));
+            });
+        });
+    }
+
+    private static Throwable unwrap(Throwable exception) {
+        while ((exception instanceof CompletionException || exception instanceof ExecutionException)
+                && exception.getCause() != null)
+            exception = exception.getCause();
+        return exception;
+    }
+}
@@ -0,0 +1,154 @@
+package application.utils.collections;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread safe undirected graph over int vertices, storing the neighbours of every vertex in a primitive int set
+ */
+public class AdjacencyIndex {
+    private static final int[] NO_NEIGHBOURS = new int[0];
+
+    private final IntObjectHashMap<IntHashSet> neighbours = new IntObjectHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int edges;
+
+    /**
+     * Adds an edge between two vertices
+     * @param left int
+     * @param right int
+     */
+    public void addEdge(int left, int right) {
+        lock.writeLock().lock();
+        try {
+            if (neighbours.computeIfAbsent(left, key -> new IntHashSet()).add(right))
+                edges++;
+            neighbours.computeIfAbsent(right, key -> new IntHashSet()).add(left);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the edge between two vertices
+     * @param left int
+     * @param right int
+     */
+    public void removeEdge(int left, int right) {
+        lock.writeLock().lock();
+        try {
+            if (removeHalfEdge(left, right))
+                edges--;
+            removeHalfEdge(right, left);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean removeHalfEdge(int from, int to) {
+        IntHashSet set = neighbours.get(from);
+        if (set == null || !set.remove(to))
+            return false;
+        if (set.isEmpty())
+            neighbours.remove(from);
+        return true;
+    }
+
+    /**
+     * Removes a vertex and all of its edges
+     * @param vertex int
+     */
+    public void removeVertex(int vertex) {
+        lock.writeLock().lock();
+        try {
+            IntHashSet set = neighbours.remove(vertex);
+            if (set == null)
+                return;
+            edges -= set.size();
+            set.forEach(neighbour -> removeHalfEdge(neighbour, vertex));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every vertex and edge
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            neighbours.clear();
+            edges = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tests if there is an edge between two vertices
+     * @param left int
+     * @param right int
+     * @return true, if the vertices are adjacent ; false, otherwise
+     */
+    public boolean containsEdge(int left, int right) {
+        lock.readLock().lock();
+        try {
+            IntHashSet set = neighbours.get(left);
+            return set != null && set.contains(right);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the neighbours of a vertex
+     * @param vertex int
+     * @return int[], a copy that can be used without holding any lock
+     */
+    public int[] neighbours(int vertex) {
+        lock.readLock().lock();
+        try {
+            IntHashSet set = neighbours.get(vertex);
+            return set == null ? NO_NEIGHBOURS : set.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the neighbours of a vertex as a set
+     * @param vertex int
+     * @return IntHashSet, a copy that can be used without holding any lock
+     */
+    public IntHashSet neighbourSet(int vertex) {
+        return IntHashSet.of(neighbours(vertex));
+    }
+
+    /**
+     * Gets the number of neighbours of a vertex
+     * @param vertex int
+     * @return int
+     */
+    public int degree(int vertex) {
+        lock.readLock().lock();
+        try {
+            IntHashSet set = neighbours.get(vertex);
+            return set == null ? 0 : set.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of edges
+     * @return int
+     */
+    public int edgeCount() {
+        lock.readLock().lock();
+        try {
+            return edges;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
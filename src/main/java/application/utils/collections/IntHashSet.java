@@ -0,0 +1,231 @@
+package application.utils.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of primitive ints using open addressing, without boxing the values.
+ * Not thread safe.
+ */
+public class IntHashSet {
+    private static final int FREE = 0; // marks an empty slot; the value 0 is tracked separately
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] slots;
+    private int size; // number of non zero values stored in slots
+    private boolean containsZero;
+
+    /**
+     * Default constructor
+     */
+    public IntHashSet() {
+        this(8);
+    }
+
+    /**
+     * Constructor
+     * @param expectedSize int
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+        slots = new int[capacity];
+    }
+
+    /**
+     * Creates a set with the given values
+     * @param values int[]
+     * @return IntHashSet
+     */
+    public static IntHashSet of(int... values) {
+        IntHashSet set = new IntHashSet(values.length);
+        for (int value : values)
+            set.add(value);
+        return set;
+    }
+
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Adds a value to the set
+     * @param value int
+     * @return true, if the value was not in the set ; false, otherwise
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != FREE) {
+            if (slots[index] == value)
+                return false;
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        if (++size > slots.length * LOAD_FACTOR)
+            rehash(slots.length * 2);
+        return true;
+    }
+
+    /**
+     * Tests if a value is in the set
+     * @param value int
+     * @return true, if the value is in the set ; false, otherwise
+     */
+    public boolean contains(int value) {
+        if (value == FREE)
+            return containsZero;
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != FREE) {
+            if (slots[index] == value)
+                return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a value from the set
+     * @param value int
+     * @return true, if the value was in the set ; false, otherwise
+     */
+    public boolean remove(int value) {
+        if (value == FREE) {
+            boolean removed = containsZero;
+            containsZero = false;
+            return removed;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != FREE) {
+            if (slots[index] == value) {
+                slots[index] = FREE;
+                size--;
+                closeGap(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    // moves back the values that were displaced past the removed slot so lookups don't stop early
+    private void closeGap(int gap) {
+        int mask = slots.length - 1;
+        int index = (gap + 1) & mask;
+        while (slots[index] != FREE) {
+            int value = slots[index];
+            int home = mix(value) & mask;
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                slots[gap] = value;
+                slots[index] = FREE;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        size = 0;
+        for (int value : old)
+            if (value != FREE)
+                add(value);
+    }
+
+    /**
+     * Gets the number of values in the set
+     * @return int
+     */
+    public int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * Tests if the set is empty
+     * @return true, if there are no values in the set ; false, otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes every value from the set
+     */
+    public void clear() {
+        Arrays.fill(slots, FREE);
+        size = 0;
+        containsZero = false;
+    }
+
+    /**
+     * Calls the action for every value in the set
+     * @param action IntConsumer
+     */
+    public void forEach(IntConsumer action) {
+        if (containsZero)
+            action.accept(0);
+        for (int value : slots)
+            if (value != FREE)
+                action.accept(value);
+    }
+
+    /**
+     * Gets the values of the set, in no particular order
+     * @return int[]
+     */
+    public int[] toArray() {
+        int[] values = new int[size()];
+        int position = 0;
+        if (containsZero)
+            values[position++] = 0;
+        for (int value : slots)
+            if (value != FREE)
+                values[position++] = value;
+        return values;
+    }
+
+    /**
+     * Counts the values this set has in common with another set
+     * @param other IntHashSet
+     * @return int
+     */
+    public int intersectionSize(IntHashSet other) {
+        IntHashSet smaller = size() <= other.size() ? this : other;
+        IntHashSet larger = smaller == this ? other : this;
+        int[] count = {0};
+        smaller.forEach(value -> {
+            if (larger.contains(value))
+                count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Tests if this set has at least one value in common with another set
+     * @param other IntHashSet
+     * @return true, if the sets intersect ; false, otherwise
+     */
+    public boolean intersects(IntHashSet other) {
+        IntHashSet smaller = size() <= other.size() ? this : other;
+        IntHashSet larger = smaller == this ? other : this;
+        if (smaller.containsZero && larger.contains(0))
+            return true;
+        for (int value : smaller.slots)
+            if (value != FREE && larger.contains(value))
+                return true;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,211 @@
+package application.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Map from primitive int keys to objects using open addressing, without boxing the keys.
+ * Not thread safe.
+ * @param <V> generic type, defines the values of the map
+ */
+public class IntObjectHashMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values; // a null value marks an empty slot
+    private int size;
+
+    /**
+     * Default constructor
+     */
+    public IntObjectHashMap() {
+        this(8);
+    }
+
+    /**
+     * Constructor
+     * @param expectedSize int
+     */
+    public IntObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key)
+                return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the value of a key
+     * @param key int
+     * @return generic type V, null if the key is missing
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    /**
+     * Tests if the map has a key
+     * @param key int
+     * @return true, if the key is in the map ; false, otherwise
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Adds or replaces the value of a key
+     * @param key int
+     * @param value generic type V, not null
+     * @return generic type V, the old value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("Null values are not supported!\n");
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > keys.length * LOAD_FACTOR)
+            rehash(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Gets the value of a key, adding the value built by the factory if the key is missing
+     * @param key int
+     * @param factory IntFunction(V)
+     * @return generic type V
+     */
+    public V computeIfAbsent(int key, IntFunction<V> factory) {
+        V value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes a key from the map
+     * @param key int
+     * @return generic type V, the removed value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index < 0)
+            return null;
+        V old = (V) values[index];
+        values[index] = null;
+        size--;
+
+        // move back the entries that were displaced past the removed slot
+        int mask = keys.length - 1;
+        int gap = index;
+        index = (index + 1) & mask;
+        while (values[index] != null) {
+            int home = mix(keys[index]) & mask;
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                values[index] = null;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        return old;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldValues[i] != null)
+                put(oldKeys[i], cast(oldValues[i]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V cast(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * Gets the number of keys in the map
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tests if the map is empty
+     * @return true, if there are no keys in the map ; false, otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every key from the map
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets the keys of the map, in no particular order
+     * @return int[]
+     */
+    public int[] keys() {
+        int[] found = new int[size];
+        int position = 0;
+        for (int i = 0; i < keys.length; i++)
+            if (values[i] != null)
+                found[position++] = keys[i];
+        return found;
+    }
+
+    /**
+     * Gets the values of the map, in no particular order
+     * @return Collection(V)
+     */
+    public Collection<V> values() {
+        List<V> found = new ArrayList<>(size);
+        for (Object value : values)
+            if (value != null)
+                found.add(cast(value));
+        return found;
+    }
+}
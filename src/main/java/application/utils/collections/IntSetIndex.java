@@ -0,0 +1,98 @@
+package application.utils.collections;
+
+/**
+ * Thread safe index from an int key to a set of int values, e.g. from a user to the ids of the user's messages.
+ * The sets are kept in a StripedIntMap and are only used while their stripe is locked.
+ */
+public class IntSetIndex {
+    private static final int[] NO_VALUES = new int[0];
+
+    private final StripedIntMap<IntHashSet> sets;
+
+    /**
+     * Constructor
+     * @param stripes int, number of stripes of the underlying map
+     */
+    public IntSetIndex(int stripes) {
+        this.sets = new StripedIntMap<>(stripes);
+    }
+
+    /**
+     * Adds a value to the set of a key
+     * @param key int
+     * @param value int
+     * @return true, if the value was added ; false, if it was already there
+     */
+    public boolean add(int key, int value) {
+        boolean[] added = {false};
+        sets.compute(key, set -> {
+            if (set == null)
+                set = new IntHashSet();
+            added[0] = set.add(value);
+            return set;
+        });
+        return added[0];
+    }
+
+    /**
+     * Removes a value from the set of a key
+     * @param key int
+     * @param value int
+     * @return true, if the value was removed ; false, if it was not there
+     */
+    public boolean remove(int key, int value) {
+        boolean[] removed = {false};
+        sets.compute(key, set -> {
+            if (set == null)
+                return null;
+            removed[0] = set.remove(value);
+            return set.isEmpty() ? null : set;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Removes the set of a key
+     * @param key int
+     * @return int[], the values that were in the set
+     */
+    public int[] removeAll(int key) {
+        IntHashSet set = sets.remove(key);
+        return set == null ? NO_VALUES : set.toArray();
+    }
+
+    /**
+     * Gets the values of a key
+     * @param key int
+     * @return int[], a copy that can be used without holding any lock
+     */
+    public int[] get(int key) {
+        return sets.read(key, set -> set == null ? NO_VALUES : set.toArray());
+    }
+
+    /**
+     * Tests if a value is in the set of a key
+     * @param key int
+     * @param value int
+     * @return boolean
+     */
+    public boolean contains(int key, int value) {
+        return sets.read(key, set -> set != null && set.contains(value));
+    }
+
+    /**
+     * Gets the number of values of a key
+     * @param key int
+     * @return int
+     */
+    public int size(int key) {
+        return sets.read(key, set -> set == null ? 0 : set.size());
+    }
+
+    /**
+     * Removes every key
+     */
+    public void clear() {
+        sets.clear();
+    }
+}
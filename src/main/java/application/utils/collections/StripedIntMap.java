@@ -0,0 +1,214 @@
+package application.utils.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread safe map from primitive int keys to objects, split in stripes that are locked separately,
+ * so operations on keys of different stripes do not wait for each other.
+ * Every stripe is an IntObjectHashMap guarded by its own read-write lock.
+ * @param <V> generic type, defines the values of the map
+ */
+public class StripedIntMap<V> {
+    private final IntObjectHashMap<V>[] stripes;
+    private final ReadWriteLock[] locks;
+    private final int shift;
+
+    /**
+     * Constructor
+     * @param stripes int, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public StripedIntMap(int stripes) {
+        int count = Integer.highestOneBit(Math.max(2, stripes) * 2 - 1);
+        this.stripes = (IntObjectHashMap<V>[]) new IntObjectHashMap<?>[count];
+        this.locks = new ReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new IntObjectHashMap<>();
+            this.locks[i] = new ReentrantReadWriteLock();
+        }
+        this.shift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    // the high bits of the hash pick the stripe, the maps of the stripes use the low bits
+    private int stripe(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Gets the value of a key
+     * @param key int
+     * @return generic type V, null if the key is missing
+     */
+    public V get(int key) {
+        return read(key, value -> value);
+    }
+
+    /**
+     * Tests if the map has a key
+     * @param key int
+     * @return true, if the key is in the map ; false, otherwise
+     */
+    public boolean containsKey(int key) {
+        return read(key, value -> value != null);
+    }
+
+    /**
+     * Adds or replaces the value of a key
+     * @param key int
+     * @param value generic type V, not null
+     * @return generic type V, the old value or null
+     */
+    public V put(int key, V value) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            return stripes[stripe].put(key, value);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the value of a key, unless the key is already in the map
+     * @param key int
+     * @param value generic type V, not null
+     * @return generic type V, the current value, or null if the value was added
+     */
+    public V putIfAbsent(int key, V value) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            V current = stripes[stripe].get(key);
+            if (current == null)
+                stripes[stripe].put(key, value);
+            return current;
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a key
+     * @param key int
+     * @return generic type V, the old value or null
+     */
+    public V remove(int key) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            return stripes[stripe].remove(key);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the value of a key with a function of its current value, atomically.
+     * The function runs while the stripe of the key is locked, so it must be short and must not use the map.
+     * @param key int
+     * @param remapping UnaryOperator(V), receives the current value or null, returns the new value or null to remove the key
+     * @return generic type V, the new value or null
+     */
+    public V compute(int key, UnaryOperator<V> remapping) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            V value = remapping.apply(stripes[stripe].get(key));
+            if (value == null)
+                stripes[stripe].remove(key);
+            else
+                stripes[stripe].put(key, value);
+            return value;
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the value of a key while its stripe is locked for reading, for values that are not thread safe themselves
+     * @param key int
+     * @param reader Function(V, R), receives the value or null
+     * @param <R> generic type, the type of the result
+     * @return generic type R, the result of the reader
+     */
+    public <R> R read(int key, Function<? super V, R> reader) {
+        int stripe = stripe(key);
+        locks[stripe].readLock().lock();
+        try {
+            return reader.apply(stripes[stripe].get(key));
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of keys; stripes are counted one after the other, so concurrent changes may be missed
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                size += stripes[stripe].size();
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the values of the map
+     * @return List(V), a copy, gathered one stripe after the other
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                values.addAll(stripes[stripe].values());
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the keys of the map
+     * @return int[], a copy, gathered one stripe after the other
+     */
+    public int[] keys() {
+        IntHashSet keys = new IntHashSet();
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                for (int key : stripes[stripe].keys())
+                    keys.add(key);
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return keys.toArray();
+    }
+
+    /**
+     * Removes every key
+     */
+    public void clear() {
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            locks[stripe].writeLock().lock();
+            try {
+                stripes[stripe].clear();
+            } finally {
+                locks[stripe].writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package application.utils.collections;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from the terms of texts to the int ids of the texts, e.g. from words to the messages containing them.
+ * Terms are the lower case runs of letters and digits, the way the simple text search configuration of the database
+ * splits a text. Not thread safe.
+ */
+public class TextIndex {
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<String, IntHashSet> postings = new HashMap<>();
+
+    /**
+     * Splits a text in terms
+     * @param text String
+     * @return String[], without duplicates, in the order they first appear in
+     */
+    public static String[] terms(String text) {
+        String[] words = SEPARATOR.split(text.toLowerCase());
+        return Arrays.stream(words).filter(word -> !word.isEmpty()).distinct().toArray(String[]::new);
+    }
+
+    /**
+     * Counts how many times the terms appear in a text
+     * @param text String
+     * @param terms String[]
+     * @return int
+     */
+    public static int rank(String text, String[] terms) {
+        int occurrences = 0;
+        for (String word : SEPARATOR.split(text.toLowerCase()))
+            for (String term : terms)
+                if (term.equals(word))
+                    occurrences++;
+        return occurrences;
+    }
+
+    /**
+     * Adds a text
+     * @param id int
+     * @param text String
+     */
+    public void add(int id, String text) {
+        for (String term : terms(text))
+            postings.computeIfAbsent(term, key -> new IntHashSet()).add(id);
+    }
+
+    /**
+     * Removes a text
+     * @param id int
+     * @param text String, the text that was added with the id
+     */
+    public void remove(int id, String text) {
+        for (String term : terms(text)) {
+            IntHashSet ids = postings.get(term);
+            if (ids != null && ids.remove(id) && ids.isEmpty())
+                postings.remove(term);
+        }
+    }
+
+    /**
+     * Finds the texts containing every term; only the ids of the rarest term are visited
+     * @param terms String[]
+     * @param filter IntPredicate, keeps an id
+     * @return int[], the ids of the texts, in no particular order
+     */
+    public int[] search(String[] terms, IntPredicate filter) {
+        if (terms.length == 0)
+            return new int[0];
+        IntHashSet[] sets = new IntHashSet[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            sets[i] = postings.get(terms[i]);
+            if (sets[i] == null)
+                return new int[0];
+        }
+        Arrays.sort(sets, (left, right) -> Integer.compare(left.size(), right.size()));
+
+        IntHashSet found = new IntHashSet();
+        sets[0].forEach(id -> {
+            for (int i = 1; i < sets.length; i++)
+                if (!sets[i].contains(id))
+                    return;
+            if (filter.test(id))
+                found.add(id);
+        });
+        return found.toArray();
+    }
+
+    /**
+     * Gets the number of distinct terms
+     * @return int
+     */
+    public int size() {
+        return postings.size();
+    }
+
+    /**
+     * Removes every text
+     */
+    public void clear() {
+        postings.clear();
+    }
+}
@@ -0,0 +1,132 @@
+package application.utils.events;
+
+import java.util.Objects;
+
+/**
+ * A change of the network: a user, a friendship or a friend request that was added, updated or deleted.
+ * Users are identified by their id, friendships by the ids of their two users, smaller first,
+ * and friend requests by the ids of the sender and of the receiver.
+ */
+public final class ChangeEvent {
+    /**
+     * The kind of entity that changed
+     */
+    public enum Type { USER, FRIENDSHIP, FRIEND_REQUEST }
+
+    /**
+     * What happened to the entity
+     */
+    public enum Action { ADDED, UPDATED, DELETED }
+
+    private final Type type;
+    private final Action action;
+    private final int firstId;
+    private final int secondId;
+
+    private ChangeEvent(Type type, Action action, int firstId, int secondId) {
+        this.type = type;
+        this.action = action;
+        this.firstId = firstId;
+        this.secondId = secondId;
+    }
+
+    /**
+     * Creates the change of a user
+     * @param action Action
+     * @param userId int
+     * @return ChangeEvent
+     */
+    public static ChangeEvent user(Action action, int userId) {
+        return new ChangeEvent(Type.USER, action, userId, userId);
+    }
+
+    /**
+     * Creates the change of a friendship
+     * @param action Action
+     * @param leftId int
+     * @param rightId int
+     * @return ChangeEvent
+     */
+    public static ChangeEvent friendship(Action action, int leftId, int rightId) {
+        return new ChangeEvent(Type.FRIENDSHIP, action, Math.min(leftId, rightId), Math.max(leftId, rightId));
+    }
+
+    /**
+     * Creates the change of a friend request
+     * @param action Action
+     * @param fromId int, the sender of the request
+     * @param toId int, the receiver of the request
+     * @return ChangeEvent
+     */
+    public static ChangeEvent friendRequest(Action action, int fromId, int toId) {
+        return new ChangeEvent(Type.FRIEND_REQUEST, action, fromId, toId);
+    }
+
+    /**
+     * Gets the kind of entity that changed
+     * @return Type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets what happened to the entity
+     * @return Action
+     */
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the id of the user, the smaller id of a friendship or the sender of a request
+     * @return int
+     */
+    public int getFirstId() {
+        return firstId;
+    }
+
+    /**
+     * Gets the id of the user, the greater id of a friendship or the receiver of a request
+     * @return int
+     */
+    public int getSecondId() {
+        return secondId;
+    }
+
+    /**
+     * Tests if the change concerns a user
+     * @param userId int
+     * @return true, if the user is one of the ids of the change ; false, otherwise
+     */
+    public boolean involves(int userId) {
+        return firstId == userId || secondId == userId;
+    }
+
+    /**
+     * Tests if two changes are about the same entity, whatever happened to it
+     * @param other ChangeEvent
+     * @return boolean
+     */
+    public boolean sameSubject(ChangeEvent other) {
+        return type == other.type && firstId == other.firstId && secondId == other.secondId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChangeEvent that = (ChangeEvent) o;
+        return sameSubject(that) && action == that.action;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, action, firstId, secondId);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + action + " (" + firstId + ", " + secondId + ")";
+    }
+}
@@ -0,0 +1,147 @@
+package application.utils.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Delivers the changes of the network to their listeners on a dedicated dispatcher thread,
+ * so the thread making a change never runs the listeners.
+ * Changes published during one frame are delivered together, and the changes of the same entity are merged
+ * into the last one, so a burst of changes makes every listener refresh once.
+ * Listeners may subscribe and unsubscribe from any thread, also while changes are being delivered.
+ */
+public class ChangeEventBus implements AutoCloseable {
+    /**
+     * Subscription to the changes published on the bus
+     */
+    public interface Subscription extends AutoCloseable {
+        /**
+         * Ends the subscription; a delivery already in progress may still reach the listener
+         */
+        @Override
+        void close();
+    }
+
+    private static final class Subscriber {
+        private final Predicate<ChangeEvent> filter;
+        private final ChangeListener listener;
+
+        private Subscriber(Predicate<ChangeEvent> filter, ChangeListener listener) {
+            this.filter = filter;
+            this.listener = listener;
+        }
+    }
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // the pending changes, keyed by subject; a later change of a subject replaces the pending one
+    private final DebouncedBatcher<List<Object>, ChangeEvent> frame;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+
+    /**
+     * Constructor
+     * @param frameMillis long, how long changes are gathered before they are delivered
+     */
+    public ChangeEventBus(long frameMillis) {
+        this.frame = new DebouncedBatcher<>("change-event-dispatcher", frameMillis, ChangeEventBus::subjectOf,
+                (pending, later) -> later, this::deliver);
+    }
+
+    /**
+     * Subscribes to every change
+     * @param listener ChangeListener
+     * @return Subscription, closing it ends the subscription
+     */
+    public Subscription subscribe(ChangeListener listener) {
+        return subscribe(event -> true, listener);
+    }
+
+    /**
+     * Subscribes to the changes accepted by a filter; the listener is only called if a frame has such changes
+     * @param filter Predicate(ChangeEvent)
+     * @param listener ChangeListener, receives only the accepted changes
+     * @return Subscription, closing it ends the subscription
+     */
+    public Subscription subscribe(Predicate<ChangeEvent> filter, ChangeListener listener) {
+        Subscriber subscriber = new Subscriber(filter, listener);
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Publishes a change; it is delivered at the end of the current frame
+     * @param event ChangeEvent
+     */
+    public void publish(ChangeEvent event) {
+        if (frame.isClosed())
+            return;
+        published.increment();
+        if (frame.add(event))
+            coalesced.increment();
+    }
+
+    private static List<Object> subjectOf(ChangeEvent event) {
+        return List.of(event.getType(), event.getFirstId(), event.getSecondId());
+    }
+
+    private void deliver(List<ChangeEvent> changes) {
+        frames.increment();
+        for (Subscriber subscriber : subscribers) {
+            List<ChangeEvent> accepted = new ArrayList<>(changes.size());
+            for (ChangeEvent event : changes)
+                if (subscriber.filter.test(event))
+                    accepted.add(event);
+            if (accepted.isEmpty())
+                continue;
+            try {
+                subscriber.listener.onChanges(accepted);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of changes published
+     * @return long
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * Gets the number of changes merged into a later change of the same entity
+     * @return long
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Gets the number of frames delivered
+     * @return long
+     */
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    /**
+     * Stops the dispatcher thread; the pending changes are dropped
+     */
+    @Override
+    public void close() {
+        frame.close();
+        frame.drain();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ChangeEventBus[subscribers=%d, published=%d, coalesced=%d, frames=%d]",
+                subscribers.size(), getPublished(), getCoalesced(), getFrames());
+    }
+}
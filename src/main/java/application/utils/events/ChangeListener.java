@@ -0,0 +1,16 @@
+package application.utils.events;
+
+import java.util.List;
+
+/**
+ * Receives the changes published on a ChangeEventBus
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+    /**
+     * Handles the changes published during one frame, on the dispatcher thread
+     * @param events List(ChangeEvent), never empty, at most one change per entity, in publication order
+     */
+    void onChanges(List<ChangeEvent> events);
+}
@@ -0,0 +1,164 @@
+package application.utils.events;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Gathers values and hands them over in batches on a dedicated daemon thread, started with the first value.
+ * A batch is handed over once the delay has passed since its first value was added; values of the same key
+ * are merged while they are pending, so a burst of values makes a single batch with one value per key.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class DebouncedBatcher<K, V> implements AutoCloseable {
+    private final String threadName;
+    private final long delayNanos;
+    private final Function<V, K> keyOf;
+    private final BinaryOperator<V> merger;
+    private final Consumer<List<V>> handler;
+
+    private final Object lock = new Object();
+    private final Map<K, V> pending = new LinkedHashMap<>(); // guarded by lock
+    private long firstAddedNanos; // guarded by lock, when the first pending value was added
+    private Thread thread; // guarded by lock, started with the first value
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor
+     * @param threadName String, the name of the thread handing the batches over
+     * @param delayMillis long, how long values are gathered before they are handed over
+     * @param keyOf Function(V, K), the key of a value
+     * @param merger BinaryOperator(V), merges the pending value of a key with a new one
+     * @param handler Consumer(List(V)), receives the batches on the thread, in the order their keys were last added
+     */
+    public DebouncedBatcher(String threadName, long delayMillis, Function<V, K> keyOf, BinaryOperator<V> merger,
+                            Consumer<List<V>> handler) {
+        this.threadName = threadName;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.keyOf = keyOf;
+        this.merger = merger;
+        this.handler = handler;
+    }
+
+    /**
+     * Adds a value to the next batch; it is ignored once the batcher is closed
+     * @param value V
+     * @return boolean, true if it was merged with a pending value of its key
+     */
+    public boolean add(V value) {
+        if (closed)
+            return false;
+        synchronized (lock) {
+            boolean merged = merge(value);
+            if (thread == null) {
+                thread = new Thread(this::run, threadName);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            lock.notifyAll();
+            return merged;
+        }
+    }
+
+    /**
+     * Adds values back to the next batch, e.g. a batch that could not be handled; merged with the pending values
+     * @param values List(V)
+     */
+    public void restore(List<V> values) {
+        synchronized (lock) {
+            values.forEach(this::merge);
+            lock.notifyAll();
+        }
+    }
+
+    // the caller holds the lock
+    private boolean merge(V value) {
+        if (pending.isEmpty())
+            firstAddedNanos = System.nanoTime();
+        K key = keyOf.apply(value);
+        V current = pending.remove(key);
+        pending.put(key, current == null ? value : merger.apply(current, value));
+        return current != null;
+    }
+
+    /**
+     * Gets the pending value of a key
+     * @param key K
+     * @return V, null if there is none
+     */
+    public V getPending(K key) {
+        synchronized (lock) {
+            return pending.get(key);
+        }
+    }
+
+    /**
+     * Takes the pending values out, without waiting for the delay
+     * @return List(V), empty if there are none
+     */
+    public List<V> drain() {
+        synchronized (lock) {
+            List<V> batch = new ArrayList<>(pending.values());
+            pending.clear();
+            return batch;
+        }
+    }
+
+    /**
+     * Tests if the batcher is closed
+     * @return boolean
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                synchronized (lock) {
+                    while (pending.isEmpty() && !closed)
+                        lock.wait();
+                    long remaining = firstAddedNanos + delayNanos - System.nanoTime();
+                    while (remaining > 0 && !closed) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                        remaining = firstAddedNanos + delayNanos - System.nanoTime();
+                    }
+                    if (closed)
+                        return;
+                }
+                List<V> batch = drain();
+                if (!batch.isEmpty())
+                    handler.accept(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the thread, waiting a second at most for the batch it is handling; the pending values are kept
+     * and can be drained
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+            current = thread;
+        }
+        if (current != null && current != Thread.currentThread()) {
+            try {
+                current.join(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ module application.cloud_chat {
     requires com.dlsc.formsfx;
     requires org.kordamp.bootstrapfx.core;
     requires java.sql;
+    requires org.postgresql.jdbc;
     requires de.mkammerer.argon2;
 
     opens application.cloud_chat to javafx.fxml;
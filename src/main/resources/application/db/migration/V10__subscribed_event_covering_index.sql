@@ -0,0 +1,6 @@
+-- Subscriber counts and subscriber ids of a page of events (EventDataBaseRepository.readEvents) are read
+-- from the index alone, without visiting the subscribed table
+create index if not exists subscribed_event_id_user_id_index
+    on public.subscribed (event_id, user_id);
+
+drop index if exists public.subscribed_event_id_index;
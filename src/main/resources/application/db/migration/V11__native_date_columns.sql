@@ -0,0 +1,29 @@
+-- Dates were stored as the ISO strings of LocalDateTime.toString. They sorted correctly, but every row read was
+-- parsed back from text, and the database could not treat them as dates.
+-- Native columns are decoded from the binary protocol by ResultSet.getObject, are compared as dates by the
+-- range scans of their indexes, and can be filtered in SQL (current_date, extract(month from ...)) without a cast
+-- that would leave the indexes unused.
+-- The indexes on message ("from", date, id), event (author_id, event_date), event (event_date) and
+-- inbox (user_id, last_date desc, last_message_id desc) are rebuilt by the type change and now order natively.
+alter table public.message
+    alter column date type timestamp using date::timestamp;
+
+alter table public.friendship
+    alter column date type timestamp using date::timestamp;
+
+alter table public.event
+    alter column creation_date type timestamp using creation_date::timestamp,
+    alter column event_date type date using event_date::date;
+
+alter table public.inbox
+    alter column last_date type timestamp using last_date::timestamp;
+
+alter table public.read_cursor
+    alter column date type timestamp using date::timestamp;
+
+-- Friendships of a user made in a month of any year, FriendshipDataBaseRepository.getFriendshipsOfUserFromMonth
+create index if not exists friendship_id_left_month_index
+    on public.friendship (id_left, (extract(month from date)));
+
+create index if not exists friendship_id_right_month_index
+    on public.friendship (id_right, (extract(month from date)));
@@ -0,0 +1,9 @@
+-- Incoming and outgoing requests of a user, optionally of one status, of FriendRequestDataBaseRepository.getRequestsToUser
+-- and getRequestsFromUser; the index on (id_to, status) also serves the cascade on id_to, which had its own index
+create index if not exists friend_request_id_to_status_index
+    on public.friend_request (id_to, status);
+
+create index if not exists friend_request_id_from_status_index
+    on public.friend_request (id_from, status);
+
+drop index if exists public.friend_request_id_to_index;
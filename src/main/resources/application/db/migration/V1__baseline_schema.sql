@@ -0,0 +1,102 @@
+-- Schema of the network database, as it was before versioned migrations
+create table if not exists public."user"
+(
+    id serial
+        constraint user_pk
+            primary key,
+    first_name varchar not null,
+    last_name varchar not null,
+    username varchar not null,
+    hash varchar not null
+);
+
+create unique index if not exists user_id_uindex
+    on public."user" (id);
+
+create unique index if not exists users_username_uindex
+    on public."user" (username);
+
+create table if not exists public.friendship
+(
+    id_left integer not null
+        constraint friendship_users_id_fk
+            references public."user",
+    id_right integer not null
+        constraint friendship_users_id_fk_2
+            references public."user",
+    date varchar,
+    constraint friendship_pk
+        primary key (id_left, id_right)
+);
+
+create table if not exists public.message
+(
+    id serial
+        constraint message_pk
+            primary key,
+    "from" integer not null
+        constraint message_users_id_fk
+            references public."user",
+    date varchar not null,
+    text varchar not null,
+    reply_of integer
+        constraint message_message_reply_of_fk
+            references public.message
+);
+
+create unique index if not exists message_id_uindex
+    on public.message (id);
+
+create table if not exists public.send_to
+(
+    message_id integer not null
+        constraint send_to_message_id_fk
+            references public.message,
+    user_id integer not null
+        constraint send_to_users_id_fk
+            references public."user"
+);
+
+create table if not exists public.friend_request
+(
+    id_from integer not null
+        constraint friend_requests_users_id_fk
+            references public."user",
+    id_to integer not null
+        constraint friend_requests_users_id_fk_2
+            references public."user",
+    status varchar not null,
+    constraint friend_requests_pk
+        primary key (id_from, id_to)
+);
+
+create table if not exists public.event
+(
+    id serial
+        constraint event_pk
+            primary key,
+    author_id integer not null
+        constraint event_users_id_fk
+            references public."user",
+    title varchar not null,
+    description varchar not null,
+    creation_date varchar not null,
+    event_date varchar not null
+);
+
+create unique index if not exists event_id_uindex
+    on public.event (id);
+
+create table if not exists public.subscribed
+(
+    user_id integer not null
+        constraint subscribed_users_id_fk
+            references public."user"
+            on update cascade on delete cascade,
+    event_id integer not null
+        constraint subscribed_event_id_fk
+            references public.event
+            on update cascade on delete cascade,
+    constraint subscribed_pkey
+        primary key (user_id, event_id)
+);
@@ -0,0 +1,4 @@
+-- Friendships of a user: the primary key (id_left, id_right) serves lookups by id_left,
+-- this index serves the id_right branch of FriendshipDataBaseRepository.getFriendshipsOfUser
+create index if not exists friendship_id_right_index
+    on public.friendship (id_right);
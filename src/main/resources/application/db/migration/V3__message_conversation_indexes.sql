@@ -0,0 +1,8 @@
+-- Keyset pages of a conversation: each direction of MessageDataBaseRepository.getConversationBefore/After
+-- walks the messages of one sender in (date, id) order and stops after a page
+create index if not exists message_from_date_id_index
+    on public.message ("from", date, id);
+
+-- Recipients of a message, checked for every message of the page
+create index if not exists send_to_message_id_user_id_index
+    on public.send_to (message_id, user_id);
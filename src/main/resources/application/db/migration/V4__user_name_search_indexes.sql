@@ -0,0 +1,10 @@
+-- Name search of UserDataBaseRepository.searchByName: trigram index for substring matches
+-- of at least three characters, ranked by similarity
+create extension if not exists pg_trgm;
+
+create index if not exists user_full_name_trgm_index
+    on public."user" using gin (lower(first_name || ' ' || last_name) gin_trgm_ops);
+
+-- Shorter search terms have no trigram to look up and are matched as name prefixes
+create index if not exists user_full_name_prefix_index
+    on public."user" (lower(first_name || ' ' || last_name) text_pattern_ops);
@@ -0,0 +1,11 @@
+-- Event feed of EventDataBaseRepository.getFeed: events of the user and of each friend from a date on
+create index if not exists event_author_id_event_date_index
+    on public.event (author_id, event_date);
+
+-- Upcoming events, in date order
+create index if not exists event_event_date_index
+    on public.event (event_date);
+
+-- Subscribers of a page of events; the primary key (user_id, event_id) serves the events a user is subscribed to
+create index if not exists subscribed_event_id_index
+    on public.subscribed (event_id);
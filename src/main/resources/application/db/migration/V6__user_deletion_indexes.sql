@@ -0,0 +1,10 @@
+-- Cascade of UserDataBaseRepository.deleteCascade: the primary keys serve id_from and id_left,
+-- these indexes serve the other side and the replies to deleted messages
+create index if not exists friend_request_id_to_index
+    on public.friend_request (id_to);
+
+create index if not exists send_to_user_id_index
+    on public.send_to (user_id);
+
+create index if not exists message_reply_of_index
+    on public.message (reply_of);
@@ -0,0 +1,10 @@
+-- Message search of MessageDataBaseRepository.search: the words of every message, kept up to date by the database
+-- on insert and update, and an inverted index over them
+-- Adding a stored generated column rewrites the whole table under an ACCESS EXCLUSIVE lock: messages can neither
+-- be read nor sent until it is done, so on a large table the migration is to be run in a maintenance window.
+alter table public.message
+    add column if not exists search tsvector
+        generated always as (to_tsvector('simple', text)) stored;
+
+create index if not exists message_search_index
+    on public.message using gin (search);
@@ -0,0 +1,34 @@
+-- Inbox of MessageDataBaseRepository.getInbox: the last message and the unread count of every conversation of a user,
+-- kept up to date by add, update and delete and served in recency order by one index scan
+create table if not exists public.inbox
+(
+    user_id integer not null
+        constraint inbox_user_id_fk
+            references public."user"
+            on delete cascade,
+    friend_id integer not null
+        constraint inbox_friend_id_fk
+            references public."user"
+            on delete cascade,
+    last_message_id integer not null,
+    last_date varchar not null,
+    unread integer not null default 0,
+    constraint inbox_pk
+        primary key (user_id, friend_id)
+);
+
+create index if not exists inbox_user_id_last_date_index
+    on public.inbox (user_id, last_date desc, last_message_id desc);
+
+-- Conversations that existed before the inbox, read up to their last message
+insert into public.inbox (user_id, friend_id, last_message_id, last_date, unread)
+select distinct on (pair.user_id, pair.friend_id) pair.user_id, pair.friend_id, pair.id, pair.date, 0
+from (select m."from" as user_id, st.user_id as friend_id, m.id, m.date
+      from public.message m
+      inner join public.send_to st on st.message_id = m.id
+      union all
+      select st.user_id, m."from", m.id, m.date
+      from public.message m
+      inner join public.send_to st on st.message_id = m.id) pair
+order by pair.user_id, pair.friend_id, pair.date desc, pair.id desc
+on conflict do nothing;
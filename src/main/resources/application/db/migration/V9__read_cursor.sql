@@ -0,0 +1,24 @@
+-- Read receipts of MessageDataBaseRepository.markRead: the last message every user read in each conversation,
+-- one row per conversation instead of one per message and recipient
+create table if not exists public.read_cursor
+(
+    user_id integer not null
+        constraint read_cursor_user_id_fk
+            references public."user"
+            on delete cascade,
+    friend_id integer not null
+        constraint read_cursor_friend_id_fk
+            references public."user"
+            on delete cascade,
+    date varchar not null,
+    message_id integer not null,
+    constraint read_cursor_pk
+        primary key (user_id, friend_id)
+);
+
+-- Conversations without unread messages were read up to their last message
+insert into public.read_cursor (user_id, friend_id, date, message_id)
+select user_id, friend_id, last_date, last_message_id
+from public.inbox
+where unread = 0
+on conflict do nothing;
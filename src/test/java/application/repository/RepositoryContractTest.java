@@ -0,0 +1,243 @@
+package application.repository;
+
+import application.domain.Event;
+import application.domain.FriendRequest;
+import application.domain.FriendRequestDTO;
+import application.domain.FriendRequestStatus;
+import application.domain.Friendship;
+import application.domain.InboxEntry;
+import application.domain.Message;
+import application.domain.Tuple;
+import application.domain.User;
+import application.exceptions.RepositoryException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour every storage of the repositories must have, run against each of them by a subclass.
+ * Every test starts from an empty storage.
+ */
+public abstract class RepositoryContractTest {
+    private static final LocalDateTime NOON = LocalDateTime.of(2022, 1, 10, 12, 0);
+
+    protected UserRepository userRepository;
+    protected FriendshipRepository friendshipRepository;
+    protected FriendRequestRepository requestRepository;
+    protected MessageRepository messageRepository;
+    protected EventRepository eventRepository;
+
+    /**
+     * Empties the storage and creates the repositories over it
+     * @throws Exception if the storage cannot be reached
+     */
+    protected abstract void createRepositories() throws Exception;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        createRepositories();
+    }
+
+    private User addUser(String userName) throws RepositoryException {
+        return userRepository.add(new User("First " + userName, "Last " + userName, userName, "hash"));
+    }
+
+    private Friendship addFriendship(User left, User right) throws RepositoryException {
+        Friendship friendship = new Friendship(left, right);
+        friendship.setId(new Tuple<>(left.getId(), right.getId()));
+        friendship.setDate(NOON);
+        return friendshipRepository.add(friendship);
+    }
+
+    private Message addMessage(User from, User to, String text, int minutes) throws RepositoryException {
+        return messageRepository.add(new Message(from, List.of(to), text, NOON.plusMinutes(minutes)));
+    }
+
+    @Test
+    void addedUserIsFoundById() throws RepositoryException {
+        User user = addUser("ana");
+
+        User found = userRepository.find(user.getId());
+        assertEquals("First ana", found.getFirstName());
+        assertEquals("Last ana", found.getLastName());
+        assertEquals("ana", found.getUserName());
+        assertEquals(1, (int) userRepository.size());
+    }
+
+    @Test
+    void userNamesAreUnique() throws RepositoryException {
+        addUser("ana");
+        assertThrows(RepositoryException.class, () -> addUser("ana"));
+    }
+
+    @Test
+    void deletedUserIsNotFound() throws RepositoryException {
+        User user = addUser("ana");
+        userRepository.delete(user.getId());
+        assertThrows(RepositoryException.class, () -> userRepository.find(user.getId()));
+    }
+
+    @Test
+    void friendshipsGoBothWays() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        User carl = addUser("carl");
+        addFriendship(ana, bob);
+
+        assertTrue(friendshipRepository.areFriends(ana.getId(), bob.getId()));
+        assertTrue(friendshipRepository.areFriends(bob.getId(), ana.getId()));
+        assertFalse(friendshipRepository.areFriends(ana.getId(), carl.getId()));
+        assertArrayEquals(new int[]{ana.getId()}, friendshipRepository.getFriendIds(bob.getId()));
+        assertEquals(1, friendshipRepository.getFriendshipsOfUser(ana.getId()).size());
+        assertEquals(1, friendshipRepository.getFriendshipsOfUserFromMonth(ana.getId(), 1).size());
+        assertEquals(0, friendshipRepository.getFriendshipsOfUserFromMonth(ana.getId(), 2).size());
+    }
+
+    @Test
+    void conversationIsOldestFirst() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        User carl = addUser("carl");
+        addMessage(bob, ana, "second", 2);
+        addMessage(ana, bob, "first", 1);
+        addMessage(ana, carl, "elsewhere", 3);
+
+        List<String> texts = messageRepository.getConversation(ana, bob).stream()
+                .map(Message::getText).collect(Collectors.toList());
+        assertEquals(List.of("first", "second"), texts);
+        assertEquals(2, messageRepository.countConversation(ana, bob));
+    }
+
+    @Test
+    void inboxCountsUnreadMessagesOfRecipients() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        addMessage(ana, bob, "hello", 1);
+        Message last = addMessage(ana, bob, "again", 2);
+
+        List<InboxEntry> inbox = messageRepository.getInbox(bob.getId());
+        assertEquals(1, inbox.size());
+        assertEquals((int) ana.getId(), inbox.get(0).getFriendId());
+        assertEquals((int) last.getId(), inbox.get(0).getLastMessageId());
+        assertEquals(2, inbox.get(0).getUnread());
+        assertEquals(0, messageRepository.getInbox(ana.getId()).get(0).getUnread());
+    }
+
+    @Test
+    void inboxCountsAgainWhenUnreadMessagesLeave() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        User carl = addUser("carl");
+        Message deleted = addMessage(ana, bob, "hello", 1);
+        Message shared = messageRepository.add(new Message(ana, List.of(bob, carl), "again", NOON.plusMinutes(2)));
+
+        messageRepository.delete(deleted.getId());
+        List<InboxEntry> inbox = messageRepository.getInbox(bob.getId());
+        assertEquals(1, inbox.size());
+        assertEquals((int) shared.getId(), inbox.get(0).getLastMessageId());
+        assertEquals(1, inbox.get(0).getUnread());
+
+        Message update = new Message(ana, List.of(carl), "again", shared.getDate());
+        update.setId(shared.getId());
+        messageRepository.update(update);
+        assertEquals(0, messageRepository.getInbox(bob.getId()).size());
+        assertEquals(1, messageRepository.getInbox(carl.getId()).get(0).getUnread());
+    }
+
+    @Test
+    void recipientsAreFoundAmongTheGivenUsers() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        User carl = addUser("carl");
+        User dan = addUser("dan");
+        Message message = messageRepository.add(new Message(ana, List.of(bob, carl), "hi", NOON));
+
+        Set<Integer> recipients = new HashSet<>(
+                messageRepository.getRecipientsAmong(message.getId(), List.of(bob.getId(), dan.getId())));
+        assertEquals(Set.of(bob.getId()), recipients);
+    }
+
+    @Test
+    void threadHoldsTheWholeReplyChain() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        Message root = addMessage(ana, bob, "root", 1);
+        Message reply = new Message(bob, List.of(ana), "reply", NOON.plusMinutes(2));
+        reply.setReplyOf(root);
+        messageRepository.add(reply);
+        Message replyOfReply = new Message(ana, List.of(bob), "reply of reply", NOON.plusMinutes(3));
+        replyOfReply.setReplyOf(reply);
+        messageRepository.add(replyOfReply);
+
+        List<String> texts = messageRepository.getThread(reply.getId()).stream()
+                .map(Message::getText).collect(Collectors.toList());
+        assertEquals(List.of("root", "reply", "reply of reply"), texts);
+    }
+
+    @Test
+    void searchFindsOnlyMessagesOfTheUser() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        User carl = addUser("carl");
+        addMessage(ana, bob, "see you at the lake", 1);
+        addMessage(bob, carl, "the lake is cold", 2);
+
+        List<String> texts = messageRepository.search(ana.getId(), "lake", 0, 10).stream()
+                .map(Message::getText).collect(Collectors.toList());
+        assertEquals(List.of("see you at the lake"), texts);
+    }
+
+    @Test
+    void friendRequestsAreFilteredByStatus() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        User carl = addUser("carl");
+        FriendRequest pending = new FriendRequest(bob, ana, FriendRequestStatus.PENDING);
+        pending.setId(new Tuple<>(bob.getId(), ana.getId()));
+        requestRepository.add(pending);
+        FriendRequest declined = new FriendRequest(carl, ana, FriendRequestStatus.DECLINED);
+        declined.setId(new Tuple<>(carl.getId(), ana.getId()));
+        requestRepository.add(declined);
+
+        List<FriendRequestDTO> all = requestRepository.getRequestsToUser(ana.getId(), null, 0, 10);
+        assertEquals(2, all.size());
+        List<FriendRequestDTO> pendingOnly =
+                requestRepository.getRequestsToUser(ana.getId(), FriendRequestStatus.PENDING, 0, 10);
+        assertEquals(1, pendingOnly.size());
+        assertEquals((int) bob.getId(), pendingOnly.get(0).getIdFrom());
+        assertEquals(1, requestRepository.getRequestsFromUser(carl.getId(), null, 0, 10).size());
+    }
+
+    @Test
+    void subscriptionsAreListedAndCounted() throws RepositoryException {
+        User ana = addUser("ana");
+        User bob = addUser("bob");
+        LocalDate today = LocalDate.now();
+        Event event = eventRepository.add(new Event(ana, "Picnic", "At the lake", NOON, today.plusDays(3)));
+        eventRepository.add(new Event(ana, "Concert", "In the park", NOON, today.plusDays(5)));
+        eventRepository.addSubscriber(event, bob);
+        assertTrue(event.isSubscribed(bob.getId()));
+        assertEquals(1, event.getSubscriberCount());
+
+        List<Event> subscribed = eventRepository.getSubscribedEvents(bob.getId(), today, 0, 10);
+        assertEquals(1, subscribed.size());
+        assertEquals("Picnic", subscribed.get(0).getTitle());
+        assertEquals(1, eventRepository.countSubscribedEvents(bob.getId(), today, today.plusDays(7)));
+        assertThrows(RepositoryException.class, () -> eventRepository.addSubscriber(event, bob));
+
+        eventRepository.removeSubscriber(event, bob);
+        assertEquals(0, eventRepository.getSubscribedEvents(bob.getId(), today, 0, 10).size());
+    }
+}
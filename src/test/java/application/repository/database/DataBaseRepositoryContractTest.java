@@ -0,0 +1,63 @@
+package application.repository.database;
+
+import application.repository.RepositoryContractTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Runs the repository contract against the database repositories.
+ * The database is given by the TEST_DB_URL, TEST_DB_USER and TEST_DB_PASSWORD environment variables; its schema
+ * is migrated and its data is deleted before every test. The tests are skipped when it cannot be reached.
+ */
+class DataBaseRepositoryContractTest extends RepositoryContractTest {
+    private static final String URL = env("TEST_DB_URL", "jdbc:postgresql://localhost:5432/network_test");
+    private static final String USERNAME = env("TEST_DB_USER", "postgres");
+    private static final String PASSWORD = env("TEST_DB_PASSWORD", "postgres");
+
+    private static ConnectionPool pool;
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    @BeforeAll
+    static void openPool() throws Exception {
+        boolean reachable;
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+            reachable = connection.isValid(2);
+        } catch (SQLException e) {
+            reachable = false;
+        }
+        Assumptions.assumeTrue(reachable, "The test database " + URL + " cannot be reached");
+        pool = new ConnectionPool(URL, USERNAME, PASSWORD);
+        new SchemaMigrator(pool).migrate();
+    }
+
+    @AfterAll
+    static void closePool() {
+        if (pool != null)
+            pool.close();
+    }
+
+    @Override
+    protected void createRepositories() throws SQLException {
+        // the ids keep growing, so the users cached by the pool never stand for the users of another test
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE read_cursor, inbox, subscribed, event, send_to, message, friend_request, " +
+                    "friendship, \"user\"");
+        }
+        userRepository = new UserDataBaseRepository(pool);
+        friendshipRepository = new FriendshipDataBaseRepository(pool);
+        requestRepository = new FriendRequestDataBaseRepository(pool);
+        messageRepository = new MessageDataBaseRepository(pool);
+        eventRepository = new EventDataBaseRepository(pool);
+    }
+}
@@ -0,0 +1,41 @@
+package application.repository.log;
+
+import application.repository.RepositoryContractTest;
+import application.repository.memory.EventMemoryRepository;
+import application.repository.memory.FriendRequestMemoryRepository;
+import application.repository.memory.FriendshipMemoryRepository;
+import application.repository.memory.MemoryDatabase;
+import application.repository.memory.UserMemoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Runs the repository contract against the message log, with the memory repositories for the other entities;
+ * every test has a new log in a temporary directory
+ */
+class LogRepositoryContractTest extends RepositoryContractTest {
+    @TempDir
+    Path directory;
+
+    private MessageLog log;
+
+    @Override
+    protected void createRepositories() throws IOException {
+        MemoryDatabase database = new MemoryDatabase(4);
+        userRepository = new UserMemoryRepository(database);
+        friendshipRepository = new FriendshipMemoryRepository(database);
+        requestRepository = new FriendRequestMemoryRepository(database);
+        eventRepository = new EventMemoryRepository(database);
+        log = MessageLog.open(directory, 64 * 1024, 0.5);
+        messageRepository = new MessageLogRepository(log, userRepository);
+    }
+
+    @AfterEach
+    void closeLog() {
+        if (log != null)
+            log.close();
+    }
+}
@@ -0,0 +1,195 @@
+package application.repository.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recovery, compaction and group commit of the message log, on small segments so that a few messages fill one
+ */
+class MessageLogTest {
+    private static final int SEGMENT_BYTES = 256;
+    private static final double COMPACTION_RATIO = 0.5;
+    private static final LocalDateTime NOON = LocalDateTime.of(2022, 1, 10, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    private MessageLog log;
+
+    private MessageLog open() throws IOException {
+        if (log != null)
+            log.close();
+        log = MessageLog.open(directory, SEGMENT_BYTES, COMPACTION_RATIO);
+        return log;
+    }
+
+    @AfterEach
+    void closeLog() {
+        if (log != null)
+            log.close();
+    }
+
+    private MessageRecord append(String text) throws IOException {
+        return log.append(1, new int[]{2}, text, NOON, 0);
+    }
+
+    @Test
+    void messagesAreReadBackAfterReopen() throws IOException {
+        open();
+        MessageRecord first = append("first");
+        MessageRecord second = append("second");
+
+        open();
+        assertEquals("first", log.get(first.getId()).getText());
+        assertEquals("second", log.get(second.getId()).getText());
+        assertEquals(2, log.countConversation(1, 2));
+        assertEquals(second.getId() + 1, append("third").getId());
+    }
+
+    @Test
+    void updatedMessageIsReadBackAfterReopen() throws IOException {
+        open();
+        MessageRecord record = append("before");
+        log.update(record.getId(), "after", new int[]{2, 3});
+
+        open();
+        assertEquals("after", log.get(record.getId()).getText());
+        assertEquals(1, log.countConversation(1, 3));
+        assertEquals(1, log.size());
+    }
+
+    @Test
+    void deletedMessageStaysDeletedAfterReopen() throws IOException {
+        open();
+        MessageRecord kept = append("kept");
+        MessageRecord deleted = append("deleted");
+        log.delete(deleted.getId());
+
+        open();
+        assertNull(log.get(deleted.getId()));
+        assertNotNull(log.get(kept.getId()));
+        assertEquals(1, log.countConversation(1, 2));
+    }
+
+    @Test
+    void compactionKeepsTheLatestVersionsAfterReopen() throws IOException {
+        open();
+        List<MessageRecord> records = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            records.add(append("message " + i));
+        for (int i = 0; i < 20; i += 2)
+            log.update(records.get(i).getId(), "updated " + i, new int[]{2});
+        for (int i = 1; i < 20; i += 4)
+            log.delete(records.get(i).getId());
+        log.compact();
+        assertTrue(log.getCompactions() > 0);
+
+        for (int reopen = 0; reopen < 2; reopen++) {
+            open();
+            for (int i = 0; i < 20; i++) {
+                MessageRecord record = log.get(records.get(i).getId());
+                if (i % 4 == 1)
+                    assertNull(record);
+                else
+                    assertEquals(i % 2 == 0 ? "updated " + i : "message " + i, record.getText());
+            }
+        }
+    }
+
+    @Test
+    void deleteOfAnUpdatedMessageSurvivesTheCompactionOfItsSegment() throws IOException {
+        open();
+        // segment 1: a message that keeps it from being compacted, then the first version of the deleted one
+        MessageRecord kept = append("k".repeat(120));
+        MessageRecord deleted = append("A");
+        // segment 2: the second version and the tombstone
+        log.update(deleted.getId(), "B", new int[]{2});
+        log.delete(deleted.getId());
+        assertEquals(2, log.getSegmentCount());
+        // segment 3: segment 2 is sealed with nothing but the tombstone, and compacted
+        append("f".repeat(150));
+        assertEquals(1L, log.getCompactions());
+        assertNull(log.get(deleted.getId()));
+
+        for (int reopen = 0; reopen < 2; reopen++) {
+            open();
+            assertNull(log.get(deleted.getId()));
+            assertNotNull(log.get(kept.getId()));
+        }
+    }
+
+    @Test
+    void tornLastRecordEndsTheLog() throws IOException {
+        open();
+        MessageRecord first = append("first");
+        MessageRecord torn = append("torn");
+        log.close();
+        log = null;
+
+        // damages the payload of the last record, as a crash in the middle of its copy would
+        Path file = directory.resolve("messages-0000000001.log");
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int last = 0;
+        for (int offset = 0; bytes.getInt(offset) > 0; offset += LogSegment.HEADER_BYTES + bytes.getInt(offset))
+            last = offset;
+        bytes.put(last + LogSegment.HEADER_BYTES + bytes.getInt(last) - 1, (byte) '?');
+        Files.write(file, bytes.array());
+
+        open();
+        assertNotNull(log.get(first.getId()));
+        assertNull(log.get(torn.getId()));
+        MessageRecord next = append("next");
+        assertEquals(torn.getId(), next.getId());
+
+        open();
+        assertEquals("next", log.get(next.getId()).getText());
+        assertEquals(2, log.size());
+    }
+
+    @Test
+    void concurrentAppendsShareTheirSyncs() throws Exception {
+        open();
+        int threads = 8;
+        int perThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int from = t + 1;
+                done.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++)
+                        log.append(from, new int[]{100}, "m" + i, NOON, 0);
+                    return null;
+                }));
+            }
+            for (Future<?> future : done)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads * perThread, log.size());
+        assertTrue(log.getSyncs() <= log.getAppends());
+
+        open();
+        assertEquals(threads * perThread, log.size());
+        for (int from = 1; from <= threads; from++)
+            assertEquals(perThread, log.countConversation(from, 100));
+    }
+}
@@ -0,0 +1,19 @@
+package application.repository.memory;
+
+import application.repository.RepositoryContractTest;
+
+/**
+ * Runs the repository contract against the memory repositories, each test on a new MemoryDatabase
+ */
+class MemoryRepositoryContractTest extends RepositoryContractTest {
+
+    @Override
+    protected void createRepositories() {
+        MemoryDatabase database = new MemoryDatabase(4);
+        userRepository = new UserMemoryRepository(database);
+        friendshipRepository = new FriendshipMemoryRepository(database);
+        requestRepository = new FriendRequestMemoryRepository(database);
+        messageRepository = new MessageMemoryRepository(database);
+        eventRepository = new EventMemoryRepository(database);
+    }
+}